@@ -64,6 +64,7 @@ public class StartUpListener {
     @Scheduled(cron = "0 */5 * * * *")
     void initRHPOrganizations() {
         rhpOrganizationManager.initOrganizationsFromRHP();
+        searchIndexManager.updateOrganizationHierarchy();
     }
 
     private void initServiceCategories() {
@@ -29,6 +29,16 @@ public final class ApplicationProperties {
     private boolean devMode;
     private boolean messagingEnabled;
     private String env;
+    private int asyncThreads = 32;
+    private int asyncQueueSize = 256;
+    private long asyncTimeoutMillis = 120000;
+    private boolean asyncVirtualThreads;
+    private long suggestTimeoutMillis = 300;
+    private long jsonLdMaxBytes = 10485760;
+    private long jsonLdMaxTriples = 100000;
+    private int jsonLdMaxDepth = 64;
+    private int jsonLdMaxLiteralLength = 1048576;
+    private boolean languageFilterFromAcceptLanguage;
 
     public String getEndpoint() {
         return endpoint;
@@ -213,4 +223,84 @@ public final class ApplicationProperties {
     public void setMessagingEnabled(final boolean messagingEnabled) {
         this.messagingEnabled = messagingEnabled;
     }
+
+    public int getAsyncThreads() {
+        return asyncThreads;
+    }
+
+    public void setAsyncThreads(final int asyncThreads) {
+        this.asyncThreads = asyncThreads;
+    }
+
+    public int getAsyncQueueSize() {
+        return asyncQueueSize;
+    }
+
+    public void setAsyncQueueSize(final int asyncQueueSize) {
+        this.asyncQueueSize = asyncQueueSize;
+    }
+
+    public long getAsyncTimeoutMillis() {
+        return asyncTimeoutMillis;
+    }
+
+    public void setAsyncTimeoutMillis(final long asyncTimeoutMillis) {
+        this.asyncTimeoutMillis = asyncTimeoutMillis;
+    }
+
+    public boolean isAsyncVirtualThreads() {
+        return asyncVirtualThreads;
+    }
+
+    public void setAsyncVirtualThreads(final boolean asyncVirtualThreads) {
+        this.asyncVirtualThreads = asyncVirtualThreads;
+    }
+
+    public long getSuggestTimeoutMillis() {
+        return suggestTimeoutMillis;
+    }
+
+    public void setSuggestTimeoutMillis(final long suggestTimeoutMillis) {
+        this.suggestTimeoutMillis = suggestTimeoutMillis;
+    }
+
+    public long getJsonLdMaxBytes() {
+        return jsonLdMaxBytes;
+    }
+
+    public void setJsonLdMaxBytes(final long jsonLdMaxBytes) {
+        this.jsonLdMaxBytes = jsonLdMaxBytes;
+    }
+
+    public long getJsonLdMaxTriples() {
+        return jsonLdMaxTriples;
+    }
+
+    public void setJsonLdMaxTriples(final long jsonLdMaxTriples) {
+        this.jsonLdMaxTriples = jsonLdMaxTriples;
+    }
+
+    public int getJsonLdMaxDepth() {
+        return jsonLdMaxDepth;
+    }
+
+    public void setJsonLdMaxDepth(final int jsonLdMaxDepth) {
+        this.jsonLdMaxDepth = jsonLdMaxDepth;
+    }
+
+    public int getJsonLdMaxLiteralLength() {
+        return jsonLdMaxLiteralLength;
+    }
+
+    public void setJsonLdMaxLiteralLength(final int jsonLdMaxLiteralLength) {
+        this.jsonLdMaxLiteralLength = jsonLdMaxLiteralLength;
+    }
+
+    public boolean isLanguageFilterFromAcceptLanguage() {
+        return languageFilterFromAcceptLanguage;
+    }
+
+    public void setLanguageFilterFromAcceptLanguage(final boolean languageFilterFromAcceptLanguage) {
+        this.languageFilterFromAcceptLanguage = languageFilterFromAcceptLanguage;
+    }
 }
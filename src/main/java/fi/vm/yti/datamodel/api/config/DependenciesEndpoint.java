@@ -0,0 +1,36 @@
+package fi.vm.yti.datamodel.api.config;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import fi.vm.yti.datamodel.api.service.RemoteDependency;
+import fi.vm.yti.datamodel.api.service.RemoteDependencyRegistry;
+
+/**
+ * Exposes circuit breaker and bulkhead states of remote dependencies in /actuator/dependencies
+ */
+@Component
+@Endpoint(id = "dependencies")
+public class DependenciesEndpoint {
+
+    private final RemoteDependencyRegistry registry;
+
+    @Autowired
+    DependenciesEndpoint(RemoteDependencyRegistry registry) {
+        this.registry = registry;
+    }
+
+    @ReadOperation
+    public Map<String, Map<String, Object>> dependencies() {
+        Map<String, Map<String, Object>> states = new LinkedHashMap<>();
+        for (RemoteDependency dependency : registry.getAll()) {
+            states.put(dependency.getName(), dependency.getStatus());
+        }
+        return states;
+    }
+}
@@ -0,0 +1,20 @@
+package fi.vm.yti.datamodel.api.config;
+
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.ExceptionMapper;
+import javax.ws.rs.ext.Provider;
+
+import fi.vm.yti.datamodel.api.service.DependencyUnavailableException;
+
+@Provider
+public class DependencyUnavailableExceptionMapper
+    implements ExceptionMapper<DependencyUnavailableException> {
+
+    @Override
+    public Response toResponse(DependencyUnavailableException exception) {
+        return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+            .header("Retry-After", 10)
+            .entity(exception.getMessage())
+            .type("text/plain").build();
+    }
+}
@@ -49,7 +49,7 @@ import javax.ws.rs.container.ContainerResponseFilter;
 public class JerseyConfig extends ResourceConfig {
 
     @Autowired
-    public JerseyConfig() {
+    public JerseyConfig(JsonLdBodyReader jsonLdBodyReader) {
 
         // https://github.com/spring-projects/spring-boot/issues/1468
         // FIXME packages("fi.vm.yti.datamodel.api.endpoint"); should work but it doesn't
@@ -61,10 +61,15 @@ public class JerseyConfig extends ResourceConfig {
         register(DeflateEncoder.class);
         register(JsonParseExceptionMapper.class);
         register(IllegalArgumentExceptionMapper.class);
+        register(DependencyUnavailableExceptionMapper.class);
+        register(jsonLdBodyReader);
         register((ContainerResponseFilter) (req, resp) -> {
-            resp.getHeaders().add("Cache-Control", "no-cache, no-store, must-revalidate");
-            resp.getHeaders().add("Pragma", "no-cache");
-            resp.getHeaders().add("Expires", "0");
+            // Conditional GETs of resources and models set their own revalidation policy
+            if (!resp.getHeaders().containsKey("Cache-Control")) {
+                resp.getHeaders().add("Cache-Control", "no-cache, no-store, must-revalidate");
+                resp.getHeaders().add("Pragma", "no-cache");
+                resp.getHeaders().add("Expires", "0");
+            }
 
             resp.getHeaders().add("Access-Control-Allow-Origin", "*");
             resp.getHeaders().add("Access-Control-Allow-Headers", "content-type");
@@ -0,0 +1,219 @@
+package fi.vm.yti.datamodel.api.config;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.Provider;
+
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.jena.riot.system.StreamRDFWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import fi.vm.yti.datamodel.api.service.ModelManager;
+import fi.vm.yti.datamodel.api.utils.ErrorMessage;
+
+/**
+ * Reads JSON-LD request bodies to Jena models in one pass from the entity stream. Size of the body, number of
+ * triples, nesting depth and length of strings are limited. Too large bodies are rejected with 413 and invalid
+ * ones with 400 as soon as the limit is exceeded. Empty body is read as an empty model.
+ */
+@Component
+@Provider
+public class JsonLdBodyReader implements MessageBodyReader<Model> {
+
+    private static final Logger logger = LoggerFactory.getLogger(JsonLdBodyReader.class.getName());
+
+    private final long maxBytes;
+    private final long maxTriples;
+    private final int maxDepth;
+    private final int maxLiteralLength;
+
+    @Autowired
+    public JsonLdBodyReader(ApplicationProperties properties) {
+        this(properties.getJsonLdMaxBytes(), properties.getJsonLdMaxTriples(), properties.getJsonLdMaxDepth(), properties.getJsonLdMaxLiteralLength());
+    }
+
+    JsonLdBodyReader(long maxBytes,
+                     long maxTriples,
+                     int maxDepth,
+                     int maxLiteralLength) {
+        this.maxBytes = maxBytes;
+        this.maxTriples = maxTriples;
+        this.maxDepth = maxDepth;
+        this.maxLiteralLength = maxLiteralLength;
+    }
+
+    @Override
+    public boolean isReadable(Class<?> type,
+                              Type genericType,
+                              Annotation[] annotations,
+                              MediaType mediaType) {
+        return type == Model.class;
+    }
+
+    @Override
+    public Model readFrom(Class<Model> type,
+                          Type genericType,
+                          Annotation[] annotations,
+                          MediaType mediaType,
+                          MultivaluedMap<String, String> httpHeaders,
+                          InputStream entityStream) throws IOException {
+        String contentLength = httpHeaders != null ? httpHeaders.getFirst("Content-Length") : null;
+        if (contentLength != null) {
+            long length;
+            try {
+                length = Long.parseLong(contentLength.trim());
+            } catch (NumberFormatException e) {
+                throw limitExceeded(Response.Status.BAD_REQUEST, "invalid Content-Length " + contentLength);
+            }
+            if (length > maxBytes) {
+                throw limitExceeded(Response.Status.REQUEST_ENTITY_TOO_LARGE, "Content-Length " + contentLength);
+            }
+        }
+
+        Model model = ModelFactory.createDefaultModel();
+        PushbackInputStream in = new PushbackInputStream(entityStream);
+        int first = in.read();
+        if (first < 0) {
+            return model;
+        }
+        in.unread(first);
+
+        LimitedJsonInputStream limited = new LimitedJsonInputStream(in);
+        try {
+            ModelManager.parseJSONLD(limited, new StreamRDFWrapper(StreamRDFLib.graph(model.getGraph())) {
+                @Override
+                public void triple(Triple triple) {
+                    if (model.size() >= maxTriples) {
+                        throw limited.violate(Response.Status.REQUEST_ENTITY_TOO_LARGE, "more than " + maxTriples + " triples");
+                    }
+                    super.triple(triple);
+                }
+            }, model::setNsPrefix);
+        } catch (RuntimeException e) {
+            if (limited.violation != null) {
+                throw limited.violation;
+            }
+            logger.warn("Invalid JSON-LD: " + e.getMessage());
+            throw new WebApplicationException(Response.status(Response.Status.BAD_REQUEST)
+                .entity(ErrorMessage.INVALIDGRAPH).type(MediaType.APPLICATION_JSON).build());
+        }
+        return model;
+    }
+
+    private static WebApplicationException limitExceeded(Response.Status status,
+                                                         String reason) {
+        logger.warn("Rejected JSON-LD body: " + reason);
+        return new WebApplicationException(Response.status(status)
+            .entity(status == Response.Status.BAD_REQUEST ? ErrorMessage.INVALIDGRAPH : ErrorMessage.TOOLARGE)
+            .type(MediaType.APPLICATION_JSON).build());
+    }
+
+    /**
+     * Follows the JSON structure of the bytes passing through without parsing it. Strings are measured in bytes of
+     * UTF-8, escapes included. The first violated limit is kept, since the JSON-LD parser wraps the exceptions it
+     * gets.
+     */
+    private class LimitedJsonInputStream extends FilterInputStream {
+
+        private long count;
+        private int depth;
+        private boolean inString;
+        private boolean escaped;
+        private int stringLength;
+        private WebApplicationException violation;
+
+        LimitedJsonInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                consume((byte) b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] bytes,
+                        int off,
+                        int len) throws IOException {
+            int n = super.read(bytes, off, len);
+            for (int i = 0; i < n; i++) {
+                consume(bytes[off + i]);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            throw new IOException("Skipping is not supported");
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private void consume(byte b) throws IOException {
+            if (violation != null) {
+                throw new IOException("Limit exceeded");
+            }
+            if (++count > maxBytes) {
+                fail(Response.Status.REQUEST_ENTITY_TOO_LARGE, "more than " + maxBytes + " bytes");
+            }
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (b == '\\') {
+                    escaped = true;
+                } else if (b == '"') {
+                    inString = false;
+                    return;
+                }
+                if (++stringLength > maxLiteralLength) {
+                    fail(Response.Status.REQUEST_ENTITY_TOO_LARGE, "string longer than " + maxLiteralLength + " bytes");
+                }
+            } else if (b == '"') {
+                inString = true;
+                stringLength = 0;
+            } else if (b == '{' || b == '[') {
+                if (++depth > maxDepth) {
+                    fail(Response.Status.BAD_REQUEST, "nested deeper than " + maxDepth);
+                }
+            } else if (b == '}' || b == ']') {
+                depth--;
+            }
+        }
+
+        private void fail(Response.Status status,
+                          String reason) throws IOException {
+            throw new IOException(reason, violate(status, reason));
+        }
+
+        WebApplicationException violate(Response.Status status,
+                                        String reason) {
+            if (violation == null) {
+                violation = limitExceeded(status, reason);
+            }
+            return violation;
+        }
+    }
+}
@@ -33,16 +33,19 @@ public class CodeList {
     private final ApplicationProperties applicationProperties;
     private final JerseyResponseManager jerseyResponseManager;
     private final CodeSchemeManager codeSchemeManager;
+    private final RemoteDependency codes;
 
     @Autowired
     CodeList(EndpointServices endpointServices,
              ApplicationProperties applicationProperties,
              CodeSchemeManager codeSchemeManager,
-             JerseyResponseManager jerseyResponseManager) {
+             JerseyResponseManager jerseyResponseManager,
+             RemoteDependencyRegistry dependencyRegistry) {
         this.endpointServices = endpointServices;
         this.applicationProperties = applicationProperties;
         this.jerseyResponseManager = jerseyResponseManager;
         this.codeSchemeManager = codeSchemeManager;
+        this.codes = dependencyRegistry.get(RemoteDependencyRegistry.CODES);
     }
 
     @GET
@@ -61,10 +64,10 @@ public class CodeList {
         }
 
         if (uri.startsWith("https://koodistot.suomi.fi")) {
-            SuomiCodeServer suomiCodeServer = new SuomiCodeServer("https://koodistot.suomi.fi", applicationProperties.getDefaultSuomiCodeServerAPI(), endpointServices, codeSchemeManager);
+            SuomiCodeServer suomiCodeServer = new SuomiCodeServer("https://koodistot.suomi.fi", applicationProperties.getDefaultSuomiCodeServerAPI(), endpointServices, codeSchemeManager, codes);
             suomiCodeServer.updateCodeSchemeList();
         } else if (uri.startsWith("https://virkailija.opintopolku.fi")) {
-            OPHCodeServer codeServer = new OPHCodeServer("https://virkailija.opintopolku.fi/koodisto-service/rest/json/", endpointServices);
+            OPHCodeServer codeServer = new OPHCodeServer("https://virkailija.opintopolku.fi/koodisto-service/rest/json/", endpointServices, codes);
             codeServer.updateCodelistsFromServer();
         } else {
             return jerseyResponseManager.invalidParameter();
@@ -31,16 +31,19 @@ public class Codes {
     private final JerseyResponseManager jerseyResponseManager;
     private final ApplicationProperties applicationProperties;
     private final CodeSchemeManager codeSchemeManager;
+    private final RemoteDependency codes;
 
     @Autowired
     Codes(EndpointServices endpointServices,
           JerseyResponseManager jerseyResponseManager,
           ApplicationProperties applicationProperties,
-          CodeSchemeManager codeSchemeManager) {
+          CodeSchemeManager codeSchemeManager,
+          RemoteDependencyRegistry dependencyRegistry) {
         this.endpointServices = endpointServices;
         this.jerseyResponseManager = jerseyResponseManager;
         this.applicationProperties = applicationProperties;
         this.codeSchemeManager = codeSchemeManager;
+        this.codes = dependencyRegistry.get(RemoteDependencyRegistry.CODES);
     }
 
     @GET
@@ -57,10 +60,10 @@ public class Codes {
         @Parameter(description = "forced update")
         @QueryParam("force") boolean force) {
         if (uri.startsWith("http://uri.suomi.fi")) {
-            SuomiCodeServer codeServer = new SuomiCodeServer("https://koodistot.suomi.fi", applicationProperties.getDefaultSuomiCodeServerAPI(), endpointServices, codeSchemeManager);
+            SuomiCodeServer codeServer = new SuomiCodeServer("https://koodistot.suomi.fi", applicationProperties.getDefaultSuomiCodeServerAPI(), endpointServices, codeSchemeManager, codes);
             codeServer.updateCodes(uri, force);
         } else if (uri.startsWith("https://virkailija.opintopolku.fi")) {
-            OPHCodeServer codeServer = new OPHCodeServer("https://virkailija.opintopolku.fi/koodisto-service/rest/json/", endpointServices);
+            OPHCodeServer codeServer = new OPHCodeServer("https://virkailija.opintopolku.fi/koodisto-service/rest/json/", endpointServices, codes);
             if (!codeServer.containsCodeList(uri)) {
                 codeServer.updateCodes(uri);
             }
@@ -93,9 +96,9 @@ public class Codes {
         ResponseBuilder rb;
 
         if (uri.startsWith("http://uri.suomi.fi")) {
-            SuomiCodeServer codeServer = new SuomiCodeServer("https://koodistot.suomi.fi", applicationProperties.getDefaultSuomiCodeServerAPI(), endpointServices, codeSchemeManager);
+            SuomiCodeServer codeServer = new SuomiCodeServer("https://koodistot.suomi.fi", applicationProperties.getDefaultSuomiCodeServerAPI(), endpointServices, codeSchemeManager, codes);
         } else if (uri.startsWith("https://virkailija.opintopolku.fi")) {
-            OPHCodeServer codeServer = new OPHCodeServer("https://virkailija.opintopolku.fi/koodisto-service/rest/json/", endpointServices);
+            OPHCodeServer codeServer = new OPHCodeServer("https://virkailija.opintopolku.fi/koodisto-service/rest/json/", endpointServices, codes);
             codeServer.updateCodes(uri);
         } else {
             return jerseyResponseManager.invalidParameter();
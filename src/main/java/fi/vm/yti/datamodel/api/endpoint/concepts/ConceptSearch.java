@@ -3,6 +3,7 @@
  */
 package fi.vm.yti.datamodel.api.endpoint.concepts;
 
+import fi.vm.yti.datamodel.api.service.AsyncRequestExecutor;
 import fi.vm.yti.datamodel.api.service.JerseyResponseManager;
 import fi.vm.yti.datamodel.api.service.TerminologyManager;
 import io.swagger.v3.oas.annotations.Operation;
@@ -17,6 +18,8 @@ import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.Response;
 
 @Component
@@ -26,13 +29,16 @@ public class ConceptSearch {
 
     private final TerminologyManager terminologyManager;
     private final JerseyResponseManager jerseyResponseManager;
+    private final AsyncRequestExecutor asyncRequestExecutor;
 
     @Autowired
     ConceptSearch(JerseyResponseManager jerseyResponseManager,
-                  TerminologyManager terminologyManager) {
+                  TerminologyManager terminologyManager,
+                  AsyncRequestExecutor asyncRequestExecutor) {
 
         this.terminologyManager = terminologyManager;
         this.jerseyResponseManager = jerseyResponseManager;
+        this.asyncRequestExecutor = asyncRequestExecutor;
     }
 
     @GET
@@ -43,11 +49,17 @@ public class ConceptSearch {
         @ApiResponse(responseCode = "406", description = "Term not defined"),
         @ApiResponse(responseCode = "500", description = "Internal server error")
     })
-    public Response searchConcept(
+    public void searchConcept(
+        @Suspended AsyncResponse asyncResponse,
         @Parameter(description = "Search term", required = true)
         @QueryParam("term") String term,
         @Parameter(description = "Terminology URI")
         @QueryParam("terminologyUri") String terminologyUri) {
+        asyncRequestExecutor.submit(asyncResponse, () -> searchConceptResponse(term, terminologyUri));
+    }
+
+    private Response searchConceptResponse(String term,
+                                           String terminologyUri) {
 
         if(term==null) {
             return jerseyResponseManager.invalidParameter();
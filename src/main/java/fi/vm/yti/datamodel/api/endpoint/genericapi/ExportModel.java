@@ -12,9 +12,15 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.Path;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,6 +39,9 @@ public class ExportModel {
     private final JsonSchemaWriter jsonSchemaWriter;
     private final OpenAPIWriter openAPIWriter;
     private final XMLSchemaWriter xmlSchemaWriter;
+    private final AsyncRequestExecutor asyncRequestExecutor;
+    private final ResourceVersionManager resourceVersionManager;
+    private final LanguageFilterManager languageFilterManager;
     private final String rawContentType = "text/plain;charset=utf-8";
 
     @Autowired
@@ -42,7 +51,10 @@ public class ExportModel {
                 ContextWriter contextWriter,
                 JsonSchemaWriter jsonSchemaWriter,
                 OpenAPIWriter openAPIWriter,
-                XMLSchemaWriter xmlSchemaWriter) {
+                XMLSchemaWriter xmlSchemaWriter,
+                AsyncRequestExecutor asyncRequestExecutor,
+                ResourceVersionManager resourceVersionManager,
+                LanguageFilterManager languageFilterManager) {
         this.idManager = idManager;
         this.jerseyResponseManager = jerseyResponseManager;
         this.jerseyClient = jerseyClient;
@@ -50,6 +62,9 @@ public class ExportModel {
         this.jsonSchemaWriter = jsonSchemaWriter;
         this.openAPIWriter = openAPIWriter;
         this.xmlSchemaWriter = xmlSchemaWriter;
+        this.asyncRequestExecutor = asyncRequestExecutor;
+        this.resourceVersionManager = resourceVersionManager;
+        this.languageFilterManager = languageFilterManager;
     }
 
     @GET
@@ -60,35 +75,52 @@ public class ExportModel {
         @ApiResponse(responseCode = "404", description = "Service not found"),
         @ApiResponse(responseCode = "500", description = "Internal server error")
     })
-    public Response getExportModel(
+    public void getExportModel(
+        @Suspended AsyncResponse asyncResponse,
+        @Context Request request,
         @Parameter(description = "Requested resource", schema = @Schema(defaultValue = "default")) @QueryParam("graph") String graph,
         @Parameter(description = "Raw / PlainText boolean", schema = @Schema(defaultValue = "false")) @QueryParam("raw") boolean raw,
-        @Parameter(description = "Languages to export") @QueryParam("lang") String lang,
-        @Parameter(description = "Content-type", required = true, schema = @Schema(allowableValues = {"application/ld+json","text/turtle","application/rdf+xml","application/ld+json+context","application/schema+json","application/xml","application/vnd.oai.openapi+json"})) @QueryParam("content-type") String ctype) {
+        @Parameter(description = "Languages to export, comma separated in order of preference for RDF") @QueryParam("lang") String lang,
+        @Parameter(description = "Content-type", required = true, schema = @Schema(allowableValues = {"application/ld+json","text/turtle","application/rdf+xml","application/ld+json+context","application/schema+json","application/xml","application/vnd.oai.openapi+json"})) @QueryParam("content-type") String ctype,
+        @HeaderParam("Accept-Language") String acceptLanguage) {
+        asyncRequestExecutor.submit(asyncResponse, () -> getExportModelResponse(request, graph, raw, lang, acceptLanguage, ctype));
+    }
+
+    private Response getExportModelResponse(Request request,
+                                            String graph,
+                                            boolean raw,
+                                            String lang,
+                                            String acceptLanguage,
+                                            String ctype) {
 
         /* Check that URIs are valid */
         if (idManager.isInvalid(graph)) {
             return jerseyResponseManager.invalidIRI();
-        } else {
-            if(graph.contains("#")) {
-                graph = graph.split("\\#")[0];
-            }
         }
 
-        if (ctype == null) ctype = "application/ld+json";
+        String modelId = graph.contains("#") ? graph.split("\\#")[0] : graph;
+        String contentType = ctype == null ? "application/ld+json" : ctype.replace(" ", "+");
 
-        ctype = ctype.replace(" ", "+");
+        logger.info("Exporting format: {}", contentType);
 
-        logger.info("Exporting format: {}", ctype);
+        /* Context is tagged by its content, as it does not change with every modification of the model */
+        if (contentType.equals("application/ld+json+context")) {
+            return contextWriter.getModelContext(modelId)
+                .map(context -> resourceVersionManager.conditionalResponse(request, context.getTag(),
+                    () -> jerseyResponseManager.ok(context.getContext(), raw ? rawContentType : "application/json")))
+                .orElseGet(jerseyResponseManager::notFound);
+        }
 
-        if (ctype.equals("application/ld+json+context")) {
-            String context = contextWriter.newModelContext(graph);
-            if (context != null) {
-                return jerseyResponseManager.ok(context, raw ? rawContentType : "application/json");
-            } else {
-                return jerseyResponseManager.notFound();
-            }
-        } else if (ctype.equals("application/vnd+oai+openapi+json")) {
+        return resourceVersionManager.conditionalResponse(request, modelId, () -> getExportResponse(modelId, raw, lang, acceptLanguage, contentType));
+    }
+
+    private Response getExportResponse(String graph,
+                                       boolean raw,
+                                       String lang,
+                                       String acceptLanguage,
+                                       String ctype) {
+
+        if (ctype.equals("application/vnd+oai+openapi+json")) {
             String apiStub = openAPIWriter.newOpenApiStub(graph, lang);
             if (apiStub != null) {
                 return jerseyResponseManager.ok(apiStub, raw ? rawContentType : "application/json");
@@ -108,7 +140,7 @@ public class ExportModel {
             }
         } else if (ctype.equals("application/xml")) {
 
-            String schema = xmlSchemaWriter.newModelSchema(graph, lang);
+            StreamingOutput schema = xmlSchemaWriter.newModelSchemaOutput(graph, lang);
 
             if (schema != null) {
                 return jerseyResponseManager.ok(schema, raw ? rawContentType : "application/xml");
@@ -118,6 +150,6 @@ public class ExportModel {
         }
 
         /* IF ctype is none of the above try to export graph in RDF format */
-        return jerseyClient.getExportGraph(graph, raw, ctype);
+        return languageFilterManager.vary(jerseyClient.getExportGraph(graph, raw, ctype, languageFilterManager.getLanguages(lang, acceptLanguage)));
     }
 }
@@ -16,7 +16,10 @@ import javax.ws.rs.GET;
 import javax.ws.rs.HeaderParam;
 import javax.ws.rs.Path;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,6 +39,9 @@ public class ExportResource {
     private final XMLSchemaWriter xmlSchemaWriter;
     private final JerseyClient jerseyClient;
     private final OpenAPIWriter openAPIWriter;
+    private final ResourceVersionManager resourceVersionManager;
+    private final LanguageFilterManager languageFilterManager;
+    private final String rawContentType = "text/plain;charset=utf-8";
 
     @Autowired
     ExportResource(EndpointServices endpointServices,
@@ -45,7 +51,9 @@ public class ExportResource {
                    JsonSchemaWriter jsonSchemaWriter,
                    XMLSchemaWriter xmlSchemaWriter,
                    OpenAPIWriter openAPIWriter,
-                   JerseyClient jerseyClient) {
+                   JerseyClient jerseyClient,
+                   ResourceVersionManager resourceVersionManager,
+                   LanguageFilterManager languageFilterManager) {
         this.endpointServices = endpointServices;
         this.idManager = idManager;
         this.jerseyResponseManager = jerseyResponseManager;
@@ -54,6 +62,8 @@ public class ExportResource {
         this.xmlSchemaWriter = xmlSchemaWriter;
         this.openAPIWriter = openAPIWriter;
         this.jerseyClient = jerseyClient;
+        this.resourceVersionManager = resourceVersionManager;
+        this.languageFilterManager = languageFilterManager;
     }
 
     @GET
@@ -66,11 +76,13 @@ public class ExportResource {
     })
     public Response exportResource(
         @HeaderParam("Accept") String accept,
+        @Context Request request,
         @Parameter(description = "Requested resource", schema = @Schema(defaultValue = "default")) @QueryParam("graph") String graph,
         @Parameter(description = "Raw / PlainText boolean", schema = @Schema(defaultValue = "false")) @QueryParam("raw") boolean raw,
         @Parameter(description = "Languages to export") @QueryParam("lang") String lang,
         @Parameter(description = "Service to export") @QueryParam("service") String serviceString,
-        @Parameter(description = "Content-type", schema = @Schema(allowableValues = {"application/ld+json","text/turtle","application/rdf+xml","application/ld+json+context","application/schema+json","application/xml"})) @QueryParam("content-type") String ctype) {
+        @Parameter(description = "Content-type", schema = @Schema(allowableValues = {"application/ld+json","text/turtle","application/rdf+xml","application/ld+json+context","application/schema+json","application/xml"})) @QueryParam("content-type") String ctype,
+        @HeaderParam("Accept-Language") String acceptLanguage) {
 
         if (ctype == null || ctype.equals("undefined")) ctype = accept;
 
@@ -87,31 +99,30 @@ public class ExportResource {
             return jerseyResponseManager.invalidIRI();
         }
 
+        /* Every format is written to the response as it is generated */
         if (ctype.equals("application/ld+json+context")) {
-            String context = contextWriter.newResourceContext(graph);
-            if (context != null) {
-                return jerseyResponseManager.ok(context, raw ? "text/plain;charset=utf-8" : "application/json");
-            } else {
-                return jerseyResponseManager.notFound();
-            }
+            return contextWriter.getResourceContext(graph)
+                .map(context -> resourceVersionManager.conditionalResponse(request, context.getTag(),
+                    () -> jerseyResponseManager.ok(context.getContext(), raw ? rawContentType : "application/json")))
+                .orElseGet(jerseyResponseManager::notFound);
         } else if (ctype.equals("application/vnd+oai+openapi+json")) {
             String apiStub = openAPIWriter.newOpenApiStubFromClass(graph, lang);
             if (apiStub != null) {
-                return jerseyResponseManager.ok(apiStub, raw ? "text/plain;charset=utf-8" : "application/json");
+                return jerseyResponseManager.ok(apiStub, raw ? rawContentType : "application/json");
             }
         } else if (ctype.equals("application/schema+json")) {
-            String schema = jsonSchemaWriter.newResourceSchema(graph, lang);
+            StreamingOutput schema = jsonSchemaWriter.newResourceSchemaOutput(graph, lang);
             if (schema != null) {
-                return jerseyResponseManager.ok(schema, raw ? "text/plain;charset=utf-8" : "application/schema+json");
+                return jerseyResponseManager.ok(schema, raw ? rawContentType : "application/schema+json");
             } else {
                 return jerseyResponseManager.notFound();
             }
         } else if (ctype.equals("application/xml")) {
 
-            String schema = xmlSchemaWriter.newClassSchema(graph, lang);
+            StreamingOutput schema = xmlSchemaWriter.newClassSchemaOutput(graph, lang);
 
             if (schema != null) {
-                return jerseyResponseManager.ok(schema, raw ? "text/plain;charset=utf-8" : "application/schema+json");
+                return jerseyResponseManager.ok(schema, raw ? rawContentType : "application/schema+json");
             } else {
                 return jerseyResponseManager.notFound();
             }
@@ -119,7 +130,8 @@ public class ExportResource {
 
         try {
             ContentType contentType = ContentType.create(ctype);
-            return jerseyClient.getGraphResponseFromService(graph, service, contentType.getContentTypeStr(), raw);
+            return languageFilterManager.vary(jerseyClient.getGraphResponseFromService(graph, service, contentType.getContentTypeStr(), raw,
+                languageFilterManager.getLanguages(lang, acceptLanguage)));
         } catch (Exception ex) {
             logger.warn("Expect the unexpected!", ex);
             return jerseyResponseManager.serverError();
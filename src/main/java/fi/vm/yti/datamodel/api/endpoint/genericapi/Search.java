@@ -1,5 +1,6 @@
 package fi.vm.yti.datamodel.api.endpoint.genericapi;
 
+import fi.vm.yti.datamodel.api.service.AsyncRequestExecutor;
 import fi.vm.yti.datamodel.api.service.IDManager;
 import fi.vm.yti.datamodel.api.service.JerseyResponseManager;
 import fi.vm.yti.datamodel.api.service.SearchManager;
@@ -16,6 +17,8 @@ import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.Response;
 
 @Component
@@ -26,15 +29,18 @@ public class Search {
     private final JerseyResponseManager jerseyResponseManager;
     private final IDManager idManager;
     private final SearchManager searchManager;
+    private final AsyncRequestExecutor asyncRequestExecutor;
 
     @Autowired
     Search(JerseyResponseManager jerseyResponseManager,
            IDManager idManager,
-           SearchManager searchManager) {
+           SearchManager searchManager,
+           AsyncRequestExecutor asyncRequestExecutor) {
 
         this.jerseyResponseManager = jerseyResponseManager;
         this.idManager = idManager;
         this.searchManager = searchManager;
+        this.asyncRequestExecutor = asyncRequestExecutor;
     }
 
     @GET
@@ -45,10 +51,17 @@ public class Search {
         @ApiResponse(responseCode = "500", description = "Query exception"),
         @ApiResponse(responseCode = "200", description = "OK")
     })
-    public Response searchResources(
+    public void searchResources(
+        @Suspended AsyncResponse asyncResponse,
         @Parameter(description = "Search in graph") @QueryParam("graph") String graph,
         @Parameter(description = "Searchstring", required = true) @QueryParam("search") String search,
         @Parameter(description = "Language") @QueryParam("lang") String lang) {
+        asyncRequestExecutor.submit(asyncResponse, () -> searchResourcesResponse(graph, search, lang));
+    }
+
+    private Response searchResourcesResponse(String graph,
+                                             String search,
+                                             String lang) {
 
         if (graph == null || graph.equals("undefined") || graph.equals("default")) {
             return jerseyResponseManager.okModel(searchManager.search(null, search, lang));
@@ -1,6 +1,5 @@
 package fi.vm.yti.datamodel.api.endpoint.genericapi;
 
-import fi.vm.yti.datamodel.api.service.EndpointServices;
 import fi.vm.yti.datamodel.api.model.ServiceCategory;
 import fi.vm.yti.datamodel.api.service.JerseyClient;
 import fi.vm.yti.datamodel.api.utils.QueryLibrary;
@@ -23,14 +22,11 @@ import javax.ws.rs.core.Response;
 @Tag(name = "Model")
 public class ServiceCategories {
 
-    private final EndpointServices endpointServices;
     private final JerseyClient jerseyClient;
 
     @Autowired
-    ServiceCategories(EndpointServices endpointServices,
-                      JerseyClient jerseyClient) {
+    ServiceCategories(JerseyClient jerseyClient) {
 
-        this.endpointServices = endpointServices;
         this.jerseyClient = jerseyClient;
     }
 
@@ -42,7 +38,7 @@ public class ServiceCategories {
     })
     public Response getServiceCategories(@HeaderParam("Accept") String header) {
         if (header != null && header.equals("application/ld+json")) {
-            return jerseyClient.constructGraphFromService(QueryLibrary.constructServiceCategories, endpointServices.getCoreSparqlAddress());
+            return jerseyClient.constructCachedGraphFromCore("serviceCategories", "urn:yti:servicecategories", QueryLibrary.constructServiceCategories);
         } else {
             return Response.status(200).entity(ServiceCategory.values()).build();
         }
@@ -3,7 +3,6 @@ package fi.vm.yti.datamodel.api.endpoint.integration;
 import java.util.Date;
 
 import fi.vm.yti.datamodel.api.index.SearchIndexManager;
-import fi.vm.yti.datamodel.api.index.model.IntegrationAPIResponse;
 import fi.vm.yti.datamodel.api.index.model.IntegrationContainerRequest;
 import fi.vm.yti.datamodel.api.service.*;
 import io.swagger.v3.oas.annotations.Operation;
@@ -23,14 +22,13 @@ import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.UriInfo;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-
 
 
 @Component
@@ -43,16 +41,13 @@ public class Containers {
 
     private final SearchIndexManager searchIndexManager;
     private final JerseyResponseManager jerseyResponseManager;
-    private ObjectMapper objectMapper;
 
     @Autowired
     Containers(
         SearchIndexManager searchIndexManager,
-        JerseyResponseManager jerseyResponseManager,
-        ObjectMapper objectMapper) {
+        JerseyResponseManager jerseyResponseManager) {
         this.searchIndexManager = searchIndexManager;
         this.jerseyResponseManager = jerseyResponseManager;
-        this.objectMapper = objectMapper;
     }
 
     @GET
@@ -73,6 +68,7 @@ public class Containers {
         @Parameter(description = "Search") @QueryParam("searchTerm") String search,
         @Parameter(description = "Pagesize") @QueryParam("pageSize") Integer pageSize,
         @Parameter(description = "From") @QueryParam("from") Integer from,
+        @Parameter(description = "Cursor of the next page returned with the previous page") @QueryParam("cursor") String cursor,
         @Parameter(description = "Include incomplete") @QueryParam("includeIncomplete") boolean includeIncomplete,
         @Parameter(description = "Include incomplete from organization") @QueryParam("includeIncompleteFrom") String includeIncompleteFrom) {
 
@@ -89,9 +85,43 @@ public class Containers {
         }
 
         IntegrationContainerRequest req = new IntegrationContainerRequest(searchIndexManager.parseStringList(uri), search, lang, searchIndexManager.parseStringList(status), type, afterDate, beforeDate, null, pageSize, from, includeIncomplete, searchIndexManager.parseStringList(includeIncompleteFrom));
-        IntegrationAPIResponse resp = searchIndexManager.searchContainers(req,path);
-        return jerseyResponseManager.ok(objectMapper.valueToTree(resp));
+        req.setCursor(cursor);
+        return jerseyResponseManager.ok(searchIndexManager.searchContainersOutput(req, path), MediaType.APPLICATION_JSON);
+
+    }
+
+    @GET
+    @Path("export")
+    @Produces("application/x-ndjson")
+    @Operation(description = "Export all matching containers as newline delimited JSON")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "400", description = "Invalid parameters"),
+        @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    public Response exportContainers(
+        @Parameter(description = "Uris") @QueryParam("uri") String uri,
+        @Parameter(description = "Language") @QueryParam("language") String lang,
+        @Parameter(description = "Status") @QueryParam("status") String status,
+        @Parameter(description = "Type values: library or profile") @QueryParam("type") String type,
+        @Parameter(description = "After") @QueryParam("after") String after,
+        @Parameter(description = "Before") @QueryParam("before") String before,
+        @Parameter(description = "Search") @QueryParam("searchTerm") String search,
+        @Parameter(description = "Include incomplete") @QueryParam("includeIncomplete") boolean includeIncomplete,
+        @Parameter(description = "Include incomplete from organization") @QueryParam("includeIncompleteFrom") String includeIncompleteFrom) {
+
+        Date afterDate = null;
+        if(after!=null && !after.isEmpty()) {
+            afterDate = (new DateTime(after)).toDate();
+        }
+
+        Date beforeDate = null;
+        if(before!=null && !before.isEmpty()) {
+            beforeDate = (new DateTime(before)).toDate();
+        }
 
+        IntegrationContainerRequest req = new IntegrationContainerRequest(searchIndexManager.parseStringList(uri), search, lang, searchIndexManager.parseStringList(status), type, afterDate, beforeDate, null, null, null, includeIncomplete, searchIndexManager.parseStringList(includeIncompleteFrom));
+        StreamingOutput output = out -> searchIndexManager.exportContainers(req, out);
+        return Response.ok(output).build();
     }
 
     @POST
@@ -99,8 +129,7 @@ public class Containers {
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
     public Response searchContainers(@RequestBody IntegrationContainerRequest request) {
-        IntegrationAPIResponse response = searchIndexManager.searchContainers(request,null);
-        return jerseyResponseManager.ok(objectMapper.valueToTree(response));
+        return jerseyResponseManager.ok(searchIndexManager.searchContainersOutput(request, null), MediaType.APPLICATION_JSON);
     }
 
 }
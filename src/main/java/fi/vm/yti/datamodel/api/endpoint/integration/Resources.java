@@ -3,7 +3,6 @@ package fi.vm.yti.datamodel.api.endpoint.integration;
 import java.util.Date;
 
 import fi.vm.yti.datamodel.api.index.SearchIndexManager;
-import fi.vm.yti.datamodel.api.index.model.IntegrationAPIResponse;
 import fi.vm.yti.datamodel.api.index.model.IntegrationResourceRequest;
 import fi.vm.yti.datamodel.api.service.JerseyResponseManager;
 import io.swagger.v3.oas.annotations.Operation;
@@ -29,10 +28,9 @@ import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-
 @Component
 @Path("v1/integration/resources")
 @Tag(name = "Integration")
@@ -41,7 +39,6 @@ public class Resources {
     private static final Logger logger = LoggerFactory.getLogger(Resources.class.getName());
     private final SearchIndexManager searchIndexManager;
     private final JerseyResponseManager jerseyResponseManager;
-    private ObjectMapper objectMapper;
 
     @Context
     UriInfo uriInfo;
@@ -49,11 +46,9 @@ public class Resources {
     @Autowired
     Resources(
         SearchIndexManager searchIndexManager,
-        JerseyResponseManager jerseyResponseManager,
-        ObjectMapper objectMapper) {
+        JerseyResponseManager jerseyResponseManager) {
         this.searchIndexManager = searchIndexManager;
         this.jerseyResponseManager = jerseyResponseManager;
-        this.objectMapper = objectMapper;
     }
 
     @GET
@@ -74,7 +69,8 @@ public class Resources {
         @Parameter(description = "Before as ISO8601 Timestamp") @QueryParam("before") String before,
         @Parameter(description = "Search") @QueryParam("searchTerm") String search,
         @Parameter(description = "Pagesize") @QueryParam("pageSize") Integer pageSize,
-        @Parameter(description = "From") @QueryParam("from") Integer from) {
+        @Parameter(description = "From") @QueryParam("from") Integer from,
+        @Parameter(description = "Cursor of the next page returned with the previous page") @QueryParam("cursor") String cursor) {
 
         Date afterDate = null;
         if(after!=null && !after.isEmpty()) {
@@ -88,9 +84,42 @@ public class Resources {
 
         String path = uriInfo.getAbsolutePath().toString();
         IntegrationResourceRequest req = new IntegrationResourceRequest(searchIndexManager.parseStringList(uri), search,lang,searchIndexManager.parseStringList(container),searchIndexManager.parseStringList(status),type,afterDate,beforeDate,null,pageSize,from);
-        IntegrationAPIResponse apiResp = searchIndexManager.searchResources(req,path);
-        return jerseyResponseManager.ok(objectMapper.valueToTree(apiResp));
+        req.setCursor(cursor);
+        return jerseyResponseManager.ok(searchIndexManager.searchResourcesOutput(req, path), MediaType.APPLICATION_JSON);
+
+    }
+
+    @GET
+    @Path("export")
+    @Produces("application/x-ndjson")
+    @Operation(description = "Export all matching resources as newline delimited JSON")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "400", description = "Invalid parameters"),
+        @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    public Response exportResources(
+        @Parameter(description = "Uris") @QueryParam("uri") String uri,
+        @Parameter(description = "Containers") @QueryParam("container") String container,
+        @Parameter(description = "Language") @QueryParam("language") String lang,
+        @Parameter(description = "Status") @QueryParam("status") String status,
+        @Parameter(description = "Resource type: ", schema = @Schema(allowableValues = {"class", "shape", "attribute", "association"})) @QueryParam("type") String type,
+        @Parameter(description = "After as ISO8601 Timestamp") @QueryParam("after") String after,
+        @Parameter(description = "Before as ISO8601 Timestamp") @QueryParam("before") String before,
+        @Parameter(description = "Search") @QueryParam("searchTerm") String search) {
+
+        Date afterDate = null;
+        if(after!=null && !after.isEmpty()) {
+            afterDate = (new DateTime(after)).toDate();
+        }
+
+        Date beforeDate = null;
+        if(before!=null && !before.isEmpty()) {
+            beforeDate = (new DateTime(before)).toDate();
+        }
 
+        IntegrationResourceRequest req = new IntegrationResourceRequest(searchIndexManager.parseStringList(uri), search,lang,searchIndexManager.parseStringList(container),searchIndexManager.parseStringList(status),type,afterDate,beforeDate,null,null,null);
+        StreamingOutput output = out -> searchIndexManager.exportResources(req, out);
+        return Response.ok(output).build();
     }
 
     @POST
@@ -99,7 +128,6 @@ public class Resources {
     @Produces(MediaType.APPLICATION_JSON)
     public Response searchResources(
         @RequestBody IntegrationResourceRequest request) {
-        IntegrationAPIResponse response = searchIndexManager.searchResources(request,null);
-        return jerseyResponseManager.ok(objectMapper.valueToTree(response));
+        return jerseyResponseManager.ok(searchIndexManager.searchResourcesOutput(request, null), MediaType.APPLICATION_JSON);
     }
 }
@@ -94,15 +94,18 @@ public class ChangeStatuses {
             return jerseyResponseManager.unauthorized();
         }
 
+        boolean indexUpdated;
         if(user.isSuperuser()) {
-            graphManager.changeStatusesAsSuperUser(model, initialStatus, endStatus);
+            indexUpdated = graphManager.changeStatusesAsSuperUser(model, initialStatus, endStatus);
         } else {
-            graphManager.changeStatuses(model, initialStatus, endStatus);
+            indexUpdated = graphManager.changeStatuses(model, initialStatus, endStatus);
         }
 
-        logger.info("Updating resource indexes for "+model);
-        searchIndexManager.initPredicateIndexFromModel(model);
-        searchIndexManager.initClassIndexFromModel(model);
+        if (!indexUpdated) {
+            logger.info("Updating resource indexes for "+model);
+            searchIndexManager.initPredicateIndexFromModel(model);
+            searchIndexManager.initClassIndexFromModel(model);
+        }
 
         return jerseyResponseManager.ok();
     }
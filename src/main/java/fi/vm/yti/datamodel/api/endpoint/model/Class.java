@@ -8,6 +8,7 @@ import fi.vm.yti.datamodel.api.model.ReusableClass;
 import fi.vm.yti.datamodel.api.security.AuthorizationManager;
 import fi.vm.yti.datamodel.api.service.*;
 import fi.vm.yti.datamodel.api.utils.LDHelper;
+import fi.vm.yti.datamodel.api.utils.LanguageQueryFilter;
 import fi.vm.yti.datamodel.api.utils.QueryLibrary;
 import fi.vm.yti.security.AuthenticatedUserProvider;
 import fi.vm.yti.security.YtiUser;
@@ -26,8 +27,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import javax.ws.rs.*;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 
+import java.util.List;
 import java.util.Map;
 
 import org.slf4j.Logger;
@@ -35,8 +41,6 @@ import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
-import static org.apache.commons.lang3.StringUtils.isNotEmpty;
-
 @Component
 @Path("v1/class")
 @Tag(name = "Class" )
@@ -53,9 +57,11 @@ public class Class {
     private final IDManager idManager;
     private final GraphManager graphManager;
     private final ProvenanceManager provenanceManager;
-    private final ModelManager modelManager;
     private final SearchIndexManager searchIndexManager;
     private final ObjectMapper objectMapper;
+    private final AsyncRequestExecutor asyncRequestExecutor;
+    private final ResourceVersionManager resourceVersionManager;
+    private final LanguageFilterManager languageFilterManager;
 
     @Autowired
     Class(AuthorizationManager authorizationManager,
@@ -67,9 +73,11 @@ public class Class {
           IDManager idManager,
           GraphManager graphManager,
           ProvenanceManager provenanceManager,
-          ModelManager modelManager,
           SearchIndexManager searchIndexManager,
-          ObjectMapper objectMapper) {
+          ObjectMapper objectMapper,
+          AsyncRequestExecutor asyncRequestExecutor,
+          ResourceVersionManager resourceVersionManager,
+          LanguageFilterManager languageFilterManager) {
 
         this.authorizationManager = authorizationManager;
         this.userProvider = userProvider;
@@ -80,9 +88,11 @@ public class Class {
         this.idManager = idManager;
         this.graphManager = graphManager;
         this.provenanceManager = provenanceManager;
-        this.modelManager = modelManager;
         this.searchIndexManager = searchIndexManager;
         this.objectMapper = objectMapper;
+        this.asyncRequestExecutor = asyncRequestExecutor;
+        this.resourceVersionManager = resourceVersionManager;
+        this.languageFilterManager = languageFilterManager;
     }
 
     @GET
@@ -94,10 +104,23 @@ public class Class {
         @ApiResponse(responseCode = "404", description = "Service not found"),
         @ApiResponse(responseCode = "500", description = "Internal server error")
     })
-    public Response getClass(
+    public void getClass(
+        @Suspended AsyncResponse asyncResponse,
+        @Context Request request,
         @Parameter(description = "Class id") @QueryParam("id") String id,
         @Parameter(description = "Model id") @QueryParam("model") String model,
-        @Parameter(description = "Required by model id") @QueryParam("requiredBy") String requiredBy) {
+        @Parameter(description = "Required by model id") @QueryParam("requiredBy") String requiredBy,
+        @Parameter(description = "Comma separated languages in order of preference") @QueryParam("lang") String lang,
+        @HeaderParam("Accept-Language") String acceptLanguage) {
+        List<String> languages = languageFilterManager.getLanguages(lang, acceptLanguage);
+        asyncRequestExecutor.submit(asyncResponse, () -> languageFilterManager.vary(getClassResponse(request, id, model, requiredBy, languages)));
+    }
+
+    private Response getClassResponse(Request request,
+                                      String id,
+                                      String model,
+                                      String requiredBy,
+                                      List<String> languages) {
 
         if (id == null || id.equals("undefined") || id.equals("default")) {
 
@@ -123,7 +146,7 @@ public class Class {
 
             pss.setCommandText(queryString);
 
-            return jerseyClient.constructGraphFromServiceWithNamespaces(pss.toString(), endpointServices.getCoreSparqlAddress());
+            return jerseyClient.constructCachedListFromCore("classes", LanguageQueryFilter.filter(pss.toString(), languages));
 
         } else {
 
@@ -135,29 +158,36 @@ public class Class {
                 return jerseyClient.getGraphResponseFromService(id, endpointServices.getProvReadWriteAddress());
             }
 
-            ParameterizedSparqlString pss = new ParameterizedSparqlString();
+            return resourceVersionManager.conditionalResponse(request, id, () -> getClassGraphResponse(id, model, languages));
+        }
+    }
 
-            /* Get Map of namespaces from id-graph */
+    private Response getClassGraphResponse(String id,
+                                           String model,
+                                           List<String> languages) {
 
-            Map<String, String> namespaceMap = namespaceManager.getCoreNamespaceMap(id);
+        ParameterizedSparqlString pss = new ParameterizedSparqlString();
 
-            if (namespaceMap == null) {
-                return jerseyResponseManager.notFound();
-            }
+        /* Get Map of namespaces from id-graph */
 
-            pss.setNsPrefixes(namespaceMap);
+        Map<String, String> namespaceMap = namespaceManager.getCoreNamespaceMap(id);
 
-            String queryString = QueryLibrary.classQuery;
-            pss.setCommandText(queryString);
+        if (namespaceMap == null) {
+            return jerseyResponseManager.notFound();
+        }
 
-            pss.setIri("graph", id);
+        pss.setNsPrefixes(namespaceMap);
 
-            if (model != null && !model.equals("undefined")) {
-                pss.setIri("library", model);
-            }
+        String queryString = QueryLibrary.classQuery;
+        pss.setCommandText(queryString);
 
-            return jerseyClient.constructNonEmptyGraphFromService(pss.toString(), endpointServices.getCoreSparqlAddress());
+        pss.setIri("graph", id);
+
+        if (model != null && !model.equals("undefined")) {
+            pss.setIri("library", model);
         }
+
+        return jerseyClient.constructNonEmptyGraphFromService(LanguageQueryFilter.filter(pss.toString(), languages), endpointServices.getCoreSparqlAddress());
     }
 
     @POST
@@ -172,7 +202,7 @@ public class Class {
         @ApiResponse(responseCode = "500", description = "Bad data?")
     })
     public Response postClass(
-        @Parameter(description = "New graph in application/ld+json", required = false) String body,
+        @Parameter(description = "New graph in application/ld+json", required = false) Model parsedModel,
         @Parameter(description = "Class ID", required = true)
         @QueryParam("id") String id,
         @Parameter(description = "OLD Class ID")
@@ -202,13 +232,7 @@ public class Class {
 
             String provUUID;
 
-            if (isNotEmpty(body)) {
-
-                Model parsedModel = modelManager.createJenaModelFromJSONLDString(body);
-
-                if (parsedModel.size() == 0) {
-                    return jerseyResponseManager.notAcceptable();
-                }
+            if (!parsedModel.isEmpty()) {
 
                 ReusableClass updateClass = new ReusableClass(parsedModel, graphManager);
                 YtiUser user = userProvider.getUser();
@@ -304,12 +328,10 @@ public class Class {
         @ApiResponse(responseCode = "500", description = "Bad data?")
     })
     public Response putClass(
-        @Parameter(description = "New graph in application/ld+json", required = true) String body) {
+        @Parameter(description = "New graph in application/ld+json", required = true) Model parsedModel) {
 
         try {
 
-            Model parsedModel = modelManager.createJenaModelFromJSONLDString(body);
-
             if (parsedModel.size() == 0) {
                 return jerseyResponseManager.notAcceptable();
             }
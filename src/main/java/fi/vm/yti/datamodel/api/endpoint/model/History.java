@@ -3,6 +3,7 @@
  */
 package fi.vm.yti.datamodel.api.endpoint.model;
 
+import fi.vm.yti.datamodel.api.service.AsyncRequestExecutor;
 import fi.vm.yti.datamodel.api.service.EndpointServices;
 import fi.vm.yti.datamodel.api.service.GroupManagementService;
 import fi.vm.yti.datamodel.api.service.IDManager;
@@ -36,6 +37,8 @@ import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.Response;
 
 import java.util.ArrayList;
@@ -62,6 +65,7 @@ public class History {
     private final AuthenticatedUserProvider userProvider;
     private final GroupManagementService groupService;
     private final Property wasAttributedTo = LDHelper.curieToProperty("prov:wasAttributedTo");
+    private final AsyncRequestExecutor asyncRequestExecutor;
 
     @Autowired
     History(NamespaceManager namespaceManager,
@@ -72,7 +76,8 @@ public class History {
             ModelManager modelManager,
             JenaClient jenaClient,
             AuthenticatedUserProvider userProvider,
-            GroupManagementService groupService) {
+            GroupManagementService groupService,
+            AsyncRequestExecutor asyncRequestExecutor) {
 
         this.namespaceManager = namespaceManager;
         this.endpointServices = endpointServices;
@@ -83,6 +88,7 @@ public class History {
         this.jenaClient = jenaClient;
         this.userProvider = userProvider;
         this.groupService = groupService;
+        this.asyncRequestExecutor = asyncRequestExecutor;
     }
 
     @GET
@@ -93,9 +99,15 @@ public class History {
         @ApiResponse(responseCode = "404", description = "Service not found"),
         @ApiResponse(responseCode = "500", description = "Internal server error")
     })
-    public Response getHistory(
+    public void getHistory(
+        @Suspended AsyncResponse asyncResponse,
         @Parameter(description = "resource id") @QueryParam("id") String id,
         @Parameter(description = "Peek", schema = @Schema(defaultValue = "false")) @QueryParam("peek") boolean peek) {
+        asyncRequestExecutor.submit(asyncResponse, () -> getHistoryResponse(id, peek));
+    }
+
+    private Response getHistoryResponse(String id,
+                                        boolean peek) {
         YtiUser user = userProvider.getUser();
         // TODO: Remove or refactor history
 
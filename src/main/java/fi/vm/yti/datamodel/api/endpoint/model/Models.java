@@ -3,29 +3,27 @@
  */
 package fi.vm.yti.datamodel.api.endpoint.model;
 
-import java.util.Set;
+import java.util.List;
 import java.util.UUID;
 
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 
 import org.apache.jena.iri.IRI;
 import org.apache.jena.iri.IRIException;
 import org.apache.jena.query.ParameterizedSparqlString;
 import org.apache.jena.rdf.model.Model;
-import org.apache.jena.rdf.model.Property;
-import org.apache.jena.rdf.model.ResIterator;
-import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdfconnection.RDFConnection;
 import org.apache.jena.riot.RiotException;
-import org.apache.jena.vocabulary.DCTerms;
-import org.apache.jena.vocabulary.OWL;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -41,14 +39,15 @@ import fi.vm.yti.datamodel.api.service.GraphManager;
 import fi.vm.yti.datamodel.api.service.IDManager;
 import fi.vm.yti.datamodel.api.service.JerseyClient;
 import fi.vm.yti.datamodel.api.service.JerseyResponseManager;
-import fi.vm.yti.datamodel.api.service.ModelManager;
+import fi.vm.yti.datamodel.api.service.LanguageFilterManager;
+import fi.vm.yti.datamodel.api.service.ModelListManager;
 import fi.vm.yti.datamodel.api.service.ProvenanceManager;
 import fi.vm.yti.datamodel.api.service.RHPOrganizationManager;
+import fi.vm.yti.datamodel.api.service.ResourceVersionManager;
 import fi.vm.yti.datamodel.api.service.ServiceDescriptionManager;
-import fi.vm.yti.datamodel.api.utils.LDHelper;
+import fi.vm.yti.datamodel.api.utils.LanguageQueryFilter;
 import fi.vm.yti.datamodel.api.utils.QueryLibrary;
 import fi.vm.yti.security.AuthenticatedUserProvider;
-import fi.vm.yti.security.Role;
 import fi.vm.yti.security.YtiUser;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -73,10 +72,11 @@ public class Models {
     private final ServiceDescriptionManager serviceDescriptionManager;
     private final ProvenanceManager provenanceManager;
     private final RHPOrganizationManager rhpOrganizationManager;
-    private final ModelManager modelManager;
-    private final Property status = OWL.versionInfo;
     private final SearchIndexManager searchIndexManager;
     private final ObjectMapper objectMapper;
+    private final ModelListManager modelListManager;
+    private final ResourceVersionManager resourceVersionManager;
+    private final LanguageFilterManager languageFilterManager;
 
     @Autowired
     Models(AuthorizationManager authorizationManager,
@@ -89,9 +89,11 @@ public class Models {
            ServiceDescriptionManager serviceDescriptionManager,
            ProvenanceManager provenanceManager,
            RHPOrganizationManager rhpOrganizationManager,
-           ModelManager modelManager,
            SearchIndexManager searchIndexManager,
-           ObjectMapper objectMapper) {
+           ObjectMapper objectMapper,
+           ModelListManager modelListManager,
+           ResourceVersionManager resourceVersionManager,
+           LanguageFilterManager languageFilterManager) {
 
         this.searchIndexManager = searchIndexManager;
         this.authorizationManager = authorizationManager;
@@ -104,8 +106,10 @@ public class Models {
         this.serviceDescriptionManager = serviceDescriptionManager;
         this.provenanceManager = provenanceManager;
         this.rhpOrganizationManager = rhpOrganizationManager;
-        this.modelManager = modelManager;
         this.objectMapper = objectMapper;
+        this.modelListManager = modelListManager;
+        this.resourceVersionManager = resourceVersionManager;
+        this.languageFilterManager = languageFilterManager;
     }
 
     @GET
@@ -117,15 +121,20 @@ public class Models {
         @ApiResponse(responseCode = "500", description = "Internal server error")
     })
     public Response getModels(
+        @Context Request request,
         @Parameter(description = "Graph id") @QueryParam("id") String id,
         @Parameter(description = "Service category") @QueryParam("serviceCategory") String group,
-        @Parameter(description = "prefix") @QueryParam("prefix") String prefix) {
+        @Parameter(description = "prefix") @QueryParam("prefix") String prefix,
+        @Parameter(description = "Model status filter for lists") @QueryParam("status") String status,
+        @Parameter(description = "Organization UUID filter for lists") @QueryParam("org") String org,
+        @Parameter(description = "Sort order for lists: prefix, label or modified") @QueryParam("sort") String sort,
+        @Parameter(description = "Number of models to skip in lists") @QueryParam("offset") Integer offset,
+        @Parameter(description = "Maximum number of models in lists") @QueryParam("limit") Integer limit,
+        @Parameter(description = "Comma separated languages in order of preference") @QueryParam("lang") String lang,
+        @HeaderParam("Accept-Language") String acceptLanguage) {
 
         YtiUser user = userProvider.getUser();
-
-        String queryString = QueryLibrary.fullModelQuery;
-
-        ParameterizedSparqlString pss = new ParameterizedSparqlString();
+        List<String> languages = languageFilterManager.getLanguages(lang, acceptLanguage);
 
         if ((id == null || id.equals("undefined")) && (prefix != null && !prefix.equals("undefined"))) {
             logger.info("Resolving prefix: " + prefix);
@@ -151,62 +160,63 @@ public class Models {
                 return jerseyClient.getGraphResponseFromService(id, endpointServices.getProvReadWriteAddress());
             }
 
-            String sparqlService = endpointServices.getCoreSparqlAddress();
-            String graphService = endpointServices.getCoreReadWriteAddress();
+            String modelId = id;
+            return languageFilterManager.vary(resourceVersionManager.conditionalResponse(request, modelId, () -> getModelGraphResponse(modelId, modelIRI, languages)));
 
-            /* TODO: Create Namespace service? */
-            Model model;
-            try(RDFConnection connection = RDFConnection.connect(graphService)){
-                model = connection.fetch(id);
-            }
+        }
 
-            if (model == null) {
-                return jerseyResponseManager.notFound();
+        UUID organization = null;
+        if (org != null && !org.equals("undefined")) {
+            try {
+                organization = UUID.fromString(org);
+            } catch (IllegalArgumentException ex) {
+                return jerseyResponseManager.invalidParameter();
             }
+        }
 
-            pss.setNsPrefixes(model.getNsPrefixMap());
-
-            pss.setIri("graph", modelIRI);
+        try {
+            ModelListManager.ModelPage page = modelListManager.getModels(user,
+                group == null || group.equals("undefined") ? null : group,
+                status,
+                organization,
+                sort,
+                offset == null ? 0 : offset,
+                limit,
+                languages);
+            return languageFilterManager.vary(jerseyResponseManager.okModelPage(page.getModel(), page.getTotalResults()));
+        } catch (IllegalArgumentException ex) {
+            logger.warn(ex.getMessage());
+            return jerseyResponseManager.invalidParameter();
+        }
 
-            pss.setCommandText(queryString);
+    }
 
-            return jerseyClient.constructGraphFromService(pss.toString(), sparqlService);
+    private Response getModelGraphResponse(String id,
+                                           IRI modelIRI,
+                                           List<String> languages) {
 
-        } else {
+        String sparqlService = endpointServices.getCoreSparqlAddress();
+        String graphService = endpointServices.getCoreReadWriteAddress();
 
-            pss.setNsPrefixes(LDHelper.PREFIX_MAP);
+        /* TODO: Create Namespace service? */
+        Model model;
+        try(RDFConnection connection = RDFConnection.connect(graphService)){
+            model = connection.fetch(id);
+        }
 
-            queryString = QueryLibrary.fullModelsByGroupQuery;
+        if (model == null) {
+            return jerseyResponseManager.notFound();
+        }
 
-            if (group != null && !group.equals("undefined")) {
-                pss.setLiteral("groupCode", group);
-            }
+        ParameterizedSparqlString pss = new ParameterizedSparqlString();
 
-        }
+        pss.setNsPrefixes(model.getNsPrefixMap());
 
-        pss.setCommandText(queryString);
-
-        Model modelList = graphManager.constructModelFromCoreGraph(pss.toString());
-
-        if (!user.isSuperuser()) {
-            ResIterator rem = modelList.listSubjectsWithProperty(status, "INCOMPLETE");
-            while (rem.hasNext()) {
-                Resource modelResource = rem.nextResource();
-                if (user.isAnonymous()) {
-                    modelList = modelList.remove(modelResource.listProperties());
-                    // Seems to be faster than: modelList.removeAll(modelResource, null, (RDFNode) null);
-                } else {
-                    Set<UUID> orgUUIDs = user.getOrganizations(Role.ADMIN, Role.DATA_MODEL_EDITOR);
-                    if (!orgUUIDs.contains(UUID.fromString(modelResource.getRequiredProperty(DCTerms.contributor).getResource().getURI().replace("urn:uuid:", "")))) {
-                        modelList = modelList.remove(modelResource.listProperties());
-                    }
-                }
-            }
-        }
+        pss.setIri("graph", modelIRI);
 
-        return jerseyResponseManager.okModel(modelList);
-        //return jerseyClient.constructGraphFromService(pss.toString(), endpointServices.getCoreSparqlAddress());
+        pss.setCommandText(QueryLibrary.fullModelQuery);
 
+        return jerseyClient.constructGraphFromService(LanguageQueryFilter.filter(pss.toString(), languages), sparqlService);
     }
 
     /**
@@ -227,7 +237,7 @@ public class Models {
     })
     public Response postModel(
         @Parameter(description = "Updated model in application/ld+json", required = true)
-            String body,
+            Model parsedModel,
         @Parameter(description = "Model ID")
         @QueryParam("id") String graph) {
 
@@ -235,8 +245,6 @@ public class Models {
 
             YtiUser user = userProvider.getUser();
 
-            Model parsedModel = modelManager.createJenaModelFromJSONLDString(body);
-
             if (parsedModel.size() == 0) {
                 return jerseyResponseManager.notAcceptable();
             }
@@ -293,12 +301,10 @@ public class Models {
         @ApiResponse(responseCode = "500", description = "Internal server error")
     })
     public Response putModel(
-        @Parameter(description = "New graph in application/ld+json", required = true) String body) {
+        @Parameter(description = "New graph in application/ld+json", required = true) Model parsedModel) {
 
         try {
 
-            Model parsedModel = modelManager.createJenaModelFromJSONLDString(body);
-
             if (parsedModel.size() == 0) {
                 logger.debug("Model is empty!");
                 return jerseyResponseManager.notAcceptable();
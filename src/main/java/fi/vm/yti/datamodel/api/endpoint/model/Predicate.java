@@ -25,14 +25,17 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import javax.ws.rs.*;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import java.util.List;
 import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import static org.apache.commons.lang3.StringUtils.isNotEmpty;
-
 @Component
 @Path("v1/predicate")
 @Tag(name = "Predicate" )
@@ -48,8 +51,10 @@ public class Predicate {
     private final IDManager idManager;
     private final GraphManager graphManager;
     private final ProvenanceManager provenanceManager;
-    private final ModelManager modelManager;
     private final SearchIndexManager searchIndexManager;
+    private final AsyncRequestExecutor asyncRequestExecutor;
+    private final ResourceVersionManager resourceVersionManager;
+    private final LanguageFilterManager languageFilterManager;
 
     @Autowired
     Predicate(AuthorizationManager authorizationManager,
@@ -61,8 +66,10 @@ public class Predicate {
               IDManager idManager,
               GraphManager graphManager,
               ProvenanceManager provenanceManager,
-              ModelManager modelManager,
-              SearchIndexManager searchIndexManager) {
+              SearchIndexManager searchIndexManager,
+              AsyncRequestExecutor asyncRequestExecutor,
+              ResourceVersionManager resourceVersionManager,
+              LanguageFilterManager languageFilterManager) {
 
         this.authorizationManager = authorizationManager;
         this.userProvider = userProvider;
@@ -73,8 +80,10 @@ public class Predicate {
         this.idManager = idManager;
         this.graphManager = graphManager;
         this.provenanceManager = provenanceManager;
-        this.modelManager = modelManager;
         this.searchIndexManager = searchIndexManager;
+        this.asyncRequestExecutor = asyncRequestExecutor;
+        this.resourceVersionManager = resourceVersionManager;
+        this.languageFilterManager = languageFilterManager;
     }
 
     @GET
@@ -85,10 +94,23 @@ public class Predicate {
         @ApiResponse(responseCode = "404", description = "Service not found"),
         @ApiResponse(responseCode = "500", description = "Internal server error")
     })
-    public Response getPredicate(
+    public void getPredicate(
+        @Suspended AsyncResponse asyncResponse,
+        @Context Request request,
         @Parameter(description = "Property id") @QueryParam("id") String id,
         @Parameter(description = "Model id") @QueryParam("model") String model,
-        @Parameter(description = "Required by model id") @QueryParam("requiredBy") String requiredBy) {
+        @Parameter(description = "Required by model id") @QueryParam("requiredBy") String requiredBy,
+        @Parameter(description = "Comma separated languages in order of preference") @QueryParam("lang") String lang,
+        @HeaderParam("Accept-Language") String acceptLanguage) {
+        List<String> languages = languageFilterManager.getLanguages(lang, acceptLanguage);
+        asyncRequestExecutor.submit(asyncResponse, () -> languageFilterManager.vary(getPredicateResponse(request, id, model, requiredBy, languages)));
+    }
+
+    private Response getPredicateResponse(Request request,
+                                          String id,
+                                          String model,
+                                          String requiredBy,
+                                          List<String> languages) {
 
         if (id == null || id.equals("undefined") || id.equals("default")) {
 
@@ -113,7 +135,7 @@ public class Predicate {
 
             pss.setCommandText(queryString);
 
-            return jerseyClient.constructGraphFromServiceWithNamespaces(pss.toString(), endpointServices.getCoreSparqlAddress());
+            return jerseyClient.constructCachedListFromCore("predicates", LanguageQueryFilter.filter(pss.toString(), languages));
 
         } else {
 
@@ -125,32 +147,39 @@ public class Predicate {
                 return jerseyClient.getGraphResponseFromService(id, endpointServices.getProvReadWriteAddress());
             }
 
-            ParameterizedSparqlString pss = new ParameterizedSparqlString();
+            return resourceVersionManager.conditionalResponse(request, id, () -> getPredicateGraphResponse(id, model, languages));
 
-            /* Get Map of namespaces from id-graph */
+        }
 
-            Map<String, String> namespaceMap = namespaceManager.getCoreNamespaceMap(id);
+    }
 
-            if (namespaceMap == null) {
-                logger.info("No model for " + id);
-                return jerseyResponseManager.notFound();
-            }
+    private Response getPredicateGraphResponse(String id,
+                                               String model,
+                                               List<String> languages) {
 
-            pss.setNsPrefixes(namespaceMap);
+        ParameterizedSparqlString pss = new ParameterizedSparqlString();
 
-            String queryString = QueryLibrary.predicateQuery;
-            pss.setCommandText(queryString);
+        /* Get Map of namespaces from id-graph */
 
-            pss.setIri("graph", id);
+        Map<String, String> namespaceMap = namespaceManager.getCoreNamespaceMap(id);
 
-            if (model != null && !model.equals("undefined")) {
-                pss.setIri("library", model);
-            }
+        if (namespaceMap == null) {
+            logger.info("No model for " + id);
+            return jerseyResponseManager.notFound();
+        }
+
+        pss.setNsPrefixes(namespaceMap);
+
+        String queryString = QueryLibrary.predicateQuery;
+        pss.setCommandText(queryString);
 
-            return jerseyClient.constructNonEmptyGraphFromService(pss.toString(), endpointServices.getCoreSparqlAddress());
+        pss.setIri("graph", id);
 
+        if (model != null && !model.equals("undefined")) {
+            pss.setIri("library", model);
         }
 
+        return jerseyClient.constructNonEmptyGraphFromService(LanguageQueryFilter.filter(pss.toString(), languages), endpointServices.getCoreSparqlAddress());
     }
 
     @POST
@@ -166,7 +195,7 @@ public class Predicate {
     })
     public Response postPredicate(
         @Parameter(description = "New graph in application/ld+json", required = false)
-            String body,
+            Model parsedModel,
         @Parameter(description = "Property ID", required = true)
         @QueryParam("id")
             String id,
@@ -199,16 +228,10 @@ public class Predicate {
 
             String provUUID;
 
-            if (isNotEmpty(body)) {
+            if (!parsedModel.isEmpty()) {
 
                 YtiUser user = userProvider.getUser();
 
-                Model parsedModel = modelManager.createJenaModelFromJSONLDString(body);
-
-                if (parsedModel.size() == 0) {
-                    return jerseyResponseManager.notAcceptable();
-                }
-
                 ReusablePredicate updatePredicate = new ReusablePredicate(parsedModel, graphManager);
 
                 if (!authorizationManager.hasRightToEdit(updatePredicate)) {
@@ -296,12 +319,10 @@ public class Predicate {
         @ApiResponse(responseCode = "500", description = "Bad data?")
     })
     public Response putPredicate(
-        @Parameter(description = "New graph in application/ld+json", required = true) String body) {
+        @Parameter(description = "New graph in application/ld+json", required = true) Model parsedModel) {
 
         try {
 
-            Model parsedModel = modelManager.createJenaModelFromJSONLDString(body);
-
             if (parsedModel.size() == 0) {
                 return jerseyResponseManager.notAcceptable();
             }
@@ -3,6 +3,7 @@
  */
 package fi.vm.yti.datamodel.api.endpoint.model;
 
+import fi.vm.yti.datamodel.api.service.AsyncRequestExecutor;
 import fi.vm.yti.datamodel.api.service.EndpointServices;
 import fi.vm.yti.datamodel.api.service.IDManager;
 import fi.vm.yti.datamodel.api.service.JerseyClient;
@@ -25,6 +26,8 @@ import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.Response;
 
 import java.util.Map;
@@ -41,19 +44,22 @@ public class Usage {
     private final NamespaceManager namespaceManager;
     private final EndpointServices endpointServices;
     private final JerseyClient jerseyClient;
+    private final AsyncRequestExecutor asyncRequestExecutor;
 
     @Autowired
     Usage(IDManager idManager,
           JerseyResponseManager jerseyResponseManager,
           NamespaceManager namespaceManager,
           EndpointServices endpointServices,
-          JerseyClient jerseyClient) {
+          JerseyClient jerseyClient,
+          AsyncRequestExecutor asyncRequestExecutor) {
 
         this.idManager = idManager;
         this.jerseyResponseManager = jerseyResponseManager;
         this.namespaceManager = namespaceManager;
         this.endpointServices = endpointServices;
         this.jerseyClient = jerseyClient;
+        this.asyncRequestExecutor = asyncRequestExecutor;
     }
 
     @GET
@@ -63,10 +69,17 @@ public class Usage {
         @ApiResponse(responseCode = "400", description = "Invalid ID supplied"),
         @ApiResponse(responseCode = "403", description = "Invalid IRI in parameter"),
         @ApiResponse(responseCode = "404", description = "Service not found") })
-    public Response getUsage(
+    public void getUsage(
+        @Suspended AsyncResponse asyncResponse,
         @Parameter(description = "Resource ID") @QueryParam("id") String id,
         @Parameter(description = "Model ID") @QueryParam("model") String model,
         @Parameter(description = "Concept ID") @QueryParam("concept") String concept) {
+        asyncRequestExecutor.submit(asyncResponse, () -> getUsageResponse(id, model, concept));
+    }
+
+    private Response getUsageResponse(String id,
+                                      String model,
+                                      String concept) {
 
         IRI resourceIRI = null;
         IRI modelIRI = null;
@@ -0,0 +1,72 @@
+package fi.vm.yti.datamodel.api.endpoint.search;
+
+import java.util.List;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.MediaType;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import fi.vm.yti.datamodel.api.index.ExternalIndexManager;
+import fi.vm.yti.datamodel.api.index.SearchIndexManager;
+import fi.vm.yti.datamodel.api.index.model.IndexExternalResourceDTO;
+import fi.vm.yti.datamodel.api.service.AsyncRequestExecutor;
+import fi.vm.yti.datamodel.api.service.JerseyResponseManager;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+
+@Component
+@Path("v1/searchExternalResources")
+@Tag(name = "Index")
+public class ExternalResourceSearch {
+
+    private final ExternalIndexManager externalIndexManager;
+    private final SearchIndexManager searchIndexManager;
+    private final JerseyResponseManager jerseyResponseManager;
+    private final ObjectMapper objectMapper;
+    private final AsyncRequestExecutor asyncRequestExecutor;
+
+    @Autowired
+    public ExternalResourceSearch(ExternalIndexManager externalIndexManager,
+                                  SearchIndexManager searchIndexManager,
+                                  JerseyResponseManager jerseyResponseManager,
+                                  ObjectMapper objectMapper,
+                                  AsyncRequestExecutor asyncRequestExecutor) {
+        this.externalIndexManager = externalIndexManager;
+        this.searchIndexManager = searchIndexManager;
+        this.jerseyResponseManager = jerseyResponseManager;
+        this.objectMapper = objectMapper;
+        this.asyncRequestExecutor = asyncRequestExecutor;
+    }
+
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(description = "Searches classes and predicates of external vocabularies by label")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "OK"),
+        @ApiResponse(responseCode = "400", description = "Invalid query or page size"),
+        @ApiResponse(responseCode = "503", description = "Some of the vocabularies are not indexed")
+    })
+    public void searchExternalResources(@Suspended AsyncResponse asyncResponse,
+                                        @Parameter(description = "Label query") @QueryParam("query") String query,
+                                        @Parameter(description = "Types: class, attribute, association, property. Comma separated") @QueryParam("type") String type,
+                                        @Parameter(description = "Vocabulary namespaces, comma separated") @QueryParam("vocabulary") String vocabulary,
+                                        @Parameter(description = "Number of results") @QueryParam("pageSize") Integer pageSize) {
+        asyncRequestExecutor.submit(asyncResponse, () -> {
+            List<IndexExternalResourceDTO> resources = externalIndexManager.search(query, searchIndexManager.parseStringList(type),
+                searchIndexManager.parseStringList(vocabulary), pageSize);
+            return jerseyResponseManager.ok(objectMapper.valueToTree(resources));
+        });
+    }
+}
@@ -4,6 +4,8 @@ import javax.ws.rs.Consumes;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
@@ -17,6 +19,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import fi.vm.yti.datamodel.api.index.SearchIndexManager;
 import fi.vm.yti.datamodel.api.index.model.ModelSearchRequest;
 import fi.vm.yti.datamodel.api.index.model.ModelSearchResponse;
+import fi.vm.yti.datamodel.api.service.AsyncRequestExecutor;
 import fi.vm.yti.datamodel.api.service.JerseyResponseManager;
 import fi.vm.yti.security.AuthenticatedUserProvider;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -33,16 +36,19 @@ public class ModelSearch {
     private SearchIndexManager searchIndexManager;
     private JerseyResponseManager jerseyResponseManager;
     private ObjectMapper objectMapper;
+    private AsyncRequestExecutor asyncRequestExecutor;
 
     @Autowired
     public ModelSearch(AuthenticatedUserProvider userProvider,
                        SearchIndexManager searchIndexManager,
                        JerseyResponseManager jerseyResponseManager,
-                       ObjectMapper objectMapper) {
+                       ObjectMapper objectMapper,
+                       AsyncRequestExecutor asyncRequestExecutor) {
         this.userProvider = userProvider;
         this.searchIndexManager = searchIndexManager;
         this.jerseyResponseManager = jerseyResponseManager;
         this.objectMapper = objectMapper;
+        this.asyncRequestExecutor = asyncRequestExecutor;
     }
 
     @POST
@@ -52,7 +58,12 @@ public class ModelSearch {
         @ApiResponse(responseCode = "200", description = "OK"),
         @ApiResponse(responseCode = "400", description = "Invalid JSON!")
     })
-    public Response searchModels(ModelSearchRequest request) {
+    public void searchModels(@Suspended AsyncResponse asyncResponse,
+                             ModelSearchRequest request) {
+        asyncRequestExecutor.submit(asyncResponse, () -> searchModelsResponse(request));
+    }
+
+    private Response searchModelsResponse(ModelSearchRequest request) {
         ModelSearchResponse response = searchIndexManager.searchModelsWithUser(request, userProvider.getUser());
         return jerseyResponseManager.ok(objectMapper.valueToTree(response));
     }
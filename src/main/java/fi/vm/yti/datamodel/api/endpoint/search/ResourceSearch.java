@@ -4,6 +4,8 @@ import javax.ws.rs.Consumes;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
@@ -17,6 +19,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import fi.vm.yti.datamodel.api.index.SearchIndexManager;
 import fi.vm.yti.datamodel.api.index.model.ResourceSearchRequest;
 import fi.vm.yti.datamodel.api.index.model.ResourceSearchResponse;
+import fi.vm.yti.datamodel.api.service.AsyncRequestExecutor;
 import fi.vm.yti.datamodel.api.service.JerseyResponseManager;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
@@ -31,14 +34,17 @@ public class ResourceSearch {
     private SearchIndexManager searchIndexManager;
     private JerseyResponseManager jerseyResponseManager;
     private ObjectMapper objectMapper;
+    private AsyncRequestExecutor asyncRequestExecutor;
 
     @Autowired
     public ResourceSearch(SearchIndexManager searchIndexManager,
                           JerseyResponseManager jerseyResponseManager,
-                          ObjectMapper objectMapper) {
+                          ObjectMapper objectMapper,
+                          AsyncRequestExecutor asyncRequestExecutor) {
         this.searchIndexManager = searchIndexManager;
         this.jerseyResponseManager = jerseyResponseManager;
         this.objectMapper = objectMapper;
+        this.asyncRequestExecutor = asyncRequestExecutor;
     }
 
     @POST
@@ -48,7 +54,12 @@ public class ResourceSearch {
         @ApiResponse(responseCode = "200", description = "OK"),
         @ApiResponse(responseCode = "400", description = "Invalid request!")
     })
-    public Response searchModels(ResourceSearchRequest request) {
+    public void searchModels(@Suspended AsyncResponse asyncResponse,
+                             ResourceSearchRequest request) {
+        asyncRequestExecutor.submit(asyncResponse, () -> searchModelsResponse(request));
+    }
+
+    private Response searchModelsResponse(ResourceSearchRequest request) {
         ResourceSearchResponse response = searchIndexManager.searchResources(request);
         return jerseyResponseManager.ok(objectMapper.valueToTree(response));
     }
@@ -0,0 +1,70 @@
+package fi.vm.yti.datamodel.api.endpoint.search;
+
+import java.util.List;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import fi.vm.yti.datamodel.api.index.SearchIndexManager;
+import fi.vm.yti.datamodel.api.index.model.SuggestionDTO;
+import fi.vm.yti.datamodel.api.service.AsyncRequestExecutor;
+import fi.vm.yti.datamodel.api.service.JerseyResponseManager;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+
+@Component
+@Path("v1/suggest")
+@Tag(name = "Index")
+public class Suggest {
+
+    private final SearchIndexManager searchIndexManager;
+    private final JerseyResponseManager jerseyResponseManager;
+    private final ObjectMapper objectMapper;
+    private final AsyncRequestExecutor asyncRequestExecutor;
+
+    @Autowired
+    public Suggest(SearchIndexManager searchIndexManager,
+                   JerseyResponseManager jerseyResponseManager,
+                   ObjectMapper objectMapper,
+                   AsyncRequestExecutor asyncRequestExecutor) {
+        this.searchIndexManager = searchIndexManager;
+        this.jerseyResponseManager = jerseyResponseManager;
+        this.objectMapper = objectMapper;
+        this.asyncRequestExecutor = asyncRequestExecutor;
+    }
+
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(description = "Suggests resources with a label word starting with the query. Returns id, type and label only.")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "OK"),
+        @ApiResponse(responseCode = "400", description = "Invalid size"),
+        @ApiResponse(responseCode = "503", description = "Suggestions were not ready in time")
+    })
+    public void suggest(@Suspended AsyncResponse asyncResponse,
+                        @Parameter(description = "Start of a label word") @QueryParam("query") String query,
+                        @Parameter(description = "Resource types, comma separated") @QueryParam("type") String type,
+                        @Parameter(description = "Statuses, comma separated") @QueryParam("status") String status,
+                        @Parameter(description = "Model IRIs, comma separated") @QueryParam("model") String model,
+                        @Parameter(description = "Number of suggestions, at most 50") @QueryParam("size") Integer size) {
+        asyncRequestExecutor.submit(asyncResponse, () -> {
+            List<SuggestionDTO> suggestions = searchIndexManager.suggest(query, searchIndexManager.parseStringList(type),
+                searchIndexManager.parseStringList(status), searchIndexManager.parseStringList(model), size);
+            return jerseyResponseManager.ok(objectMapper.valueToTree(suggestions));
+        });
+    }
+}
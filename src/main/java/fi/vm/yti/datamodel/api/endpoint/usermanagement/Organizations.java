@@ -3,8 +3,11 @@
  */
 package fi.vm.yti.datamodel.api.endpoint.usermanagement;
 
+import fi.vm.yti.datamodel.api.service.DatasetGeneration;
 import fi.vm.yti.datamodel.api.service.GraphManager;
 import fi.vm.yti.datamodel.api.service.JerseyResponseManager;
+import fi.vm.yti.datamodel.api.service.ListCache;
+import fi.vm.yti.datamodel.api.service.ModelManager;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
@@ -29,13 +32,22 @@ public class Organizations {
     private static final Logger logger = LoggerFactory.getLogger(Organizations.class.getName());
     private final JerseyResponseManager jerseyResponseManager;
     private final GraphManager graphManager;
+    private final ModelManager modelManager;
+    private final ListCache listCache;
+    private final DatasetGeneration datasetGeneration;
 
     @Autowired
     Organizations(JerseyResponseManager jerseyResponseManager,
-                  GraphManager graphManager) {
+                  GraphManager graphManager,
+                  ModelManager modelManager,
+                  ListCache listCache,
+                  DatasetGeneration datasetGeneration) {
 
         this.jerseyResponseManager = jerseyResponseManager;
         this.graphManager = graphManager;
+        this.modelManager = modelManager;
+        this.listCache = listCache;
+        this.datasetGeneration = datasetGeneration;
     }
 
     @GET
@@ -45,9 +57,14 @@ public class Organizations {
         @ApiResponse(responseCode = "404", description = "Organization service not found") })
     @Produces("application/json")
     public Response getOrganizations() {
-        Model orgModel = graphManager.getCoreGraph("urn:yti:organizations");
-        if (orgModel != null && orgModel.size() > 1) {
-            return jerseyResponseManager.okModel(orgModel);
+        String graph = "urn:yti:organizations";
+        /* Empty string is cached for missing organizations */
+        String organizations = listCache.get("organizations", datasetGeneration.current(graph), () -> {
+            Model orgModel = graphManager.getCoreGraph(graph);
+            return orgModel != null && orgModel.size() > 1 ? modelManager.writeModelToJSONLDString(orgModel) : "";
+        });
+        if (!organizations.isEmpty()) {
+            return Response.status(200).entity(organizations).build();
         } else {
             return jerseyResponseManager.okEmptyContent();
         }
@@ -14,7 +14,6 @@ import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
-import org.elasticsearch.index.query.QueryStringQueryBuilder;
 import org.elasticsearch.script.Script;
 import org.elasticsearch.script.ScriptType;
 import org.elasticsearch.search.SearchHit;
@@ -33,6 +32,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 
 import fi.vm.yti.datamodel.api.index.model.DeepSearchHitListDTO;
 import fi.vm.yti.datamodel.api.index.model.DeepSearchResourceHitListDTO;
@@ -48,6 +48,7 @@ public class DeepResourceQueryFactory {
     private static final FetchSourceContext sourceIncludes = new FetchSourceContext(true, new String[]{ "id", "status", "label", "comment", "isDefinedBy", "type" }, new String[]{});
     private static final Script topHitScript = new Script(ScriptType.INLINE, Script.DEFAULT_SCRIPT_LANG, "_score", Collections.emptyMap());
     private ObjectMapper objectMapper;
+    private ObjectReader resourceReader;
     private LuceneQueryFactory luceneQueryFactory;
 
     @Autowired
@@ -55,22 +56,24 @@ public class DeepResourceQueryFactory {
                                     LuceneQueryFactory luceneQueryFactory) {
         this.luceneQueryFactory = luceneQueryFactory;
         this.objectMapper = objectMapper;
+        this.resourceReader = objectMapper.readerFor(IndexResourceDTO.class);
     }
 
+    /**
+     * @param organizations Organizations whose incomplete content is visible or null to search all content
+     */
     public SearchRequest createQuery(String query,
                                      String sortLang,
-                                     Set<String> modelIds) {
+                                     Set<String> organizations) {
 
-        QueryStringQueryBuilder queryStringQuery = luceneQueryFactory.buildPrefixSuffixQuery(query).field("label.*");
-        if (sortLang != null && sortLangPattern.matcher(sortLang).matches()) {
-            queryStringQuery = queryStringQuery.field("label." + sortLang, 10);
-        }
+        String boostLang = sortLang != null && sortLangPattern.matcher(sortLang).matches() ? sortLang : null;
+        QueryBuilder labelQuery = luceneQueryFactory.buildLabelQuery(query, boostLang);
 
-        QueryBuilder finalQuery = modelIds != null ? QueryBuilders.boolQuery()
-            .must(ElasticUtils.createStatusAndModelQuery("isDefinedBy", modelIds))
-            .must(queryStringQuery) :
+        QueryBuilder finalQuery = organizations != null ? QueryBuilders.boolQuery()
+            .must(ElasticUtils.createVisibilityQuery(organizations))
+            .must(labelQuery) :
             QueryBuilders.boolQuery()
-                .must(queryStringQuery);
+                .must(labelQuery);
 
         return new SearchRequest("dm_resources")
             .source(new SearchSourceBuilder()
@@ -86,7 +89,8 @@ public class DeepResourceQueryFactory {
                         .subAggregation(AggregationBuilders.topHits("top_resource_hits")
                             .sort(SortBuilders.scoreSort().order(SortOrder.DESC))
                             .size(6)
-                            .fetchSource(sourceIncludes))
+                            .fetchSource(sourceIncludes)
+                            .highlighter(ElasticUtils.createLabelHighlighter()))
                         .subAggregation(AggregationBuilders.max("best_class_hit")
                             .script(topHitScript)))));
     }
@@ -112,8 +116,8 @@ public class DeepResourceQueryFactory {
                         hitLists.add(hitList);
 
                         for (SearchHit hit : hits.getHits()) {
-                            IndexResourceDTO indexResource = objectMapper.readValue(hit.getSourceAsString(), IndexResourceDTO.class);
-                            indexResource.highlightLabels(request.getQuery());
+                            IndexResourceDTO indexResource = ElasticUtils.readSource(resourceReader, hit);
+                            ElasticUtils.highlightLabels(indexResource.getLabel(), hit.getHighlightFields());
                             topHits.add(indexResource);
                         }
                     }
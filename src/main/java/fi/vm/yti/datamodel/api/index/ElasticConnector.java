@@ -1,7 +1,11 @@
 package fi.vm.yti.datamodel.api.index;
 
 import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.inject.Singleton;
 
@@ -22,6 +26,11 @@ import org.elasticsearch.action.update.UpdateResponse;
 import org.elasticsearch.client.RequestOptions;
 import org.elasticsearch.client.RestHighLevelClient;
 import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.index.reindex.BulkByScrollResponse;
+import org.elasticsearch.index.reindex.UpdateByQueryRequest;
+import org.elasticsearch.script.Script;
+import org.elasticsearch.script.ScriptType;
 import org.elasticsearch.transport.NodeDisconnectedException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,6 +39,8 @@ import org.springframework.stereotype.Service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import fi.vm.yti.datamodel.api.service.RemoteDependency;
+import fi.vm.yti.datamodel.api.service.RemoteDependencyRegistry;
 import fi.vm.yti.datamodel.api.utils.LDHelper;
 
 @Singleton
@@ -38,24 +49,78 @@ public class ElasticConnector {
 
     private static final Logger logger = LoggerFactory.getLogger(ElasticConnector.class);
     private static final int ES_TIMEOUT = 300;
+    // Default index refresh interval of one second with margin for slow refreshes
+    private static final long REFRESH_INTERVAL_MILLIS = 2000;
+    private static final String ELASTIC_INDEX_RESOURCE = "dm_resources";
+    private static final String STATUS_SCRIPT = "ctx._source.status = params.status; ctx._source.statusModified = params.statusModified;";
 
     private final RestHighLevelClient esClient;
     private final ObjectMapper objectMapper;
-
+    private final RemoteDependency elasticsearch;
+    private final ConcurrentHashMap<String, IndexGeneration> generations = new ConcurrentHashMap<>();
 
     @Autowired
     public ElasticConnector(final RestHighLevelClient esClient,
-                            final ObjectMapper objectMapper) {
+                            final ObjectMapper objectMapper,
+                            final RemoteDependencyRegistry dependencyRegistry) {
         this.esClient = esClient;
         this.objectMapper = objectMapper;
+        this.elasticsearch = dependencyRegistry.get(RemoteDependencyRegistry.ELASTICSEARCH);
     }
 
     public RestHighLevelClient getEsClient() {
         return esClient;
     }
 
+    /**
+     * Executes request through the circuit breaker and bulkhead of Elasticsearch
+     *
+     * @param request Request using the Elasticsearch client
+     * @return Response of the request
+     * @throws IOException in case there is a problem sending the request or parsing back the response
+     */
+    public <T> T execute(RemoteDependency.RemoteCall<T, IOException> request) throws IOException {
+        return elasticsearch.call(request);
+    }
+
+    /**
+     * Returns generation of the indexes for caching search results. Every write increments the generation of its
+     * index. Written documents become searchable on the next index refresh, so until then -1 is returned and
+     * search results should not be cached.
+     *
+     * @param indexes Searched indexes
+     * @return Sum of index generations or -1 if there are writes that may not be searchable yet
+     */
+    public long getRefreshedGeneration(String... indexes) {
+        long now = System.currentTimeMillis();
+        long generation = 0;
+        for (String index : indexes) {
+            IndexGeneration indexGeneration = generations.get(index);
+            if (indexGeneration != null) {
+                // Generation is read before write time and incremented after it, so a new generation is never
+                // returned before its write is checked
+                generation += indexGeneration.generation.get();
+                if (now - indexGeneration.written < REFRESH_INTERVAL_MILLIS) {
+                    return -1;
+                }
+            }
+        }
+        return generation;
+    }
+
+    /**
+     * Increments generation of the index. Called after every write, also failed ones as they may be partially done.
+     *
+     * @param index Written index
+     */
+    public void indexChanged(String index) {
+        IndexGeneration indexGeneration = generations.computeIfAbsent(index, key -> new IndexGeneration());
+        indexGeneration.written = System.currentTimeMillis();
+        indexGeneration.generation.incrementAndGet();
+    }
+
     public boolean indexExists(String index) throws IOException {
-        return esClient.indices().exists(new GetIndexRequest().indices(index), RequestOptions.DEFAULT);
+        return execute(() -> esClient.indices().exists(new GetIndexRequest().indices(index), RequestOptions.DEFAULT));
     }
 
     public void waitForESNodes() {
@@ -88,7 +153,11 @@ public class ElasticConnector {
         boolean exists = indexExists(index);
         if (exists) {
             logger.info("Cleaning index: {}", index);
-            this.esClient.indices().delete(new DeleteIndexRequest(index), RequestOptions.DEFAULT);
+            try {
+                execute(() -> esClient.indices().delete(new DeleteIndexRequest(index), RequestOptions.DEFAULT));
+            } finally {
+                indexChanged(index);
+            }
         }
         return exists;
     }
@@ -104,10 +173,12 @@ public class ElasticConnector {
             if (mapping != null && !mapping.isEmpty()) {
                 request.source(mapping, XContentType.JSON);
             }
-            CreateIndexResponse createIndexResponse = esClient.indices().create(request, RequestOptions.DEFAULT);
+            CreateIndexResponse createIndexResponse = execute(() -> esClient.indices().create(request, RequestOptions.DEFAULT));
             logger.debug("Index \"" + index + "\" created: " + createIndexResponse.isAcknowledged());
         } catch (IOException ex) {
             logger.warn("Index creation failed for \"" + index + "\"", ex);
+        } finally {
+            indexChanged(index);
         }
     }
 
@@ -117,7 +188,7 @@ public class ElasticConnector {
         request.type("doc");
         try {
             request.source(mapping);
-            AcknowledgedResponse putMappingResponse = esClient.indices().putMapping(request, RequestOptions.DEFAULT);
+            AcknowledgedResponse putMappingResponse = execute(() -> esClient.indices().putMapping(request, RequestOptions.DEFAULT));
             logger.debug("Mapping updated for \"" + index + "\": " + putMappingResponse.isAcknowledged());
         } catch (IOException ex) {
             logger.warn("Mapping update failed for \"" + index + "\"", ex);
@@ -132,11 +203,13 @@ public class ElasticConnector {
             IndexRequest indexReq = new IndexRequest(index, "doc", encId);
             indexReq.source(objectMapper.convertValue(obj, Map.class), XContentType.JSON);
             indexReq.opType(DocWriteRequest.OpType.CREATE);
-            IndexResponse resp = esClient.index(indexReq, RequestOptions.DEFAULT);
+            IndexResponse resp = execute(() -> esClient.index(indexReq, RequestOptions.DEFAULT));
             logger.info("Indexed \"" + id + "\" to \"" + index + "\": " + resp.status().getStatus());
         } catch (IOException e) {
             logger.warn("Could not add to index: " + id);
             logger.warn(e.getMessage());
+        } finally {
+            indexChanged(index);
         }
     }
 
@@ -150,11 +223,13 @@ public class ElasticConnector {
             updateReq.type("doc");
             updateReq.id(encId);
             updateReq.doc(objectMapper.convertValue(obj, Map.class), XContentType.JSON);
-            UpdateResponse resp = esClient.update(updateReq, RequestOptions.DEFAULT);
+            UpdateResponse resp = execute(() -> esClient.update(updateReq, RequestOptions.DEFAULT));
             logger.info("Updated \"" + id + "\" to \"" + index + "\": " + resp.status().getStatus());
         } catch (IOException e) {
             logger.warn("Could not update to index: " + id);
             logger.warn(e.getMessage());
+        } finally {
+            indexChanged(index);
         }
     }
 
@@ -166,12 +241,65 @@ public class ElasticConnector {
             final long startTime = System.currentTimeMillis();
             DeleteRequest req = new DeleteRequest(index, "doc", encId)
                 .setRefreshPolicy(WriteRequest.RefreshPolicy.WAIT_UNTIL);
-            DeleteResponse resp = esClient.delete(req, RequestOptions.DEFAULT);
+            DeleteResponse resp = execute(() -> esClient.delete(req, RequestOptions.DEFAULT));
             logger.info("Removed \"" + id + "\" from \"" + index + "\": " + resp.status().getStatus() + " (took " + (System.currentTimeMillis() - startTime) + " ms)");
             return resp;
         } catch (IOException e) {
             logger.warn(e.getMessage());
             return null;
+        } finally {
+            indexChanged(index);
+        }
+    }
+
+    /**
+     * Changes status of the resources in place instead of indexing them again. Resources already in some other
+     * status are not updated, so the returned count tells if the index agrees with the changed resources.
+     *
+     * @param modelId        Model IRI
+     * @param fromStatus     Initial status
+     * @param toStatus       End status
+     * @param resourceIds    IRIs of the resources whose status was changed
+     * @param statusModified Status modification time
+     * @param refresh        Refresh the index so that the change is searchable when this returns
+     * @return Number of updated resources or -1 if the update failed
+     */
+    public long updateStatusByQuery(String modelId,
+                                    String fromStatus,
+                                    String toStatus,
+                                    Collection<String> resourceIds,
+                                    String statusModified,
+                                    boolean refresh) {
+        if (resourceIds.isEmpty()) {
+            return 0;
+        }
+        Map<String, Object> params = new HashMap<>();
+        params.put("status", toStatus);
+        params.put("statusModified", statusModified);
+
+        UpdateByQueryRequest request = new UpdateByQueryRequest(ELASTIC_INDEX_RESOURCE);
+        request.setQuery(QueryBuilders.boolQuery()
+            .filter(QueryBuilders.termQuery("isDefinedBy", modelId))
+            .filter(QueryBuilders.termQuery("status", fromStatus))
+            .filter(QueryBuilders.termsQuery("id", resourceIds)));
+        request.setScript(new Script(ScriptType.INLINE, "painless", STATUS_SCRIPT, params));
+        request.setConflicts("proceed");
+        request.setRefresh(refresh);
+        try {
+            BulkByScrollResponse response = execute(() -> esClient.updateByQuery(request, RequestOptions.DEFAULT));
+            logger.info("Changed status of " + response.getUpdated() + " resources in \"" + modelId + "\" from " + fromStatus + " to " + toStatus);
+            return response.getUpdated();
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not change status of resources in " + modelId, e);
+            return -1;
+        } finally {
+            indexChanged(ELASTIC_INDEX_RESOURCE);
         }
     }
+
+    private static final class IndexGeneration {
+
+        private final AtomicLong generation = new AtomicLong();
+        private volatile long written;
+    }
 }
@@ -1,44 +1,137 @@
 package fi.vm.yti.datamodel.api.index;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Map;
 import java.util.Set;
 
+import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHits;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.fetch.subphase.highlight.HighlightBuilder;
+import org.elasticsearch.search.fetch.subphase.highlight.HighlightField;
+import org.elasticsearch.search.sort.SortBuilders;
+import org.elasticsearch.search.sort.SortOrder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 
 public final class ElasticUtils {
 
+    private static final ObjectMapper cursorMapper = new ObjectMapper();
+
     private ElasticUtils() {
     }
 
-    public static QueryBuilder createStatusAndModelQuery(String modelProperty,
-                                                         Set<String> priviledgedModels) {
-        // Content must be defined in the priviledgedModel or be in other state than INCOMPLETE
-        QueryBuilder statusQuery = QueryBuilders.boolQuery().mustNot(QueryBuilders.termQuery("status", "INCOMPLETE"));
-        QueryBuilder privilegeQuery;
-        if (priviledgedModels != null && !priviledgedModels.isEmpty()) {
-            privilegeQuery = QueryBuilders.boolQuery()
-                .should(statusQuery)
-                .should(QueryBuilders.termsQuery(modelProperty, priviledgedModels))
-                .minimumShouldMatch(1);
-        } else {
-            privilegeQuery = statusQuery;
+    /**
+     * Highlights matching words of labels in whole label values
+     */
+    public static HighlightBuilder createLabelHighlighter() {
+        return new HighlightBuilder()
+            .field("label.*")
+            .preTags("<b>")
+            .postTags("</b>")
+            .numOfFragments(0);
+    }
+
+    /**
+     * Replaces labels with highlighted ones. Whole word matches of the label field are preferred over the prefix and
+     * suffix subfields, which highlight the whole word that contains the match.
+     *
+     * @param labels          Labels by language
+     * @param highlightFields Highlights of the hit
+     */
+    public static void highlightLabels(Map<String, String> labels,
+                                       Map<String, HighlightField> highlightFields) {
+        if (labels == null || highlightFields == null || highlightFields.isEmpty()) {
+            return;
+        }
+        labels.replaceAll((lang, label) -> {
+            for (String field : new String[]{ "label." + lang, "label." + lang + ".prefix", "label." + lang + ".suffix" }) {
+                HighlightField highlight = highlightFields.get(field);
+                if (highlight != null && highlight.fragments().length > 0) {
+                    return highlight.fragments()[0].string();
+                }
+            }
+            return label;
+        });
+    }
+
+    /**
+     * Reads source of the hit directly from its bytes
+     */
+    public static <T> T readSource(ObjectReader reader,
+                                   SearchHit hit) throws IOException {
+        BytesRef source = hit.getSourceRef().toBytesRef();
+        return reader.readValue(source.bytes, source.offset, source.length);
+    }
+
+    /**
+     * Makes the sort of a paged query stable with id as tie-breaker and continues after the cursor if one is given.
+     * Queries without sort are sorted by score.
+     *
+     * @param sourceBuilder Query with the requested sort
+     * @param cursor        Cursor returned with the previous page or null
+     * @throws IllegalArgumentException if cursor is not valid
+     */
+    public static void addCursorPaging(SearchSourceBuilder sourceBuilder,
+                                       String cursor) {
+        if (sourceBuilder.sorts() == null || sourceBuilder.sorts().isEmpty()) {
+            sourceBuilder.sort(SortBuilders.scoreSort());
+        }
+        sourceBuilder.sort(SortBuilders.fieldSort("id").order(SortOrder.ASC));
+        if (cursor != null && !cursor.isEmpty()) {
+            try {
+                Object[] sortValues = cursorMapper.readValue(Base64.getUrlDecoder().decode(cursor), Object[].class);
+                if (sortValues.length != sourceBuilder.sorts().size()) {
+                    throw new IllegalArgumentException("Invalid cursor");
+                }
+                sourceBuilder.searchAfter(sortValues);
+                sourceBuilder.from(0);
+            } catch (IOException | IllegalArgumentException ex) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+        }
+    }
+
+    /**
+     * @return Cursor after the last hit or null if the page was not full
+     */
+    public static String nextCursor(SearchHits hits,
+                                    Integer pageSize) {
+        SearchHit[] pageHits = hits.getHits();
+        if (pageSize == null || pageSize == 0 || pageHits.length < pageSize) {
+            return null;
+        }
+        try {
+            byte[] sortValues = cursorMapper.writeValueAsString(pageHits[pageHits.length - 1].getSortValues()).getBytes(StandardCharsets.UTF_8);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(sortValues);
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
         }
-        return privilegeQuery;
     }
 
-    public static QueryBuilder createStatusAndContributorQuery(Set<String> privilegedOrganizations) {
-        // Content must either be in some other state than INCOMPLETE, or the user must match a contributor organization.
-        QueryBuilder statusQuery = QueryBuilders.boolQuery().mustNot(QueryBuilders.termQuery("status", "INCOMPLETE"));
-        QueryBuilder privilegeQuery;
-        if (privilegedOrganizations != null) {
-            privilegeQuery = QueryBuilders.boolQuery()
-                .should(statusQuery)
-                .should(QueryBuilders.termsQuery("contributor", privilegedOrganizations))
-                .minimumShouldMatch(1);
-        } else {
-            privilegeQuery = statusQuery;
+    /**
+     * Content must be in some other state than INCOMPLETE and be defined in a model that is not INCOMPLETE, or one of
+     * the organizations must be a contributor of the model or an ancestor of a contributor.
+     *
+     * @param organizations Organizations of the user or null
+     */
+    public static QueryBuilder createVisibilityQuery(Set<String> organizations) {
+        QueryBuilder statusQuery = QueryBuilders.boolQuery()
+            .mustNot(QueryBuilders.termQuery("status", "INCOMPLETE"))
+            .mustNot(QueryBuilders.termQuery("modelStatus", "INCOMPLETE"));
+        if (organizations == null || organizations.isEmpty()) {
+            return statusQuery;
         }
-        return privilegeQuery;
+        return QueryBuilders.boolQuery()
+            .should(statusQuery)
+            .should(QueryBuilders.termsQuery("visibleTo", organizations))
+            .minimumShouldMatch(1);
     }
 
 }
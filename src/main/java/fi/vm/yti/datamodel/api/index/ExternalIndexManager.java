@@ -0,0 +1,249 @@
+/*
+ * Licensed under the European Union Public Licence (EUPL) V.1.1
+ */
+package fi.vm.yti.datamodel.api.index;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.jena.query.ParameterizedSparqlString;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.rdf.model.Model;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.index.reindex.BulkByScrollResponse;
+import org.elasticsearch.index.reindex.DeleteByQueryRequest;
+import org.elasticsearch.search.SearchHit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import fi.vm.yti.datamodel.api.index.model.IndexExternalResourceDTO;
+import fi.vm.yti.datamodel.api.service.DependencyUnavailableException;
+import fi.vm.yti.datamodel.api.service.EndpointServices;
+import fi.vm.yti.datamodel.api.service.JenaClient;
+import fi.vm.yti.datamodel.api.service.RemoteDependencyRegistry;
+import fi.vm.yti.datamodel.api.utils.LDHelper;
+
+import static fi.vm.yti.datamodel.api.index.ExternalResourceQueryFactory.ELASTIC_INDEX_EXTERNAL;
+
+/**
+ * Index of the classes and predicates of external vocabularies in the imports dataset
+ */
+@Service
+public class ExternalIndexManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExternalIndexManager.class);
+    // Limits of one bulk request, large vocabularies are sent in several requests
+    static final int BULK_ACTIONS = 500;
+    static final long BULK_BYTES = 5 * 1024 * 1024;
+
+    private final ElasticConnector esManager;
+    private final RestHighLevelClient esClient;
+    private final JenaClient jenaClient;
+    private final EndpointServices endpointServices;
+    private final ObjectMapper objectMapper;
+    private final ExternalResourceQueryFactory externalResourceQueryFactory;
+    private final SearchCache searchCache;
+    private final int listPageSize;
+    // Vocabularies whose last indexing failed, searches of them fail until they are indexed
+    private final Set<String> unindexedVocabularies = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    public ExternalIndexManager(final ElasticConnector esManager,
+                                final JenaClient jenaClient,
+                                final EndpointServices endpointServices,
+                                final ObjectMapper objectMapper,
+                                final ExternalResourceQueryFactory externalResourceQueryFactory,
+                                final SearchCache searchCache) {
+        this(esManager, jenaClient, endpointServices, objectMapper, externalResourceQueryFactory, searchCache, ExternalResourceQueryFactory.MAX_SIZE);
+    }
+
+    ExternalIndexManager(final ElasticConnector esManager,
+                         final JenaClient jenaClient,
+                         final EndpointServices endpointServices,
+                         final ObjectMapper objectMapper,
+                         final ExternalResourceQueryFactory externalResourceQueryFactory,
+                         final SearchCache searchCache,
+                         final int listPageSize) {
+        this.esManager = esManager;
+        this.esClient = esManager.getEsClient();
+        this.jenaClient = jenaClient;
+        this.endpointServices = endpointServices;
+        this.objectMapper = objectMapper;
+        this.externalResourceQueryFactory = externalResourceQueryFactory;
+        this.searchCache = searchCache;
+        this.listPageSize = listPageSize;
+    }
+
+    /**
+     * Recreates the index from all vocabularies of the imports dataset
+     */
+    public void reindex() throws IOException {
+        esManager.cleanIndex(ELASTIC_INDEX_EXTERNAL);
+        esManager.createIndex(ELASTIC_INDEX_EXTERNAL, getExternalMappings());
+        unindexedVocabularies.clear();
+        for (String vocabulary : getVocabularies()) {
+            try {
+                Model model = jenaClient.constructFromExt("CONSTRUCT { ?s ?p ?o } WHERE { GRAPH <" + vocabulary + "> { ?s ?p ?o } }");
+                bulkInsert(vocabulary, ExternalResourceQueryFactory.createDocuments(vocabulary, model));
+            } catch (Exception e) {
+                unindexedVocabularies.add(vocabulary);
+                logger.warn("Could not index external vocabulary " + vocabulary, e);
+            }
+        }
+    }
+
+    /**
+     * Replaces resources of the vocabulary in the index, called when the vocabulary is stored to the imports dataset.
+     * If indexing fails, searches of the vocabulary fail until it is indexed again.
+     *
+     * @param namespace  Namespace and graph of the vocabulary
+     * @param vocabulary Stored vocabulary
+     */
+    public void indexVocabulary(String namespace,
+                                Model vocabulary) {
+        try {
+            DeleteByQueryRequest request = new DeleteByQueryRequest(ELASTIC_INDEX_EXTERNAL);
+            request.setQuery(QueryBuilders.termQuery("isDefinedBy", namespace));
+            BulkByScrollResponse response = esManager.execute(() -> esClient.deleteByQuery(request, RequestOptions.DEFAULT));
+            logger.debug("Removed " + response.getDeleted() + " resources of " + namespace + " from \"" + ELASTIC_INDEX_EXTERNAL + "\"");
+            bulkInsert(namespace, ExternalResourceQueryFactory.createDocuments(namespace, vocabulary));
+            unindexedVocabularies.remove(namespace);
+        } catch (Exception e) {
+            unindexedVocabularies.add(namespace);
+            logger.warn("Could not index external vocabulary " + namespace, e);
+        } finally {
+            esManager.indexChanged(ELASTIC_INDEX_EXTERNAL);
+        }
+    }
+
+    /**
+     * @param query        Label query or null for all
+     * @param types        Resource types or null for all
+     * @param vocabularies Vocabulary namespaces or null for all
+     * @param pageSize     Number of results, all by default
+     * @return Classes and predicates of external vocabularies
+     * @throws DependencyUnavailableException if some of the vocabularies are not indexed
+     */
+    public List<IndexExternalResourceDTO> search(String query,
+                                                 Set<String> types,
+                                                 Set<String> vocabularies,
+                                                 Integer pageSize) {
+        if (pageSize != null && pageSize < 1) {
+            throw new IllegalArgumentException("Invalid page size: " + pageSize);
+        }
+        Set<String> unindexed = new TreeSet<>(unindexedVocabularies);
+        if (vocabularies != null) {
+            unindexed.retainAll(vocabularies);
+        }
+        if (!unindexed.isEmpty()) {
+            throw new DependencyUnavailableException(RemoteDependencyRegistry.ELASTICSEARCH, "External vocabularies are not indexed: " + unindexed);
+        }
+        return searchCache.get(esManager.getRefreshedGeneration(ELASTIC_INDEX_EXTERNAL), () -> {
+            try {
+                return searchPages(query, types, vocabularies, pageSize != null ? pageSize : Integer.MAX_VALUE);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }, ELASTIC_INDEX_EXTERNAL, query != null ? query.trim() : "", sorted(types), sorted(vocabularies), pageSize);
+    }
+
+    /**
+     * Reads pages after the last hit of the previous page until the limit or the last resource
+     */
+    private List<IndexExternalResourceDTO> searchPages(String query,
+                                                       Set<String> types,
+                                                       Set<String> vocabularies,
+                                                       int limit) throws IOException {
+        List<IndexExternalResourceDTO> resources = new ArrayList<>();
+        Object[] searchAfter = null;
+        while (resources.size() < limit) {
+            int size = Math.min(limit - resources.size(), listPageSize);
+            SearchRequest request = externalResourceQueryFactory.createQuery(query, types, vocabularies, size, searchAfter);
+            SearchResponse response = esManager.execute(() -> esClient.search(request, RequestOptions.DEFAULT));
+            resources.addAll(externalResourceQueryFactory.parseResponse(response));
+            SearchHit[] hits = response.getHits().getHits();
+            if (hits.length < size) {
+                break;
+            }
+            searchAfter = hits[hits.length - 1].getSortValues();
+        }
+        return resources;
+    }
+
+    private static Set<String> sorted(Set<String> values) {
+        return values != null ? new TreeSet<>(values) : null;
+    }
+
+    private List<String> getVocabularies() {
+        ParameterizedSparqlString pss = new ParameterizedSparqlString();
+        pss.setCommandText("SELECT DISTINCT ?graph WHERE { GRAPH ?graph { } }");
+        List<String> vocabularies = new ArrayList<>();
+        ResultSet results = jenaClient.selectQuery(endpointServices.getImportsSparqlAddress(), pss.asQuery());
+        while (results.hasNext()) {
+            vocabularies.add(results.nextSolution().getResource("graph").getURI());
+        }
+        return vocabularies;
+    }
+
+    /**
+     * Indexes the resources in bulk requests of at most BULK_ACTIONS resources or BULK_BYTES
+     *
+     * @throws IOException if indexing of any resource fails
+     */
+    @SuppressWarnings("unchecked")
+    private void bulkInsert(String namespace,
+                            List<IndexExternalResourceDTO> resources) throws IOException {
+        if (resources.isEmpty()) {
+            return;
+        }
+        try {
+            BulkRequest bulkRequest = new BulkRequest();
+            for (IndexExternalResourceDTO resource : resources) {
+                bulkRequest.add(new IndexRequest(ELASTIC_INDEX_EXTERNAL, "doc", LDHelper.encode(namespace + "|" + resource.getId()))
+                    .source(objectMapper.convertValue(resource, Map.class)));
+                if (bulkRequest.numberOfActions() >= BULK_ACTIONS || bulkRequest.estimatedSizeInBytes() >= BULK_BYTES) {
+                    executeBulk(namespace, bulkRequest);
+                    bulkRequest = new BulkRequest();
+                }
+            }
+            if (bulkRequest.numberOfActions() > 0) {
+                executeBulk(namespace, bulkRequest);
+            }
+            logger.info("Indexed " + resources.size() + " resources of " + namespace + " to \"" + ELASTIC_INDEX_EXTERNAL + "\"");
+        } finally {
+            esManager.indexChanged(ELASTIC_INDEX_EXTERNAL);
+        }
+    }
+
+    private void executeBulk(String namespace,
+                             BulkRequest bulkRequest) throws IOException {
+        BulkResponse response = esManager.execute(() -> esClient.bulk(bulkRequest, RequestOptions.DEFAULT));
+        if (response.hasFailures()) {
+            logger.warn("Bulk insert of " + namespace + " failed: " + response.buildFailureMessage());
+            throw new IOException("Could not index all resources of " + namespace);
+        }
+    }
+
+    private String getExternalMappings() throws IOException {
+        InputStream is = ExternalIndexManager.class.getClassLoader().getResourceAsStream("external_mapping.json");
+        Object obj = objectMapper.readTree(is);
+        return objectMapper.writeValueAsString(obj);
+    }
+}
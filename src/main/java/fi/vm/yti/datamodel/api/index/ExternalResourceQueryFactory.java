@@ -0,0 +1,228 @@
+package fi.vm.yti.datamodel.api.index;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.inject.Singleton;
+
+import org.apache.jena.rdf.model.Literal;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.vocabulary.DCTerms;
+import org.apache.jena.vocabulary.DC_11;
+import org.apache.jena.vocabulary.OWL;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import org.apache.jena.vocabulary.SKOS;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.sort.SortBuilders;
+import org.elasticsearch.search.sort.SortOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.topbraid.shacl.vocabulary.SH;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import fi.vm.yti.datamodel.api.index.model.IndexExternalResourceDTO;
+import fi.vm.yti.datamodel.api.utils.LDHelper;
+
+/**
+ * Documents and queries of the external vocabulary index. Vocabularies are read from the imports dataset as they are
+ * published, so resource types are resolved the same way as the external class and predicate queries did.
+ */
+@Singleton
+@Service
+public class ExternalResourceQueryFactory {
+
+    public static final String ELASTIC_INDEX_EXTERNAL = "dm_external";
+    public static final String TYPE_CLASS = "class";
+    public static final String TYPE_ATTRIBUTE = "attribute";
+    public static final String TYPE_ASSOCIATION = "association";
+    public static final String TYPE_PROPERTY = "property";
+    // Largest page Elasticsearch returns, longer listings are read in pages
+    static final int MAX_SIZE = 10000;
+    private static final String DEFAULT_LANGUAGE = "en";
+
+    private static final List<Resource> classTypes = List.of(RDFS.Class, OWL.Class, SH.NodeShape, ResourceFactory.createResource(SH.NS + "Shape"));
+    private static final List<Property> labelProperties = List.of(RDFS.label, SH.name, DC_11.title, DCTerms.title);
+    private static final List<Property> commentProperties = List.of(RDFS.comment, SKOS.definition, DCTerms.description, DC_11.description,
+        ResourceFactory.createProperty(LDHelper.PREFIX_MAP.get("prov") + "definition"), SH.description);
+    private static final List<Resource> objectRangeTypes = List.of(SKOS.Concept, OWL.Thing, RDFS.Class);
+
+    private final ObjectReader resourceReader;
+    private final LuceneQueryFactory luceneQueryFactory;
+
+    @Autowired
+    public ExternalResourceQueryFactory(ObjectMapper objectMapper,
+                                        LuceneQueryFactory luceneQueryFactory) {
+        this.resourceReader = objectMapper.readerFor(IndexExternalResourceDTO.class);
+        this.luceneQueryFactory = luceneQueryFactory;
+    }
+
+    /**
+     * Classes and predicates of the vocabulary. Predicates must be in the namespace of the vocabulary, labels and
+     * comments without language are in english.
+     *
+     * @param namespace  Namespace and graph of the vocabulary
+     * @param vocabulary Vocabulary from the imports dataset
+     * @return Documents of the external index
+     */
+    public static List<IndexExternalResourceDTO> createDocuments(String namespace,
+                                                                 Model vocabulary) {
+        Map<String, IndexExternalResourceDTO> documents = new LinkedHashMap<>();
+        for (Resource type : classTypes) {
+            vocabulary.listSubjectsWithProperty(RDF.type, type).forEachRemaining(resource -> {
+                if (resource.isURIResource()) {
+                    documents.putIfAbsent(resource.getURI(), createDocument(namespace, resource, TYPE_CLASS));
+                }
+            });
+        }
+        vocabulary.listSubjectsWithProperty(RDF.type).forEachRemaining(resource -> {
+            if (resource.isURIResource() && resource.getURI().startsWith(namespace) && !documents.containsKey(resource.getURI())) {
+                String type = predicateType(resource);
+                if (type != null) {
+                    documents.put(resource.getURI(), createDocument(namespace, resource, type));
+                }
+            }
+        });
+        return new ArrayList<>(documents.values());
+    }
+
+    /**
+     * Type of the predicate as the external predicate queries resolve it
+     *
+     * @return attribute, association, property or null if the resource is not a predicate
+     */
+    static String predicateType(Resource predicate) {
+        boolean datatype = predicate.hasProperty(RDF.type, OWL.DatatypeProperty);
+        boolean object = predicate.hasProperty(RDF.type, OWL.ObjectProperty);
+        if (datatype != object) {
+            return datatype ? TYPE_ATTRIBUTE : TYPE_ASSOCIATION;
+        }
+        if (datatype) {
+            return null;
+        }
+        if (predicate.hasProperty(RDF.type, OWL.AnnotationProperty) && predicate.hasProperty(RDFS.label)) {
+            return TYPE_ATTRIBUTE;
+        }
+        if (!predicate.hasProperty(RDF.type, RDF.Property)) {
+            return null;
+        }
+        if (predicate.hasProperty(RDFS.range, RDFS.Literal)) {
+            return TYPE_ATTRIBUTE;
+        }
+        if (predicate.hasProperty(RDFS.range, RDFS.Resource)) {
+            return TYPE_ASSOCIATION;
+        }
+        for (Statement range : predicate.listProperties(RDFS.range).toList()) {
+            if (range.getObject().isResource()) {
+                for (Resource type : objectRangeTypes) {
+                    if (range.getResource().hasProperty(RDF.type, type)) {
+                        return TYPE_ASSOCIATION;
+                    }
+                }
+            }
+        }
+        return TYPE_PROPERTY;
+    }
+
+    private static IndexExternalResourceDTO createDocument(String namespace,
+                                                           Resource resource,
+                                                           String type) {
+        return new IndexExternalResourceDTO(resource.getURI(), namespace, type,
+            languageMap(resource, labelProperties), languageMap(resource, commentProperties),
+            firstURI(resource, RDFS.domain), firstURI(resource, RDFS.range));
+    }
+
+    private static Map<String, List<String>> languageMap(Resource resource,
+                                                         List<Property> properties) {
+        Map<String, List<String>> values = new LinkedHashMap<>();
+        for (Property property : properties) {
+            for (Statement statement : resource.listProperties(property).toList()) {
+                if (statement.getObject().isLiteral()) {
+                    Literal literal = statement.getLiteral();
+                    String lang = literal.getLanguage().isEmpty() ? DEFAULT_LANGUAGE : literal.getLanguage();
+                    List<String> literals = values.computeIfAbsent(lang, key -> new ArrayList<>());
+                    if (!literals.contains(literal.getLexicalForm())) {
+                        literals.add(literal.getLexicalForm());
+                    }
+                }
+            }
+        }
+        return values.isEmpty() ? null : values;
+    }
+
+    private static String firstURI(Resource resource,
+                                   Property property) {
+        for (Statement statement : resource.listProperties(property).toList()) {
+            RDFNode object = statement.getObject();
+            if (object.isURIResource()) {
+                return object.asResource().getURI();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Page of the resources sorted by score and id, or by id only if there is no label query
+     *
+     * @param query        Label query or null for all
+     * @param types        Resource types or null for all
+     * @param vocabularies Vocabulary namespaces or null for all
+     * @param size         Number of results, at most MAX_SIZE
+     * @param searchAfter  Sort values of the last hit of the previous page or null
+     */
+    public SearchRequest createQuery(String query,
+                                     Set<String> types,
+                                     Set<String> vocabularies,
+                                     int size,
+                                     Object[] searchAfter) {
+        BoolQueryBuilder boolQuery = QueryBuilders.boolQuery();
+        if (types != null && !types.isEmpty()) {
+            boolQuery.filter(QueryBuilders.termsQuery("type", types));
+        }
+        if (vocabularies != null) {
+            boolQuery.filter(QueryBuilders.termsQuery("isDefinedBy", vocabularies));
+        }
+        if (query != null && !query.trim().isEmpty()) {
+            boolQuery.must(luceneQueryFactory.buildLabelQuery(query, null));
+        }
+
+        SearchSourceBuilder sourceBuilder = new SearchSourceBuilder()
+            .query(boolQuery)
+            .size(Math.min(size, MAX_SIZE));
+        if (query != null && !query.trim().isEmpty()) {
+            sourceBuilder.sort(SortBuilders.scoreSort());
+        }
+        sourceBuilder.sort("id", SortOrder.ASC);
+        if (searchAfter != null) {
+            sourceBuilder.searchAfter(searchAfter);
+        }
+        return new SearchRequest(ELASTIC_INDEX_EXTERNAL).source(sourceBuilder);
+    }
+
+    /**
+     * @throws IOException if a hit cannot be read
+     */
+    public List<IndexExternalResourceDTO> parseResponse(SearchResponse response) throws IOException {
+        List<IndexExternalResourceDTO> resources = new ArrayList<>();
+        for (SearchHit hit : response.getHits()) {
+            resources.add(ElasticUtils.readSource(resourceReader, hit));
+        }
+        return resources;
+    }
+}
@@ -0,0 +1,152 @@
+package fi.vm.yti.datamodel.api.index;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.vocabulary.DCTerms;
+import org.apache.jena.vocabulary.OWL;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import org.topbraid.shacl.vocabulary.SH;
+
+import fi.vm.yti.datamodel.api.index.model.IndexClassDTO;
+import fi.vm.yti.datamodel.api.index.model.IndexModelDTO;
+import fi.vm.yti.datamodel.api.index.model.IndexPredicateDTO;
+import fi.vm.yti.datamodel.api.utils.LDHelper;
+
+/**
+ * Projects the results of the index queries of SearchIndexManager directly to index documents. Values are resolved
+ * the same way as AbstractClass, AbstractPredicate and DataModel resolve them when a single resource is indexed.
+ * Framing the results with IndexFrame is the fallback.
+ */
+final class IndexProjection {
+
+    private static final Property statusModified = LDHelper.curieToProperty("iow:statusModified");
+    private static final Property contentModified = LDHelper.curieToProperty("iow:contentModified");
+    private static final Property useContext = LDHelper.curieToProperty("iow:useContext");
+    private static final Property preferredXMLNamespaceName = LDHelper.curieToProperty("dcap:preferredXMLNamespaceName");
+    private static final Property preferredXMLNamespacePrefix = LDHelper.curieToProperty("dcap:preferredXMLNamespacePrefix");
+    private static final Resource profile = LDHelper.curieToResource("dcap:DCAP");
+
+    private IndexProjection() {
+    }
+
+    static List<IndexClassDTO> classes(Model model) {
+        List<IndexClassDTO> classes = new ArrayList<>();
+        model.listSubjectsWithProperty(RDF.type).forEachRemaining(resource -> {
+            if (resource.isURIResource() && (resource.hasProperty(RDF.type, RDFS.Class) || resource.hasProperty(RDF.type, SH.NodeShape))) {
+                classes.add(new IndexClassDTO(resource.getURI(), uri(resource, RDFS.isDefinedBy), string(resource, OWL.versionInfo),
+                    string(resource, statusModified), string(resource, DCTerms.modified), string(resource, DCTerms.created),
+                    resource.hasProperty(RDF.type, RDFS.Class) ? "class" : "shape",
+                    languageMap(resource, SH.name), languageMap(resource, SH.description)));
+            }
+        });
+        return classes;
+    }
+
+    /**
+     * Range is written as a compact IRI with the prefixes of the model like JSON-LD framing wrote it
+     */
+    static List<IndexPredicateDTO> predicates(Model model) {
+        Map<String, String> prefixes = new LinkedHashMap<>(model.getNsPrefixMap());
+        prefixes.putAll(LDHelper.PREFIX_MAP);
+        List<IndexPredicateDTO> predicates = new ArrayList<>();
+        model.listSubjectsWithProperty(RDF.type).forEachRemaining(resource -> {
+            boolean association = resource.hasProperty(RDF.type, OWL.ObjectProperty);
+            if (resource.isURIResource() && (association || resource.hasProperty(RDF.type, OWL.DatatypeProperty))) {
+                IndexPredicateDTO predicate = new IndexPredicateDTO(resource.getURI(), uri(resource, RDFS.isDefinedBy), string(resource, OWL.versionInfo),
+                    string(resource, statusModified), string(resource, DCTerms.modified), string(resource, DCTerms.created),
+                    association ? "association" : "attribute",
+                    languageMap(resource, RDFS.label), languageMap(resource, RDFS.comment));
+                String range = uri(resource, RDFS.range);
+                predicate.setRange(range != null ? compact(range, prefixes) : null);
+                predicates.add(predicate);
+            }
+        });
+        return predicates;
+    }
+
+    /**
+     * Contributors of the model index query are organization UUIDs and domains are identifiers of the groups
+     *
+     * @throws IllegalArgumentException if a contributor is not an UUID
+     */
+    static List<IndexModelDTO> models(Model model) {
+        List<IndexModelDTO> models = new ArrayList<>();
+        model.listSubjectsWithProperty(RDF.type).forEachRemaining(resource -> {
+            if (resource.isURIResource() && resource.hasProperty(preferredXMLNamespacePrefix)) {
+                List<UUID> contributors = new ArrayList<>();
+                strings(resource, DCTerms.contributor).forEach(id -> contributors.add(UUID.fromString(id)));
+                String context = string(resource, useContext);
+                models.add(new IndexModelDTO(resource.getURI(), context != null ? context : "InformationDescription",
+                    string(resource, OWL.versionInfo), string(resource, statusModified), string(resource, DCTerms.modified),
+                    string(resource, DCTerms.created), string(resource, contentModified),
+                    resource.hasProperty(RDF.type, profile) ? "profile" : "library",
+                    string(resource, preferredXMLNamespacePrefix), string(resource, preferredXMLNamespaceName),
+                    languageMap(resource, RDFS.label), languageMap(resource, RDFS.comment),
+                    contributors, strings(resource, DCTerms.isPartOf), strings(resource, DCTerms.language), null));
+            }
+        });
+        return models;
+    }
+
+    /**
+     * Shortest compact IRI, the way JSON-LD compaction selects it
+     */
+    static String compact(String iri,
+                          Map<String, String> prefixes) {
+        String compact = iri;
+        for (Map.Entry<String, String> prefix : prefixes.entrySet()) {
+            String namespace = prefix.getValue();
+            if (iri.length() > namespace.length() && iri.startsWith(namespace)) {
+                String candidate = prefix.getKey() + ":" + iri.substring(namespace.length());
+                if (compact == iri || candidate.length() < compact.length()
+                    || (candidate.length() == compact.length() && candidate.compareTo(compact) < 0)) {
+                    compact = candidate;
+                }
+            }
+        }
+        return compact;
+    }
+
+    private static String string(Resource resource,
+                                 Property property) {
+        Statement statement = resource.getProperty(property);
+        return statement != null && statement.getObject().isLiteral() ? statement.getString() : null;
+    }
+
+    private static List<String> strings(Resource resource,
+                                        Property property) {
+        List<String> values = new ArrayList<>();
+        resource.listProperties(property).forEachRemaining(statement -> {
+            RDFNode object = statement.getObject();
+            values.add(object.isLiteral() ? object.asLiteral().getString() : object.toString());
+        });
+        return values;
+    }
+
+    private static String uri(Resource resource,
+                              Property property) {
+        Statement statement = resource.getProperty(property);
+        return statement != null && statement.getObject().isURIResource() ? statement.getResource().getURI() : null;
+    }
+
+    private static Map<String, String> languageMap(Resource resource,
+                                                   Property property) {
+        List<RDFNode> literals = new ArrayList<>();
+        resource.listProperties(property).forEachRemaining(statement -> {
+            if (statement.getObject().isLiteral()) {
+                literals.add(statement.getObject());
+            }
+        });
+        return literals.isEmpty() ? null : LDHelper.RDFNodeListToMap(literals);
+    }
+}
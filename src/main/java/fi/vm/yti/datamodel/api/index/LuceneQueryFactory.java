@@ -2,13 +2,16 @@ package fi.vm.yti.datamodel.api.index;
 
 import java.util.Arrays;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 import javax.inject.Singleton;
 import javax.ws.rs.BadRequestException;
 
 import org.apache.lucene.queryparser.flexible.core.QueryNodeException;
 import org.apache.lucene.queryparser.flexible.standard.StandardQueryParser;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.MultiMatchQueryBuilder;
+import org.elasticsearch.index.query.Operator;
+import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
 import org.elasticsearch.index.query.QueryStringQueryBuilder;
 import org.slf4j.Logger;
@@ -30,6 +33,9 @@ public class LuceneQueryFactory {
     protected static final String complexQueryPatternString = "^[-+:(){}\\[\\]*?~\"/<>=^&|!\\\\\\w\\s]+$";
     protected static final String asteriskQueryPatternString = "^(?:(?!(?:\\s++|^)(?:AND|OR|TO)(?:\\s|$))(?:\\w++|\\s++|(?<=[\\w*])-++|(?<!\\*)\\*(?=[\\w-])|(?<=[\\w-])\\*(?!\\*)))+$";
 
+    private static final String LABEL_FIELDS = "label.*";
+    private static final float LANGUAGE_BOOST = 10;
+
     private final Pattern plainQueryPattern = Pattern.compile(plainQueryPatternString, Pattern.UNICODE_CHARACTER_CLASS);
     private final Pattern plainSplitter = Pattern.compile("\\s+", Pattern.UNICODE_CHARACTER_CLASS);
     private final Pattern givenQueryPattern;
@@ -45,26 +51,38 @@ public class LuceneQueryFactory {
         }
     }
 
-    public QueryStringQueryBuilder buildPrefixSuffixQuery(final String query) {
+    /**
+     * Builds label query where every plain search term must match a word that equals, starts with or ends with the term.
+     * Prefix and suffix matches are searched from the edge n-gram subfields of the label mapping instead of expanding
+     * leading and trailing wildcards. Queries with wildcards or operators are passed as query string query.
+     *
+     * @param query         Search terms
+     * @param boostLanguage Language of labels that are boosted or null
+     * @return Query for label fields
+     * @throws BadRequestException if query is not valid
+     */
+    public QueryBuilder buildLabelQuery(final String query,
+                                        final String boostLanguage) {
         if (query != null) {
             final String trimmed = query.trim();
-            if (!query.isEmpty()) {
-                String parsedQuery = null;
+            if (!trimmed.isEmpty()) {
                 if (plainQueryPattern.matcher(trimmed).matches()) {
                     String[] splitQuery = plainSplitter.split(trimmed);
                     if (splitQuery.length == 1) {
-                        parsedQuery = trimmed + " OR " + trimmed + "* OR *" + trimmed;
-                    } else if (splitQuery.length > 1) {
-                        parsedQuery = Arrays.stream(splitQuery).map(q -> "(" + q + " OR " + q + "* OR *" + q + ")").collect(Collectors.joining(" AND "));
+                        return buildTermQuery(trimmed, boostLanguage);
                     }
+                    BoolQueryBuilder boolQuery = QueryBuilders.boolQuery();
+                    Arrays.stream(splitQuery).forEach(q -> boolQuery.must(buildTermQuery(q, boostLanguage)));
+                    return boolQuery;
                 } else if (givenQueryPattern.matcher(trimmed).matches()) {
-                    parsedQuery = trimmed;
-                }
-                if (parsedQuery != null) {
                     StandardQueryParser parser = new StandardQueryParser();
                     try {
                         parser.setAllowLeadingWildcard(true);
-                        return QueryBuilders.queryStringQuery(parser.parse(parsedQuery, "").toString());
+                        QueryStringQueryBuilder queryStringQuery = QueryBuilders.queryStringQuery(parser.parse(trimmed, "").toString()).field(LABEL_FIELDS);
+                        if (boostLanguage != null) {
+                            queryStringQuery.field("label." + boostLanguage, LANGUAGE_BOOST);
+                        }
+                        return queryStringQuery;
                     } catch (QueryNodeException e) {
                         // nop
                     }
@@ -74,4 +92,15 @@ public class LuceneQueryFactory {
         logger.debug("Query string disqualified: '" + query + "'");
         throw new BadRequestException("Invalid query");
     }
+
+    private MultiMatchQueryBuilder buildTermQuery(final String term,
+                                                  final String boostLanguage) {
+        // Field pattern covers also the prefix and suffix subfields, boosts of matching fields are multiplied
+        MultiMatchQueryBuilder termQuery = QueryBuilders.multiMatchQuery(term, LABEL_FIELDS).operator(Operator.AND);
+        if (boostLanguage != null) {
+            termQuery.field("label." + boostLanguage, LANGUAGE_BOOST)
+                .field("label." + boostLanguage + ".*", LANGUAGE_BOOST);
+        }
+        return termQuery;
+    }
 }
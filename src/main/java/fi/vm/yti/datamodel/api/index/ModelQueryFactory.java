@@ -1,5 +1,6 @@
 package fi.vm.yti.datamodel.api.index;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -15,8 +16,6 @@ import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.index.query.BoolQueryBuilder;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
-import org.elasticsearch.index.query.QueryStringQueryBuilder;
-import org.elasticsearch.index.query.TermsQueryBuilder;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.SearchHits;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
@@ -26,6 +25,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 
 import fi.vm.yti.datamodel.api.index.model.DeepSearchHitListDTO;
 import fi.vm.yti.datamodel.api.index.model.IndexModelDTO;
@@ -38,6 +38,7 @@ public class ModelQueryFactory {
 
     private static final Logger logger = LoggerFactory.getLogger(ModelQueryFactory.class);
     private ObjectMapper objectMapper;
+    private ObjectReader modelReader;
     private LuceneQueryFactory luceneQueryFactory;
 
     @Autowired
@@ -45,17 +46,18 @@ public class ModelQueryFactory {
                              LuceneQueryFactory luceneQueryFactory) {
 
         this.objectMapper = objectMapper;
+        this.modelReader = objectMapper.readerFor(IndexModelDTO.class);
         this.luceneQueryFactory = luceneQueryFactory;
 
     }
 
     public SearchRequest createQuery(ModelSearchRequest request) {
-        return createQuery(request.getUri(),request.getQuery(), request.getLanguage(), request.getStatus(), request.getType(), request.getAfter(), request.getBefore(), Collections.emptySet(), request.getPageSize(), request.getPageFrom(), request.getFilter(), request.getIncludeIncomplete(), request.getIncludeIncompleteFrom());
+        return createQuery(request.getUri(),request.getQuery(), request.getLanguage(), request.getStatus(), request.getType(), request.getAfter(), request.getBefore(), Collections.emptySet(), request.getPageSize(), request.getPageFrom(), request.getCursor(), request.getFilter(), request.getIncludeIncomplete(), request.getIncludeIncompleteFrom());
     }
 
     public SearchRequest createQuery(ModelSearchRequest request,
                                      Collection<String> additionalModelIds) {
-        return createQuery(request.getUri(), request.getQuery(), request.getLanguage(), request.getStatus(), request.getType(), request.getAfter(), request.getBefore(), additionalModelIds, request.getPageSize(), request.getPageFrom(), request.getFilter(), request.getIncludeIncomplete(), request.getIncludeIncompleteFrom());
+        return createQuery(request.getUri(), request.getQuery(), request.getLanguage(), request.getStatus(), request.getType(), request.getAfter(), request.getBefore(), additionalModelIds, request.getPageSize(), request.getPageFrom(), request.getCursor(), request.getFilter(), request.getIncludeIncomplete(), request.getIncludeIncompleteFrom());
     }
 
     private SearchRequest createQuery(Set<String> uris,
@@ -68,18 +70,20 @@ public class ModelQueryFactory {
                                       Collection<String> additionalModelIds,
                                       Integer pageSize,
                                       Integer pageFrom,
+                                      String cursor,
                                       Set<String> filter,
                                       Boolean includeIncomplete,
                                       Set<String> includeIncompleteFrom) {
 
-        QueryStringQueryBuilder labelQuery = null;
+        QueryBuilder labelQuery = null;
         if (!query.isEmpty()) {
-            labelQuery = luceneQueryFactory.buildPrefixSuffixQuery(query).field("label.*");
+            labelQuery = luceneQueryFactory.buildLabelQuery(query, null);
         }
 
-        TermsQueryBuilder idQuery = null;
+        QueryBuilder idQuery = null;
         if (additionalModelIds != null && !additionalModelIds.isEmpty()) {
-            idQuery = QueryBuilders.termsQuery("id", additionalModelIds);
+            // Models found only by their resources do not change the scores of the label matches
+            idQuery = QueryBuilders.constantScoreQuery(QueryBuilders.termsQuery("id", additionalModelIds)).boost(0);
         }
 
         QueryBuilder contentQuery = null;
@@ -111,7 +115,7 @@ public class ModelQueryFactory {
         }
 
         if (includeIncomplete == null || includeIncompleteFrom != null) {
-            QueryBuilder incompleteQuery = ElasticUtils.createStatusAndContributorQuery(includeIncompleteFrom);
+            QueryBuilder incompleteQuery = ElasticUtils.createVisibilityQuery(includeIncompleteFrom);
             mustList.add(incompleteQuery);
         }
 
@@ -176,6 +180,10 @@ public class ModelQueryFactory {
             sourceBuilder.size(10000);
         }
 
+        if (pageSize != null || cursor != null) {
+            ElasticUtils.addCursorPaging(sourceBuilder, cursor);
+        }
+
         SearchRequest sr = new SearchRequest("dm_models")
             .source(sourceBuilder);
 
@@ -197,9 +205,10 @@ public class ModelQueryFactory {
 
             SearchHits hits = response.getHits();
             ret.setTotalHitCount(hits.getTotalHits());
+            ret.setNextCursor(ElasticUtils.nextCursor(hits, request.getPageSize()));
 
             for (SearchHit hit : hits) {
-                IndexModelDTO model = objectMapper.readValue(hit.getSourceAsString(), IndexModelDTO.class);
+                IndexModelDTO model = readHit(hit);
                 models.add(model);
             }
 
@@ -211,4 +220,8 @@ public class ModelQueryFactory {
 
     }
 
+    public IndexModelDTO readHit(SearchHit hit) throws IOException {
+        return ElasticUtils.readSource(modelReader, hit);
+    }
+
 }
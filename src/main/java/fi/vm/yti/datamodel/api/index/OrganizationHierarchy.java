@@ -0,0 +1,179 @@
+/*
+ * Licensed under the European Union Public Licence (EUPL) V.1.1
+ */
+package fi.vm.yti.datamodel.api.index;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.rdf.model.Statement;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.index.reindex.UpdateByQueryRequest;
+import org.elasticsearch.script.Script;
+import org.elasticsearch.script.ScriptType;
+
+import fi.vm.yti.datamodel.api.utils.LDHelper;
+
+/**
+ * Parent organizations of the organizations graph. Users of a parent organization see incomplete content of its child
+ * organizations, so documents are indexed with the contributor organizations and all their ancestors in "visibleTo".
+ */
+public final class OrganizationHierarchy {
+
+    public static final String ORGANIZATIONS_GRAPH = "urn:yti:organizations";
+
+    private static final Property parentOrganization = ResourceFactory.createProperty(LDHelper.PREFIX_MAP.get("iow") + "parentOrganization");
+    private static final String UUID_PREFIX = "urn:uuid:";
+
+    // Recomputes visibility from the contributors of the document, contributor is a string if there is only one.
+    // Documents that are up to date are not written.
+    private static final String VISIBILITY_SCRIPT =
+        "def contributors = ctx._source.contributor;"
+            + "if (contributors == null) { ctx.op = 'noop'; return; }"
+            + "if (contributors instanceof String) { contributors = [contributors]; }"
+            + "Set visible = new TreeSet();"
+            + "for (def contributor : contributors) {"
+            + "  visible.add(contributor);"
+            + "  def ancestors = params.ancestors[contributor];"
+            + "  if (ancestors != null) { visible.addAll(ancestors); }"
+            + "}"
+            + "List visibleTo = new ArrayList(visible);"
+            + "if (visibleTo == ctx._source.visibleTo) { ctx.op = 'noop'; return; }"
+            + "ctx._source.visibleTo = visibleTo;";
+
+    private static final OrganizationHierarchy EMPTY = new OrganizationHierarchy(Collections.emptyMap());
+
+    private final Map<String, String> parents;
+
+    private OrganizationHierarchy(Map<String, String> parents) {
+        this.parents = parents;
+    }
+
+    public static OrganizationHierarchy empty() {
+        return EMPTY;
+    }
+
+    /**
+     * @param parents Parent organization id by organization id
+     */
+    public static OrganizationHierarchy of(Map<String, String> parents) {
+        return new OrganizationHierarchy(new HashMap<>(parents));
+    }
+
+    /**
+     * Reads parents from the organizations graph. Main organizations have an empty literal as parent.
+     *
+     * @param organizations Organizations graph or null
+     */
+    public static OrganizationHierarchy of(Model organizations) {
+        if (organizations == null) {
+            return EMPTY;
+        }
+        Map<String, String> parents = new HashMap<>();
+        for (Statement statement : organizations.listStatements(null, parentOrganization, (RDFNode) null).toList()) {
+            if (statement.getSubject().isURIResource() && statement.getObject().isURIResource()) {
+                parents.put(organizationId(statement.getSubject().getURI()), organizationId(statement.getResource().getURI()));
+            }
+        }
+        return new OrganizationHierarchy(parents);
+    }
+
+    private static String organizationId(String uri) {
+        return uri.startsWith(UUID_PREFIX) ? uri.substring(UUID_PREFIX.length()) : uri;
+    }
+
+    /**
+     * @return Parent, its parent and so on. Cycles are followed only once.
+     */
+    public List<String> ancestors(String organization) {
+        Set<String> ancestors = new LinkedHashSet<>();
+        String parent = parents.get(organization);
+        while (parent != null && !parent.equals(organization) && ancestors.add(parent)) {
+            parent = parents.get(parent);
+        }
+        return new ArrayList<>(ancestors);
+    }
+
+    /**
+     * @param contributors Contributor organizations of a model
+     * @return Sorted contributors and their ancestors
+     */
+    public List<String> visibleTo(Collection<String> contributors) {
+        Set<String> visible = new TreeSet<>();
+        if (contributors != null) {
+            for (String contributor : contributors) {
+                visible.add(contributor);
+                visible.addAll(ancestors(contributor));
+            }
+        }
+        return new ArrayList<>(visible);
+    }
+
+    /**
+     * @return Organizations whose ancestors are different in the previous hierarchy
+     */
+    public Set<String> changedOrganizations(OrganizationHierarchy previous) {
+        Set<String> organizations = new HashSet<>(parents.keySet());
+        organizations.addAll(previous.parents.keySet());
+        Set<String> changed = new TreeSet<>();
+        for (String organization : organizations) {
+            if (!ancestors(organization).equals(previous.ancestors(organization))) {
+                changed.add(organization);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Update of "visibleTo" in documents contributed by organizations whose ancestors changed
+     *
+     * @param previous Hierarchy the documents were indexed with
+     * @param indices  Indices to update
+     * @return Update request or null if no ancestors changed
+     */
+    public UpdateByQueryRequest createVisibilityUpdate(OrganizationHierarchy previous,
+                                                       String... indices) {
+        Set<String> changed = changedOrganizations(previous);
+        if (changed.isEmpty()) {
+            return null;
+        }
+        return createVisibilityUpdate(QueryBuilders.termsQuery("contributor", changed), indices);
+    }
+
+    /**
+     * Update of "visibleTo" in all documents with contributors, used when the hierarchy the documents were indexed with
+     * is not known
+     *
+     * @param indices Indices to update
+     * @return Update request
+     */
+    public UpdateByQueryRequest createFullVisibilityUpdate(String... indices) {
+        return createVisibilityUpdate(QueryBuilders.existsQuery("contributor"), indices);
+    }
+
+    private UpdateByQueryRequest createVisibilityUpdate(QueryBuilder query,
+                                                        String... indices) {
+        Map<String, Object> ancestors = new HashMap<>();
+        parents.keySet().forEach(organization -> ancestors.put(organization, ancestors(organization)));
+
+        UpdateByQueryRequest request = new UpdateByQueryRequest(indices);
+        request.setQuery(query);
+        request.setScript(new Script(ScriptType.INLINE, "painless", VISIBILITY_SCRIPT, Collections.singletonMap("ancestors", ancestors)));
+        request.setConflicts("proceed");
+        request.setRefresh(true);
+        return request;
+    }
+}
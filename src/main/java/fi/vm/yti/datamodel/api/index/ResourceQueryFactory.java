@@ -1,5 +1,6 @@
 package fi.vm.yti.datamodel.api.index;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
@@ -13,7 +14,6 @@ import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.index.query.BoolQueryBuilder;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
-import org.elasticsearch.index.query.QueryStringQueryBuilder;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.SearchHits;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
@@ -25,6 +25,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 
 import fi.vm.yti.datamodel.api.index.model.IndexResourceDTO;
 import fi.vm.yti.datamodel.api.index.model.ResourceSearchRequest;
@@ -36,7 +37,9 @@ public class ResourceQueryFactory {
 
     private static final Logger logger = LoggerFactory.getLogger(ResourceQueryFactory.class);
     private static final Pattern sortLangPattern = Pattern.compile("[a-zA-Z-]+");
+    private static final String[] sourceIncludes = { "id", "isDefinedBy", "status", "statusModified", "modified", "created", "type", "range", "label", "comment" };
     private ObjectMapper objectMapper;
+    private ObjectReader resourceReader;
     private LuceneQueryFactory luceneQueryFactory;
 
     @Autowired
@@ -44,12 +47,21 @@ public class ResourceQueryFactory {
                                 LuceneQueryFactory luceneQueryFactory) {
 
         this.objectMapper = objectMapper;
+        this.resourceReader = objectMapper.readerFor(IndexResourceDTO.class);
         this.luceneQueryFactory = luceneQueryFactory;
 
     }
 
     public SearchRequest createQuery(ResourceSearchRequest request) {
-        return createQuery(request.getUri(), request.getQuery(), request.getType(), request.getIsDefinedBy(), request.getIsDefinedBySet(), request.getStatus(), request.getAfter(), request.getBefore(), request.getSortLang(), request.getSortField(), request.getSortOrder(), request.getPageSize(), request.getPageFrom(), request.getFilter());
+        return createQuery(request, false);
+    }
+
+    /**
+     * @param highlight Whether matching words of labels are highlighted
+     */
+    public SearchRequest createQuery(ResourceSearchRequest request,
+                                     boolean highlight) {
+        return createQuery(request.getUri(), request.getQuery(), request.getType(), request.getIsDefinedBy(), request.getIsDefinedBySet(), request.getStatus(), request.getAfter(), request.getBefore(), request.getSortLang(), request.getSortField(), request.getSortOrder(), request.getPageSize(), request.getPageFrom(), request.getCursor(), request.getFilter(), highlight);
     }
 
     private SearchRequest createQuery(Set<String> uris,
@@ -65,13 +77,16 @@ public class ResourceQueryFactory {
                                       String sortOrder,
                                       Integer pageSize,
                                       Integer pageFrom,
-                                      Set<String> filter) {
+                                      String cursor,
+                                      Set<String> filter,
+                                      boolean highlight) {
 
         if (sortField != null && !sortField.matches("modified|label|comment|isDefinedBy")) {
             throw new IllegalArgumentException("Allowed fields: modified, label, comment, isDefinedBy");
         }
 
-        SearchSourceBuilder sourceBuilder = new SearchSourceBuilder();
+        SearchSourceBuilder sourceBuilder = new SearchSourceBuilder()
+            .fetchSource(sourceIncludes, null);
 
         if (pageFrom != null)
             sourceBuilder.from(pageFrom);
@@ -126,16 +141,13 @@ public class ResourceQueryFactory {
             mustList.add(statusQuery);
         }
 
-        QueryStringQueryBuilder labelQuery;
-
         if (!query.isEmpty()) {
-            labelQuery = luceneQueryFactory.buildPrefixSuffixQuery(query).field("label.*");
+            String boostLang = sortLang != null && sortLangPattern.matcher(sortLang).matches() ? sortLang : null;
+            mustList.add(luceneQueryFactory.buildLabelQuery(query, boostLang));
 
-            if (sortLang != null && sortLangPattern.matcher(sortLang).matches()) {
-                labelQuery = labelQuery.field("label." + sortLang, 10);
+            if (highlight) {
+                sourceBuilder.highlighter(ElasticUtils.createLabelHighlighter());
             }
-
-            mustList.add(labelQuery);
         }
 
         if (mustList.size() > 0) {
@@ -146,11 +158,23 @@ public class ResourceQueryFactory {
 
         if (sortField != null && !sortField.isEmpty() && sortLang != null && !sortLang.isEmpty()) {
             sortOrder = (sortOrder == null ? "desc" : (sortOrder.matches("asc|desc") ? sortOrder : "desc"));
-            FieldSortBuilder fieldSort = new FieldSortBuilder(sortField + (sortField.equals("label") || sortField.equals("comment") ? "." + sortLang : "")).order(SortOrder.fromString(sortOrder));
+            String sortPath = sortField;
+            if (sortField.equals("label")) {
+                // Keyword subfield with doc values, indexes created before it are sorted as if labels were missing
+                sortPath = "label." + sortLang + ".sort";
+            } else if (sortField.equals("comment")) {
+                sortPath = "comment." + sortLang;
+            }
+            FieldSortBuilder fieldSort = new FieldSortBuilder(sortPath).order(SortOrder.fromString(sortOrder));
             fieldSort.missing("_last");
+            fieldSort.unmappedType("keyword");
             sourceBuilder.sort(fieldSort);
         }
 
+        if (pageSize != null || cursor != null) {
+            ElasticUtils.addCursorPaging(sourceBuilder, cursor);
+        }
+
         SearchRequest sr = new SearchRequest("dm_resources")
             .source(sourceBuilder);
 
@@ -171,11 +195,12 @@ public class ResourceQueryFactory {
 
             SearchHits hits = response.getHits();
             ret.setTotalHitCount(hits.getTotalHits());
+            ret.setNextCursor(ElasticUtils.nextCursor(hits, request.getPageSize()));
 
             for (SearchHit hit : hits) {
-                IndexResourceDTO res = objectMapper.readValue(hit.getSourceAsString(), IndexResourceDTO.class);
+                IndexResourceDTO res = readHit(hit);
                 if (highlight) {
-                    res.highlightLabels(request.getQuery());
+                    ElasticUtils.highlightLabels(res.getLabel(), hit.getHighlightFields());
                 }
                 resources.add(res);
             }
@@ -188,4 +213,8 @@ public class ResourceQueryFactory {
 
     }
 
+    public IndexResourceDTO readHit(SearchHit hit) throws IOException {
+        return ElasticUtils.readSource(resourceReader, hit);
+    }
+
 }
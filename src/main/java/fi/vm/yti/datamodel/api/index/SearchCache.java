@@ -0,0 +1,112 @@
+/*
+ * Licensed under the European Union Public Licence (EUPL) V.1.1
+ */
+package fi.vm.yti.datamodel.api.index;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+
+/**
+ * Cache for search results. Entries are keyed on the normalized request and the generation of the searched indexes,
+ * so a write to an index makes all older entries unreachable. Visibility is indexed in the documents, so also changes
+ * of organization hierarchy are writes to the indexes.
+ * Cache metrics are published as "datamodel.search" and hit ratio as "datamodel.search.hit.ratio".
+ */
+@Service
+public class SearchCache {
+
+    private static final int MAX_ENTRIES = 2000;
+    private static final int EXPIRE_AFTER_WRITE_MINUTES = 10;
+
+    private final Cache<Key, Object> cache = CacheBuilder.newBuilder()
+        .maximumSize(MAX_ENTRIES)
+        .expireAfterWrite(EXPIRE_AFTER_WRITE_MINUTES, TimeUnit.MINUTES)
+        .recordStats()
+        .build();
+
+    @Autowired
+    SearchCache(MeterRegistry meterRegistry) {
+        GuavaCacheMetrics.monitor(meterRegistry, cache, "datamodel.search");
+        Gauge.builder("datamodel.search.hit.ratio", cache, cache -> cache.stats().hitRate()).register(meterRegistry);
+    }
+
+    /**
+     * Returns cached result or searches. Concurrent requests for the same key wait for a single search.
+     * Result is not cached if the generation is negative, see {@link ElasticConnector#getRefreshedGeneration(String...)}.
+     * Result must not be null and must not be modified by callers.
+     *
+     * @param generation Generation of the searched indexes read before searching
+     * @param search     Runs the search
+     * @param parameters Normalized request parameters that affect the result
+     * @return Cached or searched result
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(long generation,
+                     Supplier<T> search,
+                     Object... parameters) {
+        if (generation < 0) {
+            return search.get();
+        }
+        try {
+            return (T) cache.get(new Key(Arrays.asList(parameters), generation), search::get);
+        } catch (ExecutionException | UncheckedExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private static final class Key {
+
+        private final List<Object> parameters;
+        private final long generation;
+
+        private Key(List<Object> parameters,
+                    long generation) {
+            this.parameters = parameters;
+            this.generation = generation;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return generation == key.generation && parameters.equals(key.parameters);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(parameters, generation);
+        }
+    }
+}
@@ -2,53 +2,79 @@ package fi.vm.yti.datamodel.api.index;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import javax.inject.Singleton;
+import javax.ws.rs.core.StreamingOutput;
 
-import fi.vm.yti.datamodel.api.service.RHPOrganizationManager;
 import org.apache.jena.iri.IRI;
 import org.apache.jena.query.ParameterizedSparqlString;
+import org.apache.jena.query.QuerySolution;
+import org.apache.jena.query.ResultSet;
 import org.apache.jena.rdf.model.Model;
+import org.elasticsearch.ElasticsearchTimeoutException;
 import org.elasticsearch.action.bulk.BulkRequest;
 import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.search.ClearScrollRequest;
+import org.elasticsearch.action.search.MultiSearchRequest;
+import org.elasticsearch.action.search.MultiSearchResponse;
 import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchScrollRequest;
+import org.elasticsearch.action.support.PlainActionFuture;
 import org.elasticsearch.client.RequestOptions;
 import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.index.query.QueryBuilders;
 import org.elasticsearch.index.reindex.BulkByScrollResponse;
 import org.elasticsearch.index.reindex.DeleteByQueryRequest;
+import org.elasticsearch.index.reindex.UpdateByQueryRequest;
+import org.elasticsearch.script.Script;
+import org.elasticsearch.script.ScriptType;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHits;
+import org.elasticsearch.search.sort.SortBuilders;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 
 import fi.vm.yti.datamodel.api.index.model.DeepSearchHitListDTO;
 import fi.vm.yti.datamodel.api.index.model.IndexClassDTO;
 import fi.vm.yti.datamodel.api.index.model.IndexModelDTO;
 import fi.vm.yti.datamodel.api.index.model.IndexPredicateDTO;
+import fi.vm.yti.datamodel.api.index.model.IndexResourceDTO;
 import fi.vm.yti.datamodel.api.index.model.IntegrationAPIResponse;
+import fi.vm.yti.datamodel.api.index.model.IntegrationContainerDTO;
 import fi.vm.yti.datamodel.api.index.model.IntegrationContainerRequest;
+import fi.vm.yti.datamodel.api.index.model.IntegrationMetaDTO;
+import fi.vm.yti.datamodel.api.index.model.IntegrationResourceDTO;
 import fi.vm.yti.datamodel.api.index.model.IntegrationResourceRequest;
 import fi.vm.yti.datamodel.api.index.model.ModelSearchRequest;
 import fi.vm.yti.datamodel.api.index.model.ModelSearchResponse;
 import fi.vm.yti.datamodel.api.index.model.ResourceSearchRequest;
 import fi.vm.yti.datamodel.api.index.model.ResourceSearchResponse;
+import fi.vm.yti.datamodel.api.index.model.SuggestionDTO;
 import fi.vm.yti.datamodel.api.model.AbstractClass;
 import fi.vm.yti.datamodel.api.model.AbstractPredicate;
 import fi.vm.yti.datamodel.api.model.DataModel;
+import fi.vm.yti.datamodel.api.service.DependencyUnavailableException;
 import fi.vm.yti.datamodel.api.service.GraphManager;
 import fi.vm.yti.datamodel.api.service.JenaClient;
 import fi.vm.yti.datamodel.api.service.ModelManager;
-import fi.vm.yti.datamodel.api.utils.Frames;
+import fi.vm.yti.datamodel.api.service.RemoteDependencyRegistry;
+import fi.vm.yti.datamodel.api.utils.IndexFrame;
 import fi.vm.yti.datamodel.api.utils.LDHelper;
-import fi.vm.yti.security.Role;
 import fi.vm.yti.security.YtiUser;
 
 @Singleton
@@ -58,6 +84,15 @@ public class SearchIndexManager {
     private static final Logger logger = LoggerFactory.getLogger(SearchIndexManager.class);
     private static final String ELASTIC_INDEX_RESOURCE = "dm_resources";
     private static final String ELASTIC_INDEX_MODEL = "dm_models";
+    private static final int EXPORT_BATCH_SIZE = 1000;
+    private static final TimeValue EXPORT_SCROLL_KEEP_ALIVE = TimeValue.timeValueMinutes(1);
+    // Copies contributors, visibility and status of the model to its resources unless they are up to date
+    private static final String MODEL_VISIBILITY_SCRIPT =
+        "if (params.contributor == ctx._source.contributor && params.visibleTo == ctx._source.visibleTo"
+            + " && params.modelStatus == ctx._source.modelStatus) { ctx.op = 'noop'; return; }"
+            + "ctx._source.contributor = params.contributor;"
+            + "ctx._source.visibleTo = params.visibleTo;"
+            + "ctx._source.modelStatus = params.modelStatus;";
     private final ElasticConnector esManager;
     private final JenaClient jenaClient;
     private final GraphManager graphManager;
@@ -66,8 +101,13 @@ public class SearchIndexManager {
     private final ModelQueryFactory modelQueryFactory;
     private final DeepResourceQueryFactory deepResourceQueryFactory;
     private final ResourceQueryFactory resourceQueryFactory;
+    private final SuggestQueryFactory suggestQueryFactory;
     private RestHighLevelClient esClient;
-    private RHPOrganizationManager organizationManager;
+    private final SearchCache searchCache;
+    private final ExternalIndexManager externalIndexManager;
+    private volatile OrganizationHierarchy organizationHierarchy;
+    // False until the indices are known to be up to date with organizationHierarchy
+    private volatile boolean hierarchyIndexed;
 
     @Autowired
     public SearchIndexManager(final ElasticConnector esManager,
@@ -78,7 +118,9 @@ public class SearchIndexManager {
                               final ModelQueryFactory modelQueryFactory,
                               final DeepResourceQueryFactory deepClassQueryFactory,
                               final ResourceQueryFactory resourceQueryFactory,
-                              final RHPOrganizationManager organizationManager) {
+                              final SuggestQueryFactory suggestQueryFactory,
+                              final SearchCache searchCache,
+                              final ExternalIndexManager externalIndexManager) {
         this.esManager = esManager;
         this.esClient = esManager.getEsClient();
         this.jenaClient = jenaClient;
@@ -88,7 +130,9 @@ public class SearchIndexManager {
         this.modelQueryFactory = modelQueryFactory;
         this.deepResourceQueryFactory = deepClassQueryFactory;
         this.resourceQueryFactory = resourceQueryFactory;
-        this.organizationManager = organizationManager;
+        this.suggestQueryFactory = suggestQueryFactory;
+        this.searchCache = searchCache;
+        this.externalIndexManager = externalIndexManager;
     }
 
     /**
@@ -101,7 +145,10 @@ public class SearchIndexManager {
             logger.info("Indexes cleaned");
             esManager.createIndex(ELASTIC_INDEX_RESOURCE, getResourceMappings());
             esManager.createIndex(ELASTIC_INDEX_MODEL, getModelMappings());
+            organizationHierarchy = OrganizationHierarchy.of(graphManager.getCoreGraph(OrganizationHierarchy.ORGANIZATIONS_GRAPH));
             initSearchIndexes();
+            hierarchyIndexed = true;
+            externalIndexManager.reindex();
             logger.info("Indexes initialized");
         } catch (IOException ex) {
             logger.warn("Reindex failed!", ex);
@@ -111,13 +158,13 @@ public class SearchIndexManager {
     public void createIndexClass(AbstractClass classResource) {
         logger.debug("Indexing: " + classResource.getId());
         IndexClassDTO indexClass = new IndexClassDTO(classResource);
-        esManager.putToIndex(ELASTIC_INDEX_RESOURCE, indexClass.getId(), indexClass);
+        esManager.putToIndex(ELASTIC_INDEX_RESOURCE, indexClass.getId(), resourceDocument(indexClass));
     }
 
     public void updateIndexClass(AbstractClass classResource) {
         IndexClassDTO indexClass = new IndexClassDTO(classResource);
         logger.debug("Indexing: " + indexClass.getId());
-        esManager.updateToIndex(ELASTIC_INDEX_RESOURCE, indexClass.getId(), indexClass);
+        esManager.updateToIndex(ELASTIC_INDEX_RESOURCE, indexClass.getId(), resourceDocument(indexClass));
     }
 
     public void removeClass(String id) {
@@ -127,13 +174,100 @@ public class SearchIndexManager {
     public void createIndexPredicate(AbstractPredicate predicateResource) {
         IndexPredicateDTO indexPredicate = new IndexPredicateDTO(predicateResource);
         logger.info("Indexing: " + indexPredicate.getId());
-        esManager.putToIndex(ELASTIC_INDEX_RESOURCE, indexPredicate.getId(), indexPredicate);
+        esManager.putToIndex(ELASTIC_INDEX_RESOURCE, indexPredicate.getId(), resourceDocument(indexPredicate));
     }
 
     public void updateIndexPredicate(AbstractPredicate predicateResource) {
         IndexPredicateDTO indexPredicate = new IndexPredicateDTO(predicateResource);
         logger.info("Indexing: " + indexPredicate.getId());
-        esManager.updateToIndex(ELASTIC_INDEX_RESOURCE, indexPredicate.getId(), indexPredicate);
+        esManager.updateToIndex(ELASTIC_INDEX_RESOURCE, indexPredicate.getId(), resourceDocument(indexPredicate));
+    }
+
+    /**
+     * Adds inputs of the label completion field and visibility of the model to the indexed resource
+     */
+    private Map<String, Object> resourceDocument(IndexResourceDTO resource) {
+        String modelId = resource.getIsDefinedBy();
+        return resourceDocument(resource, modelId != null ? getModelVisibility(Collections.singleton(modelId)).get(modelId) : null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> resourceDocument(IndexResourceDTO resource,
+                                                 ModelVisibility model) {
+        Map<String, Object> document = objectMapper.convertValue(resource, Map.class);
+        Collection<String> labels = resource.getLabel() != null ? resource.getLabel().values() : Collections.emptyList();
+        document.put(SuggestQueryFactory.SUGGEST_FIELD, SuggestQueryFactory.suggestInputs(labels));
+        addModelVisibility(document, model);
+        return document;
+    }
+
+    private void addModelVisibility(Map<String, Object> document,
+                                    ModelVisibility model) {
+        if (model != null) {
+            document.put("contributor", model.contributors);
+            document.put("visibleTo", organizationHierarchy().visibleTo(model.contributors));
+            document.put("modelStatus", model.status);
+        }
+    }
+
+    /**
+     * Reads contributors and status of the models from core
+     *
+     * @param modelIds Model IRIs
+     * @return Visibility by model IRI, external namespaces are not included
+     */
+    private Map<String, ModelVisibility> getModelVisibility(Collection<String> modelIds) {
+        Map<String, ModelVisibility> models = new HashMap<>();
+        if (modelIds.isEmpty() || jenaClient == null) {
+            return models;
+        }
+        String qry = "SELECT ?model ?status ?org WHERE { " +
+            "GRAPH ?model { ?model a owl:Ontology . ?model owl:versionInfo ?status . " +
+            "OPTIONAL { ?model dcterms:contributor ?org . } } " +
+            "VALUES ?model { " + LDHelper.concatStringWithReplace(new HashSet<>(modelIds), " ", "<@this>") + " }}";
+        ParameterizedSparqlString pss = new ParameterizedSparqlString();
+        pss.setNsPrefixes(LDHelper.PREFIX_MAP);
+        pss.setCommandText(qry);
+
+        ResultSet results = jenaClient.selectQuery(jenaClient.getEndpointServices().getCoreSparqlAddress(), pss.asQuery());
+        while (results.hasNext()) {
+            QuerySolution soln = results.nextSolution();
+            ModelVisibility model = models.computeIfAbsent(soln.getResource("model").getURI(), id -> new ModelVisibility(soln.getLiteral("status").getString()));
+            if (soln.contains("org") && soln.get("org").isURIResource()) {
+                String org = soln.getResource("org").getURI();
+                model.contributors.add(org.startsWith("urn:uuid:") ? org.substring("urn:uuid:".length()) : org);
+            }
+        }
+        models.values().forEach(model -> Collections.sort(model.contributors));
+        return models;
+    }
+
+    private static String modelIdOf(JsonNode isDefinedBy) {
+        if (isDefinedBy == null) {
+            return null;
+        }
+        String modelId = isDefinedBy.isObject() ? isDefinedBy.path("id").asText(null) : isDefinedBy.asText(null);
+        return modelId != null && modelId.startsWith("iow:") ? LDHelper.curieToURI(modelId) : modelId;
+    }
+
+    private static List<String> textValues(JsonNode node) {
+        List<String> values = new ArrayList<>();
+        if (node != null) {
+            if (node.isArray()) {
+                node.forEach(value -> values.add(value.asText()));
+            } else {
+                values.add(node.asText());
+            }
+        }
+        return values;
+    }
+
+    private static List<String> labelValues(JsonNode label) {
+        List<String> values = new ArrayList<>();
+        if (label != null) {
+            label.forEach(value -> values.addAll(textValues(value)));
+        }
+        return values;
     }
 
     public void removePredicate(String id) {
@@ -144,10 +278,12 @@ public class SearchIndexManager {
         try {
             DeleteByQueryRequest resourceRequest = new DeleteByQueryRequest(ELASTIC_INDEX_RESOURCE);
             resourceRequest.setQuery(QueryBuilders.termQuery("isDefinedBy", id));
-            BulkByScrollResponse resourceResponse = esClient.deleteByQuery(resourceRequest, RequestOptions.DEFAULT);
+            BulkByScrollResponse resourceResponse = esManager.execute(() -> esClient.deleteByQuery(resourceRequest, RequestOptions.DEFAULT));
             logger.info("Removed " + resourceResponse.getDeleted() + " resources from \"" + ELASTIC_INDEX_RESOURCE + "\" for model \"" + id + "\"");
         } catch (Exception e) {
             logger.warn("Could not delete resources for model " + id + " from index", e);
+        } finally {
+            esManager.indexChanged(ELASTIC_INDEX_RESOURCE);
         }
 
         // NOTE: The following should have refresh policy causing removal to have effect on immediate searches
@@ -162,7 +298,7 @@ public class SearchIndexManager {
     public void createIndexModel(DataModel model) {
         IndexModelDTO indexModel = new IndexModelDTO(model);
         logger.info("Indexing: " + indexModel.getId());
-        esManager.putToIndex(ELASTIC_INDEX_MODEL, indexModel.getId(), indexModel);
+        esManager.putToIndex(ELASTIC_INDEX_MODEL, indexModel.getId(), modelDocument(indexModel));
     }
 
     public void updateIndexModel(String modelId) {
@@ -176,51 +312,253 @@ public class SearchIndexManager {
         logger.debug("Created: "+indexModel.getCreated());
         logger.debug("Modified: "+indexModel.getModified());
         logger.debug("Content modified: "+indexModel.getContentModified());
-        esManager.updateToIndex(ELASTIC_INDEX_MODEL, indexModel.getId(), indexModel);
+        esManager.updateToIndex(ELASTIC_INDEX_MODEL, indexModel.getId(), modelDocument(indexModel));
+        updateResourceVisibility(indexModel);
+    }
+
+    /**
+     * Copies changed contributors and status of the model to the already indexed resources of the model
+     */
+    private void updateResourceVisibility(IndexModelDTO model) {
+        List<String> contributors = contributors(model);
+        Map<String, Object> params = new HashMap<>();
+        params.put("contributor", contributors);
+        params.put("visibleTo", organizationHierarchy().visibleTo(contributors));
+        params.put("modelStatus", model.getStatus());
+        UpdateByQueryRequest request = new UpdateByQueryRequest(ELASTIC_INDEX_RESOURCE);
+        request.setQuery(QueryBuilders.termQuery("isDefinedBy", model.getId()));
+        request.setScript(new Script(ScriptType.INLINE, "painless", MODEL_VISIBILITY_SCRIPT, params));
+        request.setConflicts("proceed");
+        request.setRefresh(true);
+        try {
+            BulkByScrollResponse response = esManager.execute(() -> esClient.updateByQuery(request, RequestOptions.DEFAULT));
+            logger.debug("Updated visibility of " + response.getUpdated() + " resources of " + model.getId());
+        } catch (Exception e) {
+            logger.warn("Could not update visibility of resources of " + model.getId(), e);
+        } finally {
+            esManager.indexChanged(ELASTIC_INDEX_RESOURCE);
+        }
+    }
+
+    /**
+     * Reloads organization hierarchy and updates visibility of documents contributed by organizations whose ancestors
+     * changed. Called after organizations are synchronized from RHP. Until the indices are known to be up to date, for
+     * example after a restart without reindex, visibility of all documents is recomputed.
+     */
+    public void updateOrganizationHierarchy() {
+        OrganizationHierarchy previous = organizationHierarchy;
+        OrganizationHierarchy hierarchy = OrganizationHierarchy.of(graphManager.getCoreGraph(OrganizationHierarchy.ORGANIZATIONS_GRAPH));
+        organizationHierarchy = hierarchy;
+        boolean full = !hierarchyIndexed || previous == null;
+        UpdateByQueryRequest request = full
+            ? hierarchy.createFullVisibilityUpdate(ELASTIC_INDEX_RESOURCE, ELASTIC_INDEX_MODEL)
+            : hierarchy.createVisibilityUpdate(previous, ELASTIC_INDEX_RESOURCE, ELASTIC_INDEX_MODEL);
+        if (request == null) {
+            return;
+        }
+        try {
+            BulkByScrollResponse response = esManager.execute(() -> esClient.updateByQuery(request, RequestOptions.DEFAULT));
+            if (full) {
+                hierarchyIndexed = true;
+            }
+            logger.info("Organization hierarchy synchronized, updated visibility of " + response.getUpdated() + " documents");
+        } catch (Exception e) {
+            // Next synchronization updates all documents
+            hierarchyIndexed = false;
+            logger.warn("Could not update visibility after organization hierarchy change", e);
+        } finally {
+            esManager.indexChanged(ELASTIC_INDEX_RESOURCE);
+            esManager.indexChanged(ELASTIC_INDEX_MODEL);
+        }
+    }
+
+    private OrganizationHierarchy organizationHierarchy() {
+        OrganizationHierarchy hierarchy = organizationHierarchy;
+        if (hierarchy == null) {
+            hierarchy = OrganizationHierarchy.of(graphManager.getCoreGraph(OrganizationHierarchy.ORGANIZATIONS_GRAPH));
+            organizationHierarchy = hierarchy;
+        }
+        return hierarchy;
     }
 
+    private static List<String> contributors(IndexModelDTO model) {
+        return model.getContributor() != null ? model.getContributor().stream().map(UUID::toString).sorted().collect(Collectors.toList()) : Collections.emptyList();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> modelDocument(IndexModelDTO model) {
+        Map<String, Object> document = objectMapper.convertValue(model, Map.class);
+        document.put("visibleTo", organizationHierarchy().visibleTo(contributors(model)));
+        document.put("modelStatus", model.getStatus());
+        return document;
+    }
+
+    /**
+     * Searches models visible to the user. Documents are indexed with the ancestors of their contributors, so incomplete
+     * content of child organizations is found with the organizations of the user.
+     */
     public ModelSearchResponse searchModelsWithUser(ModelSearchRequest request,
                                                     YtiUser user) {
+        Object visibility = user.isSuperuser() ? "superuser" : new TreeSet<>(user.getRolesInOrganizations().keySet());
+        long generation = esManager.getRefreshedGeneration(ELASTIC_INDEX_MODEL, ELASTIC_INDEX_RESOURCE);
+        return searchCache.get(generation, () -> searchModelsWithUserUncached(request, user), visibility, searchKey(request));
+    }
+
+    private ModelSearchResponse searchModelsWithUserUncached(ModelSearchRequest request,
+                                                             YtiUser user) {
         if (user.isSuperuser()) {
             if (request.getIncludeIncomplete() == null) {
                 request.setIncludeIncomplete(true);
             }
             return searchModels(request);
         } else {
-            final Map<UUID, Set<Role>> rolesInOrganizations = user.getRolesInOrganizations();
-
-            Set<String> orgIds = rolesInOrganizations.keySet().stream().map(UUID::toString).collect(Collectors.toSet());
-
-            // show child organization's incomplete content for main organization users
-            Set<String> childOrganizationIds = orgIds.stream()
-                    .map(orgId -> organizationManager.getChildOrganizations(orgId))
-                    .flatMap(Collection::stream)
-                    .collect(Collectors.toSet());
-
-            orgIds.addAll(childOrganizationIds);
+            Set<String> orgIds = user.getRolesInOrganizations().keySet().stream().map(UUID::toString).collect(Collectors.toSet());
             request.setIncludeIncompleteFrom(orgIds);
             return searchModels(request);
         }
     }
 
-    public IntegrationAPIResponse searchContainers(IntegrationContainerRequest integrationRequest,
-                                                   String path) {
+    /**
+     * Searches containers and writes the page in the format of IntegrationAPIResponse as the hits are read instead of
+     * building the response in memory. Search is done before returning, so that invalid requests are answered before
+     * the response is started.
+     *
+     * @param integrationRequest Container request
+     * @param path               Path of the next page or null
+     * @return Output writing the response
+     */
+    public StreamingOutput searchContainersOutput(IntegrationContainerRequest integrationRequest,
+                                                  String path) {
+        ModelSearchRequest containerRequest = containerSearchRequest(integrationRequest);
+        SearchHits hits = search(modelQueryFactory.createQuery(containerRequest)).getHits();
+        IntegrationMetaDTO meta = IntegrationAPIResponse.createMeta(containerRequest, hits.getTotalHits(), hits.getHits().length,
+            ElasticUtils.nextCursor(hits, containerRequest.getPageSize()), path);
+        return output -> writeIntegrationResponse(meta, hits, hit -> new IntegrationContainerDTO(modelQueryFactory.readHit(hit)), output);
+    }
+
+    private ModelSearchRequest containerSearchRequest(IntegrationContainerRequest integrationRequest) {
         integrationRequest.setSearchTerm(integrationRequest.getSearchTerm() != null ? integrationRequest.getSearchTerm().trim() : "");
-        try {
-            if (integrationRequest.getIncludeIncomplete() == null || (integrationRequest.getIncludeIncomplete() != null && !integrationRequest.getIncludeIncomplete())) {
-                if (integrationRequest.getIncludeIncompleteFrom() == null) {
-                    integrationRequest.setIncludeIncompleteEmpty();
+        if (integrationRequest.getIncludeIncomplete() == null || !integrationRequest.getIncludeIncomplete()) {
+            if (integrationRequest.getIncludeIncompleteFrom() == null) {
+                integrationRequest.setIncludeIncompleteEmpty();
+            }
+        }
+        return new ModelSearchRequest(integrationRequest);
+    }
+
+    /**
+     * Writes all matching containers as newline delimited JSON. Paging parameters of the request are ignored.
+     *
+     * @param integrationRequest Container request
+     * @param output             Stream for the containers
+     * @throws IOException if search or writing fails
+     */
+    public void exportContainers(IntegrationContainerRequest integrationRequest,
+                                 OutputStream output) throws IOException {
+        ModelSearchRequest containerRequest = containerSearchRequest(integrationRequest);
+        containerRequest.setPageSize(EXPORT_BATCH_SIZE);
+        containerRequest.setPageFrom(null);
+        containerRequest.setCursor(null);
+        exportHits(modelQueryFactory.createQuery(containerRequest), hit -> new IntegrationContainerDTO(modelQueryFactory.readHit(hit)), output);
+    }
+
+    /**
+     * Writes all matching resources as newline delimited JSON. Paging parameters of the request are ignored.
+     *
+     * @param integrationRequest Resource request
+     * @param output             Stream for the resources
+     * @throws IOException if search or writing fails
+     */
+    public void exportResources(IntegrationResourceRequest integrationRequest,
+                                OutputStream output) throws IOException {
+        integrationRequest.setSearchTerm(integrationRequest.getSearchTerm() != null ? integrationRequest.getSearchTerm().trim() : "");
+        ResourceSearchRequest resourceRequest = new ResourceSearchRequest(integrationRequest);
+        resourceRequest.setPageSize(EXPORT_BATCH_SIZE);
+        resourceRequest.setPageFrom(null);
+        resourceRequest.setCursor(null);
+        exportHits(resourceQueryFactory.createQuery(resourceRequest), hit -> new IntegrationResourceDTO(resourceQueryFactory.readHit(hit)), output);
+    }
+
+    /**
+     * Scrolls through all hits in index order and writes one JSON document per line, one batch at a time
+     */
+    private <T> void exportHits(SearchRequest query,
+                                HitReader<T> reader,
+                                OutputStream output) throws IOException {
+        query.source().sorts().clear();
+        query.source().sort(SortBuilders.fieldSort("_doc"));
+        query.scroll(EXPORT_SCROLL_KEEP_ALIVE);
+
+        ObjectWriter writer = streamWriter();
+        SearchResponse response = esManager.execute(() -> esClient.search(query, RequestOptions.DEFAULT));
+        String scrollId = response.getScrollId();
+        try (JsonGenerator generator = streamGenerator(output)) {
+            while (response.getHits().getHits().length > 0) {
+                for (SearchHit hit : response.getHits()) {
+                    writer.writeValue(generator, reader.read(hit));
+                    generator.writeRaw('\n');
                 }
+                generator.flush();
+                SearchScrollRequest scrollRequest = new SearchScrollRequest(scrollId).scroll(EXPORT_SCROLL_KEEP_ALIVE);
+                response = esManager.execute(() -> esClient.scroll(scrollRequest, RequestOptions.DEFAULT));
+                scrollId = response.getScrollId();
+            }
+        } finally {
+            ClearScrollRequest clearScrollRequest = new ClearScrollRequest();
+            clearScrollRequest.addScrollId(scrollId);
+            try {
+                esManager.execute(() -> esClient.clearScroll(clearScrollRequest, RequestOptions.DEFAULT));
+            } catch (IOException ex) {
+                logger.warn("Could not clear scroll", ex);
             }
-            ModelSearchRequest containerRequest = new ModelSearchRequest(integrationRequest);
-            SearchResponse response = esClient.search(modelQueryFactory.createQuery(containerRequest), RequestOptions.DEFAULT);
-            ModelSearchResponse containerResponse = modelQueryFactory.parseResponse(response, containerRequest, null);
-            return new IntegrationAPIResponse(containerResponse, containerRequest, path);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Writes the response in the format of IntegrationAPIResponse, meta first and then the results one hit at a time
+     */
+    private <T> void writeIntegrationResponse(IntegrationMetaDTO meta,
+                                              SearchHits hits,
+                                              HitReader<T> reader,
+                                              OutputStream output) throws IOException {
+        ObjectWriter writer = streamWriter();
+        try (JsonGenerator generator = streamGenerator(output)) {
+            generator.writeStartObject();
+            generator.writeFieldName("meta");
+            writer.writeValue(generator, meta);
+            generator.writeArrayFieldStart("results");
+            for (SearchHit hit : hits) {
+                writer.writeValue(generator, reader.read(hit));
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * Values are written to a shared generator, which is flushed by the caller
+     */
+    private ObjectWriter streamWriter() {
+        return objectMapper.writer()
+            .without(SerializationFeature.INDENT_OUTPUT)
+            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /**
+     * Generator that leaves the stream open and writes no separator between values
+     */
+    private JsonGenerator streamGenerator(OutputStream output) throws IOException {
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(output);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.setRootValueSeparator(null);
+        return generator;
+    }
+
+    private interface HitReader<T> {
+
+        T read(SearchHit hit) throws IOException;
+    }
+
     public Set<String> parseStringList(String status) {
         Set<String> statuses = new HashSet<>();
         if (status != null && !status.isEmpty()) {
@@ -229,58 +567,141 @@ public class SearchIndexManager {
         return statuses.isEmpty() ? null : statuses;
     }
 
+    /**
+     * Searches models. With resource search the resource and model queries are sent in one multi search request.
+     * Model query is repeated with the models of the resource hits only if some of them were not in the model results.
+     */
     public ModelSearchResponse searchModels(ModelSearchRequest request) {
         request.setQuery(request.getQuery() != null ? request.getQuery().trim() : "");
 
-        Map<String, List<DeepSearchHitListDTO<?>>> deepSearchHits = null;
+        try {
+            if (!request.isSearchResources() || request.getQuery().isEmpty()) {
+                SearchRequest finalQuery = modelQueryFactory.createQuery(request);
+                SearchResponse response = esManager.execute(() -> esClient.search(finalQuery, RequestOptions.DEFAULT));
+                return modelQueryFactory.parseResponse(response, request, null);
+            }
 
-        if (request.isSearchResources() && !request.getQuery().isEmpty()) {
-            try {
-                Set<String> modelIds = graphManager.getPriviledgedModels(request.getIncludeIncompleteFrom());
-                SearchRequest query = deepResourceQueryFactory.createQuery(request.getQuery(), request.getSortLang(), modelIds);
-                SearchResponse response = esClient.search(query, RequestOptions.DEFAULT);
-                deepSearchHits = deepResourceQueryFactory.parseResponse(response, request);
-            } catch (IOException e) {
-                throw new RuntimeException(e);
+            MultiSearchRequest multiSearch = new MultiSearchRequest()
+                .add(deepResourceQueryFactory.createQuery(request.getQuery(), request.getSortLang(), request.getIncludeIncompleteFrom()))
+                .add(modelQueryFactory.createQuery(request));
+            MultiSearchResponse.Item[] responses = esManager.execute(() -> esClient.msearch(multiSearch, RequestOptions.DEFAULT)).getResponses();
+
+            Map<String, List<DeepSearchHitListDTO<?>>> deepSearchHits = deepResourceQueryFactory.parseResponse(searchResponse(responses[0]), request);
+            ModelSearchResponse modelResponse = modelQueryFactory.parseResponse(searchResponse(responses[1]), request, deepSearchHits);
+            if (deepSearchHits.isEmpty()) {
+                return modelResponse;
             }
-        }
 
-        try {
-            SearchRequest finalQuery;
-            if (deepSearchHits != null && !deepSearchHits.isEmpty()) {
-                Set<String> additionalModelIds = deepSearchHits.keySet();
-                logger.debug("Deep model search resulted in " + additionalModelIds.size() + " model matches");
-                finalQuery = modelQueryFactory.createQuery(request, additionalModelIds);
-            } else {
-                finalQuery = modelQueryFactory.createQuery(request);
+            Set<String> additionalModelIds = deepSearchHits.keySet();
+            Set<String> foundModelIds = modelResponse.getModels().stream().map(IndexModelDTO::getId).collect(Collectors.toSet());
+            if (foundModelIds.containsAll(additionalModelIds)) {
+                return modelResponse;
             }
-            SearchResponse response = esClient.search(finalQuery, RequestOptions.DEFAULT);
+
+            logger.debug("Deep model search resulted in " + additionalModelIds.size() + " model matches");
+            SearchRequest finalQuery = modelQueryFactory.createQuery(request, additionalModelIds);
+            SearchResponse response = esManager.execute(() -> esClient.search(finalQuery, RequestOptions.DEFAULT));
             return modelQueryFactory.parseResponse(response, request, deepSearchHits);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
+    }
 
+    private static SearchResponse searchResponse(MultiSearchResponse.Item item) {
+        if (item.isFailure()) {
+            if (item.getFailure() instanceof RuntimeException) {
+                throw (RuntimeException) item.getFailure();
+            }
+            throw new RuntimeException(item.getFailure());
+        }
+        return item.getResponse();
     }
 
-    public IntegrationAPIResponse searchResources(IntegrationResourceRequest integrationRequest,
-                                                  String path) {
+    /**
+     * Searches resources and writes the page in the format of IntegrationAPIResponse as the hits are read instead of
+     * building the response in memory. Search is done before returning, so that invalid requests are answered before
+     * the response is started.
+     *
+     * @param integrationRequest Resource request
+     * @param path               Path of the next page or null
+     * @return Output writing the response
+     */
+    public StreamingOutput searchResourcesOutput(IntegrationResourceRequest integrationRequest,
+                                                 String path) {
         integrationRequest.setSearchTerm(integrationRequest.getSearchTerm() != null ? integrationRequest.getSearchTerm().trim() : "");
+        ResourceSearchRequest resourceRequest = new ResourceSearchRequest(integrationRequest);
+        SearchHits hits = search(resourceQueryFactory.createQuery(resourceRequest)).getHits();
+        IntegrationMetaDTO meta = IntegrationAPIResponse.createMeta(resourceRequest, hits.getTotalHits(), hits.getHits().length,
+            ElasticUtils.nextCursor(hits, resourceRequest.getPageSize()), path);
+        return output -> writeIntegrationResponse(meta, hits, hit -> new IntegrationResourceDTO(resourceQueryFactory.readHit(hit)), output);
+    }
+
+    private SearchResponse search(SearchRequest request) {
         try {
-            ResourceSearchRequest resourceRequest = new ResourceSearchRequest(integrationRequest);
-            SearchResponse response = esClient.search(resourceQueryFactory.createQuery(resourceRequest), RequestOptions.DEFAULT);
-            ResourceSearchResponse resourceResponse = resourceQueryFactory.parseResponse(response, resourceRequest, false);
-            return new IntegrationAPIResponse(resourceResponse, resourceRequest, path);
+            return esManager.execute(() -> esClient.search(request, RequestOptions.DEFAULT));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Suggests resources whose label has a word starting with the query. Elasticsearch is not waited for longer than
+     * the latency budget of suggestions.
+     *
+     * @throws DependencyUnavailableException if suggestions are not ready in time
+     */
+    public List<SuggestionDTO> suggest(String query,
+                                       Set<String> types,
+                                       Set<String> statuses,
+                                       Set<String> models,
+                                       Integer size) {
+        String prefix = normalizeQuery(query);
+        if (prefix.isEmpty()) {
+            return Collections.emptyList();
+        }
+        long generation = esManager.getRefreshedGeneration(ELASTIC_INDEX_RESOURCE);
+        return searchCache.get(generation, () -> suggestUncached(prefix, types, statuses, models, size),
+            "suggest", prefix, sorted(types), sorted(statuses), sorted(models), size);
+    }
+
+    private List<SuggestionDTO> suggestUncached(String query,
+                                                Set<String> types,
+                                                Set<String> statuses,
+                                                Set<String> models,
+                                                Integer size) {
+        SearchRequest suggestQuery = suggestQueryFactory.createQuery(query, types, statuses, models, size);
+        long timeoutMillis = suggestQueryFactory.getTimeoutMillis();
+        try {
+            SearchResponse response = esManager.execute(() -> {
+                PlainActionFuture<SearchResponse> future = PlainActionFuture.newFuture();
+                esClient.searchAsync(suggestQuery, RequestOptions.DEFAULT, future);
+                try {
+                    return future.actionGet(timeoutMillis);
+                } catch (ElasticsearchTimeoutException ex) {
+                    // Slow suggestions are not counted as Elasticsearch failures
+                    return null;
+                }
+            });
+            if (response == null) {
+                throw new DependencyUnavailableException(RemoteDependencyRegistry.ELASTICSEARCH, "No suggestions in " + timeoutMillis + " ms");
+            }
+            return suggestQueryFactory.parseResponse(response);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
     public ResourceSearchResponse searchResources(ResourceSearchRequest request) {
+        long generation = esManager.getRefreshedGeneration(ELASTIC_INDEX_RESOURCE);
+        return searchCache.get(generation, () -> searchResourcesUncached(request), searchKey(request));
+    }
+
+    private ResourceSearchResponse searchResourcesUncached(ResourceSearchRequest request) {
         request.setQuery(request.getQuery() != null ? request.getQuery().trim() : "");
         try {
             SearchRequest finalQuery;
-            finalQuery = resourceQueryFactory.createQuery(request);
-            SearchResponse response = esClient.search(finalQuery, RequestOptions.DEFAULT);
+            finalQuery = resourceQueryFactory.createQuery(request, true);
+            SearchResponse response = esManager.execute(() -> esClient.search(finalQuery, RequestOptions.DEFAULT));
             return resourceQueryFactory.parseResponse(response, request, true);
         } catch (IOException e) {
             throw new RuntimeException(e);
@@ -299,21 +720,128 @@ public class SearchIndexManager {
         return objectMapper.writeValueAsString(obj);
     }
 
+    /**
+     * Normalized model request for the search cache. Sets are sorted so that the order in the request does not matter.
+     */
+    static List<Object> searchKey(ModelSearchRequest request) {
+        return Arrays.asList(normalizeQuery(request.getQuery()), request.getLanguage(), request.isSearchResources(),
+            sorted(request.getUri()), sorted(request.getStatus()), request.getType(), request.getAfter(), request.getBefore(),
+            request.getSortLang(), request.getPageSize(), request.getPageFrom(), request.getCursor(), sorted(request.getFilter()),
+            request.getIncludeIncomplete(), sorted(request.getIncludeIncompleteFrom()));
+    }
+
+    /**
+     * Normalized resource request for the search cache
+     */
+    static List<Object> searchKey(ResourceSearchRequest request) {
+        return Arrays.asList(normalizeQuery(request.getQuery()), sorted(request.getUri()), request.getType(),
+            request.getIsDefinedBy(), sorted(request.getIsDefinedBySet()), sorted(request.getStatus()), request.getAfter(),
+            request.getBefore(), request.getSortLang(), request.getSortField(), request.getSortOrder(), request.getPageSize(),
+            request.getPageFrom(), request.getCursor(), sorted(request.getFilter()));
+    }
+
+    private static String normalizeQuery(String query) {
+        return query != null ? query.trim() : "";
+    }
+
+    private static Set<String> sorted(Set<String> values) {
+        return values != null ? new TreeSet<>(values) : null;
+    }
+
+    /**
+     * Indexes classes or predicates of an index query result. Documents are projected directly from the graph, the
+     * result is framed as JSON-LD only if the projection fails.
+     */
+    private void indexResources(Model model,
+                                Function<Model, List<? extends IndexResourceDTO>> projection,
+                                IndexFrame frame) throws IOException {
+        List<? extends IndexResourceDTO> resources;
+        try {
+            resources = projection.apply(model);
+        } catch (RuntimeException e) {
+            logger.warn("Could not project index documents, framing the results instead", e);
+            bulkInsert(ELASTIC_INDEX_RESOURCE, modelManager.toFramedJsonNode(model, frame));
+            return;
+        }
+        Set<String> modelIds = resources.stream().map(IndexResourceDTO::getIsDefinedBy).filter(Objects::nonNull).collect(Collectors.toSet());
+        Map<String, ModelVisibility> models = getModelVisibility(modelIds);
+        Map<String, Map<String, Object>> documents = new LinkedHashMap<>();
+        for (IndexResourceDTO resource : resources) {
+            documents.put(resource.getId(), resourceDocument(resource, resource.getIsDefinedBy() != null ? models.get(resource.getIsDefinedBy()) : null));
+        }
+        bulkInsert(ELASTIC_INDEX_RESOURCE, documents);
+    }
+
+    private void indexModels(Model model) throws IOException {
+        List<IndexModelDTO> models;
+        try {
+            models = IndexProjection.models(model);
+        } catch (RuntimeException e) {
+            logger.warn("Could not project index documents, framing the results instead", e);
+            bulkInsert(ELASTIC_INDEX_MODEL, modelManager.toFramedJsonNode(model, IndexFrame.MODEL));
+            return;
+        }
+        Map<String, Map<String, Object>> documents = new LinkedHashMap<>();
+        for (IndexModelDTO indexModel : models) {
+            documents.put(indexModel.getId(), modelDocument(indexModel));
+        }
+        bulkInsert(ELASTIC_INDEX_MODEL, documents);
+    }
+
     private void bulkInsert(String indexName,
-                            JsonNode resourceList) throws IOException {
+                            Map<String, Map<String, Object>> documents) throws IOException {
+        if (documents.isEmpty()) {
+            return;
+        }
         BulkRequest bulkRequest = new BulkRequest();
-        resourceList = resourceList.get("@graph");
+        documents.forEach((id, document) -> bulkRequest.add(new IndexRequest(indexName, "doc", LDHelper.encode(id)).source(document)));
+        BulkResponse bresp;
+        try {
+            bresp = esManager.execute(() -> esClient.bulk(bulkRequest, RequestOptions.DEFAULT));
+        } finally {
+            esManager.indexChanged(indexName);
+        }
+        logger.debug("Bulk insert status: " + bresp.status().getStatus());
+    }
+
+    /**
+     * Indexes the nodes of framed JSON-LD, the fallback of the projections
+     */
+    @SuppressWarnings("unchecked")
+    private void bulkInsert(String indexName,
+                            JsonNode resourceList) throws IOException {
+        resourceList = resourceList.has("@graph") ? resourceList.get("@graph") : objectMapper.createArrayNode().add(resourceList);
+        Map<String, ModelVisibility> models = new HashMap<>();
+        if (ELASTIC_INDEX_RESOURCE.equals(indexName)) {
+            Set<String> modelIds = new HashSet<>();
+            resourceList.forEach(resource -> {
+                String modelId = modelIdOf(resource.get("isDefinedBy"));
+                if (modelId != null) {
+                    modelIds.add(modelId);
+                }
+            });
+            models = getModelVisibility(modelIds);
+        }
+        Map<String, ModelVisibility> modelVisibility = models;
+        Map<String, Map<String, Object>> documents = new LinkedHashMap<>();
         resourceList.forEach(resource -> {
             String resourceId = resource.get("id").asText();
             if (resourceId.startsWith("iow:")) {
                 resourceId = LDHelper.curieToURI(resourceId);
             }
-            IndexRequest indexRequest = new IndexRequest(indexName, "doc", LDHelper.encode(resourceId)).
-                source(objectMapper.convertValue(resource, Map.class));
-            bulkRequest.add(indexRequest);
+            Map<String, Object> source = objectMapper.convertValue(resource, Map.class);
+            if (ELASTIC_INDEX_RESOURCE.equals(indexName)) {
+                source.put(SuggestQueryFactory.SUGGEST_FIELD, SuggestQueryFactory.suggestInputs(labelValues(resource.get("label"))));
+                addModelVisibility(source, modelVisibility.get(modelIdOf(resource.get("isDefinedBy"))));
+            } else if (ELASTIC_INDEX_MODEL.equals(indexName)) {
+                List<String> contributors = textValues(resource.get("contributor"));
+                source.put("contributor", contributors);
+                source.put("visibleTo", organizationHierarchy().visibleTo(contributors));
+                source.put("modelStatus", resource.path("status").asText(null));
+            }
+            documents.put(resourceId, source);
         });
-        BulkResponse bresp = esClient.bulk(bulkRequest, RequestOptions.DEFAULT);
-        logger.debug("Bulk insert status: " + bresp.status().getStatus());
+        bulkInsert(indexName, documents);
     }
 
     private void initModelIndex() throws IOException {
@@ -357,56 +885,7 @@ public class SearchIndexManager {
             logger.warn("Could not find any models to index!");
             return;
         }
-        JsonNode nodes = modelManager.toFramedJsonNode(model, Frames.esModelFrame);
-        if (nodes == null) {
-            logger.warn("Could not parse JSON");
-            return;
-        }
-        bulkInsert(ELASTIC_INDEX_MODEL, nodes);
-    }
-
-    // TODO: Not in use. Should we use externalClass API instead?
-    private void initExternalClasses() throws IOException {
-        String qry = LDHelper.prefix + "CONSTRUCT { "
-            + "?class rdfs:isDefinedBy ?externalModel . "
-            + "?class sh:name ?label . "
-            + "?class sh:description ?comment . "
-            + "?class a iow:ExternalClass . "
-            + "} WHERE { "
-            + "GRAPH ?externalModel { "
-            + "?class a ?type . "
-            + "FILTER(!isBlank(?class)) "
-            + "VALUES ?type { rdfs:Class owl:Class sh:NodeShape sh:Shape } "
-            /* GET LABEL */
-            + "OPTIONAL{" +
-            "{ ?class ?labelPred ?labelStr . "
-            + "VALUES ?labelPred { rdfs:label sh:name dc:title dcterms:title }"
-            + "FILTER(LANG(?labelStr) = '') BIND(STRLANG(STR(?labelStr),'en') as ?label) }"
-            + "UNION"
-            + "{ ?class ?labelPred ?label . "
-            + "VALUES ?labelPred { rdfs:label sh:name dc:title dcterms:title }"
-            + " FILTER(LANG(?label)!='') }"
-            /* GET COMMENT */
-            + "{ ?class ?commentPred ?commentStr . "
-            + "VALUES ?commentPred { rdfs:comment skos:definition dcterms:description dc:description prov:definition sh:description }"
-            + "FILTER(LANG(?commentStr) = '') BIND(STRLANG(STR(?commentStr),'en') as ?comment) }"
-            + "UNION"
-            + "{ ?class ?commentPred ?comment . "
-            + "VALUES ?commentPred { rdfs:comment skos:definition dcterms:description dc:description prov:definition sh:description }"
-            + " FILTER(LANG(?comment)!='') }"
-            + "}}"
-            + "}";
-        Model model = jenaClient.constructFromExt(qry);
-        if (model.size() < 1) {
-            logger.warn("Could not find any classes to index!");
-            return;
-        }
-        JsonNode nodes = modelManager.toFramedJsonNode(model, Frames.esClassFrame);
-        if (nodes == null) {
-            logger.warn("Could not parse JSON");
-            return;
-        }
-        bulkInsert(ELASTIC_INDEX_RESOURCE, nodes);
+        indexModels(model);
     }
 
     private void initClassIndex() throws IOException {
@@ -436,12 +915,7 @@ public class SearchIndexManager {
             logger.warn("Could not find any classes to index!");
             return;
         }
-        JsonNode nodes = modelManager.toFramedJsonNode(model, Frames.esClassFrame);
-        if (nodes == null) {
-            logger.warn("Could not parse JSON");
-            return;
-        }
-        bulkInsert(ELASTIC_INDEX_RESOURCE, nodes);
+        indexResources(model, IndexProjection::classes, IndexFrame.CLASS);
     }
 
     public void initClassIndexFromModel(String modelId) {
@@ -477,14 +951,8 @@ public class SearchIndexManager {
             logger.warn("Could not find any classes to index!");
             return;
         }
-        JsonNode nodes;
         try {
-            nodes = modelManager.toFramedJsonNode(model, Frames.esClassFrame);
-            if (nodes == null) {
-                logger.warn("Could not parse JSON");
-                return;
-            }
-            bulkInsert(ELASTIC_INDEX_RESOURCE, nodes);
+            indexResources(model, IndexProjection::classes, IndexFrame.CLASS);
         } catch (IOException e) {
             logger.warn("Could not parse JSON");
             e.printStackTrace();
@@ -520,12 +988,7 @@ public class SearchIndexManager {
             logger.warn("Could not find any predicates to index!");
             return;
         }
-        JsonNode nodes = modelManager.toFramedJsonNode(model, Frames.esPredicateFrame);
-        if (nodes == null) {
-            logger.warn("Could not parse JSON");
-            return;
-        }
-        bulkInsert(ELASTIC_INDEX_RESOURCE, nodes);
+        indexResources(model, IndexProjection::predicates, IndexFrame.PREDICATE);
     }
 
     public void initPredicateIndexFromModel(String modelId) {
@@ -563,14 +1026,8 @@ public class SearchIndexManager {
             logger.warn("Could not find any predicates to index!");
             return;
         }
-        JsonNode nodes;
         try {
-            nodes = modelManager.toFramedJsonNode(model, Frames.esPredicateFrame);
-            if (nodes == null) {
-                logger.warn("Could not parse JSON");
-                return;
-            }
-            bulkInsert(ELASTIC_INDEX_RESOURCE, nodes);
+            indexResources(model, IndexProjection::predicates, IndexFrame.PREDICATE);
         } catch (IOException e) {
             logger.warn("Could not parse JSON");
             e.printStackTrace();
@@ -582,4 +1039,14 @@ public class SearchIndexManager {
         initPredicateIndex();
         initModelIndex();
     }
+
+    private static final class ModelVisibility {
+
+        private final String status;
+        private final List<String> contributors = new ArrayList<>();
+
+        private ModelVisibility(String status) {
+            this.status = status;
+        }
+    }
 }
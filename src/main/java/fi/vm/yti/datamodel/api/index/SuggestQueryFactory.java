@@ -0,0 +1,150 @@
+package fi.vm.yti.datamodel.api.index;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import javax.inject.Singleton;
+
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.xcontent.ToXContent;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.suggest.SuggestBuilder;
+import org.elasticsearch.search.suggest.SuggestBuilders;
+import org.elasticsearch.search.suggest.completion.CompletionSuggestion;
+import org.elasticsearch.search.suggest.completion.CompletionSuggestionBuilder;
+import org.elasticsearch.search.suggest.completion.context.CategoryQueryContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import fi.vm.yti.datamodel.api.config.ApplicationProperties;
+import fi.vm.yti.datamodel.api.index.model.SuggestionDTO;
+
+/**
+ * Builds label suggestion queries for the completion field of the resource index. Completion matches from the start
+ * of an input, so labels are indexed from the start of each word.
+ */
+@Singleton
+@Service
+public class SuggestQueryFactory {
+
+    private static final Logger logger = LoggerFactory.getLogger(SuggestQueryFactory.class);
+    public static final String SUGGEST_FIELD = "suggest";
+    private static final String SUGGESTION_NAME = "label";
+    private static final String[] sourceIncludes = { "id", "type", "label" };
+    private static final int DEFAULT_SIZE = 10;
+    private static final int MAX_SIZE = 50;
+    private static final int MAX_WORDS = 10;
+    private static final Pattern wordStart = Pattern.compile("(?<![\\p{L}\\p{N}])[\\p{L}\\p{N}]");
+    private final ObjectReader suggestionReader;
+    private final long timeoutMillis;
+
+    @Autowired
+    public SuggestQueryFactory(ObjectMapper objectMapper,
+                               ApplicationProperties properties) {
+        this.suggestionReader = objectMapper.readerFor(SuggestionDTO.class);
+        this.timeoutMillis = properties.getSuggestTimeoutMillis();
+    }
+
+    /**
+     * @return Latency budget of suggestions
+     */
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /**
+     * Inputs of the completion field. Every label is added from the start of each of its first words.
+     *
+     * @param labels Label values of all languages
+     * @return Distinct inputs
+     */
+    public static List<String> suggestInputs(Iterable<String> labels) {
+        Set<String> inputs = new LinkedHashSet<>();
+        for (String label : labels) {
+            Matcher words = wordStart.matcher(label);
+            for (int i = 0; i < MAX_WORDS && words.find(); i++) {
+                inputs.add(label.substring(words.start()));
+            }
+        }
+        return new ArrayList<>(inputs);
+    }
+
+    /**
+     * @param query    Prefix of any word of the label
+     * @param types    Resource types or null for all
+     * @param statuses Statuses or null for all
+     * @param models   Model IRIs or null for all
+     * @param size     Number of suggestions, 10 by default and at most 50
+     */
+    public SearchRequest createQuery(String query,
+                                     Set<String> types,
+                                     Set<String> statuses,
+                                     Set<String> models,
+                                     Integer size) {
+        if (size != null && size < 1) {
+            throw new IllegalArgumentException("Invalid size: " + size);
+        }
+        CompletionSuggestionBuilder completion = SuggestBuilders.completionSuggestion(SUGGEST_FIELD)
+            .prefix(query)
+            .size(size != null ? Math.min(size, MAX_SIZE) : DEFAULT_SIZE);
+
+        Map<String, List<? extends ToXContent>> contexts = new HashMap<>();
+        addContexts(contexts, "type", types);
+        addContexts(contexts, "status", statuses);
+        addContexts(contexts, "model", models);
+        if (!contexts.isEmpty()) {
+            completion.contexts(contexts);
+        }
+
+        SearchSourceBuilder sourceBuilder = new SearchSourceBuilder()
+            .size(0)
+            .fetchSource(sourceIncludes, null)
+            .timeout(TimeValue.timeValueMillis(timeoutMillis))
+            .suggest(new SuggestBuilder().addSuggestion(SUGGESTION_NAME, completion));
+        return new SearchRequest("dm_resources").source(sourceBuilder);
+    }
+
+    private static void addContexts(Map<String, List<? extends ToXContent>> contexts,
+                                    String name,
+                                    Set<String> values) {
+        if (values != null && !values.isEmpty()) {
+            contexts.put(name, values.stream()
+                .map(value -> CategoryQueryContext.builder().setCategory(value).build())
+                .collect(Collectors.toList()));
+        }
+    }
+
+    public List<SuggestionDTO> parseResponse(SearchResponse response) {
+        List<SuggestionDTO> suggestions = new ArrayList<>();
+        if (response.getSuggest() == null) {
+            return suggestions;
+        }
+        try {
+            CompletionSuggestion suggestion = response.getSuggest().getSuggestion(SUGGESTION_NAME);
+            if (suggestion != null) {
+                for (CompletionSuggestion.Entry.Option option : suggestion.getOptions()) {
+                    if (option.getHit() != null) {
+                        suggestions.add(ElasticUtils.readSource(suggestionReader, option.getHit()));
+                    }
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Cannot parse suggest response", e);
+        }
+        return suggestions;
+    }
+}
@@ -0,0 +1,90 @@
+package fi.vm.yti.datamodel.api.index.model;
+
+import java.util.List;
+import java.util.Map;
+
+public class IndexExternalResourceDTO {
+
+    private String id;
+    private String isDefinedBy;
+    private String type;
+    private Map<String, List<String>> label;
+    private Map<String, List<String>> comment;
+    private String domain;
+    private String range;
+
+    public IndexExternalResourceDTO() {
+    }
+
+    public IndexExternalResourceDTO(final String id,
+                                    final String isDefinedBy,
+                                    final String type,
+                                    final Map<String, List<String>> label,
+                                    final Map<String, List<String>> comment,
+                                    final String domain,
+                                    final String range) {
+        this.id = id;
+        this.isDefinedBy = isDefinedBy;
+        this.type = type;
+        this.label = label;
+        this.comment = comment;
+        this.domain = domain;
+        this.range = range;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(final String id) {
+        this.id = id;
+    }
+
+    public String getIsDefinedBy() {
+        return isDefinedBy;
+    }
+
+    public void setIsDefinedBy(final String isDefinedBy) {
+        this.isDefinedBy = isDefinedBy;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(final String type) {
+        this.type = type;
+    }
+
+    public Map<String, List<String>> getLabel() {
+        return label;
+    }
+
+    public void setLabel(final Map<String, List<String>> label) {
+        this.label = label;
+    }
+
+    public Map<String, List<String>> getComment() {
+        return comment;
+    }
+
+    public void setComment(final Map<String, List<String>> comment) {
+        this.comment = comment;
+    }
+
+    public String getDomain() {
+        return domain;
+    }
+
+    public void setDomain(final String domain) {
+        this.domain = domain;
+    }
+
+    public String getRange() {
+        return range;
+    }
+
+    public void setRange(final String range) {
+        this.range = range;
+    }
+}
@@ -1,7 +1,6 @@
 package fi.vm.yti.datamodel.api.index.model;
 
 import java.util.Map;
-import java.util.regex.Pattern;
 
 import fi.vm.yti.datamodel.api.model.AbstractClass;
 
@@ -119,18 +118,6 @@ public class IndexResourceDTO {
         this.range = range;
     }
 
-    public void highlightLabels(String highlightText) {
-        if (highlightText != null && highlightText.length() > 0) {
-            String[] highLights = highlightText.split("\\s+");
-            for(String highLight : highLights) {
-                this.label.forEach((lang, label) -> {
-                    String matchString = Pattern.quote(highLight);
-                    this.label.put(lang, label.replaceAll("(?i)(?<text>\\b" + matchString + "|"+ matchString+"\\b)", "<b>${text}</b>"));
-                });
-            }
-        }
-    }
-
     public Map<String, String> getLabel() {
         return label;
     }
@@ -2,16 +2,21 @@ package fi.vm.yti.datamodel.api.index.model;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 public class IntegrationAPIResponse {
 
     private IntegrationMetaDTO meta;
     private List results;
 
-    private String buildNextUri(String path, String query, Integer pageSize, Integer from, String lang, String status) {
+    private static String buildNextUri(String path, String query, Integer pageSize, Integer from, String cursor, String lang, String status) {
         String returnPath = path;
         returnPath+="?pageSize="+pageSize;
-        returnPath+="&from="+(from+pageSize);
+        if(cursor!=null) {
+            returnPath+="&cursor="+cursor;
+        } else {
+            returnPath+="&from="+(from+pageSize);
+        }
         if(status!=null && !status.isEmpty()) {
             returnPath+="&status="+status;
         }
@@ -26,26 +31,50 @@ public class IntegrationAPIResponse {
 
     public IntegrationAPIResponse(final ModelSearchResponse modelResponse, final ModelSearchRequest modelRequest, String path) {
 
-        this.meta = new IntegrationMetaDTO(modelResponse.getPageSize(),modelResponse.getPageFrom(), Integer.valueOf(Math.toIntExact(modelResponse.getTotalHitCount())));
         List<IndexModelDTO> models = modelResponse.getModels();
         results = new ArrayList<>();
         models.forEach(m-> results.add(new IntegrationContainerDTO(m)));
-        this.meta.setResultCount(results.size());
-        if(path!=null && !path.isEmpty() && this.meta.getFrom()!=null && this.meta.getPageSize()!=null &&  (this.meta.getFrom() + this.meta.getPageSize() < this.meta.getTotalResults())) {
-            this.meta.setNextPage(buildNextUri(path,modelRequest.getQuery(),modelResponse.getPageSize(), modelResponse.getPageFrom(), modelRequest.getSortLang(), String.join(",",modelRequest.getStatus())));
-        }
+        this.meta = createMeta(modelRequest, modelResponse.getTotalHitCount(), results.size(), modelResponse.getNextCursor(), path);
     }
 
     public IntegrationAPIResponse(final ResourceSearchResponse resourceResponse, final ResourceSearchRequest resourceRequest, String path) {
 
-        this.meta = new IntegrationMetaDTO(resourceResponse.getPageSize(),resourceResponse.getPageFrom(), Integer.valueOf(Math.toIntExact(resourceResponse.getTotalHitCount())));
         List<IndexResourceDTO> models = resourceResponse.getResources();
         results = new ArrayList<>();
         models.forEach(m-> results.add(new IntegrationResourceDTO(m)));
-        this.meta.setResultCount(results.size());
-        if(path!=null && !path.isEmpty() && this.meta.getFrom()!=null && this.meta.getPageSize()!=null &&  (this.meta.getFrom() + this.meta.getPageSize() < this.meta.getTotalResults())) {
-            this.meta.setNextPage(buildNextUri(path,resourceRequest.getQuery(),resourceResponse.getPageSize(), resourceResponse.getPageFrom(), resourceRequest.getSortLang(), String.join(",",resourceRequest.getStatus())));
+        this.meta = createMeta(resourceRequest, resourceResponse.getTotalHitCount(), results.size(), resourceResponse.getNextCursor(), path);
+    }
+
+    /**
+     * Meta of a container page, also used when the results are streamed
+     */
+    public static IntegrationMetaDTO createMeta(final ModelSearchRequest modelRequest, long totalHitCount, int resultCount, String nextCursor, String path) {
+        return createMeta(modelRequest.getPageSize(), modelRequest.getPageFrom(), modelRequest.getCursor(), totalHitCount, resultCount, nextCursor, path, modelRequest.getQuery(), modelRequest.getSortLang(), modelRequest.getStatus());
+    }
+
+    /**
+     * Meta of a resource page, also used when the results are streamed
+     */
+    public static IntegrationMetaDTO createMeta(final ResourceSearchRequest resourceRequest, long totalHitCount, int resultCount, String nextCursor, String path) {
+        return createMeta(resourceRequest.getPageSize(), resourceRequest.getPageFrom(), resourceRequest.getCursor(), totalHitCount, resultCount, nextCursor, path, resourceRequest.getQuery(), resourceRequest.getSortLang(), resourceRequest.getStatus());
+    }
+
+    /**
+     * Next page of a cursor request continues from the cursor of this page, otherwise from the offset
+     */
+    private static IntegrationMetaDTO createMeta(Integer pageSize, Integer pageFrom, String cursor, long totalHitCount, int resultCount, String nextCursor, String path, String query, String lang, Set<String> status) {
+        IntegrationMetaDTO meta = new IntegrationMetaDTO(pageSize, pageFrom, Integer.valueOf(Math.toIntExact(totalHitCount)));
+        meta.setResultCount(resultCount);
+        meta.setNextCursor(nextCursor);
+        String statuses = status != null ? String.join(",", status) : null;
+        if(path!=null && !path.isEmpty() && cursor!=null) {
+            if(nextCursor!=null) {
+                meta.setNextPage(buildNextUri(path, query, pageSize, pageFrom, nextCursor, lang, statuses));
+            }
+        } else if(path!=null && !path.isEmpty() && meta.getFrom()!=null && meta.getPageSize()!=null &&  (meta.getFrom() + meta.getPageSize() < meta.getTotalResults())) {
+            meta.setNextPage(buildNextUri(path, query, pageSize, pageFrom, null, lang, statuses));
         }
+        return meta;
     }
 
     public IntegrationAPIResponse(final IntegrationMetaDTO meta,
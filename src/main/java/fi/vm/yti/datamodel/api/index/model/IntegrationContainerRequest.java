@@ -16,6 +16,7 @@ public class IntegrationContainerRequest {
     private Set<String> filter;
     private Integer pageSize;
     private Integer pageFrom;
+    private String cursor;
     private Boolean includeIncomplete;
     private Set<String> includeIncompleteFrom;
 
@@ -128,6 +129,17 @@ public class IntegrationContainerRequest {
         this.pageFrom = pageFrom;
     }
 
+    /**
+     * @return Cursor of the previous page or null for offset paging
+     */
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(final String cursor) {
+        this.cursor = cursor;
+    }
+
     public Set<String> getIncludeIncompleteFrom() {
         return includeIncompleteFrom;
     }
@@ -160,6 +172,7 @@ public class IntegrationContainerRequest {
             ", filter=" + filter +
             ", pageSize=" + pageSize +
             ", pageFrom=" + pageFrom +
+            ", cursor='" + cursor + '\'' +
             ", includeIncomplete=" + includeIncomplete +
             ", includeIncompleteFrom=" + includeIncompleteFrom +
             '}';
@@ -7,6 +7,7 @@ public class IntegrationMetaDTO {
     private Integer resultCount;
     private Integer totalResults;
     private String nextPage;
+    private String nextCursor;
 
     public IntegrationMetaDTO(final Integer pageSize,
                               final Integer from,
@@ -68,6 +69,17 @@ public class IntegrationMetaDTO {
         this.nextPage = nextPage;
     }
 
+    /**
+     * @return Cursor of the next page or null if this is the last page
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(final String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
     @Override
     public String toString() {
         return "IntegrationMetaDTO{" +
@@ -76,6 +88,7 @@ public class IntegrationMetaDTO {
             ", resultCount=" + resultCount +
             ", totalResults=" + totalResults +
             ", nextPage='" + nextPage + '\'' +
+            ", nextCursor='" + nextCursor + '\'' +
             '}';
     }
 }
@@ -16,6 +16,7 @@ public class IntegrationResourceRequest {
     private Set<String> filter;
     private Integer pageSize;
     private Integer pageFrom;
+    private String cursor;
 
     public IntegrationResourceRequest() {
     }
@@ -132,6 +133,17 @@ public class IntegrationResourceRequest {
         this.pageFrom = pageFrom;
     }
 
+    /**
+     * @return Cursor of the previous page or null for offset paging
+     */
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(final String cursor) {
+        this.cursor = cursor;
+    }
+
     @Override
     public String toString() {
         return "IntegrationResourceRequest{" +
@@ -145,6 +157,7 @@ public class IntegrationResourceRequest {
             ", filter=" + filter +
             ", pageSize=" + pageSize +
             ", pageFrom=" + pageFrom +
+            ", cursor='" + cursor + '\'' +
             '}';
     }
 }
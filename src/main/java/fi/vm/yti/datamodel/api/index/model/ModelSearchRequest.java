@@ -27,6 +27,8 @@ public class ModelSearchRequest {
 
     private Integer pageFrom;
 
+    private String cursor;
+
     private Set<String> filter;
 
     private Boolean includeIncomplete;
@@ -49,6 +51,7 @@ public class ModelSearchRequest {
         this.pageSize = request.getPageSize();
         this.includeIncomplete = request.getIncludeIncomplete();
         this.includeIncompleteFrom = request.getIncludeIncompleteFrom();
+        this.cursor = request.getCursor();
     }
 
     public ModelSearchRequest(final String query,
@@ -193,6 +196,17 @@ public class ModelSearchRequest {
         this.type = type;
     }
 
+    /**
+     * @return Cursor of the previous page or null for offset paging
+     */
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(final String cursor) {
+        this.cursor = cursor;
+    }
+
     public Boolean getIncludeIncomplete() {
         return includeIncomplete;
     }
@@ -222,6 +236,7 @@ public class ModelSearchRequest {
             ", type='" + type + '\'' +
             ", pageSize=" + pageSize +
             ", pageFrom=" + pageFrom +
+            ", cursor='" + cursor + '\'' +
             ", filter=" + filter +
             ", includeIncomplete=" + includeIncomplete +
             ", includeIncompleteFrom=" + includeIncompleteFrom +
@@ -8,6 +8,7 @@ public class ModelSearchResponse {
     private long totalHitCount;
     private Integer pageSize;
     private Integer pageFrom;
+    private String nextCursor;
     private List<IndexModelDTO> models;
     private Map<String, List<DeepSearchHitListDTO<?>>> deepHits;
 
@@ -50,6 +51,17 @@ public class ModelSearchResponse {
         this.pageFrom = pageFrom;
     }
 
+    /**
+     * @return Cursor of the next page or null if this is the last page
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(final String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
     public List<IndexModelDTO> getModels() {
         return models;
     }
@@ -72,6 +84,7 @@ public class ModelSearchResponse {
             "totalHitCount=" + totalHitCount +
             ", pageSize=" + pageSize +
             ", pageFrom=" + pageFrom +
+            ", nextCursor='" + nextCursor + '\'' +
             ", models=" + models +
             ", deepHits=" + deepHits +
             '}';
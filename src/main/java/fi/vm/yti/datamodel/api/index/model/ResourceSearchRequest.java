@@ -31,6 +31,8 @@ public class ResourceSearchRequest {
 
     private Integer pageFrom;
 
+    private String cursor;
+
     private Set<String> filter;
 
     public ResourceSearchRequest() {
@@ -48,6 +50,7 @@ public class ResourceSearchRequest {
         this.filter = request.getFilter();
         this.pageFrom = request.getPageFrom();
         this.pageSize = request.getPageSize();
+        this.cursor = request.getCursor();
     }
 
     public ResourceSearchRequest(final String query,
@@ -192,6 +195,17 @@ public class ResourceSearchRequest {
         this.pageFrom = pageFrom;
     }
 
+    /**
+     * @return Cursor of the previous page or null for offset paging
+     */
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(final String cursor) {
+        this.cursor = cursor;
+    }
+
     public Set<String> getFilter() {
         return filter;
     }
@@ -215,6 +229,7 @@ public class ResourceSearchRequest {
             ", sortOrder='" + sortOrder + '\'' +
             ", pageSize=" + pageSize +
             ", pageFrom=" + pageFrom +
+            ", cursor='" + cursor + '\'' +
             ", filter=" + filter +
             '}';
     }
@@ -7,6 +7,7 @@ public class ResourceSearchResponse {
     private long totalHitCount;
     private Integer pageSize;
     private Integer pageFrom;
+    private String nextCursor;
     private List<IndexResourceDTO> resources;
 
     public ResourceSearchResponse() {
@@ -46,6 +47,17 @@ public class ResourceSearchResponse {
         this.pageFrom = pageFrom;
     }
 
+    /**
+     * @return Cursor of the next page or null if this is the last page
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(final String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
     public List<IndexResourceDTO> getResources() {
         return resources;
     }
@@ -60,6 +72,7 @@ public class ResourceSearchResponse {
             "totalHitCount=" + totalHitCount +
             ", pageSize=" + pageSize +
             ", pageFrom=" + pageFrom +
+            ", nextCursor='" + nextCursor + '\'' +
             ", resources=" + resources +
             '}';
     }
@@ -0,0 +1,45 @@
+package fi.vm.yti.datamodel.api.index.model;
+
+import java.util.Map;
+
+public class SuggestionDTO {
+
+    private String id;
+    private String type;
+    private Map<String, String> label;
+
+    public SuggestionDTO() {
+    }
+
+    public SuggestionDTO(final String id,
+                         final String type,
+                         final Map<String, String> label) {
+        this.id = id;
+        this.type = type;
+        this.label = label;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(final String id) {
+        this.id = id;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(final String type) {
+        this.type = type;
+    }
+
+    public Map<String, String> getLabel() {
+        return label;
+    }
+
+    public void setLabel(final Map<String, String> label) {
+        this.label = label;
+    }
+}
@@ -0,0 +1,70 @@
+package fi.vm.yti.datamodel.api.model;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Compact projection of a model used for filtering and paging model lists
+ */
+public final class ModelSummary {
+
+    private final String id;
+    private final String prefix;
+    private final String status;
+    private final Set<UUID> organizations;
+    private final Set<String> serviceCategories;
+    private final Instant modified;
+    private final Map<String, String> labels;
+
+    public ModelSummary(String id,
+                        String prefix,
+                        String status,
+                        Set<UUID> organizations,
+                        Set<String> serviceCategories,
+                        Instant modified,
+                        Map<String, String> labels) {
+        this.id = id;
+        this.prefix = prefix;
+        this.status = status;
+        this.organizations = Set.copyOf(organizations);
+        this.serviceCategories = Set.copyOf(serviceCategories);
+        this.modified = modified;
+        this.labels = Map.copyOf(labels);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public Set<UUID> getOrganizations() {
+        return organizations;
+    }
+
+    public Set<String> getServiceCategories() {
+        return serviceCategories;
+    }
+
+    /**
+     * @return Modified time or null if model has none
+     */
+    public Instant getModified() {
+        return modified;
+    }
+
+    /**
+     * @return Labels by language, empty string for labels without language
+     */
+    public Map<String, String> getLabels() {
+        return labels;
+    }
+}
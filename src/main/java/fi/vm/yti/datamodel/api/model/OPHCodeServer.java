@@ -4,6 +4,7 @@
 package fi.vm.yti.datamodel.api.model;
 
 import fi.vm.yti.datamodel.api.service.EndpointServices;
+import fi.vm.yti.datamodel.api.service.RemoteDependency;
 
 import java.io.InputStream;
 import java.util.HashMap;
@@ -34,6 +35,7 @@ public class OPHCodeServer {
     private final EndpointServices endpointServices;
     private RDFConnection connection;
     private String uri;
+    private final RemoteDependency codes;
     private Property description = ResourceFactory.createProperty("http://purl.org/dc/terms/", "description");
     private Property name = ResourceFactory.createProperty("http://purl.org/dc/terms/", "title");
     private Property isPartOf = ResourceFactory.createProperty("http://purl.org/dc/terms/", "isPartOf");
@@ -48,10 +50,12 @@ public class OPHCodeServer {
     }};
 
     public OPHCodeServer(String uri,
-                         EndpointServices endpointServices) {
+                         EndpointServices endpointServices,
+                         RemoteDependency codes) {
         this.connection = RDFConnection.connect(endpointServices.getSchemesReadWriteAddress());
         this.endpointServices = endpointServices;
         this.uri = uri;
+        this.codes = codes;
     }
 
     public boolean containsCodeList(String uri) {
@@ -66,13 +70,13 @@ public class OPHCodeServer {
             model.setNsPrefix("dcterms", "http://purl.org/dc/terms/");
             model.setNsPrefix("iow", "http://uri.suomi.fi/datamodel/ns/iow#");
 
-            Client client = ClientBuilder.newClient();
+            Client client = codes.configure(ClientBuilder.newClient());
             logger.info("Updating OPH codeLists: " + uri);
             WebTarget target = client.target(uri).queryParam("format", "application/json");
-            Response response = target
+            Response response = codes.callHttp(() -> target
                     .request("application/json")
                     .header("Caller-Id", "dvv.fi")
-                    .get();
+                    .get());
 
             if (response.getStatusInfo().getFamily() == Response.Status.Family.SUCCESSFUL) {
 
@@ -238,9 +242,9 @@ public class OPHCodeServer {
         model.setNsPrefix("dcterms", "http://purl.org/dc/terms/");
         model.setNsPrefix("iow", "http://uri.suomi.fi/datamodel/ns/iow#");
 
-        Client client = ClientBuilder.newClient();
+        Client client = codes.configure(ClientBuilder.newClient());
         WebTarget target = client.target(uri).queryParam("format", "application/json");
-        Response response = target.request("application/json").get();
+        Response response = codes.callHttp(() -> target.request("application/json").get());
 
         if (response.getStatusInfo().getFamily() == Response.Status.Family.SUCCESSFUL) {
 
@@ -29,6 +29,7 @@ import org.slf4j.LoggerFactory;
 
 import fi.vm.yti.datamodel.api.service.CodeSchemeManager;
 import fi.vm.yti.datamodel.api.service.EndpointServices;
+import fi.vm.yti.datamodel.api.service.RemoteDependency;
 import fi.vm.yti.datamodel.api.utils.LDHelper;
 
 public class SuomiCodeServer {
@@ -48,25 +49,30 @@ public class SuomiCodeServer {
     private String url;
     private RDFConnection connection;
     private CodeSchemeManager codeSchemeManager;
+    private final RemoteDependency codes;
     private final DateTimeFormatter dfmt = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
 
     public SuomiCodeServer(EndpointServices endpointServices,
-                           CodeSchemeManager codeSchemeManager) {
+                           CodeSchemeManager codeSchemeManager,
+                           RemoteDependency codes) {
         this.connection = RDFConnection.connect(endpointServices.getSchemesReadWriteAddress());
         this.endpointServices = endpointServices;
         this.codeSchemeManager = codeSchemeManager;
+        this.codes = codes;
     }
 
     public SuomiCodeServer(String uri,
                            String url,
                            EndpointServices endpointServices,
-                           CodeSchemeManager codeSchemeManager) {
+                           CodeSchemeManager codeSchemeManager,
+                           RemoteDependency codes) {
         this.connection = RDFConnection.connect(endpointServices.getSchemesReadWriteAddress());
 
         this.endpointServices = endpointServices;
         this.uri = uri;
         this.url = url;
         this.codeSchemeManager = codeSchemeManager;
+        this.codes = codes;
     }
 
     public static void addLangLiteral(Resource res,
@@ -91,12 +97,12 @@ public class SuomiCodeServer {
         model.setNsPrefix("dcterms", "http://purl.org/dc/terms/");
         model.setNsPrefix("iow", "http://uri.suomi.fi/datamodel/ns/iow#");
 
-        Client client = ClientBuilder.newClient();
+        Client client = codes.configure(ClientBuilder.newClient());
 
         logger.debug("Updating suomi.fi codeLists: " + url);
 
         WebTarget target = client.target(url + "v1/coderegistries/").queryParam("format", "application/json");
-        Response response = target.request("application/json").get();
+        Response response = codes.callHttp(() -> target.request("application/json").get());
 
         if (response.getStatusInfo().getFamily() == Response.Status.Family.SUCCESSFUL) {
 
@@ -136,7 +142,7 @@ public class SuomiCodeServer {
                 group.addProperty(RDF.type, ResourceFactory.createResource("http://uri.suomi.fi/datamodel/ns/iow#FCodeGroup"));
 
                 WebTarget schemeTarget = client.target(groupUrl + "/codeschemes/").queryParam("format", "application/json");
-                Response schemeResponse = schemeTarget.request("application/json").get();
+                Response schemeResponse = codes.callHttp(() -> schemeTarget.request("application/json").get());
 
                 if (schemeResponse.getStatusInfo().getFamily() == Response.Status.Family.SUCCESSFUL) {
 
@@ -201,9 +207,9 @@ public class SuomiCodeServer {
         model.setNsPrefix("dcterms", "http://purl.org/dc/terms/");
         model.setNsPrefix("iow", "http://uri.suomi.fi/datamodel/ns/iow#");
 
-        Client client = ClientBuilder.newClient();
+        Client client = codes.configure(ClientBuilder.newClient());
         WebTarget target = client.target(url + "v1/integration/resources").queryParam("includeIncomplete", "true").queryParam("container", containerUri).queryParam("format", "application/json");
-        Response response = target.request("application/json").get();
+        Response response = codes.callHttp(() -> target.request("application/json").get());
 
         if (response.getStatusInfo().getFamily() == Response.Status.Family.SUCCESSFUL) {
 
@@ -264,9 +270,9 @@ public class SuomiCodeServer {
         LocalDateTime codeSchemeModified = null;
         Model model = null;
 
-        Client containerClient = ClientBuilder.newClient();
+        Client containerClient = codes.configure(ClientBuilder.newClient());
         WebTarget containerTarget = containerClient.target(url + "v1/integration/containers").queryParam("includeIncomplete", "true").queryParam("uri", containerUri).queryParam("format", "application/json");
-        Response containerResponse = containerTarget.request("application/json").get();
+        Response containerResponse = codes.callHttp(() -> containerTarget.request("application/json").get());
 
         if (containerResponse.getStatusInfo().getFamily() == Response.Status.Family.SUCCESSFUL) {
 
@@ -0,0 +1,165 @@
+/*
+ * Licensed under the European Union Public Licence (EUPL) V.1.1
+ */
+package fi.vm.yti.datamodel.api.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import javax.annotation.PreDestroy;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.Response;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.concurrent.DelegatingSecurityContextRunnable;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+
+import fi.vm.yti.datamodel.api.config.ApplicationProperties;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Runs endpoints that wait for remote services outside of the Jetty worker pool. Work is done in a bounded executor
+ * and requests that do not fit in the queue or do not finish in time are answered with 503.
+ * With asyncVirtualThreads on a Java 21 runtime every request gets its own virtual thread and only the number of
+ * requests in progress is bounded.
+ */
+@Service
+public class AsyncRequestExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncRequestExecutor.class.getName());
+
+    private static final int RETRY_AFTER_SECONDS = 10;
+
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final long timeoutMillis;
+    private final AtomicInteger rejectedRequests = new AtomicInteger();
+    private final AtomicInteger timedOutRequests = new AtomicInteger();
+
+    @Autowired
+    AsyncRequestExecutor(ApplicationProperties properties,
+                         MeterRegistry meterRegistry) {
+        this(properties.getAsyncThreads(), properties.getAsyncQueueSize(), properties.getAsyncTimeoutMillis(), properties.isAsyncVirtualThreads());
+        Gauge.builder("datamodel.async.permits", permits, Semaphore::availablePermits).register(meterRegistry);
+        FunctionCounter.builder("datamodel.async.rejected", rejectedRequests, AtomicInteger::get).register(meterRegistry);
+        FunctionCounter.builder("datamodel.async.timeouts", timedOutRequests, AtomicInteger::get).register(meterRegistry);
+    }
+
+    AsyncRequestExecutor(int threads,
+                         int queueSize,
+                         long timeoutMillis,
+                         boolean virtualThreads) {
+        ExecutorService virtualThreadExecutor = virtualThreads ? newVirtualThreadExecutor() : null;
+        if (virtualThreadExecutor != null) {
+            this.executor = virtualThreadExecutor;
+        } else {
+            AtomicInteger threadCount = new AtomicInteger();
+            this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize), runnable -> {
+                Thread thread = new Thread(runnable, "async-request-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        this.permits = new Semaphore(threads + queueSize);
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            logger.warn("Virtual threads are not supported by Java " + Runtime.version().feature() + ", using platform threads");
+            return null;
+        }
+    }
+
+    /**
+     * Resumes the response with the result of the request. Exceptions are resumed as is so that they are handled by
+     * the exception mappers. Security context of the calling thread is used while the request runs.
+     *
+     * @param asyncResponse Suspended response
+     * @param request       Handles the request
+     */
+    public void submit(AsyncResponse asyncResponse,
+                       Supplier<Response> request) {
+        if (!permits.tryAcquire()) {
+            rejectedRequests.incrementAndGet();
+            asyncResponse.resume(serviceUnavailable("Too many requests in progress"));
+            return;
+        }
+
+        asyncResponse.setTimeoutHandler(response -> {
+            timedOutRequests.incrementAndGet();
+            response.resume(serviceUnavailable("Request timed out"));
+        });
+        asyncResponse.setTimeout(timeoutMillis, TimeUnit.MILLISECONDS);
+
+        Runnable task = DelegatingSecurityContextRunnable.create(() -> {
+            try {
+                // Requests that timed out in the queue are not started, running ones end with the remote call timeouts
+                if (!asyncResponse.isDone()) {
+                    Response response = request.get();
+                    if (!asyncResponse.resume(response)) {
+                        discard(response);
+                    }
+                }
+            } catch (RuntimeException ex) {
+                asyncResponse.resume(ex);
+            } finally {
+                permits.release();
+            }
+        }, SecurityContextHolder.getContext());
+
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException ex) {
+            permits.release();
+            rejectedRequests.incrementAndGet();
+            asyncResponse.resume(serviceUnavailable("Too many requests in progress"));
+        }
+    }
+
+    /**
+     * Closes response that was built after the request had timed out. Entities streamed from remote services hold
+     * a permit of the dependency until they are closed.
+     */
+    private static void discard(Response response) {
+        try {
+            Object entity = response.getEntity();
+            if (entity instanceof Closeable) {
+                ((Closeable) entity).close();
+            }
+        } catch (IOException ex) {
+            logger.warn("Could not close entity of timed out request", ex);
+        } finally {
+            response.close();
+        }
+    }
+
+    private static Response serviceUnavailable(String message) {
+        return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+            .header("Retry-After", RETRY_AFTER_SECONDS)
+            .entity(message)
+            .type("text/plain").build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -3,26 +3,68 @@
  */
 package fi.vm.yti.datamodel.api.service;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+import javax.ws.rs.core.EntityTag;
+
 import fi.vm.yti.datamodel.api.utils.LDHelper;
 
+import com.google.common.hash.Hashing;
+
 import jakarta.json.Json;
 import jakarta.json.JsonObjectBuilder;
 import org.apache.jena.query.*;
 import org.apache.jena.vocabulary.RDFS;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.topbraid.shacl.vocabulary.SH;
 
-
+/**
+ * Generates JSON-LD contexts of models and resources. Contexts are cached with the dataset generation, so every write
+ * through GraphManager makes the next request generate them again. Model contexts may take datatypes from shapes of
+ * other models and are cached with the generation of the whole dataset, resource contexts with the generation of
+ * their model.
+ */
 @Service
 public class ContextWriter {
 
     private final EndpointServices endpointServices;
     private final JsonSchemaWriter jsonSchemaWriter;
+    private final DatasetGeneration datasetGeneration;
+    private final ListCache listCache;
 
+    @Autowired
     ContextWriter(EndpointServices endpointServices,
-                  JsonSchemaWriter jsonSchemaWriter) {
+                  JsonSchemaWriter jsonSchemaWriter,
+                  DatasetGeneration datasetGeneration,
+                  ListCache listCache) {
         this.endpointServices = endpointServices;
         this.jsonSchemaWriter = jsonSchemaWriter;
+        this.datasetGeneration = datasetGeneration;
+        this.listCache = listCache;
+    }
+
+    /**
+     * Returns cached or generated context of the resource
+     *
+     * @param classID Id of the class
+     * @return JSON-LD context or empty if the resource is not found
+     */
+    public Optional<JsonLdContext> getResourceContext(String classID) {
+        return listCache.get("resourceContext", datasetGeneration.current(classID),
+            () -> Optional.ofNullable(newResourceContext(classID)).map(JsonLdContext::new), classID);
+    }
+
+    /**
+     * Returns cached or generated context of the model
+     *
+     * @param modelID Model id
+     * @return JSON-LD context or empty if the model has no resources
+     */
+    public Optional<JsonLdContext> getModelContext(String modelID) {
+        return listCache.get("modelContext", datasetGeneration.current(),
+            () -> Optional.ofNullable(newModelContext(modelID)).map(JsonLdContext::new), modelID);
     }
 
     /**
@@ -45,7 +87,7 @@ public class ContextWriter {
      * @param classID Id of the class
      * @return Returns generated JSON-LD context from the SHACL spec
      */
-    public String newResourceContext(String classID) {
+    String newResourceContext(String classID) {
 
         JsonObjectBuilder context = Json.createObjectBuilder();
 
@@ -113,7 +155,7 @@ public class ContextWriter {
      * @param modelID Model id
      * @return Generated JSON-LD context from the model
      */
-    public String newModelContext(String modelID) {
+    String newModelContext(String modelID) {
 
         JsonObjectBuilder context = Json.createObjectBuilder();
 
@@ -154,40 +196,64 @@ public class ContextWriter {
         pss.setNsPrefixes(LDHelper.PREFIX_MAP);
         pss.setCommandText(selectResources);
 
-        QueryExecution qexec = QueryExecution.service(endpointServices.getCoreSparqlAddress(), pss.asQuery());
-
-        ResultSet results = qexec.execSelect();
+        try (QueryExecution qexec = QueryExecution.service(endpointServices.getCoreSparqlAddress(), pss.asQuery())) {
 
-        if (!results.hasNext()) return null;
+            ResultSet results = qexec.execSelect();
 
-        while (results.hasNext()) {
-            QuerySolution soln = results.nextSolution();
-            String resourceURI = soln.getResource("resource").toString();
-            String resourceName = soln.getLiteral("resourceName").toString();
-            String localResourceName = soln.contains("localResourceName") ? LDHelper.removeInvalidCharacters(soln.getLiteral("localResourceName").getString()) : null;
+            if (!results.hasNext()) return null;
 
-            if (soln.contains("targetClass")) {
-                resourceURI = soln.getResource("targetClass").toString();
-            }
+            while (results.hasNext()) {
+                QuerySolution soln = results.nextSolution();
+                String resourceURI = soln.getResource("resource").toString();
+                String resourceName = soln.getLiteral("resourceName").toString();
+                String localResourceName = soln.contains("localResourceName") ? LDHelper.removeInvalidCharacters(soln.getLiteral("localResourceName").getString()) : null;
 
-            JsonObjectBuilder resourceObject = Json.createObjectBuilder();
+                if (soln.contains("targetClass")) {
+                    resourceURI = soln.getResource("targetClass").toString();
+                }
 
-            String type = soln.contains("type") ? soln.getResource("type").getURI() : null;
+                JsonObjectBuilder resourceObject = Json.createObjectBuilder();
 
-            if (type != null && (type.equals(RDFS.Class.getURI()) || type.equals(SH.NodeShape.getURI()))) {
-                context.add(localResourceName != null && localResourceName.length() > 0 ? localResourceName : resourceName, resourceURI);
-            } else {
-                resourceObject.add("@id", resourceURI);
+                String type = soln.contains("type") ? soln.getResource("type").getURI() : null;
 
-                if (soln.contains("datatype")) {
-                    resourceObject.add("@type", soln.getResource("datatype").toString());
+                if (type != null && (type.equals(RDFS.Class.getURI()) || type.equals(SH.NodeShape.getURI()))) {
+                    context.add(localResourceName != null && localResourceName.length() > 0 ? localResourceName : resourceName, resourceURI);
                 } else {
-                    resourceObject.add("@type", "@id");
+                    resourceObject.add("@id", resourceURI);
+
+                    if (soln.contains("datatype")) {
+                        resourceObject.add("@type", soln.getResource("datatype").toString());
+                    } else {
+                        resourceObject.add("@type", "@id");
+                    }
+                    context.add(localResourceName != null && localResourceName.length() > 0 ? localResourceName : resourceName, resourceObject.build());
                 }
-                context.add(localResourceName != null && localResourceName.length() > 0 ? localResourceName : resourceName, resourceObject.build());
             }
+
+            return createDefaultContext(context);
+        }
+    }
+
+    /**
+     * Generated context with a strong entity tag computed from its content, so clients can revalidate it even if the
+     * context is generated again after an unrelated write
+     */
+    public static final class JsonLdContext {
+
+        private final String context;
+        private final EntityTag tag;
+
+        JsonLdContext(String context) {
+            this.context = context;
+            this.tag = new EntityTag(Hashing.sha256().hashString(context, StandardCharsets.UTF_8).toString());
         }
 
-        return createDefaultContext(context);
+        public String getContext() {
+            return context;
+        }
+
+        public EntityTag getTag() {
+            return tag;
+        }
     }
 }
@@ -0,0 +1,80 @@
+/*
+ * Licensed under the European Union Public Licence (EUPL) V.1.1
+ */
+package fi.vm.yti.datamodel.api.service;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.stereotype.Service;
+
+/**
+ * Counts writes to the core dataset. JenaClient increments the counters after every write so that anything computed
+ * from core can be cached with the generation it was read at and is never served after the next write.
+ * Counters are kept per model, where a model covers its own graph and all graphs with the model IRI and a fragment,
+ * such as resources and the export graph. Writes with unknown graphs, such as pattern based updates, change every model.
+ * Writes to the statistics graph alone change nothing, because cached responses are not read from it.
+ */
+@Service
+public class DatasetGeneration {
+
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong unscopedGeneration = new AtomicLong();
+    private final ConcurrentHashMap<String, AtomicLong> modelGenerations = new ConcurrentHashMap<>();
+
+    /**
+     * Returns generation of the whole core dataset
+     *
+     * @return Generation that changes on every write
+     */
+    public long current() {
+        return generation.get();
+    }
+
+    /**
+     * Returns generation of one model or graph. Sum of two increasing counters changes whenever either of them changes.
+     *
+     * @param graph IRI of the model or any of its graphs
+     * @return Generation that changes on writes that may touch the model
+     */
+    public long current(String graph) {
+        AtomicLong modelGeneration = modelGenerations.get(modelOf(graph));
+        return unscopedGeneration.get() + (modelGeneration == null ? 0 : modelGeneration.get());
+    }
+
+    public void graphChanged(String graph) {
+        if (graph.equals(GraphStatistics.STATISTICS_GRAPH)) {
+            return;
+        }
+        modelGenerations.computeIfAbsent(modelOf(graph), model -> new AtomicLong()).incrementAndGet();
+        generation.incrementAndGet();
+    }
+
+    public void graphsChanged(Collection<String> graphs) {
+        List<String> models = graphs.stream()
+            .filter(graph -> !graph.equals(GraphStatistics.STATISTICS_GRAPH))
+            .map(DatasetGeneration::modelOf).distinct()
+            .collect(Collectors.toList());
+        if (models.isEmpty()) {
+            return;
+        }
+        models.forEach(model -> modelGenerations.computeIfAbsent(model, key -> new AtomicLong()).incrementAndGet());
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Used when the written graphs are not known
+     */
+    public void allChanged() {
+        unscopedGeneration.incrementAndGet();
+        generation.incrementAndGet();
+    }
+
+    static String modelOf(String graph) {
+        int fragment = graph.indexOf('#');
+        return fragment < 0 ? graph : graph.substring(0, fragment);
+    }
+}
@@ -0,0 +1,24 @@
+/*
+ * Licensed under the European Union Public Licence (EUPL) V.1.1
+ */
+package fi.vm.yti.datamodel.api.service;
+
+/**
+ * Thrown when call to remote dependency is rejected because its circuit breaker is open or its bulkhead is full
+ */
+public class DependencyUnavailableException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String dependency;
+
+    public DependencyUnavailableException(String dependency,
+                                          String message) {
+        super(dependency + ": " + message);
+        this.dependency = dependency;
+    }
+
+    public String getDependency() {
+        return dependency;
+    }
+}
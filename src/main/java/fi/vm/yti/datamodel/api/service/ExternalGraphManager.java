@@ -1,28 +1,144 @@
 package fi.vm.yti.datamodel.api.service;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 import org.apache.jena.iri.IRI;
 import org.apache.jena.query.ParameterizedSparqlString;
 import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.OWL;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.topbraid.shacl.vocabulary.SH;
 
+import fi.vm.yti.datamodel.api.index.ExternalIndexManager;
+import fi.vm.yti.datamodel.api.index.ExternalResourceQueryFactory;
+import fi.vm.yti.datamodel.api.index.model.IndexExternalResourceDTO;
 import fi.vm.yti.datamodel.api.utils.LDHelper;
 import fi.vm.yti.datamodel.api.utils.QueryLibrary;
 
 @Service
 public class ExternalGraphManager {
 
+    private static final Logger logger = LoggerFactory.getLogger(ExternalGraphManager.class);
+    private static final Set<String> predicateTypes = Set.of(ExternalResourceQueryFactory.TYPE_ATTRIBUTE,
+        ExternalResourceQueryFactory.TYPE_ASSOCIATION, ExternalResourceQueryFactory.TYPE_PROPERTY);
+
     private final EndpointServices endpointServices;
     private final JenaClient jenaClient;
+    private final ExternalIndexManager externalIndexManager;
 
     @Autowired
     ExternalGraphManager(EndpointServices endpointServices,
-                         JenaClient jenaClient) {
+                         JenaClient jenaClient,
+                         ExternalIndexManager externalIndexManager) {
         this.endpointServices = endpointServices;
         this.jenaClient = jenaClient;
+        this.externalIndexManager = externalIndexManager;
     }
 
+    /**
+     * Lists classes of the vocabularies required by the model from the external index
+     */
     public Model getListOfExternalClasses(String model) {
+        Model vocabularies = getRequiredVocabularies(model);
+        if (vocabularies.isEmpty()) {
+            return vocabularies;
+        }
+        List<IndexExternalResourceDTO> classes;
+        try {
+            classes = externalIndexManager.search(null, Set.of(ExternalResourceQueryFactory.TYPE_CLASS), vocabularies.listSubjects().mapWith(Resource::getURI).toSet(), null);
+        } catch (RuntimeException e) {
+            logger.warn("External index not available, listing classes from imports", e);
+            return getListOfExternalClassesFromImports(model);
+        }
+        for (IndexExternalResourceDTO externalClass : classes) {
+            Resource resource = addResource(vocabularies, externalClass, SH.name);
+            resource.addProperty(RDF.type, RDFS.Class);
+            addLanguageLiterals(resource, SH.description, externalClass.getComment());
+        }
+        return vocabularies;
+    }
+
+    /**
+     * Lists predicates of the vocabularies required by the model from the external index
+     */
+    public Model getListOfExternalPredicates(String model) {
+        Model vocabularies = getRequiredVocabularies(model);
+        if (vocabularies.isEmpty()) {
+            return vocabularies;
+        }
+        List<IndexExternalResourceDTO> predicates;
+        try {
+            predicates = externalIndexManager.search(null, predicateTypes, vocabularies.listSubjects().mapWith(Resource::getURI).toSet(), null);
+        } catch (RuntimeException e) {
+            logger.warn("External index not available, listing predicates from imports", e);
+            return getListOfExternalPredicatesFromImports(model);
+        }
+        for (IndexExternalResourceDTO predicate : predicates) {
+            if (predicate.getLabel() != null) {
+                Resource resource = addResource(vocabularies, predicate, RDFS.label);
+                resource.addProperty(OWL.versionInfo, "VALID");
+                resource.addProperty(RDF.type, predicateType(predicate.getType()));
+            }
+        }
+        return vocabularies;
+    }
+
+    private static Resource predicateType(String type) {
+        switch (type) {
+            case ExternalResourceQueryFactory.TYPE_ATTRIBUTE:
+                return OWL.DatatypeProperty;
+            case ExternalResourceQueryFactory.TYPE_ASSOCIATION:
+                return OWL.ObjectProperty;
+            default:
+                return RDF.Property;
+        }
+    }
+
+    private static Resource addResource(Model model,
+                                        IndexExternalResourceDTO indexed,
+                                        Property labelProperty) {
+        Resource resource = model.createResource(indexed.getId());
+        resource.addProperty(RDFS.isDefinedBy, model.createResource(indexed.getIsDefinedBy()));
+        addLanguageLiterals(resource, labelProperty, indexed.getLabel());
+        return resource;
+    }
+
+    private static void addLanguageLiterals(Resource resource,
+                                            Property property,
+                                            Map<String, List<String>> values) {
+        if (values != null) {
+            values.forEach((lang, literals) -> literals.forEach(value -> resource.addProperty(property, value, lang)));
+        }
+    }
+
+    /**
+     * External vocabularies required by the model with their labels
+     */
+    private Model getRequiredVocabularies(String model) {
+        ParameterizedSparqlString pss = new ParameterizedSparqlString();
+        pss.setNsPrefixes(LDHelper.PREFIX_MAP);
+        pss.setCommandText("CONSTRUCT { "
+            + "?externalModel rdfs:label ?externalModelLabel . "
+            + "?externalModel a dcterms:Standard . "
+            + "} WHERE { "
+            + "GRAPH ?library { "
+            + "?library dcterms:requires ?externalModel . "
+            + "?externalModel rdfs:label ?externalModelLabel . "
+            + "}}");
+        pss.setIri("library", model);
+        return jenaClient.constructFromCore(pss.toString());
+    }
+
+    private Model getListOfExternalClassesFromImports(String model) {
         /* If no id is provided create a list of classes */
         ParameterizedSparqlString pss = new ParameterizedSparqlString();
         pss.setNsPrefixes(LDHelper.PREFIX_MAP);
@@ -97,7 +213,7 @@ public class ExternalGraphManager {
 
     }
 
-    public Model getListOfExternalPredicates(String model) {
+    private Model getListOfExternalPredicatesFromImports(String model) {
 
         /* If no id is provided create a list of classes */
         ParameterizedSparqlString pss = new ParameterizedSparqlString();
@@ -0,0 +1,185 @@
+/*
+ * Licensed under the European Union Public Licence (EUPL) V.1.1
+ */
+package fi.vm.yti.datamodel.api.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.sparql.modify.request.QuadDataAcc;
+import org.apache.jena.sparql.modify.request.UpdateClear;
+import org.apache.jena.sparql.modify.request.UpdateDataDelete;
+import org.apache.jena.sparql.modify.request.UpdateDataInsert;
+import org.apache.jena.sparql.modify.request.UpdateDrop;
+import org.apache.jena.update.Update;
+import org.apache.jena.update.UpdateRequest;
+
+/**
+ * Collects all graph changes of one logical write operation (graph puts, drops, quad inserts and deletes and
+ * pattern based updates) so that they can be sent to the core service as a single SPARQL Update request.
+ * Operations are executed in the order they were added and Fuseki applies the whole request in one transaction.
+ */
+public final class GraphChangeSet {
+
+    private final List<Update> operations = new ArrayList<>();
+    private final Set<String> graphs = new LinkedHashSet<>();
+    private boolean patternUpdates;
+
+    /**
+     * Replaces contents of the graph with the given model, same as Graph Store Protocol PUT
+     *
+     * @param graph IRI of the graph as String
+     * @param model New contents of the graph
+     * @return this change set
+     */
+    public GraphChangeSet put(String graph,
+                              Model model) {
+        drop(graph);
+        return add(graph, model);
+    }
+
+    /**
+     * Adds triples of the model to the graph, same as Graph Store Protocol POST
+     *
+     * @param graph IRI of the graph as String
+     * @param model Triples to be added
+     * @return this change set
+     */
+    public GraphChangeSet add(String graph,
+                              Model model) {
+        if (!model.isEmpty()) {
+            operations.add(new UpdateDataInsert(toQuads(graph, model)));
+            graphs.add(graph);
+        }
+        return this;
+    }
+
+    /**
+     * Deletes triples of the model from the graph. Model must not contain blank nodes.
+     *
+     * @param graph IRI of the graph as String
+     * @param model Triples to be deleted
+     * @return this change set
+     */
+    public GraphChangeSet delete(String graph,
+                                 Model model) {
+        if (!model.isEmpty()) {
+            operations.add(new UpdateDataDelete(toQuads(graph, model)));
+            graphs.add(graph);
+        }
+        return this;
+    }
+
+    public GraphChangeSet drop(String graph) {
+        operations.add(new UpdateDrop(NodeFactory.createURI(graph), true));
+        graphs.add(graph);
+        return this;
+    }
+
+    public GraphChangeSet clear(String graph) {
+        operations.add(new UpdateClear(NodeFactory.createURI(graph), true));
+        graphs.add(graph);
+        return this;
+    }
+
+    /**
+     * Appends all operations of an existing update request, such as the pattern based requests in GraphManager
+     *
+     * @param request Update request
+     * @return this change set
+     */
+    public GraphChangeSet update(UpdateRequest request) {
+        operations.addAll(request.getOperations());
+        patternUpdates = true;
+        return this;
+    }
+
+    /**
+     * Appends a pattern based update request that writes only to the given graph
+     *
+     * @param graph   IRI of the written graph as String
+     * @param request Update request
+     * @return this change set
+     */
+    public GraphChangeSet update(String graph,
+                                 UpdateRequest request) {
+        if (!request.getOperations().isEmpty()) {
+            operations.addAll(request.getOperations());
+            graphs.add(graph);
+        }
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return operations.isEmpty();
+    }
+
+    public int size() {
+        return operations.size();
+    }
+
+    /**
+     * Returns true if the change set contains pattern based updates that may write to graphs not listed in getGraphs
+     *
+     * @return boolean
+     */
+    public boolean hasPatternUpdates() {
+        return patternUpdates;
+    }
+
+    /**
+     * Returns graphs that are explicitly written by this change set. Graphs touched only by pattern based updates are not listed.
+     *
+     * @return Set of graph IRIs
+     */
+    public Set<String> getGraphs() {
+        return Collections.unmodifiableSet(graphs);
+    }
+
+    /**
+     * Builds single update request where operations are separated with ';'
+     *
+     * @return Update request
+     */
+    public UpdateRequest toUpdateRequest() {
+        UpdateRequest request = new UpdateRequest();
+        operations.forEach(request::add);
+        return request;
+    }
+
+    @Override
+    public String toString() {
+        return toUpdateRequest().toString();
+    }
+
+    /**
+     * Blank nodes get new labels in each operation. SPARQL Update does not allow the same blank node label in two
+     * data operations of one request, and graphs written separately with Graph Store Protocol never shared them.
+     */
+    private static QuadDataAcc toQuads(String graph,
+                                       Model model) {
+        Node graphNode = NodeFactory.createURI(graph);
+        Map<Node, Node> blankNodes = new HashMap<>();
+        QuadDataAcc quads = new QuadDataAcc();
+        model.getGraph().find().forEachRemaining((Triple triple) -> quads.addQuad(new Quad(graphNode,
+            relabel(triple.getSubject(), blankNodes),
+            triple.getPredicate(),
+            relabel(triple.getObject(), blankNodes))));
+        return quads;
+    }
+
+    private static Node relabel(Node node,
+                                Map<Node, Node> blankNodes) {
+        return node.isBlank() ? blankNodes.computeIfAbsent(node, blank -> NodeFactory.createBlankNode()) : node;
+    }
+}
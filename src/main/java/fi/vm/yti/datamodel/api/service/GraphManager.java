@@ -4,6 +4,7 @@
 package fi.vm.yti.datamodel.api.service;
 
 import fi.vm.yti.datamodel.api.config.ApplicationProperties;
+import fi.vm.yti.datamodel.api.index.ElasticConnector;
 import fi.vm.yti.datamodel.api.model.AbstractModel;
 import fi.vm.yti.datamodel.api.model.AbstractResource;
 import fi.vm.yti.datamodel.api.utils.LDHelper;
@@ -18,8 +19,6 @@ import org.apache.jena.riot.RDFDataMgr;
 import org.apache.jena.riot.RDFLanguages;
 import org.apache.jena.shared.PrefixMapping;
 import org.apache.jena.update.UpdateException;
-import org.apache.jena.update.UpdateExecutionFactory;
-import org.apache.jena.update.UpdateProcessor;
 import org.apache.jena.update.UpdateRequest;
 import org.apache.jena.util.ResourceUtils;
 import org.apache.jena.vocabulary.DCTerms;
@@ -46,6 +45,8 @@ public class GraphManager {
     private final ModelManager modelManager;
     private final ApplicationProperties properties;
     private final ServiceDescriptionManager serviceDescriptionManager;
+    private final ElasticConnector elasticConnector;
+    private final GraphStatistics graphStatistics;
     private final String versionGraphURI = "urn:yti:metamodel:version";
     private final ExecutorService executor = Executors.newFixedThreadPool(1);
 
@@ -55,6 +56,8 @@ public class GraphManager {
                  TerminologyManager terminologyManager,
                  ModelManager modelManager,
                  ServiceDescriptionManager serviceDescriptionManager,
+                 ElasticConnector elasticConnector,
+                 GraphStatistics graphStatistics,
                  ApplicationProperties properties) {
 
         this.endpointServices = endpointServices;
@@ -62,6 +65,8 @@ public class GraphManager {
         this.terminologyManager = terminologyManager;
         this.modelManager = modelManager;
         this.serviceDescriptionManager = serviceDescriptionManager;
+        this.elasticConnector = elasticConnector;
+        this.graphStatistics = graphStatistics;
         this.properties = properties;
     }
 
@@ -414,19 +419,7 @@ public class GraphManager {
      * @return Returns graph as Jena model
      */
     public Model getCoreGraph(IRI graph) {
-
-        try {
-            return getCoreGraph(graph.toString());
-        } catch (HttpException ex) {
-            logger.warn(ex.toString());
-            try {
-                Thread.sleep(1000);
-            } catch (InterruptedException e) {
-                logger.warn("Thread error", e);
-                Thread.currentThread().interrupt();
-            }
-            return getCoreGraph(graph.toString());
-        }
+        return getCoreGraph(graph.toString());
     }
 
     /**
@@ -684,11 +677,9 @@ public class GraphManager {
      * Initializes Core service with default Graph from static resources file
      */
     public void createDefaultGraph() {
-        try(RDFConnection connection = RDFConnection.connect(endpointServices.getCoreReadWriteAddress())){
-            Model m = ModelFactory.createDefaultModel();
-            RDFDataMgr.read(m, LDHelper.getDefaultGraphInputStream(), RDFLanguages.JSONLD);
-            connection.put("urn:csc:iow:sd", m);
-        }
+        Model m = ModelFactory.createDefaultModel();
+        RDFDataMgr.read(m, LDHelper.getDefaultGraphInputStream(), RDFLanguages.JSONLD);
+        jenaClient.putModelToCore("urn:csc:iow:sd", m);
     }
 
     /**
@@ -737,10 +728,11 @@ public class GraphManager {
         logger.info("Removing model from {}", id);
 
         UpdateRequest queryObj = pss.asUpdate();
-        UpdateProcessor qexec = UpdateExecutionFactory.createRemoteForm(queryObj, endpointServices.getCoreSparqlUpdateAddress());
+        GraphStatistics.Changes changes = new GraphStatistics.Changes().add(graphStatistics.countModel(id.toString()), -1);
+        graphStatistics.updateRequest(changes).getOperations().forEach(queryObj::add);
 
         try {
-            qexec.execute();
+            graphStatistics.write(changes, () -> jenaClient.updateToService(queryObj, endpointServices.getCoreSparqlUpdateAddress()));
         } catch (UpdateException ex) {
             logger.warn(ex.toString());
         }
@@ -762,10 +754,9 @@ public class GraphManager {
         logger.warn("Removing graph " + id);
 
         UpdateRequest queryObj = pss.asUpdate();
-        UpdateProcessor qexec = UpdateExecutionFactory.createRemoteForm(queryObj, endpointServices.getCoreSparqlUpdateAddress());
 
         try {
-            qexec.execute();
+            jenaClient.updateToService(queryObj, endpointServices.getCoreSparqlUpdateAddress());
         } catch (UpdateException ex) {
             logger.warn(ex.toString());
         }
@@ -787,8 +778,7 @@ public class GraphManager {
         pss.setCommandText(query);
 
         UpdateRequest queryObj = pss.asUpdate();
-        UpdateProcessor qexec = UpdateExecutionFactory.createRemoteForm(queryObj, endpointServices.getCoreSparqlUpdateAddress());
-        qexec.execute();
+        jenaClient.updateToService(queryObj, endpointServices.getCoreSparqlUpdateAddress());
 
         /* OPTIONALLY. Ummm. Not really?
 
@@ -813,15 +803,13 @@ public class GraphManager {
 
         UpdateRequest queryObj = pss.asUpdate();
 
-        UpdateProcessor qexec = UpdateExecutionFactory.createRemoteForm(queryObj, endpointServices.getCoreSparqlUpdateAddress());
-        qexec.execute();
+        jenaClient.updateToService(queryObj, endpointServices.getCoreSparqlUpdateAddress());
 
-        qexec = UpdateExecutionFactory.createRemoteForm(queryObj, endpointServices.getProvSparqlUpdateAddress());
-        qexec.execute();
+        jenaClient.updateToService(queryObj, endpointServices.getProvSparqlUpdateAddress());
 
-        qexec = UpdateExecutionFactory.createRemoteForm(queryObj, endpointServices.getTempConceptSparqlUpdateAddress());
-        qexec.execute();
+        jenaClient.updateToService(queryObj, endpointServices.getTempConceptSparqlUpdateAddress());
 
+        graphStatistics.requestReconciliation();
     }
 
     /**
@@ -833,8 +821,7 @@ public class GraphManager {
     public void renameID(IRI oldID,
                          IRI newID) {
         UpdateRequest queryObj = renameIDRequest(oldID, newID);
-        UpdateProcessor qexec = UpdateExecutionFactory.createRemoteForm(queryObj, endpointServices.getCoreSparqlUpdateAddress());
-        qexec.execute();
+        jenaClient.updateToService(queryObj, endpointServices.getCoreSparqlUpdateAddress());
     }
 
     /**
@@ -849,8 +836,7 @@ public class GraphManager {
                                                 IRI newID) {
 
         UpdateRequest queryObj = updateReferencesInPositionGraphRequest(modelID, oldID, newID);
-        UpdateProcessor qexec = UpdateExecutionFactory.createRemoteForm(queryObj, endpointServices.getCoreSparqlUpdateAddress());
-        qexec.execute();
+        jenaClient.updateToService(queryObj, endpointServices.getCoreSparqlUpdateAddress());
 
     }
 
@@ -883,8 +869,7 @@ public class GraphManager {
         logger.warn("Updating references in " + modelID.toString());
 
         UpdateRequest queryObj = pss.asUpdate();
-        UpdateProcessor qexec = UpdateExecutionFactory.createRemoteForm(queryObj, endpointServices.getCoreSparqlUpdateAddress());
-        qexec.execute();
+        jenaClient.updateToService(queryObj, endpointServices.getCoreSparqlUpdateAddress());
 
     }
 
@@ -905,20 +890,11 @@ public class GraphManager {
         pss.setCommandText(query);
 
         UpdateRequest queryObj = pss.asUpdate();
-        UpdateProcessor qexec = UpdateExecutionFactory.createRemoteForm(queryObj, endpointServices.getCoreSparqlUpdateAddress());
-        qexec.execute();
+        jenaClient.updateToService(queryObj, endpointServices.getCoreSparqlUpdateAddress());
     }
 
-    /**
-     * Renames Resource IRI references in export graph
-     *
-     * @param modelID Model IRI
-     * @param oldID   Old Predicate IRI
-     * @param newID   New Predicate IRI
-     */
-    public void updateResourceReferencesInAllGraphs(IRI modelID,
-                                                    IRI oldID,
-                                                    IRI newID) {
+    public static UpdateRequest updateResourceReferencesInAllGraphsRequest(IRI oldID,
+                                                                           IRI newID) {
 
         String query
             = " DELETE { GRAPH ?anyGraph { ?any ?predicate ?oldID }} "
@@ -931,54 +907,61 @@ public class GraphManager {
         pss.setIri("newID", newID);
         pss.setCommandText(query);
 
+        return pss.asUpdate();
+    }
+
+    /**
+     * Renames Resource IRI references in export graph
+     *
+     * @param modelID Model IRI
+     * @param oldID   Old Predicate IRI
+     * @param newID   New Predicate IRI
+     */
+    public void updateResourceReferencesInAllGraphs(IRI modelID,
+                                                    IRI oldID,
+                                                    IRI newID) {
+
         logger.warn("Updating references in " + modelID.toString() + "#ExportGraph");
 
-        UpdateRequest queryObj = pss.asUpdate();
-        UpdateProcessor qexec = UpdateExecutionFactory.createRemoteForm(queryObj, endpointServices.getCoreSparqlUpdateAddress());
-        qexec.execute();
+        UpdateRequest queryObj = updateResourceReferencesInAllGraphsRequest(oldID, newID);
+        jenaClient.updateToService(queryObj, endpointServices.getCoreSparqlUpdateAddress());
 
     }
 
     public void updateStatusAndProvInModel(IRI oldID,
                                            IRI newID) {
         UpdateRequest queryObj = updateStatusAndRevisionInModelRequest(oldID, newID);
-        UpdateProcessor qexec = UpdateExecutionFactory.createRemoteForm(queryObj, endpointServices.getCoreSparqlUpdateAddress());
-        qexec.execute();
+        jenaClient.updateToService(queryObj, endpointServices.getCoreSparqlUpdateAddress());
     }
 
     public void updateStatusAndDerivationInModel(IRI oldID,
                                                  IRI newID) {
         UpdateRequest queryObj = updateStatusAndDerivationInModelRequest(oldID, newID);
-        UpdateProcessor qexec = UpdateExecutionFactory.createRemoteForm(queryObj, endpointServices.getCoreSparqlUpdateAddress());
-        qexec.execute();
+        jenaClient.updateToService(queryObj, endpointServices.getCoreSparqlUpdateAddress());
     }
 
     public void renameObjectIRIinModel(IRI oldID,
                                        IRI newID) {
         UpdateRequest queryObj = updateObjectIRIInGraph(oldID, newID);
-        UpdateProcessor qexec = UpdateExecutionFactory.createRemoteForm(queryObj, endpointServices.getCoreSparqlUpdateAddress());
-        qexec.execute();
+        jenaClient.updateToService(queryObj, endpointServices.getCoreSparqlUpdateAddress());
     }
 
     public void changeNamespaceInObjects(IRI oldID,
                                          IRI newID) {
         UpdateRequest queryObj = updateNamespaceInObject(oldID, newID);
-        UpdateProcessor qexec = UpdateExecutionFactory.createRemoteForm(queryObj, endpointServices.getCoreSparqlUpdateAddress());
-        qexec.execute();
+        jenaClient.updateToService(queryObj, endpointServices.getCoreSparqlUpdateAddress());
     }
 
     public void changeNamespaceInResources(IRI oldID,
                                            IRI newID) {
         UpdateRequest queryObj = renameResourcesInNewGraphsQuery(oldID, newID);
-        UpdateProcessor qexec = UpdateExecutionFactory.createRemoteForm(queryObj, endpointServices.getCoreSparqlUpdateAddress());
-        qexec.execute();
+        jenaClient.updateToService(queryObj, endpointServices.getCoreSparqlUpdateAddress());
     }
 
     public void changeStatusInNewGraphs(IRI oldID,
                                         IRI newID) {
         UpdateRequest queryObj = changeStatusInNewGraphsQuery(oldID, newID);
-        UpdateProcessor qexec = UpdateExecutionFactory.createRemoteForm(queryObj, endpointServices.getCoreSparqlUpdateAddress());
-        qexec.execute();
+        jenaClient.updateToService(queryObj, endpointServices.getCoreSparqlUpdateAddress());
     }
 
     /**
@@ -1034,22 +1017,26 @@ public class GraphManager {
         pss.setIri("exportGraph", model + "#ExportGraph");
         pss.setIri("resource", resource);
         pss.setCommandText(query);
-        UpdateProcessor qexec = UpdateExecutionFactory.createRemoteForm(pss.asUpdate(), endpointServices.getCoreSparqlUpdateAddress());
-        qexec.execute();
+        jenaClient.updateToService(pss.asUpdate(), endpointServices.getCoreSparqlUpdateAddress());
 
         Model prefixModel = ModelFactory.createDefaultModel();
         prefixModel.setNsPrefixes(getPrefixMappingFromResource(resource));
         prefixModel.add(ResourceFactory.createResource(model.toString()), RDF.type, OWL.Ontology);
-        try(RDFConnection connection = RDFConnection.connect(endpointServices.getCoreReadWriteAddress())){
-            connection.load(model.toString(), prefixModel);
-            connection.load(model.toString() + "#ExportGraph", prefixModel);
-        }
+        jenaClient.addModelToCore(model.toString(), prefixModel);
+        jenaClient.addModelToCore(model.toString() + "#ExportGraph", prefixModel);
 
     }
 
-    public void changeResourceStatuses(String model,
-                                       String initialStatus,
-                                       String endStatus) {
+    /**
+     * Changes statuses of the resources in the model and in the resource index
+     *
+     * @return true if the status was changed in the index for every resource whose status was changed
+     */
+    public boolean changeResourceStatuses(String model,
+                                          String initialStatus,
+                                          String endStatus) {
+        List<String> resources = getResourcesWithStatus(model, initialStatus);
+        Literal statusModified = LDHelper.getDateTimeLiteral();
         String query =
             "DELETE { " +
                 "GRAPH ?resource { ?any owl:versionInfo ?initialStatus . ?any iow:statusModified ?oldStatusModified . }" +
@@ -1070,72 +1057,98 @@ public class GraphManager {
         pss.setIri("graph", model);
         pss.setLiteral("initialStatus", initialStatus);
         pss.setLiteral("endStatus", endStatus);
-        pss.setLiteral("statusModified", LDHelper.getDateTimeLiteral());
+        pss.setLiteral("statusModified", statusModified);
+        pss.setCommandText(query);
+        UpdateRequest request = pss.asUpdate();
+        GraphStatistics.Changes changes = new GraphStatistics.Changes().move(graphStatistics.countResources(model, initialStatus), endStatus);
+        graphStatistics.updateRequest(changes).getOperations().forEach(request::add);
+        graphStatistics.write(changes, () -> jenaClient.updateToService(request, endpointServices.getCoreSparqlUpdateAddress()));
+
+        long updated = elasticConnector.updateStatusByQuery(model, initialStatus, endStatus, resources, statusModified.getLexicalForm(), true);
+        if (updated != resources.size()) {
+            logger.warn("Status changed for " + resources.size() + " resources in " + model + " but for " + updated + " in index");
+            return false;
+        }
+        return true;
+    }
+
+    private List<String> getResourcesWithStatus(String model,
+                                                String status) {
+        String query =
+            "SELECT ?resource WHERE { " +
+                "GRAPH ?hasPartGraph { ?graph dcterms:hasPart ?resource . } " +
+                "GRAPH ?resource { ?resource rdfs:isDefinedBy ?graph . ?resource owl:versionInfo ?status . } " +
+                "}";
+        ParameterizedSparqlString pss = new ParameterizedSparqlString();
+        pss.setNsPrefixes(LDHelper.PREFIX_MAP);
+        pss.setIri("hasPartGraph", model + "#HasPartGraph");
+        pss.setIri("graph", model);
+        pss.setLiteral("status", status);
         pss.setCommandText(query);
-        UpdateProcessor qexec = UpdateExecutionFactory.createRemoteForm(pss.asUpdate(), endpointServices.getCoreSparqlUpdateAddress());
-        qexec.execute();
+
+        List<String> resources = new ArrayList<>();
+        ResultSet results = jenaClient.selectQuery(endpointServices.getCoreSparqlAddress(), pss.asQuery());
+        while (results.hasNext()) {
+            resources.add(results.nextSolution().getResource("resource").getURI());
+        }
+        return resources;
     }
 
     /*
      * Status change for normal users. Only certain status changes are allowed.
+     * Returns true if the resource index was updated, see changeResourceStatuses.
      */
-    public void changeStatuses(String model,
+    public boolean changeStatuses(String model,
                                String initialStatus,
                                String endStatus) {
         switch (initialStatus) {
             case "INCOMPLETE":
                 if (endStatus.equals("DRAFT")) {
                     logger.debug("Status changes in " + model + " from " + initialStatus + " to " + endStatus);
-                    changeResourceStatuses(model, initialStatus, endStatus);
+                    return changeResourceStatuses(model, initialStatus, endStatus);
                 } else {
                     throw new IllegalArgumentException("Invalid status change from " + initialStatus + " to " + endStatus);
                 }
-                break;
             case "DRAFT":
                 final List<String> draftChanges = List.of("INCOMPLETE", "VALID", "RETIRED", "INVALID", "SUPERSEDED");
                 if (draftChanges.contains(endStatus)) {
                     logger.debug("Status changes in {} from {} to {}", model, initialStatus, endStatus);
-                    changeResourceStatuses(model, initialStatus, endStatus);
+                    return changeResourceStatuses(model, initialStatus, endStatus);
                 } else {
                     throw new IllegalArgumentException("Invalid status change from " + initialStatus + " to " + endStatus);
                 }
-                break;
             case "VALID":
                 final List<String> validChanges = List.of("RETIRED", "INVALID", "SUPERSEDED");
                 if (validChanges.contains(endStatus)) {
                     logger.debug("Status changes in {} from {} to {}", model, initialStatus, endStatus);
-                    changeResourceStatuses(model, initialStatus, endStatus);
+                    return changeResourceStatuses(model, initialStatus, endStatus);
                 } else {
                     throw new IllegalArgumentException("Invalid status change from " + initialStatus + " to " + endStatus);
                 }
-                break;
             case "RETIRED":
                 final List<String> removedChanges = List.of("VALID", "INVALID", "SUPERSEDED");
                 if (removedChanges.contains(endStatus)) {
                     logger.debug("Status changes in {} from {} to {}", model, initialStatus, endStatus);
-                    changeResourceStatuses(model, initialStatus, endStatus);
+                    return changeResourceStatuses(model, initialStatus, endStatus);
                 } else {
                     throw new IllegalArgumentException("Invalid status change from " + initialStatus + " to " + endStatus);
                 }
-                break;
             case "SUPERSEDED":
                 final List<String> supersededChanges = List.of("VALID", "INVALID", "RETIRED");
                 if (supersededChanges.contains(endStatus)) {
                     logger.debug("Status changes in {} from {} to {}", model, initialStatus, endStatus);
-                    changeResourceStatuses(model, initialStatus, endStatus);
+                    return changeResourceStatuses(model, initialStatus, endStatus);
                 } else {
                     throw new IllegalArgumentException("Invalid status change from " + initialStatus + " to " + endStatus);
                 }
-                break;
             case "INVALID":
                 final List<String> invalidChanges = List.of("RETIRED", "VALID", "SUPERSEDED");
                 if (invalidChanges.contains(endStatus)) {
                     logger.debug("Status changes in {} from {} to {}", model, initialStatus, endStatus);
-                    changeResourceStatuses(model, initialStatus, endStatus);
+                    return changeResourceStatuses(model, initialStatus, endStatus);
                 } else {
                     throw new IllegalArgumentException("Invalid status change from " + initialStatus + " to " + endStatus);
                 }
-                break;
             default:
                 throw new IllegalArgumentException("Unknown status change from " + initialStatus + " to " + endStatus);
         }
@@ -1143,16 +1156,16 @@ public class GraphManager {
 
     /*
      * Status change for super users. All status changes between statuses are allowed.
-     *
+     * Returns true if the resource index was updated, see changeResourceStatuses.
      */
-    public void changeStatusesAsSuperUser(String model,
+    public boolean changeStatusesAsSuperUser(String model,
                                           String initialStatus,
                                           String endStatus) {
         final List<String> allChanges = List.of("INCOMPLETE", "DRAFT", "VALID", "SUPERSEDED", "RETIRED", "INVALID", "RECOMMENDED");
 
         if (allChanges.contains(endStatus) && allChanges.contains(initialStatus)) {
             logger.debug("Status changes in " + model + " from " + initialStatus + " to " + endStatus + " as SuperUser");
-            changeResourceStatuses(model, initialStatus, endStatus);
+            return changeResourceStatuses(model, initialStatus, endStatus);
         } else {
             throw new IllegalArgumentException("Invalid status change from " + initialStatus + " to " + endStatus);
         }
@@ -1169,8 +1182,7 @@ public class GraphManager {
         pss.setIri("to", to);
         pss.setCommandText(query);
         UpdateRequest queryObj = pss.asUpdate();
-        UpdateProcessor qexec = UpdateExecutionFactory.createRemoteForm(queryObj, endpointServices.getCoreSparqlUpdateAddress());
-        qexec.execute();
+        jenaClient.updateToService(queryObj, endpointServices.getCoreSparqlUpdateAddress());
     }
 
     /**
@@ -1226,7 +1238,7 @@ public class GraphManager {
         LDHelper.rewriteLiteral(oldModelGraph, newModelResource, LDHelper.curieToProperty("dcap:preferredXMLNamespaceName"), ResourceFactory.createPlainLiteral(newModel.toString() + "#"));
         LDHelper.rewriteLiteral(oldModelGraph, newModelResource, LDHelper.curieToProperty("dcap:preferredXMLNamespacePrefix"), ResourceFactory.createPlainLiteral(newPrefix));
         renameObjectNamespaceInModel(oldModelGraph, model.toString() + "#", newModel.toString() + "#");
-        connection.put(newModel.toString(), oldModelGraph);
+        jenaClient.putModelToCore(newModel.toString(), oldModelGraph);
         Model oldHasPartGraph;
         try{
             oldHasPartGraph = connection.fetch(model.toString() + "#HasPartGraph");
@@ -1254,7 +1266,7 @@ public class GraphManager {
                         }
                     }
                 }
-                connection.put(newModel.toString() + "#PositionGraph", oldPositionGraph);
+                jenaClient.putModelToCore(newModel.toString() + "#PositionGraph", oldPositionGraph);
             }
             NodeIterator hasPartObjects = oldHasPartGraph.listObjectsOfProperty(DCTerms.hasPart);
 
@@ -1290,12 +1302,12 @@ public class GraphManager {
                             ResourceUtils.renameResource(propertyShape, "urn:uuid:" + UUID.randomUUID().toString());
                         }
 
-                        connection.put(newGraph, oldResourceGraph);
+                        jenaClient.putModelToCore(newGraph, oldResourceGraph);
                         ResourceUtils.renameResource(hasPartResource, newGraph);
                     }
                 }
             }
-            connection.put(newModel.toString() + "#HasPartGraph", oldHasPartGraph);
+            jenaClient.putModelToCore(newModel.toString() + "#HasPartGraph", oldHasPartGraph);
         }
 
     }
@@ -1322,13 +1334,13 @@ public class GraphManager {
                                 IRI oldID,
                                 IRI newID) {
         createVersionGraphsWithJenaAdapter(oldVocabulary, newPrefix, oldID, newID);
+        graphStatistics.requestReconciliation();
     }
 
     public void changePrefixAndNamespaceFromModelCopy(IRI newID,
                                                       String newPrefix) {
         UpdateRequest queryObj = changePrefixAndNamespaceFromModelCopyQuery(newID, newPrefix);
-        UpdateProcessor qexec = UpdateExecutionFactory.createRemoteForm(queryObj, endpointServices.getCoreSparqlUpdateAddress());
-        qexec.execute();
+        jenaClient.updateToService(queryObj, endpointServices.getCoreSparqlUpdateAddress());
     }
 
     public UpdateRequest insertNewGraphReferenceToModelRequest(String graph,
@@ -1365,8 +1377,7 @@ public class GraphManager {
     public void insertNewGraphReferenceToModel(String graph,
                                                String model) {
         UpdateRequest queryObj = insertNewGraphReferenceToModelRequest(graph, model);
-        UpdateProcessor qexec = UpdateExecutionFactory.createRemoteForm(queryObj, endpointServices.getCoreSparqlUpdateAddress());
-        qexec.execute();
+        jenaClient.updateToService(queryObj, endpointServices.getCoreSparqlUpdateAddress());
 
     }
 
@@ -1380,8 +1391,7 @@ public class GraphManager {
                                                      String model) {
 
         UpdateRequest queryObj = insertNewGraphReferenceToExportGraphRequest(graph, model);
-        UpdateProcessor qexec = UpdateExecutionFactory.createRemoteForm(queryObj, endpointServices.getCoreSparqlUpdateAddress());
-        qexec.execute();
+        jenaClient.updateToService(queryObj, endpointServices.getCoreSparqlUpdateAddress());
 
     }
 
@@ -1409,8 +1419,7 @@ public class GraphManager {
     public void insertExistingGraphReferenceToModel(String graph,
                                                     String model) {
         UpdateRequest queryObj = insertExistingGraphReferenceToModelRequest(graph, model);
-        UpdateProcessor qexec = UpdateExecutionFactory.createRemoteForm(queryObj, endpointServices.getCoreSparqlUpdateAddress());
-        qexec.execute();
+        jenaClient.updateToService(queryObj, endpointServices.getCoreSparqlUpdateAddress());
     }
 
     public void deleteGraphReferenceFromModel(IRI graph,
@@ -1421,22 +1430,19 @@ public class GraphManager {
     public void deletePositionGraphReferencesFromModel(String modelIRI,
                                                        String resourceIRI) {
         UpdateRequest queryObj = deleteReferencesFromPositionGraphRequest(modelIRI, resourceIRI);
-        UpdateProcessor qexec = UpdateExecutionFactory.createRemoteForm(queryObj, endpointServices.getCoreSparqlUpdateAddress());
-        qexec.execute();
+        jenaClient.updateToService(queryObj, endpointServices.getCoreSparqlUpdateAddress());
     }
 
     public void deleteGraphReferenceFromModel(String graph,
                                               String model) {
         UpdateRequest queryObj = deleteGraphReferenceFromModelRequest(graph, model);
-        UpdateProcessor qexec = UpdateExecutionFactory.createRemoteForm(queryObj, endpointServices.getCoreSparqlUpdateAddress());
-        qexec.execute();
+        jenaClient.updateToService(queryObj, endpointServices.getCoreSparqlUpdateAddress());
     }
 
     public void deleteReferencedResourceFromExportModel(String graph,
                                                         String model) {
         UpdateRequest exportQueryObj = deleteReferencesFromExportGraphRequest(model, graph);
-        UpdateProcessor expQexec = UpdateExecutionFactory.createRemoteForm(exportQueryObj, endpointServices.getCoreSparqlUpdateAddress());
-        expQexec.execute();
+        jenaClient.updateToService(exportQueryObj, endpointServices.getCoreSparqlUpdateAddress());
     }
 
     public UpdateRequest deleteGraphReferenceFromModelRequest(String graph,
@@ -1497,8 +1503,7 @@ public class GraphManager {
         pss.setCommandText(query);
 
         UpdateRequest queryObj = pss.asUpdate();
-        UpdateProcessor qexec = UpdateExecutionFactory.createRemoteForm(queryObj, endpointServices.getCoreSparqlUpdateAddress());
-        qexec.execute();
+        jenaClient.updateToService(queryObj, endpointServices.getCoreSparqlUpdateAddress());
 
     }
 
@@ -1529,21 +1534,14 @@ public class GraphManager {
     public void addCoreGraphToCoreGraph(String fromGraph,
                                         String toGraph) throws NullPointerException {
 
-        try(RDFConnection connection = RDFConnection.connect(endpointServices.getCoreReadWriteAddress())){
-            Model model;
-            try{
-                 model = connection.fetch(fromGraph);
-            }catch(HttpException ex){
-                model = null;
-            }
+        Model model = jenaClient.getModelFromCore(fromGraph);
 
-            if (model == null) {
-                throw new NullPointerException();
-            }
-
-            connection.load(toGraph, model);
+        if (model == null) {
+            throw new NullPointerException();
         }
 
+        jenaClient.addModelToCore(toGraph, model);
+
     }
 
     /**
@@ -1565,17 +1563,13 @@ public class GraphManager {
             logger.warn(ex.getMessage());
         } */
 
-        try(RDFConnection connection = RDFConnection.connect(endpointServices.getCoreReadWriteAddress())){
-            connection.put(id, model);
-        }
+        jenaClient.putModelToCore(id, model);
     }
 
     public void addToGraph(Model model,
                            String id) {
         logger.debug("Adding to {}", id);
-        try(RDFConnection connection = RDFConnection.connect(endpointServices.getCoreReadWriteAddress())){
-            connection.load(id, model);
-        }
+        jenaClient.addModelToCore(id, model);
     }
 
     /**
@@ -1625,7 +1619,7 @@ public class GraphManager {
 
     }
 
-    public void updateContentModified(String model) {
+    public static UpdateRequest updateContentModifiedRequest(String model) {
 
         String query
             = " DELETE { " +
@@ -1648,8 +1642,11 @@ public class GraphManager {
         pss.setLiteral("newDate", LDHelper.getDateTimeLiteral());
         pss.setCommandText(query);
 
-        UpdateProcessor qexec = UpdateExecutionFactory.createRemoteForm(pss.asUpdate(), endpointServices.getCoreSparqlUpdateAddress());
-        qexec.execute();
+        return pss.asUpdate();
+    }
+
+    public void updateContentModified(String model) {
+        jenaClient.updateToService(updateContentModifiedRequest(model), endpointServices.getCoreSparqlUpdateAddress());
     }
 
     /**
@@ -1692,21 +1689,35 @@ public class GraphManager {
         LDHelper.rewriteLiteral(resource.asGraph(), ResourceFactory.createResource(resource.getId()), DCTerms.modified, created);
         LDHelper.rewriteLiteral(resource.asGraph(), ResourceFactory.createResource(resource.getId()), LDHelper.curieToProperty("iow:statusModified"), created);
         LDHelper.rewriteLiteral(resource.asGraph(), ResourceFactory.createResource(resource.getId()), DCTerms.created, created);
-        jenaClient.putModelToCore(resource.getId(), resource.asGraph());
-        insertNewGraphReferenceToModel(resource.getId(), resource.getModelId());
 
         Model exportModel = resource.asGraphCopy();
         exportModel.add(exportModel.createResource(resource.getModelId()), DCTerms.hasPart, exportModel.createResource(resource.getId()));
 
-        jenaClient.addModelToCore(resource.getModelId() + "#ExportGraph", exportModel);
+        GraphStatistics.Changes changes = new GraphStatistics.Changes().add(resource.asGraph(), resource.getId(), 1);
+
+        GraphChangeSet changeSet = new GraphChangeSet()
+            .put(resource.getId(), resource.asGraph())
+            .update(insertNewGraphReferenceToModelRequest(resource.getId(), resource.getModelId()))
+            .add(resource.getModelId() + "#ExportGraph", exportModel)
+            .update(updateContentModifiedRequest(resource.getModelId()))
+            .update(GraphStatistics.STATISTICS_GRAPH, graphStatistics.updateRequest(changes));
 
-        updateContentModified(resource.getModelId());
+        graphStatistics.write(changes, () -> jenaClient.updateCore(changeSet));
     }
 
-    public void updateResource(String modelId,
-                               String resourceId,
-                               Model oldModel,
-                               Model newModel) {
+    /**
+     * Collects changes needed to replace resource graph and its statements in the export graph
+     *
+     * @param modelId    Model IRI as String
+     * @param resourceId Resource IRI as String
+     * @param oldModel   Old resource graph
+     * @param newModel   New resource graph
+     * @return Change set with export graph and resource graph puts
+     */
+    private GraphChangeSet updateResourceChangeSet(String modelId,
+                                                   String resourceId,
+                                                   Model oldModel,
+                                                   Model newModel) {
 
         Literal modified = LDHelper.getDateTimeLiteral();
         LDHelper.rewriteLiteral(newModel, ResourceFactory.createResource(resourceId), DCTerms.modified, modified);
@@ -1715,10 +1726,21 @@ public class GraphManager {
         exportModel = modelManager.removeResourceStatements(oldModel, exportModel);
         exportModel.add(newModel);
 
-        jenaClient.putModelToCore(modelId + "#ExportGraph", exportModel);
-        jenaClient.putModelToCore(resourceId, newModel);
+        return new GraphChangeSet()
+            .put(modelId + "#ExportGraph", exportModel)
+            .put(resourceId, newModel)
+            .update(updateContentModifiedRequest(modelId));
+    }
 
-        updateContentModified(modelId);
+    public void updateResource(String modelId,
+                               String resourceId,
+                               Model oldModel,
+                               Model newModel) {
+        GraphStatistics.Changes changes = new GraphStatistics.Changes()
+            .add(oldModel, resourceId, -1)
+            .add(newModel, resourceId, 1);
+        graphStatistics.write(changes, () -> jenaClient.updateCore(updateResourceChangeSet(modelId, resourceId, oldModel, newModel)
+            .update(GraphStatistics.STATISTICS_GRAPH, graphStatistics.updateRequest(changes))));
     }
 
     public void updateResource(AbstractResource resource,
@@ -1741,10 +1763,19 @@ public class GraphManager {
         Literal createdDate = oldModel.getRequiredProperty(ResourceFactory.createResource(oldResource.getId()), DCTerms.created).getLiteral();
         LDHelper.rewriteLiteral(resource.asGraph(), ResourceFactory.createResource(resource.getId()), DCTerms.created, createdDate);
 
-        updateResource(resource.getModelId(), resource.getId(), oldModel, resource.asGraph());
-        removeGraph(oldResource.getIRI());
-        updateResourceReferencesInAllGraphs(resource.getModelIRI(), oldResource.getIRI(), resource.getIRI());
-        updateReferencesInPositionGraph(resource.getModelIRI(), oldResource.getIRI(), resource.getIRI());
+        logger.warn("Updating references in " + resource.getModelId() + "#ExportGraph");
+
+        GraphStatistics.Changes changes = new GraphStatistics.Changes()
+            .add(oldModel, oldResource.getId(), -1)
+            .add(resource.asGraph(), resource.getId(), 1);
+
+        GraphChangeSet changeSet = updateResourceChangeSet(resource.getModelId(), resource.getId(), oldModel, resource.asGraph())
+            .drop(oldResource.getId())
+            .update(updateResourceReferencesInAllGraphsRequest(oldResource.getIRI(), resource.getIRI()))
+            .update(updateReferencesInPositionGraphRequest(resource.getModelIRI(), oldResource.getIRI(), resource.getIRI()))
+            .update(GraphStatistics.STATISTICS_GRAPH, graphStatistics.updateRequest(changes));
+
+        graphStatistics.write(changes, () -> jenaClient.updateCore(changeSet));
     }
 
     public void deleteResource(AbstractResource resource) {
@@ -1758,11 +1789,17 @@ public class GraphManager {
         exportModel = modelManager.removeResourceStatements(resourceModel, exportModel);
         exportModel.remove(exportModel.createResource(modelId), DCTerms.hasPart, exportModel.createResource(resourceId));
 
-        jenaClient.putModelToCore(modelId + "#ExportGraph", exportModel);
-        deleteGraphReferenceFromModel(resourceId, modelId);
-        deletePositionGraphReferencesFromModel(modelId, resourceId);
-        updateContentModified(modelId);
-        jenaClient.deleteModelFromCore(resourceId);
+        GraphChangeSet changeSet = new GraphChangeSet()
+            .put(modelId + "#ExportGraph", exportModel)
+            .update(deleteGraphReferenceFromModelRequest(resourceId, modelId))
+            .update(deleteReferencesFromPositionGraphRequest(modelId, resourceId))
+            .update(updateContentModifiedRequest(modelId))
+            .drop(resourceId);
+
+        GraphStatistics.Changes changes = new GraphStatistics.Changes().add(resourceModel, resourceId, -1);
+        changeSet.update(GraphStatistics.STATISTICS_GRAPH, graphStatistics.updateRequest(changes));
+
+        graphStatistics.write(changes, () -> jenaClient.updateCore(changeSet));
     }
 
     public void createModel(AbstractModel amodel) {
@@ -1774,8 +1811,15 @@ public class GraphManager {
         LDHelper.rewriteLiteral(amodel.asGraph(), ResourceFactory.createResource(amodel.getId()), DCTerms.created, created);
 
         logger.info("Creating model " + amodel.getId());
-        jenaClient.putModelToCore(amodel.getId(), amodel.asGraph());
-        jenaClient.putModelToCore(amodel.getId() + "#ExportGraph", amodel.asGraph());
+
+        GraphStatistics.Changes changes = new GraphStatistics.Changes().add(amodel.asGraph(), amodel.getId(), 1);
+
+        GraphChangeSet changeSet = new GraphChangeSet()
+            .put(amodel.getId(), amodel.asGraph())
+            .put(amodel.getId() + "#ExportGraph", amodel.asGraph())
+            .update(GraphStatistics.STATISTICS_GRAPH, graphStatistics.updateRequest(changes));
+
+        graphStatistics.write(changes, () -> jenaClient.updateCore(changeSet));
     }
 
     public void updateModel(AbstractModel amodel,
@@ -1813,8 +1857,17 @@ public class GraphManager {
 
         exportModel.remove(oldModel);
         exportModel.add(amodel.asGraph());
-        jenaClient.putModelToCore(amodel.getId() + "#ExportGraph", exportModel);
-        jenaClient.putModelToCore(amodel.getId(), amodel.asGraph());
+
+        GraphStatistics.Changes changes = new GraphStatistics.Changes()
+            .add(oldModel, amodel.getId(), -1)
+            .add(amodel.asGraph(), amodel.getId(), 1);
+
+        GraphChangeSet changeSet = new GraphChangeSet()
+            .put(amodel.getId() + "#ExportGraph", exportModel)
+            .put(amodel.getId(), amodel.asGraph())
+            .update(GraphStatistics.STATISTICS_GRAPH, graphStatistics.updateRequest(changes));
+
+        graphStatistics.write(changes, () -> jenaClient.updateCore(changeSet));
     }
 
     public void deleteModel(AbstractModel amodel) {
@@ -1859,8 +1912,7 @@ public class GraphManager {
         logger.info("Removing version references with " + graph);
 
         UpdateRequest queryObj = pss.asUpdate();
-        UpdateProcessor qexec = UpdateExecutionFactory.createRemoteForm(queryObj, endpointServices.getCoreSparqlUpdateAddress());
-        qexec.execute();
+        jenaClient.updateToService(queryObj, endpointServices.getCoreSparqlUpdateAddress());
 
     }
 
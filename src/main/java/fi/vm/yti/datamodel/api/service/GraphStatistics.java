@@ -0,0 +1,388 @@
+/*
+ * Licensed under the European Union Public Licence (EUPL) V.1.1
+ */
+package fi.vm.yti.datamodel.api.service;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.jena.query.ParameterizedSparqlString;
+import org.apache.jena.query.QuerySolution;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.update.UpdateRequest;
+import org.apache.jena.vocabulary.DCTerms;
+import org.apache.jena.vocabulary.OWL;
+import org.apache.jena.vocabulary.RDF;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import fi.vm.yti.datamodel.api.utils.LDHelper;
+
+/**
+ * Counts model and resource graphs by type and status for the counts endpoint. GraphManager sends counter updates
+ * in the same SPARQL Update request as the graphs they count, so the counters in the statistics graph change in the
+ * same transaction. Counts are served from memory and reconciled in the background by counting all graphs, which also
+ * corrects writes that are not counted one by one, such as new model versions. Counted writes wait while all graphs
+ * are counted, so that no change is lost when the counters are replaced.
+ */
+@Service
+public class GraphStatistics {
+
+    public static final String STATISTICS_GRAPH = "urn:yti:datamodel:statistics";
+    static final String UNKNOWN_STATUS = "UNKNOWN";
+
+    private static final Logger logger = LoggerFactory.getLogger(GraphStatistics.class.getName());
+
+    private static final Map<String, String> TYPES = Map.of(
+        LDHelper.curieToURI("dcap:DCAP"), "profiles",
+        LDHelper.curieToURI("dcap:MetadataVocabulary"), "libraries",
+        LDHelper.curieToURI("rdfs:Class"), "classes",
+        LDHelper.curieToURI("sh:NodeShape"), "shapes",
+        LDHelper.curieToURI("owl:ObjectProperty"), "associations",
+        LDHelper.curieToURI("owl:DatatypeProperty"), "attributes");
+
+    private static final String TYPE_PATTERN = "?g a ?type . " +
+        "VALUES ?type { " +
+        "dcap:DCAP dcap:MetadataVocabulary " +
+        "rdfs:Class sh:NodeShape " +
+        "owl:ObjectProperty owl:DatatypeProperty } " +
+        "OPTIONAL { ?g owl:versionInfo ?status . } ";
+
+    private final EndpointServices endpointServices;
+    private final JenaClient jenaClient;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final AtomicBoolean reconciliationRequested = new AtomicBoolean();
+    /* Read lock is held by counted writes and write lock while counters are loaded or reconciled */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    /* Counters by name and status, such as classes-DRAFT. Null until loaded from the statistics graph. */
+    private volatile ConcurrentHashMap<String, AtomicLong> counters;
+
+    @Autowired
+    GraphStatistics(EndpointServices endpointServices,
+                    JenaClient jenaClient) {
+        this.endpointServices = endpointServices;
+        this.jenaClient = jenaClient;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Returns total counts by name as in the earlier COUNT query and counts of each name by status
+     *
+     * @return Map of names to counts as Strings and statuses to a map of names to counts by status
+     */
+    public Map<String, Object> getCounts() {
+        Map<String, Object> counts = new LinkedHashMap<>();
+        Map<String, Map<String, Long>> statuses = new TreeMap<>();
+        Map<String, Long> totals = new TreeMap<>();
+        loadedCounters().forEach((key, value) -> {
+            long count = value.get();
+            if (count != 0) {
+                int separator = key.indexOf('-');
+                String name = key.substring(0, separator);
+                totals.merge(name, count, Long::sum);
+                statuses.computeIfAbsent(name, status -> new TreeMap<>()).put(key.substring(separator + 1), count);
+            }
+        });
+        totals.forEach((name, count) -> counts.put(name, String.valueOf(count)));
+        counts.put("statuses", statuses);
+        return counts;
+    }
+
+    /**
+     * Counts the model graph and its resource graphs, as removed by GraphManager.removeModel
+     *
+     * @param model Model IRI as String
+     * @return Counts of the graphs
+     */
+    public Changes countModel(String model) {
+        String query = "SELECT ?type ?status (COUNT(?g) AS ?count) WHERE { " +
+            "{ BIND(?model AS ?g) } UNION { " +
+            "GRAPH ?hasPartGraph { ?model dcterms:hasPart ?g . } " +
+            "GRAPH ?g { ?g rdfs:isDefinedBy ?model . } } " +
+            "GRAPH ?g { " + TYPE_PATTERN + "} " +
+            "} GROUP BY ?type ?status";
+        ParameterizedSparqlString pss = new ParameterizedSparqlString();
+        pss.setNsPrefixes(LDHelper.PREFIX_MAP);
+        pss.setCommandText(query);
+        pss.setIri("model", model);
+        pss.setIri("hasPartGraph", model + "#HasPartGraph");
+        return count(pss);
+    }
+
+    /**
+     * Counts resources of the model with the status, as changed by GraphManager.changeResourceStatuses
+     *
+     * @param model  Model IRI as String
+     * @param status Status of the resources
+     * @return Counts of the resources
+     */
+    public Changes countResources(String model,
+                                  String status) {
+        String query = "SELECT ?type ?status (COUNT(?g) AS ?count) WHERE { " +
+            "GRAPH ?hasPartGraph { ?model dcterms:hasPart ?g . } " +
+            "GRAPH ?g { ?g rdfs:isDefinedBy ?model . ?g owl:versionInfo ?initialStatus . " + TYPE_PATTERN + "} " +
+            "} GROUP BY ?type ?status";
+        ParameterizedSparqlString pss = new ParameterizedSparqlString();
+        pss.setNsPrefixes(LDHelper.PREFIX_MAP);
+        pss.setCommandText(query);
+        pss.setIri("model", model);
+        pss.setIri("hasPartGraph", model + "#HasPartGraph");
+        pss.setLiteral("initialStatus", status);
+        return count(pss);
+    }
+
+    /**
+     * Builds update that adds the changes to the counters in the statistics graph
+     *
+     * @param changes Changes to the counters
+     * @return Update request with one operation for each changed counter
+     */
+    public UpdateRequest updateRequest(Changes changes) {
+        UpdateRequest request = new UpdateRequest();
+        changes.deltas.forEach((key, delta) -> {
+            ParameterizedSparqlString pss = new ParameterizedSparqlString();
+            pss.setNsPrefixes(LDHelper.PREFIX_MAP);
+            pss.setCommandText("DELETE { GRAPH ?statistics { ?counter rdf:value ?old . } } " +
+                "INSERT { GRAPH ?statistics { ?counter rdf:value ?new . } } " +
+                "WHERE { OPTIONAL { GRAPH ?statistics { ?counter rdf:value ?old . } } " +
+                "BIND(COALESCE(?old, 0) + ?delta AS ?new) }");
+            pss.setIri("statistics", STATISTICS_GRAPH);
+            pss.setIri("counter", counterIRI(key));
+            pss.setLiteral("delta", delta);
+            pss.asUpdate().getOperations().forEach(request::add);
+        });
+        return request;
+    }
+
+    /**
+     * Executes a write that contains the update request of the changes and adds the changes to the counters in memory
+     * after it. Changes are not added if the write fails.
+     *
+     * @param changes Changes to the counters
+     * @param write   Write to core with the update request of the changes
+     */
+    public void write(Changes changes,
+                      Runnable write) {
+        lock.readLock().lock();
+        try {
+            write.run();
+            ConcurrentHashMap<String, AtomicLong> current = counters;
+            if (current != null) {
+                changes.deltas.forEach((key, delta) -> current.computeIfAbsent(key, counter -> new AtomicLong()).addAndGet(delta));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reconciles counters in the background after writes that are not counted one by one
+     */
+    public void requestReconciliation() {
+        if (reconciliationRequested.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                reconciliationRequested.set(false);
+                try {
+                    reconcile();
+                } catch (Exception ex) {
+                    logger.warn("Reconciling statistics failed: {}", ex.getMessage());
+                }
+            });
+        }
+    }
+
+    /**
+     * Counts all graphs and replaces the counters in memory and in the statistics graph. Counted writes wait until
+     * the counters are replaced. The statistics graph is written only if the counts differ from the counters.
+     */
+    @Scheduled(cron = "0 */15 * * * *")
+    public void reconcile() {
+        String query = "SELECT ?type ?status (COUNT(?g) AS ?count) WHERE { " +
+            "GRAPH ?g { " + TYPE_PATTERN + "} " +
+            "} GROUP BY ?type ?status";
+        ParameterizedSparqlString pss = new ParameterizedSparqlString();
+        pss.setNsPrefixes(LDHelper.PREFIX_MAP);
+        pss.setCommandText(query);
+
+        lock.writeLock().lock();
+        try {
+            Changes counts = count(pss);
+            ConcurrentHashMap<String, AtomicLong> previous = counters;
+            if (previous != null && snapshot(previous).equals(counts.deltas)) {
+                return;
+            }
+
+            Model model = ModelFactory.createDefaultModel();
+            model.add(model.createResource(STATISTICS_GRAPH), DCTerms.modified, LDHelper.getDateTimeLiteral());
+            ConcurrentHashMap<String, AtomicLong> reconciled = new ConcurrentHashMap<>();
+            counts.deltas.forEach((key, count) -> {
+                model.addLiteral(model.createResource(counterIRI(key)), RDF.value, count.longValue());
+                reconciled.put(key, new AtomicLong(count));
+            });
+            jenaClient.updateCore(new GraphChangeSet().put(STATISTICS_GRAPH, model));
+
+            if (previous != null) {
+                logger.info("Reconciled statistics from {} to {}", snapshot(previous), counts.deltas);
+            }
+            counters = reconciled;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private ConcurrentHashMap<String, AtomicLong> loadedCounters() {
+        ConcurrentHashMap<String, AtomicLong> current = counters;
+        return current != null ? current : load();
+    }
+
+    /**
+     * Loads counters from the statistics graph. The graph is reconciled first if it has never been reconciled, for
+     * example on the first start, as it may then contain only the changes counted since.
+     */
+    private ConcurrentHashMap<String, AtomicLong> load() {
+        lock.writeLock().lock();
+        try {
+            if (counters != null) {
+                return counters;
+            }
+            Model model = jenaClient.getModelFromCore(STATISTICS_GRAPH);
+            if (model == null || !model.contains(model.createResource(STATISTICS_GRAPH), DCTerms.modified)) {
+                reconcile();
+                return counters;
+            }
+            ConcurrentHashMap<String, AtomicLong> loaded = new ConcurrentHashMap<>();
+            for (Statement statement : model.listStatements(null, RDF.value, (RDFNode) null).toList()) {
+                String counter = statement.getSubject().getURI();
+                loaded.put(counter.substring(STATISTICS_GRAPH.length() + 1), new AtomicLong(statement.getLong()));
+            }
+            counters = loaded;
+            return loaded;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Changes count(ParameterizedSparqlString pss) {
+        Changes changes = new Changes();
+        ResultSet results = jenaClient.selectQuery(endpointServices.getCoreSparqlAddress(), pss.asQuery());
+        while (results.hasNext()) {
+            QuerySolution soln = results.next();
+            String status = soln.contains("status") ? soln.getLiteral("status").getString() : UNKNOWN_STATUS;
+            changes.add(TYPES.get(soln.getResource("type").getURI()), status, soln.getLiteral("count").getLong());
+        }
+        return changes;
+    }
+
+    private static Map<String, Long> snapshot(Map<String, AtomicLong> counters) {
+        Map<String, Long> snapshot = new HashMap<>();
+        counters.forEach((key, value) -> {
+            if (value.get() != 0) {
+                snapshot.put(key, value.get());
+            }
+        });
+        return snapshot;
+    }
+
+    private static String counterIRI(String key) {
+        return STATISTICS_GRAPH + "#" + key;
+    }
+
+    /**
+     * Changes to the counters of one write
+     */
+    public static final class Changes {
+
+        private final Map<String, Long> deltas = new LinkedHashMap<>();
+
+        /**
+         * Counts the types of the resource in its graph
+         *
+         * @param graph Model or resource graph
+         * @param id    IRI of the model or resource
+         * @param delta 1 for added graphs and -1 for removed graphs
+         * @return this
+         */
+        public Changes add(Model graph,
+                           String id,
+                           long delta) {
+            Resource resource = graph.getResource(id);
+            Statement versionInfo = resource.getProperty(OWL.versionInfo);
+            String status = versionInfo != null ? versionInfo.getString() : UNKNOWN_STATUS;
+            resource.listProperties(RDF.type).forEachRemaining(type -> {
+                if (type.getObject().isURIResource() && TYPES.containsKey(type.getResource().getURI())) {
+                    add(TYPES.get(type.getResource().getURI()), status, delta);
+                }
+            });
+            return this;
+        }
+
+        /**
+         * Adds counts of other changes multiplied by the factor
+         *
+         * @param other  Counted changes
+         * @param factor 1 to add or -1 to subtract
+         * @return this
+         */
+        public Changes add(Changes other,
+                           long factor) {
+            other.deltas.forEach((key, delta) -> add(key, delta * factor));
+            return this;
+        }
+
+        /**
+         * Moves counts of other changes from their status to the end status
+         *
+         * @param other     Counted changes
+         * @param endStatus New status
+         * @return this
+         */
+        public Changes move(Changes other,
+                            String endStatus) {
+            other.deltas.forEach((key, delta) -> {
+                add(key, -delta);
+                add(key.substring(0, key.indexOf('-')), endStatus, delta);
+            });
+            return this;
+        }
+
+        public boolean isEmpty() {
+            return deltas.isEmpty();
+        }
+
+        private void add(String name,
+                         String status,
+                         long delta) {
+            add(name + "-" + status, delta);
+        }
+
+        private void add(String key,
+                         long delta) {
+            if (deltas.merge(key, delta, Long::sum) == 0) {
+                deltas.remove(key);
+            }
+        }
+    }
+}
@@ -1,9 +1,10 @@
 package fi.vm.yti.datamodel.api.service;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.ws.rs.client.Client;
 import javax.ws.rs.core.GenericType;
@@ -28,20 +29,25 @@ import fi.vm.yti.datamodel.api.model.GroupManagementUserDTO;
 public class GroupManagementService {
 
     private static final Logger logger = LoggerFactory.getLogger(GroupManagementService.class.getName());
+    private static final int FETCH_ATTEMPTS = 3;
+    private static final long FETCH_RETRY_DELAY_MILLIS = 1000;
 
     private Map<UUID,GroupManagementUserDTO> users;
     private final ClientFactory clientFactory;
     private final ApplicationProperties applicationProperties;
     private final ObjectMapper objectMapper;
+    private final RemoteDependency groupManagement;
 
     @Autowired
     public GroupManagementService(ClientFactory clientFactory,
                                   ApplicationProperties applicationProperties,
-                                  ObjectMapper objectMapper) {
+                                  ObjectMapper objectMapper,
+                                  RemoteDependencyRegistry dependencyRegistry) {
         this.clientFactory = clientFactory;
         this.applicationProperties = applicationProperties;
         this.objectMapper = objectMapper;
-        this.users = new HashMap<>();
+        this.groupManagement = dependencyRegistry.get(RemoteDependencyRegistry.GROUPMANAGEMENT);
+        this.users = new ConcurrentHashMap<>();
         logger.info("Initializing Group management?");
     }
 
@@ -50,12 +56,22 @@ public class GroupManagementService {
         updateUsers();
     }
 
-    public void updateUsers() {
+    /**
+     * Fetches users in the background. Failed fetches are retried with backoff and the users of the previous fetch
+     * are kept if all attempts fail.
+     *
+     * @return Completes when the users are updated or the last attempt has failed
+     */
+    public CompletableFuture<Void> updateUsers() {
         final String url = applicationProperties.getDefaultGroupManagementAPI().replace("public-api","private-api")+"users";
-        Client client = clientFactory.create();
-        List<GroupManagementUserDTO> userList = client.target(url).request(MediaType.APPLICATION_JSON).get(new GenericType<>() {
-        });
-        userList.forEach(user -> users.put(user.getId(), user));
+        Client client = groupManagement.configure(clientFactory.create());
+        return groupManagement.callWithRetryAsync(() -> client.target(url).request(MediaType.APPLICATION_JSON).get(new GenericType<List<GroupManagementUserDTO>>() {
+        }), FETCH_ATTEMPTS, FETCH_RETRY_DELAY_MILLIS)
+            .thenAccept(userList -> userList.forEach(user -> users.put(user.getId(), user)))
+            .exceptionally(ex -> {
+                logger.warn("Could not fetch users from group management", ex);
+                return null;
+            });
     }
 
     public Model getUsersAsModel() {
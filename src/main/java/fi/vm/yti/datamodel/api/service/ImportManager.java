@@ -12,8 +12,6 @@ import org.apache.jena.query.ResultSet;
 import org.apache.jena.rdf.model.Literal;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdfconnection.RDFConnection;
-import org.apache.jena.update.UpdateExecutionFactory;
-import org.apache.jena.update.UpdateProcessor;
 import org.apache.jena.update.UpdateRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -25,12 +23,15 @@ public class ImportManager {
 
     private final EndpointServices endpointServices;
     private final GraphManager graphManager;
+    private final JenaClient jenaClient;
 
     @Autowired
     ImportManager(EndpointServices endpointServices,
-                  GraphManager graphManager) {
+                  GraphManager graphManager,
+                  JenaClient jenaClient) {
         this.endpointServices = endpointServices;
         this.graphManager = graphManager;
+        this.jenaClient = jenaClient;
     }
 
     /**
@@ -91,8 +92,7 @@ public class ImportManager {
         pss.setCommandText(query);
 
         UpdateRequest queryObj = pss.asUpdate();
-        UpdateProcessor qexec = UpdateExecutionFactory.createRemoteForm(queryObj, endpointServices.getCoreSparqlUpdateAddress());
-        qexec.execute();
+        jenaClient.updateToService(queryObj, endpointServices.getCoreSparqlUpdateAddress());
 
         updateResourceGraphs(graph, map);
 
@@ -134,8 +134,7 @@ public class ImportManager {
         pss.setCommandText(query);
 
         UpdateRequest queryObj = pss.asUpdate();
-        UpdateProcessor qexec = UpdateExecutionFactory.createRemoteForm(queryObj, endpointServices.getCoreSparqlUpdateAddress());
-        qexec.execute();
+        jenaClient.updateToService(queryObj, endpointServices.getCoreSparqlUpdateAddress());
     }
 
     private void updateResourceGraphs(String model,
@@ -206,8 +205,7 @@ public class ImportManager {
         pss.setCommandText(query);
 
         UpdateRequest queryObj = pss.asUpdate();
-        UpdateProcessor qexec = UpdateExecutionFactory.createRemoteForm(queryObj, endpointServices.getCoreSparqlUpdateAddress());
-        qexec.execute();
+        jenaClient.updateToService(queryObj, endpointServices.getCoreSparqlUpdateAddress());
     }
 
     private void constructGraphs(String graph,
@@ -272,9 +270,7 @@ public class ImportManager {
 
             Model results = qexec.execConstruct();
 
-            try(RDFConnection connection = RDFConnection.connect(endpointServices.getCoreReadWriteAddress())){
-                connection.load(resource, results);
-            }
+            jenaClient.addModelToCore(resource, results);
         }
 
     }
@@ -304,7 +300,6 @@ public class ImportManager {
         pss.setCommandText(query);
 
         UpdateRequest queryObj = pss.asUpdate();
-        UpdateProcessor qexec = UpdateExecutionFactory.createRemoteForm(queryObj, endpointServices.getCoreSparqlUpdateAddress());
-        qexec.execute();
+        jenaClient.updateToService(queryObj, endpointServices.getCoreSparqlUpdateAddress());
     }
 }
@@ -1,5 +1,7 @@
 package fi.vm.yti.datamodel.api.service;
 
+import java.util.concurrent.TimeUnit;
+
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.Credentials;
 import org.apache.http.auth.UsernamePasswordCredentials;
@@ -9,11 +11,12 @@ import org.apache.http.impl.client.HttpClients;
 import org.apache.jena.atlas.web.HttpException;
 import org.apache.jena.query.Query;
 import org.apache.jena.query.QueryExecution;
-import org.apache.jena.query.QueryExecutionFactory;
 import org.apache.jena.query.ResultSet;
 import org.apache.jena.query.ResultSetFactory;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdfconnection.RDFConnection;
+import org.apache.jena.sparql.exec.http.QueryExecutionHTTPBuilder;
+import org.apache.jena.update.UpdateExecution;
 import org.apache.jena.update.UpdateExecutionFactory;
 import org.apache.jena.update.UpdateProcessor;
 import org.apache.jena.update.UpdateRequest;
@@ -36,12 +39,18 @@ public final class JenaClient {
     private final RDFConnection schemeService;
 
     private final ApplicationProperties properties;
+    private final RemoteDependency fuseki;
+    private final DatasetGeneration generation;
 
     @Autowired
     JenaClient(EndpointServices endpointServices,
-               ApplicationProperties properties) {
+               ApplicationProperties properties,
+               RemoteDependencyRegistry dependencyRegistry,
+               DatasetGeneration generation) {
         this.properties = properties;
         this.endpointServices = endpointServices;
+        this.fuseki = dependencyRegistry.get(RemoteDependencyRegistry.FUSEKI);
+        this.generation = generation;
         this.coreService = RDFConnection.connect(endpointServices.getCoreReadWriteAddress());
         this.importService = RDFConnection.connect(endpointServices.getImportsReadWriteAddress());
         this.provService = RDFConnection.connect(endpointServices.getProvReadWriteAddress());
@@ -64,7 +73,7 @@ public final class JenaClient {
     public Model getModelFromSchemes(String graph) {
         logger.debug("Getting model from {}", graph);
         try{
-            return schemeService.fetch(graph);
+            return fuseki.call(() -> schemeService.fetch(graph));
         }catch(HttpException ex){
             return null;
         }
@@ -73,14 +82,17 @@ public final class JenaClient {
     public void putToImports(String graph,
                              Model model) {
         logger.debug("Storing import to {}", graph);
-        importService.put(graph, model);
+        fuseki.call(() -> {
+            importService.put(graph, model);
+            return null;
+        });
     }
 
     public Model getModelFromCore(String graph) {
         logger.debug("Getting model from core {}", graph);
         //TODO switch to query? Why does it return 404 instead of null
         try{
-            return coreService.fetch(graph);
+            return fuseki.call(() -> coreService.fetch(graph));
         }catch(HttpException ex){
             return null;
         }
@@ -89,74 +101,131 @@ public final class JenaClient {
     public Model getModelFromProv(String graph) {
         logger.debug("Getting model from prov {}", graph);
         try{
-            return provService.fetch(graph);
+            return fuseki.call(() -> provService.fetch(graph));
         }catch(HttpException ex){
             return null;
         }
     }
 
     public boolean containsSchemaModel(String graph) {
-        return importService.fetchDataset().containsNamedModel(graph);
+        return fuseki.callBulk(() -> importService.fetchDataset()).containsNamedModel(graph);
     }
 
     public void deleteModelFromCore(String graph) {
         logger.debug("Deleting model from {}", graph);
-        coreService.delete(graph);
+        try {
+            fuseki.call(() -> {
+                coreService.delete(graph);
+                return null;
+            });
+        } finally {
+            generation.graphChanged(graph);
+        }
     }
 
     public void deleteModelFromScheme(String graph) {
         logger.debug("Deleting codelist from {}", graph);
-        schemeService.delete(graph);
+        fuseki.call(() -> {
+            schemeService.delete(graph);
+            return null;
+        });
     }
 
     public boolean isInCore(String graph) {
-        return coreService.fetchDataset().containsNamedModel(graph);
+        return fuseki.callBulk(() -> coreService.fetchDataset()).containsNamedModel(graph);
     }
 
     public void putModelToCore(String graph,
                                Model model) {
         logger.debug("Putting model to {}", graph);
-        coreService.put(graph, model);
+        try {
+            fuseki.call(() -> {
+                coreService.put(graph, model);
+                return null;
+            });
+        } finally {
+            generation.graphChanged(graph);
+        }
     }
 
     public void addModelToCore(String graph,
                                Model model) {
         logger.debug("Adding model to {}", graph);
-        coreService.load(graph, model);
+        try {
+            fuseki.call(() -> {
+                coreService.load(graph, model);
+                return null;
+            });
+        } finally {
+            generation.graphChanged(graph);
+        }
     }
 
     public void putModelToProv(String graph,
                                Model model) {
         logger.debug("Putting to prov {}", graph);
-        provService.put(graph, model);
+        fuseki.call(() -> {
+            provService.put(graph, model);
+            return null;
+        });
     }
 
     public void updateToService(UpdateRequest req,
                                 String service) {
         logger.debug("Sending UpdateRequest to {}", service);
         UpdateProcessor qexec = UpdateExecutionFactory.createRemoteForm(req, service);
-        qexec.execute();
+        try {
+            execute(qexec);
+        } finally {
+            if (service.equals(endpointServices.getCoreSparqlUpdateAddress())) {
+                generation.allChanged();
+            }
+        }
+    }
+
+    /**
+     * Sends all changes of the change set to core service in a single SPARQL Update request
+     *
+     * @param changeSet Changes of one write operation
+     */
+    public void updateCore(GraphChangeSet changeSet) {
+        if (changeSet.isEmpty()) {
+            return;
+        }
+        logger.debug("Sending {} update operations to core", changeSet.size());
+        UpdateProcessor qexec = UpdateExecution.service(endpointServices.getCoreSparqlUpdateAddress())
+            .update(changeSet.toUpdateRequest())
+            .build();
+        try {
+            execute(qexec);
+        } finally {
+            if (changeSet.hasPatternUpdates()) {
+                generation.allChanged();
+            } else {
+                generation.graphsChanged(changeSet.getGraphs());
+            }
+        }
     }
 
     public Model constructFromService(String query,
                                       String service) {
         logger.debug("Constructing from service {}", service);
-        try (QueryExecution qexec = QueryExecution.service(service, query)){
-            return qexec.execConstruct();
+        try (QueryExecution qexec = bulkService(service).query(query).build()) {
+            return fuseki.callBulk(qexec::execConstruct);
         }
     }
 
     public Model constructFromCore(String query) {
         logger.debug("Constructing from core {}", endpointServices.getCoreSparqlAddress());
-        try (QueryExecution qexec = QueryExecution.service(endpointServices.getCoreSparqlAddress(), query)) {
-            return qexec.execConstruct();
+        try (QueryExecution qexec = bulkService(endpointServices.getCoreSparqlAddress()).query(query).build()) {
+            return fuseki.callBulk(qexec::execConstruct);
         }
     }
 
     public Model constructFromExt(String query) {
         logger.debug("Constructing from ext {}", endpointServices.getCoreSparqlAddress());
-        try (QueryExecution qexec = QueryExecution.service(endpointServices.getImportsSparqlAddress(), query)) {
-            return qexec.execConstruct();
+        try (QueryExecution qexec = bulkService(endpointServices.getImportsSparqlAddress()).query(query).build()) {
+            return fuseki.callBulk(qexec::execConstruct);
         }
     }
 
@@ -164,28 +233,50 @@ public final class JenaClient {
                             Query query,
                             String graph) {
         logger.debug("Asking from " + service + " in graph " + graph);
-        try (QueryExecution qexec = QueryExecutionFactory.sparqlService(service, query, graph)) {
-            return qexec.execAsk();
+        try (QueryExecution qexec = service(service).addDefaultGraphURI(graph).query(query).build()) {
+            return fuseki.call(qexec::execAsk);
         }
     }
 
     public boolean askQuery(String service,
                             Query query) {
         logger.debug("Asking from {}", service);
-        try (QueryExecution qexec = QueryExecution.service(service, query)) {
-            return qexec.execAsk();
+        try (QueryExecution qexec = service(service).query(query).build()) {
+            return fuseki.call(qexec::execAsk);
         }
     }
 
     public ResultSet selectQuery(String service,
                                  Query query) {
         logger.debug("Select from {}", service);
-        try (QueryExecution qexec = QueryExecution.service(service, query)) {
+        try (QueryExecution qexec = service(service).query(query).build()) {
             // ResultSet needs to be copied in order to use it after the connection is closed
-            return ResultSetFactory.copyResults(qexec.execSelect());
+            return fuseki.call(() -> ResultSetFactory.copyResults(qexec.execSelect()));
         }
     }
 
+    private QueryExecutionHTTPBuilder service(String service) {
+        QueryExecutionHTTPBuilder builder = QueryExecutionHTTPBuilder.service(service);
+        builder.timeout(fuseki.getTimeoutMillis(), TimeUnit.MILLISECONDS);
+        return builder;
+    }
+
+    /**
+     * CONSTRUCT queries return whole graphs, so they run with the bulk timeout instead of the adaptive one
+     */
+    private QueryExecutionHTTPBuilder bulkService(String service) {
+        QueryExecutionHTTPBuilder builder = QueryExecutionHTTPBuilder.service(service);
+        builder.timeout(fuseki.getBulkTimeoutMillis(), TimeUnit.MILLISECONDS);
+        return builder;
+    }
+
+    private void execute(UpdateProcessor qexec) {
+        fuseki.call(() -> {
+            qexec.execute();
+            return null;
+        });
+    }
+
     public EndpointServices getEndpointServices() {
         return this.endpointServices;
     }
@@ -3,9 +3,13 @@
  */
 package fi.vm.yti.datamodel.api.service;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PushbackInputStream;
+import java.util.Collections;
+import java.util.List;
 
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
@@ -14,6 +18,7 @@ import javax.ws.rs.client.Invocation;
 import javax.ws.rs.client.WebTarget;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.ResponseBuilder;
+import javax.ws.rs.core.StreamingOutput;
 
 import org.apache.jena.atlas.web.ContentType;
 import org.apache.jena.query.ParameterizedSparqlString;
@@ -24,13 +29,14 @@ import org.apache.jena.riot.Lang;
 import org.apache.jena.riot.RDFFormat;
 import org.apache.jena.riot.RDFLanguages;
 import org.apache.jena.riot.RDFWriterRegistry;
-import org.glassfish.jersey.client.ClientProperties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import fi.vm.yti.datamodel.api.config.ApplicationProperties;
 import fi.vm.yti.datamodel.api.utils.LDHelper;
+import fi.vm.yti.datamodel.api.utils.LanguageQueryFilter;
+import fi.vm.yti.datamodel.api.utils.QueryLibrary;
 
 @Service
 public class JerseyClient {
@@ -43,31 +49,40 @@ public class JerseyClient {
     private final JerseyResponseManager jerseyResponseManager;
     private final ModelManager modelManager;
     private final ClientFactory clientFactory;
+    private final RemoteDependency fuseki;
+    private final RemoteDependency terminology;
+    private final ListCache listCache;
+    private final DatasetGeneration datasetGeneration;
 
     JerseyClient(JenaClient jenaClient,
                  EndpointServices endpointServices,
                  ApplicationProperties properties,
                  JerseyResponseManager jerseyResponseManager,
                  ModelManager modelManager,
-                 ClientFactory clientFactory) {
+                 ClientFactory clientFactory,
+                 RemoteDependencyRegistry dependencyRegistry,
+                 ListCache listCache,
+                 DatasetGeneration datasetGeneration) {
         this.jenaClient = jenaClient;
         this.endpointServices = endpointServices;
         this.properties = properties;
         this.jerseyResponseManager = jerseyResponseManager;
         this.modelManager = modelManager;
         this.clientFactory = clientFactory;
+        this.fuseki = dependencyRegistry.get(RemoteDependencyRegistry.FUSEKI);
+        this.terminology = dependencyRegistry.get(RemoteDependencyRegistry.TERMINOLOGY);
+        this.listCache = listCache;
+        this.datasetGeneration = datasetGeneration;
     }
 
     public Response getResponseFromURL(String url,
                                        String accept) {
         logger.debug("Getting " + accept + " response from " + url);
-        Client client = ClientBuilder.newClient();
-        client.property(ClientProperties.CONNECT_TIMEOUT, 180000);
-        client.property(ClientProperties.READ_TIMEOUT, 180000);
+        Client client = fuseki.configureBulk(ClientBuilder.newClient());
         WebTarget target = client.target(url);
         Invocation.Builder requestBuilder = target.request();
         if (accept != null) requestBuilder.accept(accept);
-        return requestBuilder.get();
+        return fuseki.callHttpStream(requestBuilder::get);
     }
 
     /**
@@ -81,6 +96,23 @@ public class JerseyClient {
     public Response getExportGraph(String graph,
                                    boolean raw,
                                    String ctype) {
+        return getExportGraph(graph, raw, ctype, Collections.emptyList());
+    }
+
+    /**
+     * Returns export graph of the model. With languages the graph is constructed with LanguageQueryFilter so that
+     * literals in other languages are not read from the service.
+     *
+     * @param graph     Model IRI as String
+     * @param raw       Return as text/plain
+     * @param ctype     RDF content type
+     * @param languages Languages in order of preference, empty for all languages
+     * @return Response
+     */
+    public Response getExportGraph(String graph,
+                                   boolean raw,
+                                   String ctype,
+                                   List<String> languages) {
 
         try {
 
@@ -98,11 +130,20 @@ public class JerseyClient {
                 format = RDFWriterRegistry.defaultSerialization(rdfLang);
             }
 
-            Model model = jenaClient.getModelFromCore(graph + "#ExportGraph");
+            Model model;
+            if (languages.isEmpty()) {
+                model = jenaClient.getModelFromCore(graph + "#ExportGraph");
+            } else {
+                ParameterizedSparqlString pss = new ParameterizedSparqlString();
+                pss.setCommandText(QueryLibrary.exportGraphQuery);
+                pss.setIri("graph", graph + "#ExportGraph");
+                model = jenaClient.constructFromService(LanguageQueryFilter.filter(pss.toString(), languages), endpointServices.getCoreSparqlAddress());
+            }
 
             ResponseBuilder rb;
 
             if (model != null && model.size() > 0) {
+                modelManager.setNamespacePrefixes(model);
                 rb = Response.ok();
             } else {
                 rb = Response.noContent();
@@ -138,7 +179,13 @@ public class JerseyClient {
 
         logger.info(ctype + " from " + endpointServices.getEndpoint() + "/" + service + "/ response: " + response.getStatus());
 
-        PushbackInputStream input = new PushbackInputStream(response.readEntity(InputStream.class));
+        if (!response.hasEntity()) {
+            logger.info(service + " is empty?");
+            return Response.noContent().build();
+        }
+
+        PushbackInputStream input = new PushbackInputStream((InputStream) response.getEntity());
+        boolean streamed = false;
 
         try {
             int test;
@@ -148,11 +195,21 @@ public class JerseyClient {
                 return Response.noContent().build();
             } else {
                 input.unread(test);
+                streamed = true;
                 return Response.ok(input).header("Content-type", ctype).build();
             }
         } catch (IOException ex) {
             logger.info(ex.getMessage());
             return Response.noContent().build();
+        } finally {
+            // Entity holds a Fuseki permit until it is closed
+            if (!streamed) {
+                try {
+                    input.close();
+                } catch (IOException ex) {
+                    logger.info(ex.getMessage());
+                }
+            }
         }
 
     }
@@ -182,18 +239,17 @@ public class JerseyClient {
 
         if (ctype == null) ctype = "application/ld+json";
 
-        Client client = ClientBuilder.newClient();
-        client.property(ClientProperties.CONNECT_TIMEOUT, 180000);
-        client.property(ClientProperties.READ_TIMEOUT, 180000);
+        Client client = fuseki.configureBulk(ClientBuilder.newClient());
         WebTarget target = client.target(service).queryParam("graph", id);
-        Response response = target.request(ctype).get();
+        String accept = ctype;
+        Response response = fuseki.callHttpStream(() -> target.request(accept).get());
 
         if (response.getStatusInfo().getFamily() != Response.Status.Family.SUCCESSFUL) {
             logger.info(response.getStatus() + " from SERVICE " + service + " and GRAPH " + id);
             return jerseyResponseManager.notFound();
         } else {
             ResponseBuilder rb = Response.status(response.getStatus());
-            rb.entity(response.readEntity(InputStream.class));
+            rb.entity(response.getEntity());
             return rb.build();
         }
     }
@@ -213,11 +269,9 @@ public class JerseyClient {
                                                 boolean raw) {
         try {
 
-            Client client = ClientBuilder.newClient();
-            client.property(ClientProperties.CONNECT_TIMEOUT, 180000);
-            client.property(ClientProperties.READ_TIMEOUT, 180000);
+            Client client = fuseki.configureBulk(ClientBuilder.newClient());
             WebTarget target = client.target(service).queryParam("graph", id);
-            Response response = target.request(contentType).get();
+            Response response = fuseki.callHttpStream(() -> target.request(contentType).get());
 
             if (response.getStatusInfo().getFamily() != Response.Status.Family.SUCCESSFUL) {
                 logger.info(response.getStatus() + " from SERVICE " + service + " and GRAPH " + id);
@@ -225,7 +279,7 @@ public class JerseyClient {
             }
 
             ResponseBuilder rb = Response.status(response.getStatus());
-            rb.entity(response.readEntity(InputStream.class));
+            rb.entity(response.getEntity());
 
             if (!raw) {
                 try {
@@ -244,6 +298,46 @@ public class JerseyClient {
         }
     }
 
+    /**
+     * Returns Jersey response from Fuseki service with literals only in the given languages. Graph is read from
+     * Fuseki as Turtle and written to the response as it is parsed. JSON-LD is always written by ModelManager, so
+     * that it has the same shape with and without languages, other formats without languages are passed as Fuseki
+     * returns them.
+     *
+     * @param id          Id of the graph
+     * @param service     Id of the service
+     * @param contentType Requested content-type
+     * @param raw         boolean that states if Response is needed as raw text
+     * @param languages   Languages of the literals in order of preference, see LanguageFilterStreamRDF
+     * @return Response
+     */
+    public Response getGraphResponseFromService(String id,
+                                                String service,
+                                                String contentType,
+                                                boolean raw,
+                                                List<String> languages) {
+        Lang outputLang = RDFLanguages.contentTypeToLang(contentType);
+        if (outputLang == null || (languages.isEmpty() && !outputLang.equals(Lang.JSONLD))) {
+            return getGraphResponseFromService(id, service, contentType, raw);
+        }
+        try {
+            Client client = fuseki.configureBulk(ClientBuilder.newClient());
+            WebTarget target = client.target(service).queryParam("graph", id);
+            Response response = fuseki.callHttpStream(() -> target.request(Lang.TURTLE.getHeaderString()).get());
+
+            if (response.getStatusInfo().getFamily() != Response.Status.Family.SUCCESSFUL) {
+                logger.info(response.getStatus() + " from SERVICE " + service + " and GRAPH " + id);
+                return jerseyResponseManager.notFound();
+            }
+
+            InputStream in = response.hasEntity() ? (InputStream) response.getEntity() : InputStream.nullInputStream();
+            return Response.ok(new FilteredGraphOutput(in, outputLang, languages)).type(raw ? "text/plain;charset=utf-8" : contentType).build();
+        } catch (Exception ex) {
+            logger.warn("Expect the unexpected!", ex);
+            return jerseyResponseManager.unexpected();
+        }
+    }
+
     /**
      * Returns Jersey response from Fuseki service
      *
@@ -259,11 +353,9 @@ public class JerseyClient {
                                                         boolean raw) {
         try {
 
-            Client client = ClientBuilder.newClient();
-            client.property(ClientProperties.CONNECT_TIMEOUT, 180000);
-            client.property(ClientProperties.READ_TIMEOUT, 180000);
+            Client client = fuseki.configureBulk(ClientBuilder.newClient());
             WebTarget target = client.target(service).queryParam("graph", id);
-            Response response = target.request(contentType).get();
+            Response response = fuseki.callHttpStream(() -> target.request(contentType).get());
 
             if (response.getStatusInfo().getFamily() != Response.Status.Family.SUCCESSFUL) {
                 logger.info(response.getStatus() + " from SERVICE " + service + " and GRAPH " + id);
@@ -271,7 +363,7 @@ public class JerseyClient {
             }
 
             ResponseBuilder rb = Response.status(response.getStatus());
-            rb.entity(response.readEntity(InputStream.class));
+            rb.entity(response.getEntity());
 
             if (!raw) {
                 try {
@@ -300,10 +392,10 @@ public class JerseyClient {
 
         String url = properties.getPrivateTerminologyAPI() + "v1/integration/terminology/conceptSuggestion";
 
-        Client client = ClientBuilder.newClient();
+        Client client = terminology.configure(ClientBuilder.newClient());
         WebTarget target = client.target(url);
 
-        Response response = target.request().post(Entity.entity(body, "application/json"));
+        Response response = terminology.callHttp(() -> target.request().post(Entity.entity(body, "application/json")));
 
         if (response.getStatusInfo().getFamily() != Response.Status.Family.SUCCESSFUL) {
             logger.info(response.getStatus() + " from URL: " + url);
@@ -322,7 +414,7 @@ public class JerseyClient {
         }
 
         ResponseBuilder rb = Response.ok();
-        rb.entity(modelManager.writeModelToJSONLDString(constructModel));
+        rb.entity(jerseyResponseManager.jsonLd(constructModel));
         return rb.build();
 
     }
@@ -356,16 +448,55 @@ public class JerseyClient {
 
         if (constructModel.size() <= 0) {
             ResponseBuilder rb = Response.ok().type("application/ld+json");
-            rb.entity(modelManager.writeModelToJSONLDString(constructModel));
+            rb.entity(jerseyResponseManager.jsonLd(constructModel));
             return rb.build();
         }
 
         ResponseBuilder rb = Response.ok();
-        String responseString = modelManager.writeModelToJSONLDString(constructModel);
-        rb.entity(responseString);
+        rb.entity(jerseyResponseManager.jsonLd(constructModel));
         return rb.build();
     }
 
+    /**
+     * Constructs JSON-LD list with namespaces of all models from core service. Result is cached until the next write to core.
+     *
+     * @param endpoint Name of the list endpoint used in cache key
+     * @param query    Construct query
+     * @return Response
+     */
+    public Response constructCachedListFromCore(String endpoint,
+                                                String query) {
+        return constructCachedGraphFromCore(endpoint, datasetGeneration.current(), query, true);
+    }
+
+    /**
+     * Constructs JSON-LD from a single graph in core service. Result is cached until the graph is written.
+     *
+     * @param endpoint Name of the endpoint used in cache key
+     * @param graph    The only graph the query reads
+     * @param query    Construct query
+     * @return Response
+     */
+    public Response constructCachedGraphFromCore(String endpoint,
+                                                 String graph,
+                                                 String query) {
+        return constructCachedGraphFromCore(endpoint, datasetGeneration.current(graph), query, false);
+    }
+
+    private Response constructCachedGraphFromCore(String endpoint,
+                                                  long generation,
+                                                  String query,
+                                                  boolean withNamespaces) {
+        String responseString = listCache.get(endpoint, generation, () -> {
+            Model constructModel = jenaClient.constructFromService(query, endpointServices.getCoreSparqlAddress());
+            if (withNamespaces) {
+                setNamespacesToModel(constructModel);
+            }
+            return modelManager.writeModelToJSONLDString(constructModel);
+        }, query);
+        return Response.ok().type("application/ld+json").entity(responseString).build();
+    }
+
     public Response constructGraphFromService(String query,
                                               String service) {
 
@@ -373,13 +504,12 @@ public class JerseyClient {
 
         if (constructModel.size() <= 0) {
             ResponseBuilder rb = Response.ok().type("application/ld+json");
-            rb.entity(modelManager.writeModelToJSONLDString(constructModel));
+            rb.entity(jerseyResponseManager.jsonLd(constructModel));
             return rb.build();
         }
 
         ResponseBuilder rb = Response.ok();
-        String responseString = modelManager.writeModelToJSONLDString(constructModel);
-        rb.entity(responseString);
+        rb.entity(jerseyResponseManager.jsonLd(constructModel));
         return rb.build();
 
     }
@@ -398,7 +528,38 @@ public class JerseyClient {
         }
 
         ResponseBuilder rb = Response.ok().type("application/ld+json");
-        rb.entity(modelManager.writeModelToJSONLDString(graph));
+        rb.entity(jerseyResponseManager.jsonLd(graph));
         return rb.build();
     }
+
+    /**
+     * Writes graph read from Fuseki with literals only in the given languages. The stream is closed when the output
+     * is written, or when the response is discarded without writing it.
+     */
+    private final class FilteredGraphOutput implements StreamingOutput, Closeable {
+
+        private final InputStream in;
+        private final Lang outputLang;
+        private final List<String> languages;
+
+        FilteredGraphOutput(InputStream in,
+                            Lang outputLang,
+                            List<String> languages) {
+            this.in = in;
+            this.outputLang = outputLang;
+            this.languages = languages;
+        }
+
+        @Override
+        public void write(OutputStream out) throws IOException {
+            try (in) {
+                modelManager.writeFiltered(in, Lang.TURTLE, outputLang, languages, out);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
 }
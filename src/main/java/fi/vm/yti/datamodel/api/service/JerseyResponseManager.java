@@ -10,6 +10,7 @@ import org.apache.jena.rdf.model.Model;
 import org.springframework.stereotype.Service;
 
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 
 import java.util.UUID;
 
@@ -34,7 +35,20 @@ public class JerseyResponseManager {
     }
 
     public Response okModel(Model model) {
-        return Response.status(200).entity(modelManager.writeModelToJSONLDString(model)).build();
+        return Response.status(200).entity(jsonLd(model)).build();
+    }
+
+    public Response okModelPage(Model model,
+                                int totalResults) {
+        return Response.status(200).entity(jsonLd(model)).header("X-Total-Count", totalResults).build();
+    }
+
+    /**
+     * @param model Jena model
+     * @return Entity that writes the model as JSON-LD directly to the response
+     */
+    public StreamingOutput jsonLd(Model model) {
+        return output -> modelManager.writeModelToJSONLD(model, output);
     }
 
     public Response ok(String content,
@@ -42,6 +56,11 @@ public class JerseyResponseManager {
         return Response.ok().entity(content).type(contentType).build();
     }
 
+    public Response ok(StreamingOutput output,
+                       String contentType) {
+        return Response.ok().entity(output).type(contentType).build();
+    }
+
     public Response successUri(String uri) {
         return Response.status(200).entity("{\"uri\":\""+ uri + "\"}").build();
     }
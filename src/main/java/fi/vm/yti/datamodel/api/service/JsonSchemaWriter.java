@@ -6,6 +6,8 @@ package fi.vm.yti.datamodel.api.service;
 import fi.vm.yti.datamodel.api.utils.LDHelper;
 
 import jakarta.json.*;
+import jakarta.json.stream.JsonGenerator;
+import jakarta.json.stream.JsonGeneratorFactory;
 import org.apache.jena.query.ParameterizedSparqlString;
 import org.apache.jena.query.QueryExecution;
 import org.apache.jena.query.QuerySolution;
@@ -14,13 +16,17 @@ import org.apache.jena.query.ResultSetFactory;
 import org.apache.jena.sparql.resultset.ResultSetPeekable;
 
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,6 +35,8 @@ import org.slf4j.LoggerFactory;
 import org.apache.jena.util.SplitIRI;
 import org.springframework.stereotype.Service;
 
+import javax.ws.rs.core.StreamingOutput;
+
 @Service
 public class JsonSchemaWriter {
 
@@ -36,6 +44,7 @@ public class JsonSchemaWriter {
 
     private final EndpointServices endpointServices;
     private final JsonWriterFactory jsonWriterFactory;
+    private final JsonGeneratorFactory jsonGeneratorFactory;
     private final GraphManager graphManager;
 
     JsonSchemaWriter(EndpointServices endpointServices,
@@ -43,6 +52,7 @@ public class JsonSchemaWriter {
                      GraphManager graphManager) {
         this.endpointServices = endpointServices;
         this.jsonWriterFactory = jsonWriterFactory;
+        this.jsonGeneratorFactory = Json.createGeneratorFactory(jsonWriterFactory.getConfigInUse());
         this.graphManager = graphManager;
     }
 
@@ -78,9 +88,62 @@ public class JsonSchemaWriter {
 
     public String newResourceSchema(String classID,
                                     String lang) {
+        ResourceSchema schema = getResourceSchema(classID, lang);
+        if (schema == null) {
+            return null;
+        }
+        StringWriter stringWriter = new StringWriter();
+        try (JsonGenerator generator = jsonGeneratorFactory.createGenerator(stringWriter)) {
+            writeResourceSchema(schema, generator);
+        }
+        return stringWriter.toString();
+    }
 
-        JsonArrayBuilder required = Json.createArrayBuilder();
-        JsonObjectBuilder schema = Json.createObjectBuilder();
+    /**
+     * Writes the same schema as newResourceSchema to the response instead of a String. Resource is queried before
+     * returning, so that missing resources are answered before the response is started, and its properties are
+     * written with a JSON generator as they are read from the results.
+     *
+     * @param classID Resource IRI
+     * @param lang    Language of the schema
+     * @return Output writing the schema or null if the resource is not found
+     */
+    public StreamingOutput newResourceSchemaOutput(String classID,
+                                                   String lang) {
+        ResourceSchema schema = getResourceSchema(classID, lang);
+        if (schema == null) {
+            return null;
+        }
+        return out -> {
+            JsonGenerator generator = jsonGeneratorFactory.createGenerator(out, StandardCharsets.UTF_8);
+            writeResourceSchema(schema, generator);
+            generator.flush();
+        };
+    }
+
+    /**
+     * Metadata of a resource, which is written before its properties
+     */
+    private static class ResourceSchema {
+
+        private final String classID;
+        private final String lang;
+        private final JsonObjectBuilder metadata = Json.createObjectBuilder();
+        private boolean classMetadata;
+
+        private ResourceSchema(String classID,
+                               String lang) {
+            this.classID = classID;
+            this.lang = lang;
+        }
+    }
+
+    private ResourceSchema getResourceSchema(String classID,
+                                             String lang) {
+
+        ResourceSchema schema = new ResourceSchema(classID, lang);
+        JsonObjectBuilder metadata = schema.metadata;
+        boolean classMetadata = false;
 
         ParameterizedSparqlString pss = new ParameterizedSparqlString();
 
@@ -105,8 +168,6 @@ public class JsonSchemaWriter {
 
         pss.setCommandText(selectClass);
 
-        boolean classMetadata = false;
-
         try (QueryExecution qexec = QueryExecution.service(endpointServices.getCoreSparqlAddress(), pss.asQuery())) {
 
             ResultSet results = qexec.execSelect();
@@ -119,25 +180,25 @@ public class JsonSchemaWriter {
 
                 if (soln.contains("description")) {
                     String description = soln.getLiteral("description").getString();
-                    schema.add("description", description);
+                    metadata.add("description", description);
                 }
 
                 if (soln.contains("minProperties")) {
-                    schema.add("minProperties", soln.getLiteral("minProperties").getInt());
+                    metadata.add("minProperties", soln.getLiteral("minProperties").getInt());
                 }
 
                 if (soln.contains("maxProperties")) {
-                    schema.add("maxProperties", soln.getLiteral("maxProperties").getInt());
+                    metadata.add("maxProperties", soln.getLiteral("maxProperties").getInt());
                 }
 
-                schema.add("id", classID + ".jschema");
+                metadata.add("id", classID + ".jschema");
 
                 if (soln.contains("label")) {
                     String title = soln.getLiteral("label").getString();
-                    schema.add("title", title);
+                    metadata.add("title", title);
                 }
 
-                schema.add("@id", classID);
+                metadata.add("@id", classID);
 
                 String sType = soln.getResource("type").getLocalName();
 
@@ -149,195 +210,237 @@ public class JsonSchemaWriter {
 
         }
 
-        JsonObjectBuilder properties = Json.createObjectBuilder();
-
-        if (classMetadata) {
-
-            String selectResources =
-                "SELECT ?predicate ?id ?property ?propertyDeactivated ?valueList ?schemeList ?predicateName ?label ?datatype ?shapeRef ?min ?max ?minLength ?maxLength ?pattern ?idBoolean "
-                    + "WHERE { "
-                    + "GRAPH ?resourceID {"
-                    + "?resourceID sh:property ?property . "
-                    + "?property sh:path ?predicate . "
-                    + "OPTIONAL { ?property sh:deactivated ?propertyDeactivated . }"
-                    + "OPTIONAL { ?property iow:localName ?id . }"
-                    + "OPTIONAL { ?property ?nameProperty ?label . "
-                    + "VALUES ?nameProperty { sh:name rdfs:label }"
-                    + "FILTER (langMatches(lang(?label),?lang)) }"
-                    + "OPTIONAL { ?property ?commentProperty ?description . "
-                    + "VALUES ?commentProperty { sh:description rdfs:comment }"
-                    + "FILTER (langMatches(lang(?description),?lang))"
-                    + "}"
-                    + "OPTIONAL { ?property sh:datatype ?datatype . }"
-                    + "OPTIONAL { ?property sh:node ?shapeRef . }"
-                    + "OPTIONAL { ?property sh:minCount ?min . }"
-                    + "OPTIONAL { ?property sh:maxCount ?max . }"
-                    + "OPTIONAL { ?property sh:pattern ?pattern . }"
-                    + "OPTIONAL { ?property sh:minLength ?minLength . }"
-                    + "OPTIONAL { ?property sh:maxLength ?maxLength . }"
-                    + "OPTIONAL { ?property sh:in ?valueList . } "
-                    + "OPTIONAL { ?property dcam:memberOf ?schemeList . } "
-                    + "OPTIONAL { ?property iow:isResourceIdentifier ?idBoolean . }"
-                    + "BIND(afn:localname(?predicate) as ?predicateName)"
-                    + "}"
-                    + "}";
-
-            pss.setCommandText(selectResources);
-            pss.setIri("resourceID", classID);
-            if (lang != null) pss.setLiteral("lang", lang);
-
-            try (QueryExecution qexec = QueryExecution.service(endpointServices.getCoreSparqlAddress(), pss.asQuery())) {
-
-                ResultSet results = qexec.execSelect();
-
-                if (results.hasNext()) {
-
-                    while (results.hasNext()) {
-                        QuerySolution soln = results.nextSolution();
-                        //String predicateID = soln.getResource("predicate").getString();
-                        String predicateName = soln.getLiteral("predicateName").getString();
+        schema.classMetadata = classMetadata;
+        return schema;
+    }
 
-                        if (soln.contains("id")) {
-                            predicateName = soln.getLiteral("id").getString();
-                        }
+    /**
+     * Writes the schema with the properties of a class. Rows of a property are consecutive, and like in the object
+     * builder the last row of a property is written. Required properties are written after the properties.
+     */
+    private void writeResourceSchema(ResourceSchema schema,
+                                     JsonGenerator generator) {
+
+        String classID = schema.classID;
+        String lang = schema.lang;
+        List<String> required = new ArrayList<>();
+
+        generator.writeStartObject();
+        schema.metadata.build().forEach(generator::write);
+        generator.write("$schema", "http://json-schema.org/draft-04/schema#");
+
+        if (!schema.classMetadata) {
+            /* Write dummy schema if resource is not a class */
+            generator.writeStartObject("properties").writeEnd();
+            generator.writeEnd();
+            return;
+        }
 
-                        JsonObjectBuilder predicate = Json.createObjectBuilder();
+        generator.write("type", "object");
 
-                        if (soln.contains("label")) {
-                            String title = soln.getLiteral("label").getString();
-                            predicate.add("title", title);
-                        }
+        ParameterizedSparqlString pss = new ParameterizedSparqlString();
+        pss.setNsPrefixes(LDHelper.PREFIX_MAP);
 
-                        if (soln.contains("min")) {
-                            int min = soln.getLiteral("min").getInt();
-                            if (min > 0) {
-                                required.add(predicateName);
-                            }
-                        }
+        String selectResources =
+            "SELECT ?predicate ?id ?property ?propertyDeactivated ?valueList ?schemeList ?predicateName ?label ?datatype ?shapeRef ?min ?max ?minLength ?maxLength ?pattern ?idBoolean "
+                + "WHERE { "
+                + "GRAPH ?resourceID {"
+                + "?resourceID sh:property ?property . "
+                + "?property sh:path ?predicate . "
+                + "OPTIONAL { ?property sh:deactivated ?propertyDeactivated . }"
+                + "OPTIONAL { ?property iow:localName ?id . }"
+                + "OPTIONAL { ?property ?nameProperty ?label . "
+                + "VALUES ?nameProperty { sh:name rdfs:label }"
+                + "FILTER (langMatches(lang(?label),?lang)) }"
+                + "OPTIONAL { ?property ?commentProperty ?description . "
+                + "VALUES ?commentProperty { sh:description rdfs:comment }"
+                + "FILTER (langMatches(lang(?description),?lang))"
+                + "}"
+                + "OPTIONAL { ?property sh:datatype ?datatype . }"
+                + "OPTIONAL { ?property sh:node ?shapeRef . }"
+                + "OPTIONAL { ?property sh:minCount ?min . }"
+                + "OPTIONAL { ?property sh:maxCount ?max . }"
+                + "OPTIONAL { ?property sh:pattern ?pattern . }"
+                + "OPTIONAL { ?property sh:minLength ?minLength . }"
+                + "OPTIONAL { ?property sh:maxLength ?maxLength . }"
+                + "OPTIONAL { ?property sh:in ?valueList . } "
+                + "OPTIONAL { ?property dcam:memberOf ?schemeList . } "
+                + "OPTIONAL { ?property iow:isResourceIdentifier ?idBoolean . }"
+                + "BIND(afn:localname(?predicate) as ?predicateName)"
+                + "}"
+                + "} ORDER BY ?property";
 
-                        if (soln.contains("description")) {
-                            String description = soln.getLiteral("description").getString();
-                            predicate.add("description", description);
-                        }
+        pss.setCommandText(selectResources);
+        pss.setIri("resourceID", classID);
+        if (lang != null) pss.setLiteral("lang", lang);
 
-                        if (soln.contains("predicate")) {
-                            String predicateID = soln.getResource("predicate").toString();
-                            predicate.add("@id", predicateID);
-                        }
+        Set<String> written = new HashSet<>();
+        boolean propertiesStarted = false;
 
-                        if (soln.contains("valueList")) {
-                            JsonArray valueList = getValueList(classID, soln.getResource("property").toString());
-                            if (valueList != null) {
-                                predicate.add("enum", valueList);
-                            }
-                        } else if (soln.contains("schemeList")) {
-                            JsonArray schemeList = getSchemeValueList(soln.getResource("schemeList").toString());
-                            if (schemeList != null) {
-                                predicate.add("enum", schemeList);
-                            }
-                        }
+        try (QueryExecution qexec = QueryExecution.service(endpointServices.getCoreSparqlAddress(), pss.asQuery())) {
 
-                        if (soln.contains("datatype")) {
-                            String datatype = soln.getResource("datatype").toString();
+            ResultSetPeekable results = ResultSetFactory.makePeekable(qexec.execSelect());
+            JsonObject property = null;
 
-                            if (soln.contains("idBoolean")) {
-                                Boolean isId = soln.getLiteral("idBoolean").getBoolean();
-                                if (isId) {
-                                    predicate.add("@type", "@id");
-                                } else predicate.add("@type", datatype);
-                            } else {
-                                predicate.add("@type", datatype);
-                            }
+            while (results.hasNext()) {
+                QuerySolution soln = results.nextSolution();
+                //String predicateID = soln.getResource("predicate").getString();
+                String predicateName = soln.getLiteral("predicateName").getString();
+
+                if (soln.contains("id")) {
+                    predicateName = soln.getLiteral("id").getString();
+                }
 
-                            String jsonDatatype = DATATYPE_MAP.get(datatype);
+                JsonObjectBuilder predicate = Json.createObjectBuilder();
 
-                            if (soln.contains("min") && soln.getLiteral("min").getInt() > 0) {
-                                predicate.add("minItems", soln.getLiteral("min").getInt());
-                            }
+                if (soln.contains("label")) {
+                    String title = soln.getLiteral("label").getString();
+                    predicate.add("title", title);
+                }
+
+                if (soln.contains("min")) {
+                    int min = soln.getLiteral("min").getInt();
+                    if (min > 0) {
+                        required.add(predicateName);
+                    }
+                }
 
-                            if (soln.contains("max") && soln.getLiteral("max").getInt() <= 1) {
+                if (soln.contains("description")) {
+                    String description = soln.getLiteral("description").getString();
+                    predicate.add("description", description);
+                }
 
-                                predicate.add("maxItems", 1);
+                if (soln.contains("predicate")) {
+                    String predicateID = soln.getResource("predicate").toString();
+                    predicate.add("@id", predicateID);
+                }
 
-                                if (jsonDatatype != null) {
+                if (soln.contains("valueList")) {
+                    JsonArray valueList = getValueList(classID, soln.getResource("property").toString());
+                    if (valueList != null) {
+                        predicate.add("enum", valueList);
+                    }
+                } else if (soln.contains("schemeList")) {
+                    JsonArray schemeList = getSchemeValueList(soln.getResource("schemeList").toString());
+                    if (schemeList != null) {
+                        predicate.add("enum", schemeList);
+                    }
+                }
 
-                                    if (jsonDatatype.equals("langString")) {
-                                        predicate.add("type", "object");
-                                        predicate.add("$ref", "#/definitions/langString");
-                                    } else
-                                        predicate.add("type", jsonDatatype);
-                                }
+                if (soln.contains("datatype")) {
+                    String datatype = soln.getResource("datatype").toString();
 
-                            } else {
+                    if (soln.contains("idBoolean")) {
+                        Boolean isId = soln.getLiteral("idBoolean").getBoolean();
+                        if (isId) {
+                            predicate.add("@type", "@id");
+                        } else predicate.add("@type", datatype);
+                    } else {
+                        predicate.add("@type", datatype);
+                    }
 
-                                if (soln.contains("max") && soln.getLiteral("max").getInt() > 1) {
-                                    predicate.add("maxItems", soln.getLiteral("max").getInt());
-                                }
+                    String jsonDatatype = DATATYPE_MAP.get(datatype);
 
-                                predicate.add("type", "array");
+                    if (soln.contains("min") && soln.getLiteral("min").getInt() > 0) {
+                        predicate.add("minItems", soln.getLiteral("min").getInt());
+                    }
 
-                                if (jsonDatatype != null) {
+                    if (soln.contains("max") && soln.getLiteral("max").getInt() <= 1) {
 
-                                    JsonObjectBuilder typeObject = Json.createObjectBuilder();
+                        predicate.add("maxItems", 1);
 
-                                    if (jsonDatatype.equals("langString")) {
-                                        typeObject.add("type", "object");
-                                        typeObject.add("$ref", "#/definitions/langString");
-                                    } else {
-                                        typeObject.add("type", jsonDatatype);
-                                    }
+                        if (jsonDatatype != null) {
 
-                                    predicate.add("items", typeObject.build());
+                            if (jsonDatatype.equals("langString")) {
+                                predicate.add("type", "object");
+                                predicate.add("$ref", "#/definitions/langString");
+                            } else
+                                predicate.add("type", jsonDatatype);
+                        }
 
-                                }
+                    } else {
 
-                            }
+                        if (soln.contains("max") && soln.getLiteral("max").getInt() > 1) {
+                            predicate.add("maxItems", soln.getLiteral("max").getInt());
+                        }
 
-                            if (soln.contains("maxLength")) {
-                                predicate.add("maxLength", soln.getLiteral("maxLength").getInt());
-                            }
+                        predicate.add("type", "array");
 
-                            if (soln.contains("minLength")) {
-                                predicate.add("minLength", soln.getLiteral("minLength").getInt());
-                            }
+                        if (jsonDatatype != null) {
 
-                            if (soln.contains("pattern")) {
-                                predicate.add("pattern", soln.getLiteral("pattern").getString());
-                            }
+                            JsonObjectBuilder typeObject = Json.createObjectBuilder();
 
-                            if (FORMAT_MAP.containsKey(datatype)) {
-                                predicate.add("format", FORMAT_MAP.get(datatype));
-                            }
-                        } else {
-                            if (soln.contains("shapeRef")) {
-                                String shapeRef = soln.getResource("shapeRef").toString();
-                                predicate.add("@type", "@id");
-                                if (!soln.contains("max") || soln.getLiteral("max").getInt() > 1) {
-                                    if (soln.contains("min")) predicate.add("minItems", soln.getLiteral("min").getInt());
-                                    if (soln.contains("max")) predicate.add("maxItems", soln.getLiteral("max").getInt());
-                                    predicate.add("type", "array");
-                                    predicate.add("items", Json.createObjectBuilder().add("type", "object").add("$ref", shapeRef + ".jschema").build());
-                                } else {
-                                    predicate.add("type", "object");
-                                    predicate.add("$ref", shapeRef + ".jschema");
-                                }
+                            if (jsonDatatype.equals("langString")) {
+                                typeObject.add("type", "object");
+                                typeObject.add("$ref", "#/definitions/langString");
+                            } else {
+                                typeObject.add("type", jsonDatatype);
                             }
+
+                            predicate.add("items", typeObject.build());
+
                         }
 
-                        if (!soln.contains("propertyDeactivated") || (soln.contains("propertyDeactivated") && !soln.getLiteral("propertyDeactivated").getBoolean())) {
-                            properties.add(predicateName, predicate.build());
+                    }
+
+                    if (soln.contains("maxLength")) {
+                        predicate.add("maxLength", soln.getLiteral("maxLength").getInt());
+                    }
+
+                    if (soln.contains("minLength")) {
+                        predicate.add("minLength", soln.getLiteral("minLength").getInt());
+                    }
+
+                    if (soln.contains("pattern")) {
+                        predicate.add("pattern", soln.getLiteral("pattern").getString());
+                    }
+
+                    if (FORMAT_MAP.containsKey(datatype)) {
+                        predicate.add("format", FORMAT_MAP.get(datatype));
+                    }
+                } else {
+                    if (soln.contains("shapeRef")) {
+                        String shapeRef = soln.getResource("shapeRef").toString();
+                        predicate.add("@type", "@id");
+                        if (!soln.contains("max") || soln.getLiteral("max").getInt() > 1) {
+                            if (soln.contains("min")) predicate.add("minItems", soln.getLiteral("min").getInt());
+                            if (soln.contains("max")) predicate.add("maxItems", soln.getLiteral("max").getInt());
+                            predicate.add("type", "array");
+                            predicate.add("items", Json.createObjectBuilder().add("type", "object").add("$ref", shapeRef + ".jschema").build());
+                        } else {
+                            predicate.add("type", "object");
+                            predicate.add("$ref", shapeRef + ".jschema");
                         }
                     }
                 }
-            }
 
-            return createDefaultSchema(schema, properties, required);
+                if (!soln.contains("propertyDeactivated") || (soln.contains("propertyDeactivated") && !soln.getLiteral("propertyDeactivated").getBoolean())) {
+                    property = predicate.build();
+                }
 
-        } else {
-            /* Return dummy schema if resource is not a class */
-            return createDummySchema(schema, properties, required);
+                boolean lastRow = !results.hasNext() || !results.peek().getResource("property").equals(soln.getResource("property"));
+                if (lastRow && property != null && written.add(predicateName)) {
+                    if (!propertiesStarted) {
+                        generator.writeStartObject("properties");
+                        propertiesStarted = true;
+                    }
+                    generator.write(predicateName, property);
+                }
+                if (lastRow) {
+                    property = null;
+                }
+            }
         }
 
+        if (propertiesStarted) {
+            generator.writeEnd();
+        }
+        if (!required.isEmpty()) {
+            generator.writeStartArray("required");
+            required.forEach(generator::write);
+            generator.writeEnd();
+        }
+        generator.writeEnd();
     }
 
     public String jsonObjectToPrettyString(JsonObject object) {
@@ -1269,38 +1372,4 @@ public class JsonSchemaWriter {
 
         return jsonObjectToPrettyString(schema.build());
     }
-
-    private String createDummySchema(JsonObjectBuilder schema,
-                                     JsonObjectBuilder properties,
-                                     JsonArrayBuilder required) {
-
-        /* TODO: Create basic dummy schema without properties */
-
-        schema.add("$schema", "http://json-schema.org/draft-04/schema#");
-
-        schema.add("properties", properties.build());
-        JsonArray reqArray = required.build();
-        if (!reqArray.isEmpty()) {
-            schema.add("required", reqArray);
-        }
-
-        return jsonObjectToPrettyString(schema.build());
-    }
-
-    private String createDefaultSchema(JsonObjectBuilder schema,
-                                       JsonObjectBuilder properties,
-                                       JsonArrayBuilder required) {
-
-        schema.add("$schema", "http://json-schema.org/draft-04/schema#");
-
-        schema.add("type", "object");
-        JsonObject classProps = properties.build();
-        if (!classProps.isEmpty()) schema.add("properties", classProps);
-        JsonArray reqArray = required.build();
-        if (!reqArray.isEmpty()) {
-            schema.add("required", reqArray);
-        }
-
-        return jsonObjectToPrettyString(schema.build());
-    }
 }
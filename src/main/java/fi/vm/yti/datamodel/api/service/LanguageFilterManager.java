@@ -0,0 +1,54 @@
+/*
+ * Licensed under the European Union Public Licence (EUPL) V.1.1
+ */
+package fi.vm.yti.datamodel.api.service;
+
+import java.util.List;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import fi.vm.yti.datamodel.api.config.ApplicationProperties;
+import fi.vm.yti.datamodel.api.utils.LanguageQueryFilter;
+
+/**
+ * Resolves the languages of read endpoints from the lang parameter, and from Accept-Language if it is enabled with
+ * languageFilterFromAcceptLanguage. The header is not used by default, because the editor saves the graphs it reads
+ * and would lose the other languages.
+ */
+@Service
+public class LanguageFilterManager {
+
+    private final ApplicationProperties properties;
+
+    @Autowired
+    LanguageFilterManager(ApplicationProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * @param lang           Comma separated languages in order of preference, may be null
+     * @param acceptLanguage Accept-Language header, may be null
+     * @return Languages for LanguageQueryFilter, empty if all languages are returned
+     */
+    public List<String> getLanguages(String lang,
+                                     String acceptLanguage) {
+        return LanguageQueryFilter.parseLanguages(lang, properties.isLanguageFilterFromAcceptLanguage() ? acceptLanguage : null);
+    }
+
+    /**
+     * Adds Vary header if responses depend on Accept-Language
+     *
+     * @param response Response of a filtered endpoint
+     * @return Response
+     */
+    public Response vary(Response response) {
+        if (!properties.isLanguageFilterFromAcceptLanguage()) {
+            return response;
+        }
+        return Response.fromResponse(response).header(HttpHeaders.VARY, HttpHeaders.ACCEPT_LANGUAGE).build();
+    }
+}
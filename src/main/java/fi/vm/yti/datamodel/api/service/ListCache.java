@@ -0,0 +1,111 @@
+/*
+ * Licensed under the European Union Public Licence (EUPL) V.1.1
+ */
+package fi.vm.yti.datamodel.api.service;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+
+/**
+ * Cache for results of list endpoints. Entries are keyed on endpoint, parameters and dataset generation, so a write
+ * to core makes all older entries unreachable and they are evicted by size or idle time.
+ * Hit and miss counts are published as cache metrics named "datamodel.lists".
+ */
+@Service
+public class ListCache {
+
+    private static final int MAX_ENTRIES = 1000;
+    private static final int EXPIRE_AFTER_ACCESS_MINUTES = 30;
+
+    private final Cache<Key, Object> cache = CacheBuilder.newBuilder()
+        .maximumSize(MAX_ENTRIES)
+        .expireAfterAccess(EXPIRE_AFTER_ACCESS_MINUTES, TimeUnit.MINUTES)
+        .recordStats()
+        .build();
+
+    @Autowired
+    ListCache(MeterRegistry meterRegistry) {
+        GuavaCacheMetrics.monitor(meterRegistry, cache, "datamodel.lists");
+    }
+
+    /**
+     * Returns cached value or loads it. Concurrent requests for the same key wait for a single load.
+     * Loaded value must be read from the dataset after the generation was read, must not be null and must not be
+     * modified by callers.
+     *
+     * @param endpoint   Name of the endpoint
+     * @param generation Dataset generation read before loading
+     * @param loader     Loads the value
+     * @param parameters Request parameters that affect the value
+     * @return Cached or loaded value
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String endpoint,
+                     long generation,
+                     Supplier<T> loader,
+                     Object... parameters) {
+        try {
+            return (T) cache.get(new Key(endpoint, Arrays.asList(parameters), generation), loader::get);
+        } catch (ExecutionException | UncheckedExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private static final class Key {
+
+        private final String endpoint;
+        private final List<Object> parameters;
+        private final long generation;
+
+        private Key(String endpoint,
+                    List<Object> parameters,
+                    long generation) {
+            this.endpoint = endpoint;
+            this.parameters = parameters;
+            this.generation = generation;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return generation == key.generation && endpoint.equals(key.endpoint) && parameters.equals(key.parameters);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(endpoint, parameters, generation);
+        }
+    }
+}
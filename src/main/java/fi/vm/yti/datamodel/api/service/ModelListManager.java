@@ -0,0 +1,289 @@
+/*
+ * Licensed under the European Union Public Licence (EUPL) V.1.1
+ */
+package fi.vm.yti.datamodel.api.service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import org.apache.jena.datatypes.DatatypeFormatException;
+import org.apache.jena.datatypes.xsd.XSDDateTime;
+import org.apache.jena.query.ParameterizedSparqlString;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.vocabulary.DCTerms;
+import org.apache.jena.vocabulary.OWL;
+import org.apache.jena.vocabulary.RDFS;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import fi.vm.yti.datamodel.api.model.ModelSummary;
+import fi.vm.yti.datamodel.api.utils.LDHelper;
+import fi.vm.yti.datamodel.api.utils.LanguageQueryFilter;
+import fi.vm.yti.datamodel.api.utils.QueryLibrary;
+import fi.vm.yti.security.Role;
+import fi.vm.yti.security.YtiUser;
+
+/**
+ * Serves model lists from a base projection of all models. The projection is built once per dataset generation,
+ * requests only filter, sort and page it and serialize the statements of the models on the requested page.
+ */
+@Service
+public class ModelListManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(ModelListManager.class.getName());
+
+    public static final String SORT_PREFIX = "prefix";
+    public static final String SORT_LABEL = "label";
+    public static final String SORT_MODIFIED = "modified";
+
+    private static final String INCOMPLETE = "INCOMPLETE";
+    private static final List<String> LABEL_SORT_LANGUAGES = Arrays.asList("fi", "en", "sv", "");
+    private static final Property PREFIX = LDHelper.curieToProperty("dcap:preferredXMLNamespacePrefix");
+
+    private final GraphManager graphManager;
+    private final ListCache listCache;
+    private final DatasetGeneration datasetGeneration;
+
+    ModelListManager(GraphManager graphManager,
+                     ListCache listCache,
+                     DatasetGeneration datasetGeneration) {
+        this.graphManager = graphManager;
+        this.listCache = listCache;
+        this.datasetGeneration = datasetGeneration;
+    }
+
+    /**
+     * Returns one page of models visible to the user
+     *
+     * @param user            Current user
+     * @param serviceCategory Service category code or null
+     * @param status          Model status or null
+     * @param organization    Contributor organization or null
+     * @param sort            One of SORT_PREFIX, SORT_LABEL or SORT_MODIFIED, prefix if null
+     * @param offset          Number of models to skip
+     * @param limit           Maximum number of models or null for all
+     * @param languages       Languages of LanguageQueryFilter, empty for all languages
+     * @return Page of models and number of all matching models
+     * @throws IllegalArgumentException if sort, offset or limit is invalid
+     */
+    public ModelPage getModels(YtiUser user,
+                               String serviceCategory,
+                               String status,
+                               UUID organization,
+                               String sort,
+                               int offset,
+                               Integer limit,
+                               List<String> languages) {
+        Set<UUID> editableOrganizations = user.isAnonymous() || user.isSuperuser() ? Collections.emptySet() : user.getOrganizations(Role.ADMIN, Role.DATA_MODEL_EDITOR);
+        return getModelList(languages).page(visibility(user.isSuperuser(), user.isAnonymous(), editableOrganizations)
+            .and(filter(serviceCategory, status, organization)), sort, offset, limit);
+    }
+
+    ModelList getModelList(List<String> languages) {
+        return listCache.get("modelProjection", datasetGeneration.current(), () -> {
+            ParameterizedSparqlString pss = new ParameterizedSparqlString();
+            pss.setNsPrefixes(LDHelper.PREFIX_MAP);
+            pss.setCommandText(QueryLibrary.fullModelsByGroupQuery);
+            return ModelList.of(graphManager.constructModelFromCoreGraph(LanguageQueryFilter.filter(pss.toString(), languages)));
+        }, languages);
+    }
+
+    /**
+     * Incomplete models are visible only to superusers and to editors of the contributor organizations
+     */
+    static Predicate<ModelSummary> visibility(boolean superuser,
+                                              boolean anonymous,
+                                              Set<UUID> editableOrganizations) {
+        if (superuser) {
+            return model -> true;
+        }
+        if (anonymous) {
+            return model -> !INCOMPLETE.equals(model.getStatus());
+        }
+        return model -> !INCOMPLETE.equals(model.getStatus()) || !Collections.disjoint(model.getOrganizations(), editableOrganizations);
+    }
+
+    static Predicate<ModelSummary> filter(String serviceCategory,
+                                          String status,
+                                          UUID organization) {
+        Predicate<ModelSummary> filter = model -> true;
+        if (serviceCategory != null) {
+            filter = filter.and(model -> model.getServiceCategories().contains(serviceCategory));
+        }
+        if (status != null) {
+            filter = filter.and(model -> status.equals(model.getStatus()));
+        }
+        if (organization != null) {
+            filter = filter.and(model -> model.getOrganizations().contains(organization));
+        }
+        return filter;
+    }
+
+    static Comparator<ModelSummary> comparator(String sort) {
+        if (sort == null || SORT_PREFIX.equals(sort)) {
+            return Comparator.comparing(ModelSummary::getPrefix);
+        } else if (SORT_LABEL.equals(sort)) {
+            return Comparator.comparing(ModelListManager::sortLabel, String.CASE_INSENSITIVE_ORDER).thenComparing(ModelSummary::getPrefix);
+        } else if (SORT_MODIFIED.equals(sort)) {
+            return Comparator.comparing(ModelSummary::getModified, Comparator.nullsLast(Comparator.reverseOrder())).thenComparing(ModelSummary::getPrefix);
+        }
+        throw new IllegalArgumentException("Invalid sort: " + sort);
+    }
+
+    private static String sortLabel(ModelSummary model) {
+        for (String lang : LABEL_SORT_LANGUAGES) {
+            String label = model.getLabels().get(lang);
+            if (label != null) {
+                return label;
+            }
+        }
+        return model.getLabels().values().stream().findFirst().orElse("");
+    }
+
+    public static final class ModelPage {
+
+        private final Model model;
+        private final int totalResults;
+
+        ModelPage(Model model,
+                  int totalResults) {
+            this.model = model;
+            this.totalResults = totalResults;
+        }
+
+        public Model getModel() {
+            return model;
+        }
+
+        public int getTotalResults() {
+            return totalResults;
+        }
+    }
+
+    /**
+     * Immutable projection of all models with the statements of each model. Statements are copied out of the
+     * constructed graph so that requests never read the shared Jena model.
+     */
+    static final class ModelList {
+
+        private final Map<String, String> prefixes;
+        private final List<ModelSummary> summaries;
+        private final Map<String, List<Statement>> statements;
+
+        private ModelList(Map<String, String> prefixes,
+                          List<ModelSummary> summaries,
+                          Map<String, List<Statement>> statements) {
+            this.prefixes = prefixes;
+            this.summaries = summaries;
+            this.statements = statements;
+        }
+
+        static ModelList of(Model graph) {
+            List<ModelSummary> summaries = new ArrayList<>();
+            Map<String, List<Statement>> statements = new HashMap<>();
+
+            for (Resource model : graph.listSubjectsWithProperty(OWL.versionInfo).toList()) {
+                if (!model.isURIResource() || !model.hasProperty(PREFIX)) {
+                    continue;
+                }
+
+                Set<UUID> organizations = new HashSet<>();
+                Set<String> serviceCategories = new HashSet<>();
+                Map<String, String> labels = new HashMap<>();
+                List<Statement> modelStatements = new ArrayList<>();
+
+                for (Statement statement : model.listProperties().toList()) {
+                    modelStatements.add(statement);
+                    RDFNode object = statement.getObject();
+                    if (statement.getPredicate().equals(DCTerms.contributor) && object.isURIResource()) {
+                        try {
+                            organizations.add(UUID.fromString(object.asResource().getURI().replace("urn:uuid:", "")));
+                        } catch (IllegalArgumentException ex) {
+                            logger.warn("Invalid organization in " + model.getURI() + ": " + object);
+                        }
+                        modelStatements.addAll(object.asResource().listProperties().toList());
+                    } else if (statement.getPredicate().equals(DCTerms.isPartOf) && object.isResource()) {
+                        Resource group = object.asResource();
+                        if (group.hasProperty(DCTerms.identifier)) {
+                            serviceCategories.add(group.getProperty(DCTerms.identifier).getString());
+                        }
+                        modelStatements.addAll(group.listProperties().toList());
+                    } else if (statement.getPredicate().equals(RDFS.label) && object.isLiteral()) {
+                        labels.putIfAbsent(object.asLiteral().getLanguage(), object.asLiteral().getString());
+                    }
+                }
+
+                summaries.add(new ModelSummary(model.getURI(),
+                    model.getProperty(PREFIX).getString(),
+                    model.getProperty(OWL.versionInfo).getString(),
+                    organizations,
+                    serviceCategories,
+                    modified(model),
+                    labels));
+                statements.put(model.getURI(), Collections.unmodifiableList(modelStatements));
+            }
+
+            summaries.sort(comparator(SORT_PREFIX));
+            return new ModelList(Map.copyOf(graph.getNsPrefixMap()), Collections.unmodifiableList(summaries), statements);
+        }
+
+        private static Instant modified(Resource model) {
+            Statement modified = model.getProperty(DCTerms.modified);
+            if (modified == null || !modified.getObject().isLiteral()) {
+                return null;
+            }
+            try {
+                Object value = modified.getLiteral().getValue();
+                return value instanceof XSDDateTime ? ((XSDDateTime) value).asCalendar().toInstant() : null;
+            } catch (DatatypeFormatException ex) {
+                return null;
+            }
+        }
+
+        List<ModelSummary> getSummaries() {
+            return summaries;
+        }
+
+        ModelPage page(Predicate<ModelSummary> filter,
+                       String sort,
+                       int offset,
+                       Integer limit) {
+            if (offset < 0 || (limit != null && limit < 0)) {
+                throw new IllegalArgumentException("Invalid offset or limit");
+            }
+
+            Comparator<ModelSummary> comparator = comparator(sort);
+            List<ModelSummary> matching = summaries.stream().filter(filter).collect(Collectors.toList());
+            if (sort != null && !SORT_PREFIX.equals(sort)) {
+                matching.sort(comparator);
+            }
+
+            int from = Math.min(offset, matching.size());
+            int to = limit == null ? matching.size() : (int) Math.min((long) from + limit, matching.size());
+
+            Model page = ModelFactory.createDefaultModel();
+            page.setNsPrefixes(prefixes);
+            for (ModelSummary summary : matching.subList(from, to)) {
+                page.add(statements.get(summary.getId()));
+            }
+            return new ModelPage(page, matching.size());
+        }
+    }
+}
@@ -4,17 +4,17 @@
 package fi.vm.yti.datamodel.api.service;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.StringWriter;
-import java.io.UnsupportedEncodingException;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.BiConsumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -29,7 +29,9 @@ import org.apache.jena.rdf.model.Statement;
 import org.apache.jena.rdf.model.StmtIterator;
 import org.apache.jena.riot.*;
 import org.apache.jena.riot.system.*;
+import org.apache.jena.riot.writer.JsonLD10Writer;
 import org.apache.jena.shared.PropertyNotFoundException;
+import org.apache.jena.sparql.core.DatasetGraphFactory;
 import org.apache.jena.sparql.graph.GraphFactory;
 import org.apache.jena.vocabulary.OWL;
 import org.apache.jena.vocabulary.RDF;
@@ -39,15 +41,20 @@ import org.springframework.stereotype.Service;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.jsonldjava.core.JsonLdError;
 import com.github.jsonldjava.core.JsonLdOptions;
-import com.github.jsonldjava.utils.JsonUtils;
 
+import fi.vm.yti.datamodel.api.utils.CompactJsonLdWriter;
+import fi.vm.yti.datamodel.api.utils.Frames;
+import fi.vm.yti.datamodel.api.utils.IndexFrame;
 import fi.vm.yti.datamodel.api.utils.LDHelper;
+import fi.vm.yti.datamodel.api.utils.LanguageFilterStreamRDF;
 
 @Service
 public class ModelManager {
 
     private static final Logger logger = LoggerFactory.getLogger(ModelManager.class.getName());
+    private static final ObjectMapper objectMapper = new ObjectMapper();
 
     /**
      * Writes jena model to string
@@ -56,9 +63,18 @@ public class ModelManager {
      * @return string
      */
     public String writeModelToJSONLDString(Model model) {
-        StringWriter writer = new StringWriter();
-        RDFDataMgr.write(writer, model, RDFFormat.JSONLD10_COMPACT_PRETTY);
-        return writer.toString();
+        return CompactJsonLdWriter.DEFAULT.writeToString(model);
+    }
+
+    /**
+     * Writes jena model as json-ld to the stream without buffering the document
+     *
+     * @param model model to be written
+     * @param out   stream, not closed
+     */
+    public void writeModelToJSONLD(Model model,
+                                   OutputStream out) throws IOException {
+        CompactJsonLdWriter.DEFAULT.write(model, out);
     }
 
     public String writeModelToString(Model model,
@@ -68,32 +84,79 @@ public class ModelManager {
         return writer.toString();
     }
 
+    /**
+     * Parses RDF from the input and writes the triples with literals in the given languages. Languages with a
+     * streaming writer, such as Turtle and N-Triples, are written as they are parsed. Others, such as RDF/XML and
+     * JSON-LD, are collected to a graph of the filtered triples first.
+     *
+     * @param in         RDF input, not closed
+     * @param inputLang  Language of the input
+     * @param outputLang Language of the output
+     * @param languages  Languages of the literals in order of preference, see LanguageFilterStreamRDF
+     * @param out        Stream for the output, not closed
+     */
+    public void writeFiltered(InputStream in,
+                              Lang inputLang,
+                              Lang outputLang,
+                              List<String> languages,
+                              OutputStream out) throws IOException {
+        if (StreamRDFWriter.registered(outputLang)) {
+            StreamRDF writer = StreamRDFWriter.getWriterStream(out, outputLang);
+            RDFParser.source(in).lang(inputLang).parse(new LanguageFilterStreamRDF(writer, languages));
+            return;
+        }
+        Graph graph = GraphFactory.createDefaultGraph();
+        RDFParser.source(in).lang(inputLang).parse(new LanguageFilterStreamRDF(StreamRDFLib.graph(graph), languages));
+        Model model = ModelFactory.createModelForGraph(graph);
+        if (outputLang.equals(Lang.JSONLD)) {
+            writeModelToJSONLD(model, out);
+        } else {
+            RDFDataMgr.write(out, model, outputLang);
+        }
+    }
+
+    /**
+     * Frames the model as JSON-LD with the frame and the prefixes of the model. The shared frames are not modified,
+     * frames with the default prefixes are compiled once.
+     *
+     * @param model Model to be framed
+     * @param frame Frame of the index documents
+     * @return Framed JSON-LD
+     */
     public JsonNode toFramedJsonNode(Model model,
-                                     LinkedHashMap<String, Object> frame) throws IOException {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        Graph modelGraph = model.getGraph();
-        PrefixMap pm = Prefixes.adapt(modelGraph);
-        pm = cleanUpPrefixes(pm);
+                                     IndexFrame frame) throws IOException {
+        PrefixMap pm = cleanUpPrefixes(Prefixes.adapt(model.getGraph()));
+        Map<String, String> modelPrefixes = new LinkedHashMap<>();
+        pm.forEach((prefix, namespace) -> {
+            if (!LDHelper.PREFIX_MAP.containsKey(prefix)) {
+                modelPrefixes.put(prefix, namespace);
+            }
+        });
+        Map<String, Object> compiledFrame;
+        if (modelPrefixes.isEmpty()) {
+            compiledFrame = frame.getCompiledFrame();
+        } else {
+            modelPrefixes.putAll(LDHelper.PREFIX_MAP);
+            compiledFrame = Frames.withPrefixes(frame.getFrame(), modelPrefixes);
+        }
         pm.putAll(LDHelper.PREFIX_MAP);
-        ((LinkedHashMap<String, Object>) frame.get("@context")).putAll(pm.getMappingCopy());
+
         JsonLdOptions opts = new JsonLdOptions();
         opts.setProcessingMode(JsonLdOptions.JSON_LD_1_1);
         opts.useNamespaces = true;
         opts.setCompactArrays(true);
         opts.setUseNativeTypes(Boolean.TRUE);
         JsonLDWriteContext ctx = new JsonLDWriteContext();
-        ctx.setFrame(frame);
+        ctx.setFrame(compiledFrame);
         ctx.setOptions(opts);
 
-        RDFWriter w = RDFWriter.create().format(RDFFormat.JSONLD_FRAME_PRETTY)
-                .source(model.getGraph())
-                .context(ctx)
-                .build();
-
-        w.output(baos);
-
-        ObjectMapper objectMapper = new ObjectMapper();
-        return objectMapper.readTree(baos.toByteArray());
+        try {
+            Object framed = JsonLD10Writer.toJsonLDJavaAPI((RDFFormat.JSONLDVariant) RDFFormat.JSONLD_FRAME_PRETTY.getVariant(),
+                DatasetGraphFactory.wrap(model.getGraph()), pm, null, ctx);
+            return objectMapper.valueToTree(framed);
+        } catch (JsonLdError e) {
+            throw new IOException(e);
+        }
     }
 
     public PrefixMap cleanUpPrefixes(PrefixMap map) {
@@ -109,6 +172,26 @@ public class ModelManager {
         return map;
     }
 
+    /**
+     * Sets default prefixes and prefixes of the models described in the graph (dcap:preferredXMLNamespacePrefix).
+     * Graphs written with SPARQL Update do not store namespace prefixes to the service.
+     *
+     * @param model Model read from the service
+     * @return Returns the same model with prefixes
+     */
+    public Model setNamespacePrefixes(Model model) {
+        model.setNsPrefixes(LDHelper.PREFIX_MAP);
+        Property prefixProperty = LDHelper.curieToProperty("dcap:preferredXMLNamespacePrefix");
+        Property namespaceProperty = LDHelper.curieToProperty("dcap:preferredXMLNamespaceName");
+        model.listStatements(null, prefixProperty, (RDFNode) null).toList().forEach(statement -> {
+            Statement namespace = statement.getSubject().getProperty(namespaceProperty);
+            if (namespace != null && statement.getObject().isLiteral() && namespace.getObject().isLiteral()) {
+                model.setNsPrefix(statement.getString(), namespace.getString());
+            }
+        });
+        return model;
+    }
+
     /**
      * Removes all triples (one level of anonymous nodes) from MODEL that are in RESOURCE except those resources that are type owl:Ontology
      *
@@ -190,41 +273,43 @@ public class ModelManager {
      * @return Model
      */
     public Model createJenaModelFromJSONLDString(String modelString) throws IllegalArgumentException {
-        Graph graph = GraphFactory.createDefaultGraph();
-        PrefixMap pm = PrefixMapFactory.create();
-        try {
-            // FIXME: This is ugly hack for getting all of the prefixes from the json-ld context. For some reason urn namespaces are ignored by the parser.
-            Map jsonObject = (Map) JsonUtils.fromString(modelString);
-            Map context = (Map) jsonObject.get("@context");
-            context.forEach((key, value) -> {
-                if (value instanceof String && !LDHelper.isInvalidIRI((String) value)) {
-                    pm.add((String) key, (String) value);
-                }
-            });
-            try (InputStream in = new ByteArrayInputStream(modelString.getBytes(StandardCharsets.UTF_8))) {
-                RDFParser.create()
-                    .source(in)
-                    .lang(Lang.JSONLD)
-                    .errorHandler(ErrorHandlerFactory.errorHandlerStrict)
-                    .parse(graph);
-            } catch (UnsupportedEncodingException ex) {
-                logger.error("Unsupported encoding", ex);
-                throw new IllegalArgumentException("Could not parse the model");
-            } catch (IOException ex) {
-                logger.error("IO Exp JSON-LD", ex);
-                throw new IllegalArgumentException("Could not parse the model");
-            } catch (Exception ex) {
-                logger.error("Unexpected exception", ex);
-                throw new IllegalArgumentException("Could not parse the model");
-            }
-            if (graph.size() > 0) {
-                return ModelFactory.createModelForGraph(graph).setNsPrefixes(pm.getMappingCopy());
-            } else {
-                throw new IllegalArgumentException("Could not parse the model");
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
+        Model model = ModelFactory.createDefaultModel();
+        try (InputStream in = new ByteArrayInputStream(modelString.getBytes(StandardCharsets.UTF_8))) {
+            parseJSONLD(in, StreamRDFLib.graph(model.getGraph()), model::setNsPrefix);
+        } catch (Exception ex) {
+            logger.error("Could not parse JSON-LD", ex);
+            throw new IllegalArgumentException("Could not parse the model");
+        }
+        if (model.isEmpty()) {
             throw new IllegalArgumentException("Could not parse the model");
         }
+        return model;
+    }
+
+    /**
+     * Parses JSON-LD from the stream in one pass. Triples are sent to the output and the prefixes of the context to
+     * the prefix consumer, since the graph does not keep them.
+     *
+     * @param in       JSON-LD
+     * @param output   Output for the triples
+     * @param prefixes Consumer of the prefixes
+     * @throws RiotException if JSON-LD is invalid
+     */
+    public static void parseJSONLD(InputStream in,
+                                   StreamRDF output,
+                                   BiConsumer<String, String> prefixes) {
+        RDFParser.create()
+            .source(in)
+            .lang(Lang.JSONLD)
+            .errorHandler(ErrorHandlerFactory.errorHandlerStrict)
+            .parse(new StreamRDFWrapper(output) {
+                @Override
+                public void prefix(String prefix,
+                                   String iri) {
+                    if (!LDHelper.isInvalidIRI(iri)) {
+                        prefixes.accept(prefix, iri);
+                    }
+                }
+            });
     }
 }
@@ -3,6 +3,7 @@
  */
 package fi.vm.yti.datamodel.api.service;
 
+import fi.vm.yti.datamodel.api.index.ExternalIndexManager;
 import fi.vm.yti.datamodel.api.utils.LDHelper;
 
 import org.apache.jena.atlas.RuntimeIOException;
@@ -34,15 +35,22 @@ import java.util.Map;
 public final class NamespaceManager {
 
     private static Logger logger = LoggerFactory.getLogger(NamespaceManager.class);
+    private static final int CONNECT_TIMEOUT = 8000;
 
     private final EndpointServices endpointServices;
     private final JenaClient jenaClient;
+    private final RemoteDependency namespaces;
+    private final ExternalIndexManager externalIndexManager;
 
     @Autowired
     NamespaceManager(EndpointServices endpointServices,
-                     JenaClient jenaClient) {
+                     JenaClient jenaClient,
+                     RemoteDependencyRegistry dependencyRegistry,
+                     ExternalIndexManager externalIndexManager) {
         this.endpointServices = endpointServices;
         this.jenaClient = jenaClient;
+        this.namespaces = dependencyRegistry.get(RemoteDependencyRegistry.NAMESPACES);
+        this.externalIndexManager = externalIndexManager;
     }
 
     /**
@@ -132,7 +140,7 @@ public final class NamespaceManager {
     }
 
     /**
-     * Saves model to import service
+     * Saves model to import service and indexes its classes and predicates
      *
      * @param namespace namespace of the schema
      * @param model     schema as jena model
@@ -140,6 +148,7 @@ public final class NamespaceManager {
     public void putSchemaToStore(String namespace,
                                  Model model) {
         jenaClient.putToImports(namespace, model);
+        externalIndexManager.indexVocabulary(namespace, model);
     }
 
     /**
@@ -314,10 +323,8 @@ public final class NamespaceManager {
                 try { // IOException
 
                     connection = (HttpURLConnection) url.openConnection();
-                    // 2,5 seconds
-                    connection.setConnectTimeout(8000);
-                    // 2,5 minutes
-                    connection.setReadTimeout(30000);
+                    connection.setConnectTimeout(CONNECT_TIMEOUT);
+                    connection.setReadTimeout((int) namespaces.getTimeoutMillis());
                     connection.setInstanceFollowRedirects(true);
                     //,text/rdf+n3,application/turtle,application/rdf+n3
                     //"application/rdf+xml,application/xml,text/html");
@@ -330,16 +337,17 @@ public final class NamespaceManager {
                         InputStream stream;
 
                         try {
-                            stream = connection.getInputStream();
+                            stream = namespaces.call(connection::getInputStream);
                         } catch (IOException e) {
                             try {
                                 // Try fallback to rdf/xml or turtle without q factor
-                                connection = (HttpURLConnection) url.openConnection();
-                                connection.setConnectTimeout(8000);
-                                connection.setReadTimeout(30000);
-                                connection.setInstanceFollowRedirects(true);
-                                connection.setRequestProperty("Accept", "application/rdf+xml,application/turtle,text/turtle,application/ld+json");
-                                stream = connection.getInputStream();
+                                HttpURLConnection fallbackConnection = (HttpURLConnection) url.openConnection();
+                                fallbackConnection.setConnectTimeout(CONNECT_TIMEOUT);
+                                fallbackConnection.setReadTimeout((int) namespaces.getTimeoutMillis());
+                                fallbackConnection.setInstanceFollowRedirects(true);
+                                fallbackConnection.setRequestProperty("Accept", "application/rdf+xml,application/turtle,text/turtle,application/ld+json");
+                                stream = namespaces.call(fallbackConnection::getInputStream);
+                                connection = fallbackConnection;
                             } catch (IOException ex) {
                                 logger.warn(ex.getMessage());
                                 logger.warn("Couldnt read from " + namespace);
@@ -30,26 +30,33 @@ public class RHPOrganizationManager {
     private final EndpointServices endpointServices;
     private final ApplicationProperties properties;
     private final GraphManager graphManager;
+    private final RemoteDependency groupManagement;
 
     RHPOrganizationManager(ClientFactory clientFactory,
                            EndpointServices endpointServices,
                            ApplicationProperties properties,
-                           GraphManager graphManager) {
+                           GraphManager graphManager,
+                           RemoteDependencyRegistry dependencyRegistry) {
         this.clientFactory = clientFactory;
         this.endpointServices = endpointServices;
         this.properties = properties;
         this.graphManager = graphManager;
+        this.groupManagement = dependencyRegistry.get(RemoteDependencyRegistry.GROUPMANAGEMENT);
     }
 
     public Response getOrganizations() {
         String service = properties.getDefaultGroupManagementAPI() + "organizations?onlyValid=true";
         logger.debug("Getting organizations from: "+service);
-        return clientFactory.create().target(service).request("application/json").get();
+        return getResponse(service);
+    }
+
+    private Response getResponse(String service) {
+        return groupManagement.callHttp(() -> groupManagement.configure(clientFactory.create()).target(service).request("application/json").get());
     }
 
     public UUID getParentOrganizationId(String childOrganizationId) {
         String service = properties.getPrivateGroupManagementAPI() + "parentorganization?childOrganizationId=" + childOrganizationId;
-        Response response = clientFactory.create().target(service).request("application/json").get();
+        Response response = getResponse(service);
 
         if (response.getStatus() == Response.Status.OK.getStatusCode()) {
             JsonReader reader = Json.createReader(response.readEntity(InputStream.class));
@@ -80,7 +87,7 @@ public class RHPOrganizationManager {
 
     public List<String> getChildOrganizations(String parentId) {
         String service = properties.getPrivateGroupManagementAPI() + "childorganizations?parentId=" + parentId;
-        Response response = clientFactory.create().target(service).request("application/json").get();
+        Response response = getResponse(service);
 
         List<String> result = new ArrayList<>();
         if (response.getStatus() == Response.Status.OK.getStatusCode()) {
@@ -21,14 +21,17 @@ public class RHPUsersManager {
     private final ApplicationProperties properties;
     private final ClientFactory clientFactory;
     private final boolean fakeLoginAllowed;
+    private final RemoteDependency groupManagement;
 
     RHPUsersManager(ApplicationProperties properties,
                     ClientFactory clientFactory,
-                    @Value("${fake.login.allowed:false}") boolean fakeLoginAllowed) {
+                    @Value("${fake.login.allowed:false}") boolean fakeLoginAllowed,
+                    RemoteDependencyRegistry dependencyRegistry) {
 
         this.properties = properties;
         this.clientFactory = clientFactory;
         this.fakeLoginAllowed = fakeLoginAllowed;
+        this.groupManagement = dependencyRegistry.get(RemoteDependencyRegistry.GROUPMANAGEMENT);
     }
 
     public List<GroupManagementUserDTO> getFakeableUsers() {
@@ -37,11 +40,11 @@ public class RHPUsersManager {
 
             String url = properties.getDefaultGroupManagementAPI() + "users";
 
-            return clientFactory.create()
+            return groupManagement.call(() -> groupManagement.configure(clientFactory.create())
                 .target(url)
                 .request(MediaType.APPLICATION_JSON)
-                .get(new GenericType<>() {
-                });
+                .get(new GenericType<List<GroupManagementUserDTO>>() {
+                }));
         } else {
             return Collections.emptyList();
         }
@@ -51,12 +54,12 @@ public class RHPUsersManager {
 
         String url = properties.getPrivateGroupManagementAPI() + "requests";
 
-        return clientFactory.create()
+        return groupManagement.call(() -> groupManagement.configure(clientFactory.create())
             .target(url)
             .queryParam("userId", userId)
             .request(MediaType.APPLICATION_JSON)
-            .get(new GenericType<>() {
-            });
+            .get(new GenericType<List<GroupManagementUserRequestDTO>>() {
+            }));
     }
 
     public void sendUserRequests(String userId,
@@ -64,12 +67,12 @@ public class RHPUsersManager {
 
         String url = properties.getPrivateGroupManagementAPI() + "request";
 
-        clientFactory.create()
+        groupManagement.callHttp(() -> groupManagement.configure(clientFactory.create())
             .target(url)
             .queryParam("userId", userId)
             .queryParam("role", Role.DATA_MODEL_EDITOR.toString())
             .queryParam("organizationId", organizationId)
             .request(MediaType.APPLICATION_JSON)
-            .post(Entity.json(null));
+            .post(Entity.json(null)));
     }
 }
@@ -0,0 +1,519 @@
+/*
+ * Licensed under the European Union Public Licence (EUPL) V.1.1
+ */
+package fi.vm.yti.datamodel.api.service;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.core.Response;
+
+import org.apache.jena.atlas.web.HttpException;
+import org.apache.jena.sparql.engine.http.QueryExceptionHTTP;
+import org.elasticsearch.ElasticsearchStatusException;
+import org.glassfish.jersey.client.ClientProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Guards calls to one remote dependency with a concurrency bulkhead, a count based circuit breaker and a timeout
+ * derived from the observed latency. Calls are rejected with DependencyUnavailableException when the bulkhead is
+ * full or the breaker is open, so that a slow dependency can not tie up all request threads. Bulk calls, such as
+ * CONSTRUCT queries and graph exports, have their own fixed timeout and their latency is not sampled.
+ */
+public final class RemoteDependency {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    @FunctionalInterface
+    public interface RemoteCall<T, E extends Exception> {
+
+        T execute() throws E;
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(RemoteDependency.class.getName());
+
+    static final int WINDOW_SIZE = 20;
+    static final int MINIMUM_CALLS = 10;
+    static final int FAILURE_RATE_THRESHOLD = 50;
+    static final int LATENCY_SAMPLES = 100;
+    static final int MINIMUM_LATENCY_SAMPLES = 20;
+    static final int LATENCY_MULTIPLIER = 4;
+    private static final long MAX_RETRY_DELAY_MILLIS = 10000;
+
+    private final String name;
+    private final int maxConcurrentCalls;
+    private final Semaphore bulkhead;
+    private final long minTimeoutMillis;
+    private final long maxTimeoutMillis;
+    private final long bulkTimeoutMillis;
+    private final boolean circuitBreakerEnabled;
+    private final long openDurationNanos;
+    private final ScheduledExecutorService retryExecutor;
+
+    private final boolean[] outcomes = new boolean[WINDOW_SIZE];
+    private int outcomeIndex;
+    private int outcomeCount;
+    private int failureCount;
+    private State state = State.CLOSED;
+    private long openedAt;
+    private boolean trialCallInProgress;
+
+    private final long[] latencies = new long[LATENCY_SAMPLES];
+    private int latencyIndex;
+    private int latencyCount;
+
+    private long successfulCalls;
+    private long failedCalls;
+    private long rejectedCalls;
+
+    public RemoteDependency(String name,
+                            int maxConcurrentCalls,
+                            long minTimeoutMillis,
+                            long maxTimeoutMillis,
+                            long bulkTimeoutMillis,
+                            boolean circuitBreakerEnabled,
+                            long openDurationMillis,
+                            ScheduledExecutorService retryExecutor) {
+        this.name = name;
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.bulkhead = new Semaphore(maxConcurrentCalls);
+        this.minTimeoutMillis = minTimeoutMillis;
+        this.maxTimeoutMillis = maxTimeoutMillis;
+        this.bulkTimeoutMillis = bulkTimeoutMillis;
+        this.circuitBreakerEnabled = circuitBreakerEnabled;
+        this.openDurationNanos = TimeUnit.MILLISECONDS.toNanos(openDurationMillis);
+        this.retryExecutor = retryExecutor;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Executes the call. Exceptions thrown by the call are counted as failures unless they are client errors.
+     *
+     * @param call Remote call
+     * @return Result of the call
+     * @throws E Exception thrown by the call
+     */
+    public <T, E extends Exception> T call(RemoteCall<T, E> call) throws E {
+        return call(call, result -> false);
+    }
+
+    /**
+     * Executes the call and counts it as failure if the call throws or the result matches the given predicate
+     *
+     * @param call      Remote call
+     * @param isFailure Predicate for results that should be counted as failures
+     * @return Result of the call
+     * @throws E Exception thrown by the call
+     */
+    public <T, E extends Exception> T call(RemoteCall<T, E> call,
+                                           Predicate<T> isFailure) throws E {
+        return execute(call, isFailure, true);
+    }
+
+    /**
+     * Executes bulk call, such as CONSTRUCT query, dataset fetch or reindexing. Bulk calls should be configured with
+     * getBulkTimeoutMillis, and their latency is not used for the adaptive timeout of other calls.
+     *
+     * @param call Remote call
+     * @return Result of the call
+     * @throws E Exception thrown by the call
+     */
+    public <T, E extends Exception> T callBulk(RemoteCall<T, E> call) throws E {
+        return execute(call, result -> false, false);
+    }
+
+    private <T, E extends Exception> T execute(RemoteCall<T, E> call,
+                                               Predicate<T> isFailure,
+                                               boolean sampled) throws E {
+        acquirePermission();
+        long start = System.nanoTime();
+        boolean failure = true;
+        try {
+            T result = call.execute();
+            failure = isFailure.test(result);
+            return result;
+        } catch (Exception ex) {
+            failure = !isClientError(ex);
+            throw ex;
+        } finally {
+            bulkhead.release();
+            onResult(failure, System.nanoTime() - start, sampled);
+        }
+    }
+
+    /**
+     * Executes Jersey request. Entity of the response is buffered before the permit is released, so it can be read
+     * after the call. Responses with 5xx status are counted as failures.
+     *
+     * @param call Jersey request
+     * @return Response with buffered entity
+     */
+    public Response callHttp(RemoteCall<Response, RuntimeException> call) {
+        return call(() -> {
+            Response response = call.execute();
+            response.bufferEntity();
+            return response;
+        }, response -> response.getStatus() >= 500);
+    }
+
+    /**
+     * Executes Jersey request whose entity is passed on as a stream, such as a graph export. Returns outbound copy
+     * of the response with the entity as InputStream. The permit is held until the stream is closed, and the call is
+     * counted as a bulk call. Error responses are returned without entity.
+     *
+     * @param call Jersey request configured with configureBulk
+     * @return Response with InputStream entity, or without entity if the response was not successful or was empty
+     */
+    public Response callHttpStream(RemoteCall<Response, RuntimeException> call) {
+        acquirePermission();
+        long start = System.nanoTime();
+        Response response;
+        try {
+            response = call.execute();
+        } catch (RuntimeException ex) {
+            bulkhead.release();
+            onResult(!isClientError(ex), System.nanoTime() - start, false);
+            throw ex;
+        }
+        Response.StatusType status = response.getStatusInfo();
+        boolean failure = status.getStatusCode() >= 500;
+        boolean streamed = false;
+        try {
+            if (status.getFamily() == Response.Status.Family.SUCCESSFUL && response.hasEntity()) {
+                InputStream entity = new PermitInputStream(response.readEntity(InputStream.class), start);
+                Response streamedResponse = Response.status(status).type(response.getMediaType()).entity(entity).build();
+                streamed = true;
+                return streamedResponse;
+            }
+            response.close();
+            return Response.status(status).build();
+        } catch (RuntimeException ex) {
+            failure = !isClientError(ex);
+            response.close();
+            throw ex;
+        } finally {
+            if (!streamed) {
+                bulkhead.release();
+                onResult(failure, System.nanoTime() - start, false);
+            }
+        }
+    }
+
+    /**
+     * Executes the call asynchronously and retries failed attempts with jittered exponential backoff. Backoff is
+     * scheduled on the retry executor so no thread is parked while waiting. Rejected calls and client errors are not retried.
+     *
+     * @param call            Remote call
+     * @param maxAttempts     Maximum number of attempts
+     * @param baseDelayMillis Delay before the second attempt
+     * @return Future of the result
+     */
+    public <T> CompletableFuture<T> callWithRetryAsync(RemoteCall<T, ? extends Exception> call,
+                                                       int maxAttempts,
+                                                       long baseDelayMillis) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        schedule(call, 1, maxAttempts, baseDelayMillis, 0, result);
+        return result;
+    }
+
+    private <T> void schedule(RemoteCall<T, ? extends Exception> call,
+                              int attempt,
+                              int maxAttempts,
+                              long baseDelayMillis,
+                              long delayMillis,
+                              CompletableFuture<T> result) {
+        try {
+            retryExecutor.schedule(() -> attempt(call, attempt, maxAttempts, baseDelayMillis, result), delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ex) {
+            result.completeExceptionally(new DependencyUnavailableException(name, "retry executor is not available"));
+        }
+    }
+
+    private <T> void attempt(RemoteCall<T, ? extends Exception> call,
+                             int attempt,
+                             int maxAttempts,
+                             long baseDelayMillis,
+                             CompletableFuture<T> result) {
+        try {
+            result.complete(call(call));
+        } catch (Exception ex) {
+            if (attempt >= maxAttempts || ex instanceof DependencyUnavailableException || isClientError(ex)) {
+                result.completeExceptionally(ex);
+            } else {
+                long delay = retryDelayMillis(attempt, baseDelayMillis);
+                logger.warn("{} call failed on attempt {}, retrying in {} ms: {}", name, attempt, delay, ex.toString());
+                schedule(call, attempt + 1, maxAttempts, baseDelayMillis, delay, result);
+            }
+        }
+    }
+
+    /**
+     * Full jitter: random delay between zero and base * 2^(attempt-1)
+     */
+    static long retryDelayMillis(int attempt,
+                                 long baseDelayMillis) {
+        long cap = Math.min(MAX_RETRY_DELAY_MILLIS, baseDelayMillis << Math.min(attempt - 1, 16));
+        return ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+
+    /**
+     * Sets connect and read timeouts of the Jersey client from current timeout of this dependency
+     *
+     * @param client Jersey client
+     * @return Same client
+     */
+    public Client configure(Client client) {
+        int timeout = (int) getTimeoutMillis();
+        return client.property(ClientProperties.CONNECT_TIMEOUT, timeout)
+            .property(ClientProperties.READ_TIMEOUT, timeout);
+    }
+
+    /**
+     * Sets connect timeout of the Jersey client from current timeout of this dependency and read timeout from the
+     * bulk timeout, for requests executed with callHttpStream
+     *
+     * @param client Jersey client
+     * @return Same client
+     */
+    public Client configureBulk(Client client) {
+        return client.property(ClientProperties.CONNECT_TIMEOUT, (int) getTimeoutMillis())
+            .property(ClientProperties.READ_TIMEOUT, (int) bulkTimeoutMillis);
+    }
+
+    /**
+     * Returns timeout for the next call. Until enough latency samples are collected the maximum timeout is used,
+     * after that the p99 latency multiplied with LATENCY_MULTIPLIER and clamped between minimum and maximum.
+     *
+     * @return Timeout in milliseconds
+     */
+    public synchronized long getTimeoutMillis() {
+        if (latencyCount < MINIMUM_LATENCY_SAMPLES) {
+            return maxTimeoutMillis;
+        }
+        long p99 = TimeUnit.NANOSECONDS.toMillis(percentile(99));
+        return Math.max(minTimeoutMillis, Math.min(maxTimeoutMillis, p99 * LATENCY_MULTIPLIER));
+    }
+
+    /**
+     * Returns fixed timeout of bulk calls
+     *
+     * @return Timeout in milliseconds
+     */
+    public long getBulkTimeoutMillis() {
+        return bulkTimeoutMillis;
+    }
+
+    public synchronized State getState() {
+        if (state == State.OPEN && System.nanoTime() - openedAt >= openDurationNanos) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    public synchronized Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("state", circuitBreakerEnabled ? getState().name() : "DISABLED");
+        status.put("failureRate", outcomeCount == 0 ? 0 : failureCount * 100 / outcomeCount);
+        status.put("bufferedCalls", outcomeCount);
+        status.put("activeCalls", maxConcurrentCalls - bulkhead.availablePermits());
+        status.put("maxConcurrentCalls", maxConcurrentCalls);
+        status.put("timeoutMillis", getTimeoutMillis());
+        status.put("bulkTimeoutMillis", bulkTimeoutMillis);
+        status.put("p99LatencyMillis", latencyCount == 0 ? null : TimeUnit.NANOSECONDS.toMillis(percentile(99)));
+        status.put("successfulCalls", successfulCalls);
+        status.put("failedCalls", failedCalls);
+        status.put("rejectedCalls", rejectedCalls);
+        return status;
+    }
+
+    private void acquirePermission() {
+        if (!tryAcquireBreakerPermission()) {
+            throw new DependencyUnavailableException(name, "circuit breaker is open");
+        }
+        if (!bulkhead.tryAcquire()) {
+            synchronized (this) {
+                rejectedCalls++;
+                if (state == State.HALF_OPEN) {
+                    trialCallInProgress = false;
+                }
+            }
+            throw new DependencyUnavailableException(name, "too many concurrent calls");
+        }
+    }
+
+    private synchronized boolean tryAcquireBreakerPermission() {
+        if (!circuitBreakerEnabled || state == State.CLOSED) {
+            return true;
+        }
+        if (state == State.OPEN && System.nanoTime() - openedAt >= openDurationNanos) {
+            state = State.HALF_OPEN;
+            trialCallInProgress = false;
+        }
+        if (state == State.HALF_OPEN && !trialCallInProgress) {
+            trialCallInProgress = true;
+            return true;
+        }
+        rejectedCalls++;
+        return false;
+    }
+
+    private synchronized void onResult(boolean failure,
+                                       long elapsedNanos,
+                                       boolean sampled) {
+        if (failure) {
+            failedCalls++;
+        } else {
+            successfulCalls++;
+        }
+        if (!failure && sampled) {
+            latencies[latencyIndex] = elapsedNanos;
+            latencyIndex = (latencyIndex + 1) % LATENCY_SAMPLES;
+            latencyCount = Math.min(latencyCount + 1, LATENCY_SAMPLES);
+        }
+
+        if (!circuitBreakerEnabled) {
+            return;
+        }
+
+        if (state == State.HALF_OPEN) {
+            trialCallInProgress = false;
+            if (failure) {
+                open();
+            } else {
+                logger.info("Circuit breaker of {} closed", name);
+                state = State.CLOSED;
+                resetWindow();
+            }
+            return;
+        }
+
+        if (state == State.OPEN) {
+            return;
+        }
+
+        if (outcomeCount == WINDOW_SIZE && outcomes[outcomeIndex]) {
+            failureCount--;
+        }
+        outcomes[outcomeIndex] = failure;
+        if (failure) {
+            failureCount++;
+        }
+        outcomeIndex = (outcomeIndex + 1) % WINDOW_SIZE;
+        outcomeCount = Math.min(outcomeCount + 1, WINDOW_SIZE);
+
+        if (outcomeCount >= MINIMUM_CALLS && failureCount * 100 / outcomeCount >= FAILURE_RATE_THRESHOLD) {
+            open();
+        }
+    }
+
+    private void open() {
+        logger.warn("Circuit breaker of {} opened", name);
+        state = State.OPEN;
+        openedAt = System.nanoTime();
+        resetWindow();
+    }
+
+    private void resetWindow() {
+        Arrays.fill(outcomes, false);
+        outcomeIndex = 0;
+        outcomeCount = 0;
+        failureCount = 0;
+    }
+
+    private long percentile(int percentile) {
+        long[] sorted = Arrays.copyOf(latencies, latencyCount);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, index)];
+    }
+
+    /**
+     * Entity stream of callHttpStream that releases the permit once, when the stream is closed. Read errors are
+     * counted as failures.
+     */
+    private final class PermitInputStream extends FilterInputStream {
+
+        private final long start;
+        private final AtomicBoolean released = new AtomicBoolean();
+        private volatile boolean failure;
+
+        PermitInputStream(InputStream in,
+                          long start) {
+            super(in);
+            this.start = start;
+        }
+
+        @Override
+        public int read() throws IOException {
+            try {
+                return super.read();
+            } catch (IOException ex) {
+                failure = true;
+                throw ex;
+            }
+        }
+
+        @Override
+        public int read(byte[] b,
+                        int off,
+                        int len) throws IOException {
+            try {
+                return super.read(b, off, len);
+            } catch (IOException ex) {
+                failure = true;
+                throw ex;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                if (released.compareAndSet(false, true)) {
+                    bulkhead.release();
+                    onResult(failure, System.nanoTime() - start, false);
+                }
+            }
+        }
+    }
+
+    /**
+     * Client errors tell nothing about health of the dependency, so they are not counted as failures
+     */
+    static boolean isClientError(Throwable ex) {
+        int status = -1;
+        if (ex instanceof HttpException) {
+            status = ((HttpException) ex).getStatusCode();
+        } else if (ex instanceof QueryExceptionHTTP) {
+            status = ((QueryExceptionHTTP) ex).getStatusCode();
+        } else if (ex instanceof ElasticsearchStatusException) {
+            status = ((ElasticsearchStatusException) ex).status().getStatus();
+        } else if (ex instanceof WebApplicationException) {
+            status = ((WebApplicationException) ex).getResponse().getStatus();
+        }
+        return status >= 400 && status < 500;
+    }
+}
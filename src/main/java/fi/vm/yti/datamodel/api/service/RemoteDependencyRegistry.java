@@ -0,0 +1,78 @@
+/*
+ * Licensed under the European Union Public Licence (EUPL) V.1.1
+ */
+package fi.vm.yti.datamodel.api.service;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.stereotype.Service;
+
+/**
+ * Holds resilience settings and runtime state of every remote dependency of the API
+ */
+@Service
+public class RemoteDependencyRegistry {
+
+    public static final String FUSEKI = "fuseki";
+    public static final String ELASTICSEARCH = "elasticsearch";
+    public static final String TERMINOLOGY = "terminology";
+    public static final String CODES = "codes";
+    public static final String GROUPMANAGEMENT = "groupmanagement";
+    public static final String NAMESPACES = "namespaces";
+
+    private static final int RETRY_THREADS = 4;
+
+    private final ScheduledExecutorService retryExecutor;
+    private final Map<String, RemoteDependency> dependencies = new LinkedHashMap<>();
+
+    public RemoteDependencyRegistry() {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.retryExecutor = new ScheduledThreadPoolExecutor(RETRY_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "remote-retry-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        register(FUSEKI, 64, 5000, 180000, 600000, true, 10000);
+        register(ELASTICSEARCH, 64, 2000, 60000, 300000, true, 10000);
+        register(TERMINOLOGY, 16, 2000, 60000, 60000, true, 30000);
+        register(CODES, 16, 2000, 60000, 60000, true, 30000);
+        register(GROUPMANAGEMENT, 16, 2000, 60000, 60000, true, 30000);
+        // Namespaces are resolved from arbitrary hosts, so failures of one host must not block the others
+        register(NAMESPACES, 8, 8000, 30000, 30000, false, 0);
+    }
+
+    private void register(String name,
+                          int maxConcurrentCalls,
+                          long minTimeoutMillis,
+                          long maxTimeoutMillis,
+                          long bulkTimeoutMillis,
+                          boolean circuitBreakerEnabled,
+                          long openDurationMillis) {
+        dependencies.put(name, new RemoteDependency(name, maxConcurrentCalls, minTimeoutMillis, maxTimeoutMillis, bulkTimeoutMillis, circuitBreakerEnabled, openDurationMillis, retryExecutor));
+    }
+
+    public RemoteDependency get(String name) {
+        RemoteDependency dependency = dependencies.get(name);
+        if (dependency == null) {
+            throw new IllegalArgumentException("Unknown dependency: " + name);
+        }
+        return dependency;
+    }
+
+    public Collection<RemoteDependency> getAll() {
+        return Collections.unmodifiableCollection(dependencies.values());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        retryExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Licensed under the European Union Public Licence (EUPL) V.1.1
+ */
+package fi.vm.yti.datamodel.api.service;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+
+import org.apache.jena.datatypes.xsd.XSDDateTime;
+import org.apache.jena.query.ParameterizedSparqlString;
+import org.apache.jena.query.QuerySolution;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.rdf.model.Literal;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import fi.vm.yti.datamodel.api.utils.LDHelper;
+
+/**
+ * Answers conditional GET requests of single resources and models. Version of a graph is the latest of
+ * dcterms:modified and iow:contentModified of the graph resource and iow:statusModified of any resource in the graph,
+ * so updates and status changes through GraphManager change it.
+ * Responses also embed labels of the library of a resource (rdfs:isDefinedBy), of the required models of a model
+ * (dcterms:requires) and of service categories, so the versions of those graphs are part of the tag.
+ * Versions are cached with the generation of the model, a write to the model makes the next request read them again.
+ * A write to a referenced model makes the next request read the version of that model only.
+ */
+@Service
+public class ResourceVersionManager {
+
+    private static final String SERVICE_CATEGORIES = "urn:yti:servicecategories";
+    private static final String versionQuery = "SELECT ?reference ?modified WHERE { "
+        + "{ GRAPH ?graph { { ?graph dcterms:modified|iow:contentModified ?modified . } UNION { ?any iow:statusModified ?modified . }}} "
+        + "UNION { "
+        + "GRAPH ?graph { ?graph rdfs:isDefinedBy|dcterms:requires ?reference . FILTER isIRI(?reference) } "
+        + "OPTIONAL { GRAPH ?reference { ?reference dcterms:modified|iow:contentModified ?modified . }}"
+        + "}}";
+
+    private final JenaClient jenaClient;
+    private final EndpointServices endpointServices;
+    private final DatasetGeneration datasetGeneration;
+    private final ListCache listCache;
+
+    @Autowired
+    ResourceVersionManager(JenaClient jenaClient,
+                           EndpointServices endpointServices,
+                           DatasetGeneration datasetGeneration,
+                           ListCache listCache) {
+        this.jenaClient = jenaClient;
+        this.endpointServices = endpointServices;
+        this.datasetGeneration = datasetGeneration;
+        this.listCache = listCache;
+    }
+
+    /**
+     * Answers 304 if the request has a matching If-None-Match or If-Modified-Since, otherwise adds version headers to
+     * successful responses. Responses of graphs without modification dates are returned unchanged.
+     *
+     * @param request  Request with the conditional headers
+     * @param graph    IRI of the resource or model graph
+     * @param response Creates the full response, not called when 304 is answered
+     * @return Response
+     */
+    public Response conditionalResponse(Request request,
+                                        String graph,
+                                        Supplier<Response> response) {
+        Optional<ResourceVersion> version = getVersion(graph);
+        if (version.isEmpty()) {
+            return response.get();
+        }
+        ResourceVersion resourceVersion = version.get();
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(resourceVersion.getLastModified(), resourceVersion.getTag());
+        if (notModified != null) {
+            return notModified.cacheControl(revalidate()).build();
+        }
+        Response fullResponse = response.get();
+        if (fullResponse.getStatus() != Response.Status.OK.getStatusCode()) {
+            return fullResponse;
+        }
+        return Response.fromResponse(fullResponse)
+            .tag(resourceVersion.getTag())
+            .lastModified(resourceVersion.getLastModified())
+            .cacheControl(revalidate())
+            .build();
+    }
+
+    /**
+     * Answers 304 if the request has a matching If-None-Match, otherwise adds the tag to successful responses. Used
+     * for responses whose tag is computed from the content instead of the modification dates of the graph.
+     *
+     * @param request  Request with the conditional headers
+     * @param tag      Tag of the current content
+     * @param response Creates the full response, not called when 304 is answered
+     * @return Response
+     */
+    public Response conditionalResponse(Request request,
+                                        EntityTag tag,
+                                        Supplier<Response> response) {
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(tag);
+        if (notModified != null) {
+            return notModified.cacheControl(revalidate()).build();
+        }
+        Response fullResponse = response.get();
+        if (fullResponse.getStatus() != Response.Status.OK.getStatusCode()) {
+            return fullResponse;
+        }
+        return Response.fromResponse(fullResponse)
+            .tag(tag)
+            .cacheControl(revalidate())
+            .build();
+    }
+
+    public Optional<ResourceVersion> getVersion(String graph) {
+        GraphVersion version = getGraphVersion(graph);
+        if (version.modified < 0) {
+            return Optional.empty();
+        }
+        long latest = version.modified;
+        long hash = version.modified;
+        for (Map.Entry<String, Long> reference : version.references.entrySet()) {
+            String referenceGraph = reference.getKey();
+            long modified = version.generations.containsKey(referenceGraph)
+                && version.generations.get(referenceGraph) == datasetGeneration.current(referenceGraph)
+                ? reference.getValue() : getGraphVersion(referenceGraph).modified;
+            latest = Math.max(latest, modified);
+            hash = 31 * hash + modified;
+        }
+        hash = 31 * hash + datasetGeneration.current(SERVICE_CATEGORIES);
+        return Optional.of(new ResourceVersion(latest, hash));
+    }
+
+    private GraphVersion getGraphVersion(String graph) {
+        return listCache.get("version", datasetGeneration.current(graph), () -> queryVersion(graph), graph);
+    }
+
+    private GraphVersion queryVersion(String graph) {
+        ParameterizedSparqlString pss = new ParameterizedSparqlString();
+        pss.setNsPrefixes(LDHelper.PREFIX_MAP);
+        pss.setCommandText(versionQuery);
+        pss.setIri("graph", graph);
+
+        long generation = datasetGeneration.current();
+        ResultSet results = jenaClient.selectQuery(endpointServices.getCoreSparqlAddress(), pss.asQuery());
+        long latest = -1;
+        Map<String, Long> references = new TreeMap<>();
+        while (results.hasNext()) {
+            QuerySolution soln = results.nextSolution();
+            long modified = soln.contains("modified") ? modifiedMillis(soln.getLiteral("modified")) : -1;
+            if (soln.contains("reference")) {
+                references.merge(soln.getResource("reference").getURI(), modified, Math::max);
+            } else {
+                latest = Math.max(latest, modified);
+            }
+        }
+        Map<String, Long> generations = new TreeMap<>();
+        references.keySet().forEach(reference -> generations.put(reference, datasetGeneration.current(reference)));
+        // Versions of the referenced graphs are read again if anything was written during the query
+        return new GraphVersion(latest, references, generation == datasetGeneration.current() ? generations : Collections.emptyMap());
+    }
+
+    private static long modifiedMillis(Literal modified) {
+        return modified.getValue() instanceof XSDDateTime ? ((XSDDateTime) modified.getValue()).asCalendar().getTimeInMillis() : -1;
+    }
+
+    /**
+     * Responses may be stored by the browser but are validated on every use
+     */
+    private static CacheControl revalidate() {
+        CacheControl cacheControl = new CacheControl();
+        cacheControl.setPrivate(true);
+        cacheControl.setNoCache(true);
+        cacheControl.setNoTransform(false);
+        return cacheControl;
+    }
+
+    /**
+     * Version of one graph and of the graphs it references, with the generations the references were read at
+     */
+    private static final class GraphVersion {
+
+        private final long modified;
+        private final Map<String, Long> references;
+        private final Map<String, Long> generations;
+
+        private GraphVersion(long modified,
+                             Map<String, Long> references,
+                             Map<String, Long> generations) {
+            this.modified = modified;
+            this.references = references;
+            this.generations = generations;
+        }
+    }
+
+    public static final class ResourceVersion {
+
+        private final Date lastModified;
+        private final EntityTag tag;
+
+        /**
+         * @param modifiedMillis Latest modification of the graph or the graphs it references
+         * @param hash           Hash of the versions of all the graphs
+         */
+        ResourceVersion(long modifiedMillis,
+                        long hash) {
+            this.lastModified = new Date(modifiedMillis);
+            this.tag = new EntityTag(Long.toString(modifiedMillis, 36) + "-" + Long.toString(hash, 36), true);
+        }
+
+        public Date getLastModified() {
+            return lastModified;
+        }
+
+        public EntityTag getTag() {
+            return tag;
+        }
+    }
+}
@@ -9,8 +9,6 @@ import org.apache.jena.query.*;
 import org.apache.jena.rdf.model.Literal;
 import org.apache.jena.rdf.model.Property;
 import org.apache.jena.rdf.model.ResourceFactory;
-import org.apache.jena.update.UpdateExecutionFactory;
-import org.apache.jena.update.UpdateProcessor;
 import org.apache.jena.update.UpdateRequest;
 import org.springframework.stereotype.Service;
 
@@ -27,9 +25,12 @@ public class ServiceDescriptionManager {
     public static final Property name = ResourceFactory.createProperty("http://www.w3.org/ns/sparql-service-description#", "name");
 
     private final EndpointServices endpointServices;
+    private final JenaClient jenaClient;
 
-    ServiceDescriptionManager(EndpointServices endpointServices) {
+    ServiceDescriptionManager(EndpointServices endpointServices,
+                              JenaClient jenaClient) {
         this.endpointServices = endpointServices;
+        this.jenaClient = jenaClient;
     }
 
     /**
@@ -126,8 +127,7 @@ public class ServiceDescriptionManager {
         pss.setCommandText(query);
 
         UpdateRequest queryObj = pss.asUpdate();
-        UpdateProcessor qexec = UpdateExecutionFactory.createRemoteForm(queryObj, endpointServices.getCoreSparqlUpdateAddress());
-        qexec.execute();
+        jenaClient.updateToService(queryObj, endpointServices.getCoreSparqlUpdateAddress());
 
     }
 
@@ -160,8 +160,7 @@ public class ServiceDescriptionManager {
         logger.info("Removing " + graph);
 
         UpdateRequest queryObj = pss.asUpdate();
-        UpdateProcessor qexec = UpdateExecutionFactory.createRemoteForm(queryObj, endpointServices.getCoreSparqlUpdateAddress());
-        qexec.execute();
+        jenaClient.updateToService(queryObj, endpointServices.getCoreSparqlUpdateAddress());
 
     }
 }
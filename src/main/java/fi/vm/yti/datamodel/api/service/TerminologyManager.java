@@ -101,14 +101,19 @@ public final class TerminologyManager {
     private final EndpointServices endpointServices;
     private final ApplicationProperties properties;
     private final ModelManager modelManager;
+    private final RemoteDependency fuseki;
+    private final RemoteDependency terminology;
 
     @Autowired
     TerminologyManager(EndpointServices endpointServices,
                        ApplicationProperties properties,
-                       ModelManager modelManager) {
+                       ModelManager modelManager,
+                       RemoteDependencyRegistry dependencyRegistry) {
         this.endpointServices = endpointServices;
         this.properties = properties;
         this.modelManager = modelManager;
+        this.fuseki = dependencyRegistry.get(RemoteDependencyRegistry.FUSEKI);
+        this.terminology = dependencyRegistry.get(RemoteDependencyRegistry.TERMINOLOGY);
     }
 
     public String createConceptSuggestionJson(String terminologyUri,
@@ -146,7 +151,7 @@ public final class TerminologyManager {
 
         assert conceptModel != null;
         try(RDFConnection connection = RDFConnection.connect(endpointServices.getCoreReadAddress())){
-            conceptModel.add(connection.fetch(modelUri));
+            conceptModel.add(fuseki.call(() -> connection.fetch(modelUri)));
         }
 
         try (QueryExecution qexec = QueryExecutionFactory.create(query, conceptModel)) {
@@ -168,7 +173,7 @@ public final class TerminologyManager {
 
         String url = properties.getDefaultTerminologyAPI() + "v1/integration/containers";
 
-        Client client = ClientBuilder.newClient();
+        Client client = terminology.configure(ClientBuilder.newClient());
         WebTarget target = client.target(url);
 
         if (includeIncomplete) {
@@ -186,7 +191,8 @@ public final class TerminologyManager {
         logger.debug("Getting schemes from terminology api:");
         logger.debug(target.toString());
 
-        Response response = target.request("application/json").get();
+        WebTarget schemeTarget = target;
+        Response response = terminology.callHttp(() -> schemeTarget.request("application/json").get());
 
         client.close();
 
@@ -218,7 +224,7 @@ public final class TerminologyManager {
         String url = properties.getDefaultTerminologyAPI() + "v1/integration/resources";
 
 
-        Client client = ClientBuilder.newClient();
+        Client client = terminology.configure(ClientBuilder.newClient());
 
         WebTarget target = client.target(url)
             .queryParam("includeIncomplete", true);
@@ -242,7 +248,8 @@ public final class TerminologyManager {
 
         logger.debug("Searching from ES: " + target.getUri());
 
-        Response response = target.request("application/json").get();
+        WebTarget searchTarget = target;
+        Response response = terminology.callHttp(() -> searchTarget.request("application/json").get());
         client.close();
 
         if (response.getStatusInfo().getFamily() != Response.Status.Family.SUCCESSFUL) {
@@ -5,14 +5,19 @@ package fi.vm.yti.datamodel.api.service;
 
 import fi.vm.yti.datamodel.api.utils.LDHelper;
 import fi.vm.yti.datamodel.api.utils.XMLSchemaBuilder;
+import fi.vm.yti.datamodel.api.utils.XMLSchemaStreamWriter;
 
-import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.jena.query.*;
 import org.apache.jena.sparql.resultset.ResultSetPeekable;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.text.SimpleDateFormat;
 import java.util.*;
 
+import javax.ws.rs.core.StreamingOutput;
+import javax.xml.stream.XMLStreamException;
+
 import org.apache.jena.util.SplitIRI;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
@@ -74,11 +79,50 @@ public class XMLSchemaWriter {
 
     public String newClassSchema(String classID,
                                  String lang) {
-        logger.info("Creating schema");
+        XmlComplexTypeDTO complexTypeDTO = getClassSchema(classID, lang);
+        if (complexTypeDTO == null) {
+            return null;
+        }
         XMLSchemaBuilder xml = new XMLSchemaBuilder();
+        Element complexType = xml.newComplexType(getClassName(SplitIRI.localname(classID), complexTypeDTO.getLocalClassName()), classID);
+        createDocumentation(xml, complexType, complexTypeDTO.getDocumentation());
+        if (!complexTypeDTO.getXmlElements().isEmpty()) {
+            Element seq = xml.newSequence(complexType);
+            createXmlElements(xml, seq, complexTypeDTO.getXmlElements());
+        }
+        return xml.toString();
+    }
+
+    /**
+     * Streams the same schema as newClassSchema without building it in memory. Class is queried before returning,
+     * so that missing classes are answered before the response is started.
+     *
+     * @param classID Class IRI
+     * @param lang    Language of the schema
+     * @return Output writing the schema or null if the class is not found
+     */
+    public StreamingOutput newClassSchemaOutput(String classID,
+                                                String lang) {
+        XmlComplexTypeDTO complexTypeDTO = getClassSchema(classID, lang);
+        if (complexTypeDTO == null) {
+            return null;
+        }
+        return out -> {
+            try {
+                XMLSchemaStreamWriter xml = new XMLSchemaStreamWriter(out);
+                writeComplexType(xml, SplitIRI.localname(classID), complexTypeDTO, false);
+                xml.close();
+            } catch (XMLStreamException ex) {
+                throw new IOException("Could not write XML Schema of " + classID, ex);
+            }
+        };
+    }
 
-        String className = SplitIRI.localname(classID);
-        String localClassName = null;
+    XmlComplexTypeDTO getClassSchema(String classID,
+                                     String lang) {
+        logger.info("Creating schema");
+        XmlComplexTypeDTO complexTypeDTO = new XmlComplexTypeDTO();
+        complexTypeDTO.setClassId(classID);
 
         ParameterizedSparqlString pss = new ParameterizedSparqlString();
 
@@ -106,7 +150,6 @@ public class XMLSchemaWriter {
 
         boolean classMetadata = false;
 
-        Element complexType;
         try (QueryExecution qexec = QueryExecution.service(endpointServices.getCoreSparqlAddress(), pss.asQuery())) {
             ResultSet results = qexec.execSelect();
 
@@ -115,7 +158,7 @@ public class XMLSchemaWriter {
                 return null;
             }
 
-            Map<String, LocalizedData> localizedData = new HashMap<>();
+            Map<String, LocalizedData> localizedData = complexTypeDTO.getDocumentation();
 
             while (results.hasNext()) {
 
@@ -128,7 +171,7 @@ public class XMLSchemaWriter {
                 localizedData.put(labelLanguage, data);
 
                 if (soln.contains("localClassName")) {
-                    localClassName = soln.getLiteral("localClassName").getString();
+                    complexTypeDTO.setLocalClassName(soln.getLiteral("localClassName").getString());
                 }
 
                 String sType = soln.getResource("type").getLocalName();
@@ -137,10 +180,6 @@ public class XMLSchemaWriter {
                     classMetadata = true;
                 }
             }
-
-            complexType = xml.newComplexType(getClassName(className, localClassName), classID);
-
-            createDocumentation(xml, complexType, localizedData);
         }
 
         if (classMetadata) {
@@ -174,38 +213,60 @@ public class XMLSchemaWriter {
 
                 ResultSet results = qexec.execSelect();
 
-                if (results.hasNext()) {
-
-                    Element seq = xml.newSequence(complexType);
+                Map<String, XmlElementDTO> xmlElements = complexTypeDTO.getXmlElements();
 
-                    Map<String, XmlElementDTO> xmlElements = new HashMap<>();
+                while (results.hasNext()) {
 
-                    while (results.hasNext()) {
+                    QuerySolution soln = results.nextSolution();
 
-                        QuerySolution soln = results.nextSolution();
+                    String predicateName = getPredicateName(soln);
 
-                        String predicateName = getPredicateName(soln);
+                    XmlElementDTO dto = xmlElements.getOrDefault(predicateName, new XmlElementDTO());
 
-                        XmlElementDTO dto = xmlElements.getOrDefault(predicateName, new XmlElementDTO());
+                    populateXmlElementDTO(soln, predicateName, dto, "label");
 
-                        populateXmlElementDTO(soln, predicateName, dto, "label");
-
-                        xmlElements.put(predicateName, dto);
-                    }
-
-                    createXmlElements(xml, seq, xmlElements);
+                    xmlElements.put(predicateName, dto);
                 }
             }
         }
-        return xml.toString();
+        return complexTypeDTO;
     }
 
     public String newModelSchema(String modelID,
                                  String lang) {
+        XmlSchemaDTO schema = getModelSchema(modelID, lang);
+        return schema != null ? toXMLSchema(schema) : null;
+    }
+
+    /**
+     * Streams the same schema as newModelSchema without building it in memory. Model is queried before returning,
+     * so that missing models are answered before the response is started.
+     *
+     * @param modelID Model IRI
+     * @param lang    Language of the schema
+     * @return Output writing the schema or null if the model is not found
+     */
+    public StreamingOutput newModelSchemaOutput(String modelID,
+                                                String lang) {
+        XmlSchemaDTO schema = getModelSchema(modelID, lang);
+        if (schema == null) {
+            return null;
+        }
+        return out -> {
+            try {
+                writeXMLSchema(schema, out);
+            } catch (XMLStreamException ex) {
+                throw new IOException("Could not write XML Schema of " + modelID, ex);
+            }
+        };
+    }
+
+    XmlSchemaDTO getModelSchema(String modelID,
+                                String lang) {
 
         logger.info("Building XML Schema from " + modelID);
 
-        XMLSchemaBuilder xml = new XMLSchemaBuilder();
+        XmlSchemaDTO schema = new XmlSchemaDTO();
 
         ParameterizedSparqlString pss = new ParameterizedSparqlString();
 
@@ -243,7 +304,8 @@ public class XMLSchemaWriter {
                 dataModelLocalizedData.put(language, getLocalizedData(dataModelLocalizedData, soln, language, "label"));
             }
 
-            createDocumentation(xml, xml.getRoot(), dataModelLocalizedData, modelID);
+            schema.setDocumentation(dataModelLocalizedData);
+            schema.setModified(graphManager.modelContentModified(modelID));
         }
 
         /* Get classes from library */
@@ -336,18 +398,109 @@ public class XMLSchemaWriter {
                     }
                 }
 
-                for (String classKey : complexTypes.keySet()) {
-                    XmlComplexTypeDTO complexTypeDTO = complexTypes.get(classKey);
-                    Element complexType = xml.newComplexType(getClassName(classKey, complexTypeDTO.getLocalClassName()),
-                            complexTypeDTO.getClassId());
+                schema.setComplexTypes(complexTypes);
+            }
+        }
+        return schema;
+    }
+
+    String toXMLSchema(XmlSchemaDTO schema) {
+        XMLSchemaBuilder xml = new XMLSchemaBuilder();
+
+        createDocumentation(xml, xml.getRoot(), schema.getDocumentation(), schema.getModified());
+
+        for (String classKey : schema.getComplexTypes().keySet()) {
+            XmlComplexTypeDTO complexTypeDTO = schema.getComplexTypes().get(classKey);
+            Element complexType = xml.newComplexType(getClassName(classKey, complexTypeDTO.getLocalClassName()),
+                    complexTypeDTO.getClassId());
+
+            createDocumentation(xml, complexType, complexTypeDTO.getDocumentation());
+            Element seq = xml.newSequence(complexType);
+            createXmlElements(xml, seq, complexTypeDTO.getXmlElements());
+        }
+        return xml.toString();
+    }
+
+    /**
+     * Writes the schema in the order of the DOM document. Simple types of the elements are appended to the schema
+     * after their complex type, so they are written when the complex type is ended.
+     */
+    void writeXMLSchema(XmlSchemaDTO schema,
+                        OutputStream out) throws XMLStreamException {
+        XMLSchemaStreamWriter xml = new XMLSchemaStreamWriter(out);
+
+        writeDocumentation(xml, schema.getDocumentation(), schema.getModified());
 
-                    createDocumentation(xml, complexType, complexTypeDTO.getDocumentation());
-                    Element seq = xml.newSequence(complexType);
-                    createXmlElements(xml, seq, complexTypeDTO.getXmlElements());
+        for (String classKey : schema.getComplexTypes().keySet()) {
+            writeComplexType(xml, classKey, schema.getComplexTypes().get(classKey), true);
+        }
+        xml.close();
+    }
+
+    /**
+     * Writes the complex type followed by the simple types of its restricted elements. Complex types of models
+     * always have a sequence, the complex type of a single class only if it has elements.
+     */
+    private void writeComplexType(XMLSchemaStreamWriter xml,
+                                  String className,
+                                  XmlComplexTypeDTO complexTypeDTO,
+                                  boolean emptySequence) throws XMLStreamException {
+        xml.startComplexType(getClassName(className, complexTypeDTO.getLocalClassName()), complexTypeDTO.getClassId());
+        writeDocumentation(xml, complexTypeDTO.getDocumentation(), null);
+
+        Collection<XmlElementDTO> xmlElements = complexTypeDTO.getXmlElements().values();
+        if (xmlElements.isEmpty()) {
+            if (emptySequence) {
+                xml.emptySequence();
+            }
+        } else {
+            xml.startSequence();
+            for (XmlElementDTO dto : xmlElements) {
+                xml.startSimpleElement(dto.getPredicateName(), dto.getPredicate(), dto.getMinOccurs(), dto.getMaxOccurs(), getElementType(dto));
+                writeDocumentation(xml, dto.getLocalizedData(), null);
+                xml.endElement();
+            }
+            xml.endElement();
+        }
+        xml.endElement();
+
+        for (XmlElementDTO dto : xmlElements) {
+            if (hasRestriction(dto)) {
+                xml.startSimpleType(dto.getPredicateName() + "Type", dto.getPattern() != null ? "xs:string" : "xs:integer");
+                xml.startRestriction();
+                if (dto.getPattern() != null) {
+                    xml.writeElementValueAttribute("xs:maxInclusive", dto.getPattern());
+                } else {
+                    if (dto.getMaxLength() != null) {
+                        xml.writeElementValueAttribute("xs:maxInclusive", dto.getMaxLength());
+                    }
+                    if (dto.getMinLength() != null) {
+                        xml.writeElementValueAttribute("xs:minInclusive", dto.getMinLength());
+                    }
                 }
+                xml.endElement();
+                xml.endElement();
             }
         }
-        return xml.toString();
+    }
+
+    private void writeDocumentation(XMLSchemaStreamWriter xml,
+                                    Map<String, LocalizedData> localizedData,
+                                    Date modified) throws XMLStreamException {
+        xml.startAnnotation();
+        for (String langKey : localizedData.keySet()) {
+            LocalizedData data = localizedData.get(langKey);
+            xml.startLocalizedDocumentation(langKey);
+            xml.writeElementValue("dcterms:title", data.getTitle());
+            if (data.getDescription() != null) {
+                xml.writeElementValue("dcterms:description", data.getDescription());
+            }
+            if (modified != null) {
+                xml.writeElementValue("dcterms:modified", formatModified(modified));
+            }
+            xml.endElement();
+        }
+        xml.endElement();
     }
 
     private String getPredicateName(QuerySolution soln) {
@@ -379,10 +532,10 @@ public class XMLSchemaWriter {
     }
 
     private void createDocumentation(XMLSchemaBuilder xml, Element newElement, Map<String, LocalizedData> localizedData) {
-        createDocumentation(xml, newElement, localizedData, null);
+        createDocumentation(xml, newElement, localizedData, (Date) null);
     }
 
-    private void createDocumentation(XMLSchemaBuilder xml, Element newElement, Map<String, LocalizedData> localizedData, String modelID) {
+    private void createDocumentation(XMLSchemaBuilder xml, Element newElement, Map<String, LocalizedData> localizedData, Date modified) {
         Element annotation = xml.newAnnotation(newElement);
 
         for (String langKey : localizedData.keySet()) {
@@ -393,18 +546,16 @@ public class XMLSchemaWriter {
                 xml.appendElementValue(documentation, "dcterms:description", data.getDescription());
             }
 
-            if (modelID != null) {
-                Date modified = graphManager.modelContentModified(modelID);
-                SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz");
-
-                if (modified != null) {
-                    String dateModified = format.format(modified);
-                    xml.appendElementValue(documentation, "dcterms:modified", dateModified);
-                }
+            if (modified != null) {
+                xml.appendElementValue(documentation, "dcterms:modified", formatModified(modified));
             }
         }
     }
 
+    private static String formatModified(Date modified) {
+        return new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz").format(modified);
+    }
+
     private void populateXmlElementDTO(QuerySolution soln, String predicateName, XmlElementDTO dto, String langAttribute) {
         String language = soln.getLiteral(langAttribute).getLanguage();
 
@@ -461,13 +612,11 @@ public class XMLSchemaWriter {
             newElement.setAttribute("minOccurs", dto.getMinOccurs());
             newElement.setAttribute("maxOccurs", dto.getMaxOccurs());
 
-            if (dto.getDataType() != null) {
-                newElement.setAttribute("type", DATATYPE_MAP.get(dto.getDataType()));
+            String type = getElementType(dto);
+            if (type != null) {
+                newElement.setAttribute("type", type);
             }
-            if (dto.getShapeRefName() != null) {
-                newElement.setAttribute("type", dto.getShapeRefName() + "Type");
-            }
-            if (dto.getPattern() != null || dto.getMaxLength() != null || dto.getMinLength() != null) {
+            if (hasRestriction(dto)) {
                 Element simpleType = xml.newSimpleType(dto.getPredicateName() + "Type");
 
                 if (dto.getPattern() != null) {
@@ -482,186 +631,31 @@ public class XMLSchemaWriter {
                         xml.appendElementValueAttribute(restriction, "xs:minInclusive", dto.getMinLength());
                     }
                 }
-                newElement.setAttribute("type", dto.getPredicateName() + "Type");
             }
         }
     }
 
-    @NotNull
-    private String getClassName(String className, String localClassName) {
-        return (localClassName != null && localClassName.length() > 0 ? LDHelper.removeInvalidCharacters(localClassName) : className) + "Type";
-    }
-}
-
-class LocalizedData {
-    private String lang;
-    private String title;
-    private String description;
-
-    public String getTitle() {
-        return title;
-    }
-
-    public String getDescription() {
-        return description;
-    }
-
-    public void setTitle(String title) {
-        this.title = title;
-    }
-
-    public void setDescription(String description) {
-        this.description = description;
-    }
-
-    public String getLang() {
-        return lang;
-    }
-
-    public void setLang(String lang) {
-        this.lang = lang;
-    }
-}
-
-class XmlComplexTypeDTO {
-    String localClassName;
-    String classId;
-    Map<String, LocalizedData> documentation = new HashMap<>();
-    Map<String, XmlElementDTO> xmlElements = new HashMap<>();
-
-    public String getLocalClassName() {
-        return localClassName;
-    }
-
-    public void setLocalClassName(String localClassName) {
-        this.localClassName = localClassName;
-    }
-
-    public String getClassId() {
-        return classId;
-    }
-
-    public void setClassId(String classId) {
-        this.classId = classId;
-    }
-
-    public Map<String, LocalizedData> getDocumentation() {
-        return documentation;
-    }
-
-    public void setDocumentation(Map<String, LocalizedData> documentation) {
-        this.documentation = documentation;
-    }
-
-    public Map<String, XmlElementDTO> getXmlElements() {
-        return xmlElements;
+    /**
+     * Restricted elements get their own simple type, otherwise type is the referenced shape or the datatype.
+     * Datatypes without XML Schema type are written as empty type.
+     */
+    private String getElementType(XmlElementDTO dto) {
+        if (hasRestriction(dto)) {
+            return dto.getPredicateName() + "Type";
+        } else if (dto.getShapeRefName() != null) {
+            return dto.getShapeRefName() + "Type";
+        } else if (dto.getDataType() != null) {
+            return DATATYPE_MAP.getOrDefault(dto.getDataType(), "");
+        }
+        return null;
     }
 
-    public void setXmlElements(Map<String, XmlElementDTO> xmlElements) {
-        this.xmlElements = xmlElements;
+    private boolean hasRestriction(XmlElementDTO dto) {
+        return dto.getPattern() != null || dto.getMaxLength() != null || dto.getMinLength() != null;
     }
 
-    @Override
-    public String toString() {
-        return ToStringBuilder.reflectionToString(this);
+    @NotNull
+    private String getClassName(String className, String localClassName) {
+        return (localClassName != null && localClassName.length() > 0 ? LDHelper.removeInvalidCharacters(localClassName) : className) + "Type";
     }
 }
-
-class XmlElementDTO {
-
-    private String predicate;
-    private String predicateName;
-    private Map<String, LocalizedData> localizedData = new HashMap<>();
-    private String minOccurs;
-    private String maxOccurs;
-    private String dataType;
-    private String shapeRefName;
-    private String maxLength;
-    private String minLength;
-    private String pattern;
-
-    public String getPredicate() {
-        return predicate;
-    }
-
-    public void setPredicate(String predicate) {
-        this.predicate = predicate;
-    }
-
-    public Map<String, LocalizedData> getLocalizedData() {
-        return localizedData;
-    }
-
-    public void setLocalizedData(Map<String, LocalizedData> localizedData) {
-        this.localizedData = localizedData;
-    }
-
-    public String getMinOccurs() {
-        return minOccurs;
-    }
-
-    public void setMinOccurs(String minOccurs) {
-        this.minOccurs = minOccurs;
-    }
-
-    public String getMaxOccurs() {
-        return maxOccurs;
-    }
-
-    public void setMaxOccurs(String maxOccurs) {
-        this.maxOccurs = maxOccurs;
-    }
-
-    public String getDataType() {
-        return dataType;
-    }
-
-    public void setDataType(String dataType) {
-        this.dataType = dataType;
-    }
-
-    public String getPredicateName() {
-        return predicateName;
-    }
-
-    public void setPredicateName(String predicateName) {
-        this.predicateName = predicateName;
-    }
-
-    public String getShapeRefName() {
-        return shapeRefName;
-    }
-
-    public void setShapeRefName(String shapeRefName) {
-        this.shapeRefName = shapeRefName;
-    }
-
-    public String getMaxLength() {
-        return maxLength;
-    }
-
-    public void setMaxLength(String maxLength) {
-        this.maxLength = maxLength;
-    }
-
-    public String getMinLength() {
-        return minLength;
-    }
-
-    public void setMinLength(String minLength) {
-        this.minLength = minLength;
-    }
-
-    public String getPattern() {
-        return pattern;
-    }
-
-    public void setPattern(String pattern) {
-        this.pattern = pattern;
-    }
-
-    @Override
-    public String toString() {
-        return ToStringBuilder.reflectionToString(this);
-    }
-}
\ No newline at end of file
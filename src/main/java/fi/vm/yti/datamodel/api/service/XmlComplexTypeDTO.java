@@ -0,0 +1,53 @@
+/*
+ * Licensed under the European Union Public Licence (EUPL) V.1.1
+ */
+package fi.vm.yti.datamodel.api.service;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+class XmlComplexTypeDTO {
+    String localClassName;
+    String classId;
+    Map<String, LocalizedData> documentation = new HashMap<>();
+    Map<String, XmlElementDTO> xmlElements = new HashMap<>();
+
+    public String getLocalClassName() {
+        return localClassName;
+    }
+
+    public void setLocalClassName(String localClassName) {
+        this.localClassName = localClassName;
+    }
+
+    public String getClassId() {
+        return classId;
+    }
+
+    public void setClassId(String classId) {
+        this.classId = classId;
+    }
+
+    public Map<String, LocalizedData> getDocumentation() {
+        return documentation;
+    }
+
+    public void setDocumentation(Map<String, LocalizedData> documentation) {
+        this.documentation = documentation;
+    }
+
+    public Map<String, XmlElementDTO> getXmlElements() {
+        return xmlElements;
+    }
+
+    public void setXmlElements(Map<String, XmlElementDTO> xmlElements) {
+        this.xmlElements = xmlElements;
+    }
+
+    @Override
+    public String toString() {
+        return ToStringBuilder.reflectionToString(this);
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Licensed under the European Union Public Licence (EUPL) V.1.1
+ */
+package fi.vm.yti.datamodel.api.service;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+class XmlElementDTO {
+
+    private String predicate;
+    private String predicateName;
+    private Map<String, LocalizedData> localizedData = new HashMap<>();
+    private String minOccurs;
+    private String maxOccurs;
+    private String dataType;
+    private String shapeRefName;
+    private String maxLength;
+    private String minLength;
+    private String pattern;
+
+    public String getPredicate() {
+        return predicate;
+    }
+
+    public void setPredicate(String predicate) {
+        this.predicate = predicate;
+    }
+
+    public Map<String, LocalizedData> getLocalizedData() {
+        return localizedData;
+    }
+
+    public void setLocalizedData(Map<String, LocalizedData> localizedData) {
+        this.localizedData = localizedData;
+    }
+
+    public String getMinOccurs() {
+        return minOccurs;
+    }
+
+    public void setMinOccurs(String minOccurs) {
+        this.minOccurs = minOccurs;
+    }
+
+    public String getMaxOccurs() {
+        return maxOccurs;
+    }
+
+    public void setMaxOccurs(String maxOccurs) {
+        this.maxOccurs = maxOccurs;
+    }
+
+    public String getDataType() {
+        return dataType;
+    }
+
+    public void setDataType(String dataType) {
+        this.dataType = dataType;
+    }
+
+    public String getPredicateName() {
+        return predicateName;
+    }
+
+    public void setPredicateName(String predicateName) {
+        this.predicateName = predicateName;
+    }
+
+    public String getShapeRefName() {
+        return shapeRefName;
+    }
+
+    public void setShapeRefName(String shapeRefName) {
+        this.shapeRefName = shapeRefName;
+    }
+
+    public String getMaxLength() {
+        return maxLength;
+    }
+
+    public void setMaxLength(String maxLength) {
+        this.maxLength = maxLength;
+    }
+
+    public String getMinLength() {
+        return minLength;
+    }
+
+    public void setMinLength(String minLength) {
+        this.minLength = minLength;
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    public void setPattern(String pattern) {
+        this.pattern = pattern;
+    }
+
+    @Override
+    public String toString() {
+        return ToStringBuilder.reflectionToString(this);
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Licensed under the European Union Public Licence (EUPL) V.1.1
+ */
+package fi.vm.yti.datamodel.api.service;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+class XmlSchemaDTO {
+    Map<String, LocalizedData> documentation = new HashMap<>();
+    Date modified;
+    Map<String, XmlComplexTypeDTO> complexTypes = new HashMap<>();
+
+    public Map<String, LocalizedData> getDocumentation() {
+        return documentation;
+    }
+
+    public void setDocumentation(Map<String, LocalizedData> documentation) {
+        this.documentation = documentation;
+    }
+
+    public Date getModified() {
+        return modified;
+    }
+
+    public void setModified(Date modified) {
+        this.modified = modified;
+    }
+
+    public Map<String, XmlComplexTypeDTO> getComplexTypes() {
+        return complexTypes;
+    }
+
+    public void setComplexTypes(Map<String, XmlComplexTypeDTO> complexTypes) {
+        this.complexTypes = complexTypes;
+    }
+
+    @Override
+    public String toString() {
+        return ToStringBuilder.reflectionToString(this);
+    }
+}
@@ -0,0 +1,548 @@
+/*
+ * Licensed under the European Union Public Licence (EUPL) V.1.1
+ */
+package fi.vm.yti.datamodel.api.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.vocabulary.RDF;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Writes Jena models as compact JSON-LD straight from the triples, without building the expanded JSON-LD document
+ * and compacting it like the jsonld-java writer of Jena does.
+ * <p>
+ * Terms of the graph are generated like Jena generates them: the local name of the first predicate with that local
+ * name, coerced to the type of its first value. Generated terms and the serialized @context of each distinct term
+ * set are cached, so repeated responses of the same shape only look them up. Values that do not match the coercion
+ * of the term are written with the compact IRI of the predicate, so the output expands to the same graph as the
+ * input.
+ * <p>
+ * Booleans, integers and doubles are written as native JSON values with the rules of jsonld-java, so the output has
+ * the same shape as the output of Jena. Like in JSON-LD 1.0 compaction, native values and lists never match typed
+ * terms.
+ */
+public final class CompactJsonLdWriter {
+
+    /**
+     * Replacement of RDFFormat.JSONLD10_COMPACT_PRETTY
+     */
+    public static final CompactJsonLdWriter DEFAULT = new CompactJsonLdWriter();
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+    private static final String ID = "@id";
+    private static final Node TYPE = RDF.type.asNode();
+    private static final Node FIRST = RDF.first.asNode();
+    private static final Node REST = RDF.rest.asNode();
+    private static final Node NIL = RDF.nil.asNode();
+    private static final Pattern INTEGER = Pattern.compile("^[\\-+]?[0-9]+$");
+    private static final Pattern DOUBLE = Pattern.compile("^(\\+|-)?([0-9]+(\\.[0-9]*)?|\\.[0-9]+)([Ee](\\+|-)?[0-9]+)?$");
+    private static final int MAX_CACHED = 1000;
+
+    private final Map<Term, Term> generatedTerms = new ConcurrentHashMap<>();
+    private volatile Prefixes lastPrefixes;
+
+    private CompactJsonLdWriter() {
+    }
+
+    public String writeToString(Model model) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            write(model, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes the model as UTF-8. The stream is not closed.
+     */
+    public void write(Model model,
+                      OutputStream out) throws IOException {
+        Document document = new Document(model);
+        try (JsonGenerator json = jsonFactory.createGenerator(out, JsonEncoding.UTF8)) {
+            json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            document.write(json);
+        }
+    }
+
+    private Prefixes prefixes(Map<String, String> modelPrefixes) {
+        Prefixes cached = lastPrefixes;
+        if (cached != null && cached.modelPrefixes.equals(modelPrefixes)) {
+            return cached;
+        }
+        Map<String, String> byName = new LinkedHashMap<>();
+        modelPrefixes.forEach((name, namespace) -> {
+            if (!name.isEmpty() && !name.equals("_") && !namespace.isEmpty()) {
+                byName.putIfAbsent(name, namespace);
+            }
+        });
+        cached = new Prefixes(new HashMap<>(modelPrefixes), byName);
+        lastPrefixes = cached;
+        return cached;
+    }
+
+    private Term generatedTerm(String name,
+                               Node predicate,
+                               Node value) {
+        Term term = Term.generated(name, predicate, value);
+        if (generatedTerms.size() >= MAX_CACHED) {
+            generatedTerms.clear();
+        }
+        Term cached = generatedTerms.putIfAbsent(term, term);
+        return cached != null ? cached : term;
+    }
+
+    private static final class Term {
+
+        private final String name;
+        private final String iri;
+        private final String type;
+
+        private Term(String name,
+                     String iri,
+                     String type) {
+            this.name = name;
+            this.iri = iri;
+            this.type = type;
+        }
+
+        /**
+         * Jena types the term by the first value: IRIs, datatype or untyped for strings
+         */
+        private static Term generated(String name,
+                                      Node predicate,
+                                      Node value) {
+            String type = null;
+            if (value.isURI() || value.isBlank()) {
+                type = ID;
+            } else if (!isString(value)) {
+                type = value.getLiteralDatatypeURI();
+            }
+            return new Term(name, predicate.getURI(), type);
+        }
+
+        private boolean matches(Node value) {
+            if (type == null) {
+                return value.isLiteral() && (isString(value) || nativeValue(value) != null);
+            }
+            if (type.equals(ID)) {
+                return value.isURI() || value.isBlank();
+            }
+            return value.isLiteral() && type.equals(value.getLiteralDatatypeURI()) && nativeValue(value) == null;
+        }
+
+        private void writeDefinition(JsonGenerator json) throws IOException {
+            json.writeObjectFieldStart(name);
+            json.writeStringField(ID, iri);
+            if (type != null) {
+                json.writeStringField("@type", type);
+            }
+            json.writeEndObject();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Term)) {
+                return false;
+            }
+            Term term = (Term) o;
+            return name.equals(term.name) && iri.equals(term.iri) && Objects.equals(type, term.type);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(name, iri, type);
+        }
+    }
+
+    private static boolean isString(Node literal) {
+        return !literal.getLiteralLanguage().isEmpty() || XSDDatatype.XSDstring.getURI().equals(literal.getLiteralDatatypeURI());
+    }
+
+    /**
+     * Native JSON value of the literal as jsonld-java converts it from RDF
+     *
+     * @return Boolean, Integer, Double or null if the literal is not written as a native value
+     */
+    private static Object nativeValue(Node literal) {
+        String datatype = literal.getLiteralDatatypeURI();
+        String lexical = literal.getLiteralLexicalForm();
+        if (XSDDatatype.XSDboolean.getURI().equals(datatype)) {
+            return lexical.equals("true") ? Boolean.TRUE : lexical.equals("false") ? Boolean.FALSE : null;
+        }
+        if (XSDDatatype.XSDinteger.getURI().equals(datatype) && INTEGER.matcher(lexical).matches()) {
+            try {
+                Integer value = Integer.valueOf(lexical);
+                return value.toString().equals(lexical) ? value : null;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        if (XSDDatatype.XSDdouble.getURI().equals(datatype) && DOUBLE.matcher(lexical).matches()) {
+            double value = Double.parseDouble(lexical);
+            return Double.isInfinite(value) ? null : value;
+        }
+        return null;
+    }
+
+    /**
+     * Prefixes of the output, compiled once per distinct prefix mapping of the written models
+     */
+    private static final class Prefixes {
+
+        private final Map<String, String> modelPrefixes;
+        private final Map<String, String> byName;
+        private final Map<String, String> byNamespace = new HashMap<>();
+        private final List<Map.Entry<String, String>> longestFirst;
+        private final Map<List<Term>, String> contexts = new ConcurrentHashMap<>();
+
+        private Prefixes(Map<String, String> modelPrefixes,
+                         Map<String, String> byName) {
+            this.modelPrefixes = modelPrefixes;
+            this.byName = Collections.unmodifiableMap(byName);
+            byName.forEach((name, namespace) -> byNamespace.putIfAbsent(namespace, name));
+            List<Map.Entry<String, String>> entries = new ArrayList<>(byNamespace.entrySet());
+            entries.sort(Comparator.comparingInt((Map.Entry<String, String> e) -> e.getKey().length()).reversed());
+            this.longestFirst = entries;
+        }
+
+        /**
+         * @param terms Terms of the document in the order of the output
+         * @return Serialized @context, compiled once per distinct term list
+         */
+        private String context(List<Term> terms) {
+            String context = contexts.get(terms);
+            if (context == null) {
+                if (contexts.size() >= MAX_CACHED) {
+                    contexts.clear();
+                }
+                context = compileContext(terms);
+                contexts.put(terms, context);
+            }
+            return context;
+        }
+
+        private String compileContext(List<Term> terms) {
+            StringWriter out = new StringWriter();
+            try (JsonGenerator json = jsonFactory.createGenerator(out)) {
+                json.writeStartObject();
+                for (Term term : terms) {
+                    term.writeDefinition(json);
+                }
+                for (Map.Entry<String, String> prefix : byName.entrySet()) {
+                    json.writeStringField(prefix.getKey(), prefix.getValue());
+                }
+                json.writeEndObject();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return out.toString();
+        }
+
+        private String compact(String iri) {
+            int split = Math.max(iri.lastIndexOf('#'), iri.lastIndexOf('/')) + 1;
+            String name = split > 0 ? byNamespace.get(iri.substring(0, split)) : null;
+            if (name != null) {
+                return name + ':' + iri.substring(split);
+            }
+            for (Map.Entry<String, String> entry : longestFirst) {
+                String namespace = entry.getKey();
+                if (iri.startsWith(namespace) && !iri.startsWith("//", namespace.length())) {
+                    return entry.getValue() + ':' + iri.substring(namespace.length());
+                }
+            }
+            return iri;
+        }
+    }
+
+    /**
+     * State of one written model
+     */
+    private final class Document {
+
+        private final Prefixes prefixes;
+        private final Map<Node, List<Triple>> subjects = new LinkedHashMap<>();
+        private final Map<Node, Integer> references = new HashMap<>();
+        private final Map<String, Term> termsByName = new LinkedHashMap<>();
+        private final Map<String, Term> termsByIri = new HashMap<>();
+        private final Map<Node, List<Node>> lists = new HashMap<>();
+        private final Set<Node> listNodes = new HashSet<>();
+        private final Map<Node, String> blankNodes = new HashMap<>();
+
+        private Document(Model model) {
+            this.prefixes = prefixes(model.getNsPrefixMap());
+            Graph graph = model.getGraph();
+            Set<String> conflicts = new HashSet<>();
+            graph.find().forEachRemaining(triple -> {
+                subjects.computeIfAbsent(triple.getSubject(), s -> new ArrayList<>()).add(triple);
+                Node object = triple.getObject();
+                if (object.isBlank()) {
+                    references.merge(object, 1, Integer::sum);
+                }
+                addTerm(triple, conflicts);
+            });
+            for (String prefix : prefixes.byName.keySet()) {
+                Term term = termsByName.remove(prefix);
+                if (term != null) {
+                    termsByIri.remove(term.iri);
+                }
+            }
+            findLists();
+        }
+
+        private void addTerm(Triple triple,
+                             Set<String> conflicts) {
+            Node predicate = triple.getPredicate();
+            String iri = predicate.getURI();
+            if (predicate.equals(TYPE) || termsByIri.containsKey(iri)) {
+                return;
+            }
+            String name = predicate.getLocalName();
+            if (name.isEmpty() || conflicts.contains(name)) {
+                return;
+            }
+            if (termsByName.containsKey(name)) {
+                conflicts.add(name);
+                return;
+            }
+            Term term = generatedTerm(name, predicate, triple.getObject());
+            termsByName.put(name, term);
+            termsByIri.put(iri, term);
+        }
+
+        /**
+         * Well formed RDF lists that are referenced once, outside of other lists, are written with @list
+         */
+        private void findLists() {
+            for (Map.Entry<Node, List<Triple>> entry : subjects.entrySet()) {
+                for (Triple triple : entry.getValue()) {
+                    Node head = triple.getObject();
+                    if (!triple.getPredicate().equals(FIRST) && !triple.getPredicate().equals(REST)
+                        && head.isBlank() && !head.equals(entry.getKey())) {
+                        List<Node> items = listItems(head);
+                        if (items != null) {
+                            lists.put(head, items);
+                        }
+                    }
+                }
+            }
+        }
+
+        private List<Node> listItems(Node head) {
+            List<Node> items = new ArrayList<>();
+            List<Node> nodes = new ArrayList<>();
+            Node node = head;
+            while (!node.equals(NIL)) {
+                if (!node.isBlank() || references.getOrDefault(node, 0) != 1 || nodes.contains(node)) {
+                    return null;
+                }
+                List<Triple> triples = subjects.get(node);
+                if (triples == null || triples.size() != 2) {
+                    return null;
+                }
+                Node first = null;
+                Node rest = null;
+                for (Triple triple : triples) {
+                    if (triple.getPredicate().equals(FIRST)) {
+                        first = triple.getObject();
+                    } else if (triple.getPredicate().equals(REST)) {
+                        rest = triple.getObject();
+                    }
+                }
+                if (first == null || rest == null) {
+                    return null;
+                }
+                items.add(first);
+                nodes.add(node);
+                node = rest;
+            }
+            listNodes.addAll(nodes);
+            return items;
+        }
+
+        /**
+         * Nodes are sorted by their expanded @id like in the output of jsonld-java
+         */
+        private void write(JsonGenerator json) throws IOException {
+            TreeMap<String, Node> ids = new TreeMap<>();
+            for (Node subject : subjects.keySet()) {
+                if (subject.isURI()) {
+                    ids.put(subject.getURI(), subject);
+                } else if (!listNodes.contains(subject)) {
+                    ids.put(id(subject), subject);
+                }
+            }
+            List<Node> nodes = new ArrayList<>(ids.values());
+
+            json.writeStartObject();
+            if (nodes.size() == 1) {
+                writeNodeFields(json, nodes.get(0));
+            } else if (nodes.size() > 1) {
+                json.writeArrayFieldStart("@graph");
+                for (Node node : nodes) {
+                    json.writeStartObject();
+                    writeNodeFields(json, node);
+                    json.writeEndObject();
+                }
+                json.writeEndArray();
+            }
+            if (!nodes.isEmpty()) {
+                writeContext(json);
+            }
+            json.writeEndObject();
+        }
+
+        private void writeContext(JsonGenerator json) throws IOException {
+            json.writeFieldName("@context");
+            json.writeRawValue(prefixes.context(new ArrayList<>(termsByName.values())));
+        }
+
+        private void writeNodeFields(JsonGenerator json,
+                                     Node subject) throws IOException {
+            json.writeStringField(ID, id(subject));
+
+            TreeMap<String, List<Node>> properties = new TreeMap<>();
+            List<Node> types = new ArrayList<>();
+            for (Triple triple : subjects.get(subject)) {
+                if (triple.getPredicate().equals(TYPE) && !triple.getObject().isLiteral()) {
+                    types.add(triple.getObject());
+                } else {
+                    properties.computeIfAbsent(triple.getPredicate().getURI(), p -> new ArrayList<>()).add(triple.getObject());
+                }
+            }
+            if (types.size() == 1) {
+                json.writeStringField("@type", id(types.get(0)));
+            } else if (!types.isEmpty()) {
+                json.writeArrayFieldStart("@type");
+                for (Node type : types) {
+                    json.writeString(id(type));
+                }
+                json.writeEndArray();
+            }
+
+            for (Map.Entry<String, List<Node>> property : properties.entrySet()) {
+                Term term = termsByIri.get(property.getKey());
+                List<Node> matching = new ArrayList<>();
+                List<Node> other = new ArrayList<>();
+                for (Node value : property.getValue()) {
+                    (term != null && matches(term, value) ? matching : other).add(value);
+                }
+                if (!matching.isEmpty()) {
+                    json.writeFieldName(term.name);
+                    writeValues(json, matching, term);
+                }
+                if (!other.isEmpty()) {
+                    json.writeFieldName(prefixes.compact(property.getKey()));
+                    writeValues(json, other, null);
+                }
+            }
+        }
+
+        /**
+         * Lists are written with the compact IRI, because terms are not defined with a @list container
+         */
+        private boolean matches(Term term,
+                                Node value) {
+            return !value.equals(NIL) && !lists.containsKey(value) && term.matches(value);
+        }
+
+        private void writeValues(JsonGenerator json,
+                                 List<Node> values,
+                                 Term term) throws IOException {
+            if (values.size() == 1) {
+                writeValue(json, values.get(0), term);
+                return;
+            }
+            json.writeStartArray();
+            for (Node value : values) {
+                writeValue(json, value, term);
+            }
+            json.writeEndArray();
+        }
+
+        private void writeValue(JsonGenerator json,
+                                Node value,
+                                Term term) throws IOException {
+            List<Node> items = value.equals(NIL) ? Collections.emptyList() : lists.get(value);
+            if (items != null) {
+                json.writeStartObject();
+                json.writeArrayFieldStart("@list");
+                for (Node item : items) {
+                    writeValue(json, item, term);
+                }
+                json.writeEndArray();
+                json.writeEndObject();
+            } else if (term != null && term.type != null) {
+                json.writeString(value.isLiteral() ? value.getLiteralLexicalForm() : id(value));
+            } else if (!value.isLiteral()) {
+                json.writeStartObject();
+                json.writeStringField(ID, id(value));
+                json.writeEndObject();
+            } else if (!value.getLiteralLanguage().isEmpty()) {
+                json.writeStartObject();
+                json.writeStringField("@language", value.getLiteralLanguage());
+                json.writeStringField("@value", value.getLiteralLexicalForm());
+                json.writeEndObject();
+            } else if (isString(value)) {
+                json.writeString(value.getLiteralLexicalForm());
+            } else {
+                writeTypedLiteral(json, value);
+            }
+        }
+
+        private void writeTypedLiteral(JsonGenerator json,
+                                       Node value) throws IOException {
+            Object nativeValue = nativeValue(value);
+            if (nativeValue instanceof Boolean) {
+                json.writeBoolean((Boolean) nativeValue);
+            } else if (nativeValue instanceof Integer) {
+                json.writeNumber((Integer) nativeValue);
+            } else if (nativeValue instanceof Double) {
+                json.writeNumber((Double) nativeValue);
+            } else {
+                json.writeStartObject();
+                json.writeStringField("@type", prefixes.compact(value.getLiteralDatatypeURI()));
+                json.writeStringField("@value", value.getLiteralLexicalForm());
+                json.writeEndObject();
+            }
+        }
+
+        private String id(Node node) {
+            if (node.isBlank()) {
+                return blankNodes.computeIfAbsent(node, n -> "_:b" + blankNodes.size());
+            }
+            return prefixes.compact(node.getURI());
+        }
+    }
+}
@@ -3,282 +3,284 @@
  */
 package fi.vm.yti.datamodel.api.utils;
 
+import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * @author jkesanie
  */
 public class Frames {
 
-    public static final LinkedHashMap<String, Object> jsonLdKeys;
-    public static final LinkedHashMap<String, Object> inScheme;
-    public static final LinkedHashMap<String, Object> isDefinedBy;
-    public static final LinkedHashMap<String, Object> label;
-    public static final LinkedHashMap<String, Object> name;
-    public static final LinkedHashMap<String, Object> title;
-    public static final LinkedHashMap<String, Object> modified;
-    public static final LinkedHashMap<String, Object> created;
-    public static final LinkedHashMap<String, Object> contentModified;
-    public static final LinkedHashMap<String, Object> statusModified;
-    public static final LinkedHashMap<String, Object> contributor;
-    public static final LinkedHashMap<String, Object> isPartOf;
-    public static final LinkedHashMap<String, Object> contributorID;
-    public static final LinkedHashMap<String, Object> isPartOfID;
-    public static final LinkedHashMap<String, Object> comment;
-    public static final LinkedHashMap<String, Object> range;
-    public static final LinkedHashMap<String, Object> prefLabel;
-    public static final LinkedHashMap<String, Object> subject;
-    public static final LinkedHashMap<String, Object> description;
-    public static final LinkedHashMap<String, Object> preferredXMLNamespaceName;
-    public static final LinkedHashMap<String, Object> preferredXMLNamespacePrefix;
-    public static final LinkedHashMap<String, Object> shDescription;
-    public static final LinkedHashMap<String, Object> path;
-    public static final LinkedHashMap<String, Object> property;
-    public static final LinkedHashMap<String, Object> versionInfo;
-    public static final LinkedHashMap<String, Object> useContext;
-    public static final LinkedHashMap<String, Object> coreContext;
-    public static final LinkedHashMap<String, Object> vocabularyContext;
-    public static final LinkedHashMap<String, Object> conceptContext;
-    public static final LinkedHashMap<String, Object> classificationContext;
-    public static final LinkedHashMap<String, Object> organizationContext;
-    public static final LinkedHashMap<String, Object> referenceDataServerContext;
-    public static final LinkedHashMap<String, Object> referenceDataContext;
-    public static final LinkedHashMap<String, Object> referenceDataCodeContext;
-    public static final LinkedHashMap<String, Object> predicateContext;
-    public static final LinkedHashMap<String, Object> propertyContext;
-    public static final LinkedHashMap<String, Object> namespaceContext;
-    public static final LinkedHashMap<String, Object> classContext;
-    public static final LinkedHashMap<String, Object> esClassContext;
-    public static final LinkedHashMap<String, Object> esModelContext;
-    public static final LinkedHashMap<String, Object> esPredicateContext;
-    public static final LinkedHashMap<String, Object> modelContext;
-    public static final LinkedHashMap<String, Object> modelPositionContext;
-    public static final LinkedHashMap<String, Object> conceptFrame;
-    public static final LinkedHashMap<String, Object> esClassFrame;
-    public static final LinkedHashMap<String, Object> esModelFrame;
-    public static final LinkedHashMap<String, Object> esPredicateFrame;
-    public static final LinkedHashMap<String, Object> origClassContext;
-    public static final LinkedHashMap<String, Object> origClassFrame;
-    public static final LinkedHashMap<String, Object> libraryType;
-    public static final LinkedHashMap<String, Object> profileType;
-    public static final LinkedHashMap<String, Object> externalClassType;
-    public static final LinkedHashMap<String, Object> classType;
-    public static final LinkedHashMap<String, Object> shapeType;
-    public static final LinkedHashMap<String, Object> attributeType;
-    public static final LinkedHashMap<String, Object> associationType;
-    public static final LinkedHashMap<String, Object> languageSet;
+    public static final Map<String, Object> jsonLdKeys;
+    public static final Map<String, Object> inScheme;
+    public static final Map<String, Object> isDefinedBy;
+    public static final Map<String, Object> label;
+    public static final Map<String, Object> name;
+    public static final Map<String, Object> title;
+    public static final Map<String, Object> modified;
+    public static final Map<String, Object> created;
+    public static final Map<String, Object> contentModified;
+    public static final Map<String, Object> statusModified;
+    public static final Map<String, Object> contributor;
+    public static final Map<String, Object> isPartOf;
+    public static final Map<String, Object> contributorID;
+    public static final Map<String, Object> isPartOfID;
+    public static final Map<String, Object> comment;
+    public static final Map<String, Object> range;
+    public static final Map<String, Object> prefLabel;
+    public static final Map<String, Object> subject;
+    public static final Map<String, Object> description;
+    public static final Map<String, Object> preferredXMLNamespaceName;
+    public static final Map<String, Object> preferredXMLNamespacePrefix;
+    public static final Map<String, Object> shDescription;
+    public static final Map<String, Object> path;
+    public static final Map<String, Object> property;
+    public static final Map<String, Object> versionInfo;
+    public static final Map<String, Object> useContext;
+    public static final Map<String, Object> coreContext;
+    public static final Map<String, Object> vocabularyContext;
+    public static final Map<String, Object> conceptContext;
+    public static final Map<String, Object> classificationContext;
+    public static final Map<String, Object> organizationContext;
+    public static final Map<String, Object> referenceDataServerContext;
+    public static final Map<String, Object> referenceDataContext;
+    public static final Map<String, Object> referenceDataCodeContext;
+    public static final Map<String, Object> predicateContext;
+    public static final Map<String, Object> propertyContext;
+    public static final Map<String, Object> namespaceContext;
+    public static final Map<String, Object> classContext;
+    public static final Map<String, Object> esClassContext;
+    public static final Map<String, Object> esModelContext;
+    public static final Map<String, Object> esPredicateContext;
+    public static final Map<String, Object> modelContext;
+    public static final Map<String, Object> modelPositionContext;
+    public static final Map<String, Object> conceptFrame;
+    public static final Map<String, Object> esClassFrame;
+    public static final Map<String, Object> esModelFrame;
+    public static final Map<String, Object> esPredicateFrame;
+    public static final Map<String, Object> origClassContext;
+    public static final Map<String, Object> origClassFrame;
+    public static final Map<String, Object> libraryType;
+    public static final Map<String, Object> profileType;
+    public static final Map<String, Object> externalClassType;
+    public static final Map<String, Object> classType;
+    public static final Map<String, Object> shapeType;
+    public static final Map<String, Object> attributeType;
+    public static final Map<String, Object> associationType;
+    public static final Map<String, Object> languageSet;
 
     static {
 
-        jsonLdKeys = new LinkedHashMap<>() {
+        jsonLdKeys = immutable(new LinkedHashMap<>() {
             {
                 put("id", "@id");
                 put("type", "@type");
             }
-        };
+        });
 
-        inScheme = new LinkedHashMap<>() {
+        inScheme = immutable(new LinkedHashMap<>() {
             {
                 put("@id", "http://www.w3.org/2004/02/skos/core#inScheme");
                 put("@type", "@id");
             }
 
-        };
+        });
 
-        libraryType = new LinkedHashMap<>() {
+        libraryType = immutable(new LinkedHashMap<>() {
             {
                 put("@id", "http://purl.org/ws-mmi-dc/terms/MetadataVocabulary");
             }
-        };
+        });
 
-        profileType = new LinkedHashMap<>() {
+        profileType = immutable(new LinkedHashMap<>() {
             {
                 put("@id", "http://purl.org/ws-mmi-dc/terms/DCAP");
             }
-        };
+        });
 
-        classType = new LinkedHashMap<>() {
+        classType = immutable(new LinkedHashMap<>() {
             {
                 put("@id", "http://www.w3.org/2000/01/rdf-schema#Class");
             }
 
-        };
+        });
 
-        externalClassType = new LinkedHashMap<>() {
+        externalClassType = immutable(new LinkedHashMap<>() {
             {
                 put("@id", "http://uri.suomi.fi/datamodel/ns/iow#ExternalClass");
             }
-        };
+        });
 
-        shapeType = new LinkedHashMap<>() {
+        shapeType = immutable(new LinkedHashMap<>() {
             {
                 put("@id", "http://www.w3.org/ns/shacl#NodeShape");
             }
-        };
+        });
 
-        attributeType = new LinkedHashMap<>() {
+        attributeType = immutable(new LinkedHashMap<>() {
             {
                 put("@id", "http://www.w3.org/2002/07/owl#DatatypeProperty");
             }
-        };
+        });
 
-        associationType = new LinkedHashMap<>() {
+        associationType = immutable(new LinkedHashMap<>() {
             {
                 put("@id", "http://www.w3.org/2002/07/owl#ObjectProperty");
             }
-        };
+        });
 
-        subject = new LinkedHashMap<>() {
+        subject = immutable(new LinkedHashMap<>() {
             {
                 put("@id", "http://purl.org/dc/terms/subject");
                 put("@type", "@id");
             }
 
-        };
+        });
 
-        comment = new LinkedHashMap<>() {
+        comment = immutable(new LinkedHashMap<>() {
             {
                 put("@id", "http://www.w3.org/2000/01/rdf-schema#comment");
                 put("@container", "@language");
             }
 
-        };
+        });
 
-        description = new LinkedHashMap<>() {
+        description = immutable(new LinkedHashMap<>() {
             {
                 put("@id", "http://purl.org/dc/terms/description");
                 put("@container", "@language");
             }
 
-        };
+        });
 
-        shDescription = new LinkedHashMap<>() {
+        shDescription = immutable(new LinkedHashMap<>() {
             {
                 put("@id", "http://www.w3.org/ns/shacl#description");
                 put("@container", "@language");
             }
-        };
+        });
 
-        path = new LinkedHashMap<>() {
+        path = immutable(new LinkedHashMap<>() {
             {
                 put("@id", "http://www.w3.org/ns/shacl#path");
                 put("@type", "@id");
             }
 
-        };
+        });
 
-        property = new LinkedHashMap<>() {
+        property = immutable(new LinkedHashMap<>() {
             {
                 put("@id", "http://www.w3.org/ns/shacl#property");
                 put("@type", "@id");
             }
-        };
+        });
 
-        isDefinedBy = new LinkedHashMap<>() {
+        isDefinedBy = immutable(new LinkedHashMap<>() {
             {
                 put("@id", "http://www.w3.org/2000/01/rdf-schema#isDefinedBy");
                 put("@type", "@id");
             }
-        };
+        });
 
-        label = new LinkedHashMap<>() {
+        label = immutable(new LinkedHashMap<>() {
             {
                 put("@id", "http://www.w3.org/2000/01/rdf-schema#label");
                 put("@container", "@language");
             }
-        };
+        });
 
-        title = new LinkedHashMap<>() {
+        title = immutable(new LinkedHashMap<>() {
             {
                 put("@id", "http://purl.org/dc/terms/title");
                 put("@container", "@language");
             }
-        };
+        });
 
-        modified = new LinkedHashMap<>() {
+        modified = immutable(new LinkedHashMap<>() {
             {
                 put("@id", "http://purl.org/dc/terms/modified");
                 put("@type", "http://www.w3.org/2001/XMLSchema#dateTime");
             }
-        };
+        });
 
-        created = new LinkedHashMap<>() {
+        created = immutable(new LinkedHashMap<>() {
             {
                 put("@id", "http://purl.org/dc/terms/created");
                 put("@type", "http://www.w3.org/2001/XMLSchema#dateTime");
             }
-        };
+        });
 
-        contentModified = new LinkedHashMap<>() {
+        contentModified = immutable(new LinkedHashMap<>() {
             {
                 put("@id", "http://uri.suomi.fi/datamodel/ns/iow#contentModified");
                 put("@type", "http://www.w3.org/2001/XMLSchema#dateTime");
             }
-        };
+        });
 
-        statusModified = new LinkedHashMap<>() {
+        statusModified = immutable(new LinkedHashMap<>() {
             {
                 put("@id", "http://uri.suomi.fi/datamodel/ns/iow#statusModified");
                 put("@type", "http://www.w3.org/2001/XMLSchema#dateTime");
             }
-        };
+        });
 
 
-        isPartOf = new LinkedHashMap<>() {
+        isPartOf = immutable(new LinkedHashMap<>() {
             {
                 put("@id", "http://purl.org/dc/terms/isPartOf");
                 put("@type", "@id");
                 put("@container", "@set");
             }
-        };
+        });
 
-        languageSet = new LinkedHashMap<>() {
+        languageSet = immutable(new LinkedHashMap<>() {
             {
                 put("@id", "http://purl.org/dc/terms/language");
                 put("@container", "@set");
             }
-        };
+        });
 
-        contributor = new LinkedHashMap<>() {
+        contributor = immutable(new LinkedHashMap<>() {
             {
                 put("@id", "http://purl.org/dc/terms/contributor");
                 put("@type", "@id");
                 put("@container", "@set");
             }
-        };
+        });
 
-        isPartOfID = new LinkedHashMap<>() {
+        isPartOfID = immutable(new LinkedHashMap<>() {
             {
                 put("@id", "http://purl.org/dc/terms/isPartOf");
             }
-        };
+        });
 
-        contributorID = new LinkedHashMap<>() {
+        contributorID = immutable(new LinkedHashMap<>() {
             {
                 put("@id", "http://purl.org/dc/terms/contributor");
             }
-        };
+        });
 
-        useContext = new LinkedHashMap<>() {
+        useContext = immutable(new LinkedHashMap<>() {
             {
                 put("@id", "http://uri.suomi.fi/datamodel/ns/iow#useContext");
             }
-        };
+        });
 
-        versionInfo = new LinkedHashMap<>() {
+        versionInfo = immutable(new LinkedHashMap<>() {
             {
                 put("@id", "http://www.w3.org/2002/07/owl#versionInfo");
             }
-        };
+        });
 
-        prefLabel = new LinkedHashMap<>() {
+        prefLabel = immutable(new LinkedHashMap<>() {
             {
                 put("@id", "http://www.w3.org/2004/02/skos/core#prefLabel");
                 put("@container", "@language");
             }
-        };
+        });
 
-        coreContext = new LinkedHashMap<>() {
+        coreContext = immutable(new LinkedHashMap<>() {
             {
                 put("comment", comment);
                 put("created", new LinkedHashMap<String, Object>() {
@@ -348,23 +350,23 @@ public class Frames {
                     }
                 });
             }
-        };
+        });
 
-        vocabularyContext = new LinkedHashMap<>() {
+        vocabularyContext = immutable(new LinkedHashMap<>() {
             {
                 putAll(coreContext);
                 put("description", description);
             }
-        };
+        });
 
-        conceptContext = new LinkedHashMap<>() {
+        conceptContext = immutable(new LinkedHashMap<>() {
             {
                 putAll(coreContext);
                 put("inScheme", inScheme);
             }
-        };
+        });
 
-        classificationContext = new LinkedHashMap<>() {
+        classificationContext = immutable(new LinkedHashMap<>() {
             {
                 putAll(coreContext);
                 put("id", new LinkedHashMap<String, Object>() {
@@ -373,23 +375,23 @@ public class Frames {
                     }
                 });
             }
-        };
+        });
 
-        organizationContext = new LinkedHashMap<>() {
+        organizationContext = immutable(new LinkedHashMap<>() {
             {
                 putAll(coreContext);
                 put("description", description);
             }
-        };
+        });
 
-        referenceDataServerContext = new LinkedHashMap<>() {
+        referenceDataServerContext = immutable(new LinkedHashMap<>() {
             {
                 putAll(coreContext);
                 put("description", description);
             }
-        };
+        });
 
-        referenceDataContext = new LinkedHashMap<>() {
+        referenceDataContext = immutable(new LinkedHashMap<>() {
             {
                 putAll(coreContext);
                 put("creator", new LinkedHashMap<String, Object>() {
@@ -399,41 +401,41 @@ public class Frames {
                 });
                 put("description", description);
             }
-        };
+        });
 
-        referenceDataCodeContext = new LinkedHashMap<>() {
+        referenceDataCodeContext = immutable(new LinkedHashMap<>() {
             {
                 putAll(coreContext);
             }
-        };
+        });
 
-        preferredXMLNamespaceName = new LinkedHashMap<>() {
+        preferredXMLNamespaceName = immutable(new LinkedHashMap<>() {
             {
                 put("@id", "http://purl.org/ws-mmi-dc/terms/preferredXMLNamespaceName");
             }
-        };
+        });
 
-        preferredXMLNamespacePrefix = new LinkedHashMap<>() {
+        preferredXMLNamespacePrefix = immutable(new LinkedHashMap<>() {
             {
                 put("@id", "http://purl.org/ws-mmi-dc/terms/preferredXMLNamespacePrefix");
             }
-        };
+        });
 
-        range = new LinkedHashMap<>() {
+        range = immutable(new LinkedHashMap<>() {
             {
                 put("@id", "http://www.w3.org/2000/01/rdf-schema#range");
                 put("@type", "@id");
             }
-        };
+        });
 
-        name = new LinkedHashMap<>() {
+        name = immutable(new LinkedHashMap<>() {
             {
                 put("@id", "http://www.w3.org/ns/shacl#name");
                 put("@container", "@language");
             }
-        };
+        });
 
-        predicateContext = new LinkedHashMap<>() {
+        predicateContext = immutable(new LinkedHashMap<>() {
             {
                 putAll(coreContext);
                 putAll(conceptContext);
@@ -458,9 +460,9 @@ public class Frames {
                 });
                 put("subject", subject);
             }
-        };
+        });
 
-        propertyContext = new LinkedHashMap<>() {
+        propertyContext = immutable(new LinkedHashMap<>() {
             {
                 putAll(coreContext);
                 putAll(predicateContext);
@@ -581,9 +583,9 @@ public class Frames {
                 });
 
             }
-        };
+        });
 
-        classContext = new LinkedHashMap<>() {
+        classContext = immutable(new LinkedHashMap<>() {
             {
                 putAll(coreContext);
                 putAll(propertyContext);
@@ -648,17 +650,17 @@ public class Frames {
                 });
                 put("subject", subject);
             }
-        };
+        });
 
-        namespaceContext = new LinkedHashMap<>() {
+        namespaceContext = immutable(new LinkedHashMap<>() {
             {
                 putAll(coreContext);
                 put("preferredXMLNamespaceName", preferredXMLNamespaceName);
                 put("preferredXMLNamespacePrefix", preferredXMLNamespacePrefix);
             }
-        };
+        });
 
-        modelContext = new LinkedHashMap<>() {
+        modelContext = immutable(new LinkedHashMap<>() {
             {
                 putAll(coreContext);
                 putAll(namespaceContext);
@@ -701,9 +703,9 @@ public class Frames {
                     }
                 });
             }
-        };
+        });
 
-        modelPositionContext = new LinkedHashMap<>() {
+        modelPositionContext = immutable(new LinkedHashMap<>() {
             {
                 putAll(coreContext);
                 put("path", new LinkedHashMap<String, Object>() {
@@ -731,15 +733,15 @@ public class Frames {
                     }
                 });
             }
-        };
+        });
 
-        conceptFrame = new LinkedHashMap<>() {
+        conceptFrame = immutable(new LinkedHashMap<>() {
             {
                 put("@context", conceptContext);
             }
-        };
+        });
 
-        esModelContext = new LinkedHashMap<>() {
+        esModelContext = immutable(new LinkedHashMap<>() {
             {
                 put("profile", profileType);
                 put("library", libraryType);
@@ -758,17 +760,17 @@ public class Frames {
                 put("language", languageSet);
                 putAll(jsonLdKeys);
             }
-        };
+        });
 
-        esModelFrame = new LinkedHashMap<>() {
+        esModelFrame = immutable(new LinkedHashMap<>() {
             {
                 put("@context", esModelContext);
                 put("contributor", new LinkedHashMap<String, Object>());
                 put("isPartOf", new LinkedHashMap<String, Object>());
             }
-        };
+        });
 
-        esClassContext = new LinkedHashMap<>() {
+        esClassContext = immutable(new LinkedHashMap<>() {
             {
                 put("externalClass", externalClassType);
                 put("class", classType);
@@ -782,16 +784,16 @@ public class Frames {
                 put("isDefinedBy", isDefinedBy);
                 putAll(jsonLdKeys);
             }
-        };
+        });
 
-        esClassFrame = new LinkedHashMap<>() {
+        esClassFrame = immutable(new LinkedHashMap<>() {
             {
                 put("@context", esClassContext);
                 put("isDefinedBy", new LinkedHashMap<String, Object>());
             }
-        };
+        });
 
-        origClassContext = new LinkedHashMap<>() {
+        origClassContext = immutable(new LinkedHashMap<>() {
             {
                 put("name", name);
                 put("description", shDescription);
@@ -801,16 +803,16 @@ public class Frames {
                 put("isDefinedBy", isDefinedBy);
                 putAll(jsonLdKeys);
             }
-        };
+        });
 
-        origClassFrame = new LinkedHashMap<>() {
+        origClassFrame = immutable(new LinkedHashMap<>() {
             {
                 put("@context", origClassContext);
                 put("isDefinedBy", new LinkedHashMap<String, Object>());
             }
-        };
+        });
 
-        esPredicateContext = new LinkedHashMap<>() {
+        esPredicateContext = immutable(new LinkedHashMap<>() {
             {
                 put("attribute", attributeType);
                 put("association", associationType);
@@ -824,14 +826,46 @@ public class Frames {
                 put("isDefinedBy", isDefinedBy);
                 putAll(jsonLdKeys);
             }
-        };
+        });
 
-        esPredicateFrame = new LinkedHashMap<>() {
+        esPredicateFrame = immutable(new LinkedHashMap<>() {
             {
                 put("@context", esPredicateContext);
                 put("isDefinedBy", new LinkedHashMap<String, Object>());
             }
-        };
+        });
     }
 
+    /**
+     * Frame with the prefixes added to its context. Added prefixes replace terms of the same name.
+     *
+     * @param frame    One of the frames
+     * @param prefixes Prefixes by name
+     * @return New frame. JSON-LD processor clones the frames it is given, so the copy is modifiable, but it may be
+     * shared by concurrent framing and must not be modified.
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> withPrefixes(Map<String, Object> frame,
+                                                   Map<String, String> prefixes) {
+        Map<String, Object> compiled = copy(frame);
+        ((Map<String, Object>) compiled.get("@context")).putAll(prefixes);
+        return compiled;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> copy(Map<String, Object> map) {
+        Map<String, Object> copy = new LinkedHashMap<>();
+        map.forEach((key, value) -> copy.put(key, value instanceof Map ? copy((Map<String, Object>) value) : value));
+        return copy;
+    }
+
+    /**
+     * Frames and contexts are shared by concurrent framing, so they are copied to unmodifiable maps
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> immutable(Map<String, Object> map) {
+        Map<String, Object> copy = new LinkedHashMap<>();
+        map.forEach((key, value) -> copy.put(key, value instanceof Map ? immutable((Map<String, Object>) value) : value));
+        return Collections.unmodifiableMap(copy);
+    }
 }
@@ -0,0 +1,36 @@
+/*
+ * Licensed under the European Union Public Licence (EUPL) V.1.1
+ */
+package fi.vm.yti.datamodel.api.utils;
+
+import java.util.Map;
+
+/**
+ * Frames of the index documents, used when the documents can not be projected from the graph. Frames with the
+ * default prefixes are compiled once.
+ */
+public enum IndexFrame {
+
+    CLASS(Frames.esClassFrame),
+    PREDICATE(Frames.esPredicateFrame),
+    MODEL(Frames.esModelFrame);
+
+    private final Map<String, Object> frame;
+    private final Map<String, Object> compiledFrame;
+
+    IndexFrame(Map<String, Object> frame) {
+        this.frame = frame;
+        this.compiledFrame = Frames.withPrefixes(frame, LDHelper.PREFIX_MAP);
+    }
+
+    public Map<String, Object> getFrame() {
+        return frame;
+    }
+
+    /**
+     * @return Frame with LDHelper.PREFIX_MAP, shared and not to be modified
+     */
+    public Map<String, Object> getCompiledFrame() {
+        return compiledFrame;
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Licensed under the European Union Public Licence (EUPL) V.1.1
+ */
+package fi.vm.yti.datamodel.api.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFWrapper;
+import org.apache.jena.sparql.core.Quad;
+
+/**
+ * Filters language tagged literals of a stream with the same fallback chain as LanguageQueryFilter: for each
+ * subject and predicate the literals in the first requested language it has are passed, and if it has none of
+ * them, all of its literals are passed. Languages match like langMatches, so "en" also passes "en-GB". Other
+ * triples are passed as they are read, language tagged literals when the stream finishes.
+ */
+public class LanguageFilterStreamRDF extends StreamRDFWrapper {
+
+    private final List<String> languages;
+    private final Map<List<Node>, List<Node>> literals = new LinkedHashMap<>();
+
+    /**
+     * @param other     Stream for the passed triples
+     * @param languages Lower case language ranges in order of preference, see LanguageQueryFilter.parseLanguages
+     */
+    public LanguageFilterStreamRDF(StreamRDF other,
+                                   List<String> languages) {
+        super(other);
+        this.languages = languages;
+    }
+
+    /**
+     * Parses comma separated languages of a lang parameter
+     *
+     * @param lang Parameter value, may be null
+     * @return Lower case languages, empty if the parameter has none
+     */
+    public static Set<String> parseLanguages(String lang) {
+        if (lang == null || lang.isBlank() || lang.equals("undefined") || lang.equals("null")) {
+            return Collections.emptySet();
+        }
+        Set<String> languages = new LinkedHashSet<>();
+        for (String language : lang.split(",")) {
+            if (!language.isBlank()) {
+                languages.add(language.trim().toLowerCase(Locale.ROOT));
+            }
+        }
+        return languages;
+    }
+
+    @Override
+    public void triple(Triple triple) {
+        if (isFiltered(triple.getObject())) {
+            add(null, triple.getSubject(), triple.getPredicate(), triple.getObject());
+        } else {
+            super.triple(triple);
+        }
+    }
+
+    @Override
+    public void quad(Quad quad) {
+        if (isFiltered(quad.getObject())) {
+            add(quad.getGraph(), quad.getSubject(), quad.getPredicate(), quad.getObject());
+        } else {
+            super.quad(quad);
+        }
+    }
+
+    @Override
+    public void finish() {
+        literals.forEach((key, objects) -> {
+            for (Node object : select(objects)) {
+                if (key.get(0) == null) {
+                    super.triple(Triple.create(key.get(1), key.get(2), object));
+                } else {
+                    super.quad(Quad.create(key.get(0), key.get(1), key.get(2), object));
+                }
+            }
+        });
+        literals.clear();
+        super.finish();
+    }
+
+    private boolean isFiltered(Node object) {
+        return !languages.isEmpty() && object.isLiteral() && !object.getLiteralLanguage().isEmpty();
+    }
+
+    private void add(Node graph,
+                     Node subject,
+                     Node predicate,
+                     Node object) {
+        literals.computeIfAbsent(Arrays.asList(graph, subject, predicate), key -> new ArrayList<>()).add(object);
+    }
+
+    private List<Node> select(List<Node> objects) {
+        for (String range : languages) {
+            List<Node> selected = new ArrayList<>();
+            for (Node object : objects) {
+                String language = object.getLiteralLanguage().toLowerCase(Locale.ROOT);
+                if (range.equals("*") || language.equals(range) || language.startsWith(range + "-")) {
+                    selected.add(object);
+                }
+            }
+            if (!selected.isEmpty()) {
+                return selected;
+            }
+        }
+        return objects;
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Licensed under the European Union Public Licence (EUPL) V.1.1
+ */
+package fi.vm.yti.datamodel.api.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.sparql.core.TriplePath;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.expr.E_Equals;
+import org.apache.jena.sparql.expr.E_IsLiteral;
+import org.apache.jena.sparql.expr.E_Lang;
+import org.apache.jena.sparql.expr.E_LangMatches;
+import org.apache.jena.sparql.expr.E_LogicalAnd;
+import org.apache.jena.sparql.expr.E_LogicalNot;
+import org.apache.jena.sparql.expr.E_LogicalOr;
+import org.apache.jena.sparql.expr.E_NotExists;
+import org.apache.jena.sparql.expr.Expr;
+import org.apache.jena.sparql.expr.ExprVar;
+import org.apache.jena.sparql.expr.NodeValue;
+import org.apache.jena.sparql.syntax.Element;
+import org.apache.jena.sparql.syntax.ElementFilter;
+import org.apache.jena.sparql.syntax.ElementGroup;
+import org.apache.jena.sparql.syntax.ElementPathBlock;
+import org.apache.jena.sparql.syntax.syntaxtransform.ElementTransformCopyBase;
+import org.apache.jena.sparql.syntax.syntaxtransform.ElementTransformer;
+
+/**
+ * Restricts language tagged literals returned by a query to the requested languages. A filter is added next to
+ * every triple pattern with a variable object. Languages are a fallback chain: for each subject and predicate the
+ * literals in the first language of the chain that the subject has are kept, and if it has none of them, all
+ * variants are kept so that required patterns still match. Languages match like langMatches, so "en" also matches
+ * "en-GB". Literals without language and other objects are not filtered.
+ */
+public final class LanguageQueryFilter {
+
+    private static final Var OTHER = Var.alloc("languageFilterOther");
+
+    private LanguageQueryFilter() {
+    }
+
+    /**
+     * Returns languages of the lang parameter, or of the Accept-Language header if the parameter is not given. Each
+     * language is followed by its truncations like in the lookup of RFC 4647, so "en-gb" falls back to "en".
+     *
+     * @param lang           Comma separated languages in order of preference, may be null
+     * @param acceptLanguage Accept-Language header used as the default, may be null
+     * @return Lower case languages in order of preference, empty if all languages are requested
+     */
+    public static List<String> parseLanguages(String lang,
+                                              String acceptLanguage) {
+        List<String> languages = new ArrayList<>(LanguageFilterStreamRDF.parseLanguages(lang));
+        if (languages.isEmpty() && acceptLanguage != null) {
+            languages = parseAcceptLanguage(acceptLanguage);
+        }
+        return languages.contains("*") ? Collections.emptyList() : withTruncations(languages);
+    }
+
+    /**
+     * Adds the truncations of each language range after it. Single character subtags, such as x in en-x-old, are
+     * removed together with the subtag that follows them.
+     *
+     * @param ranges Lower case language ranges
+     * @return Ranges and their truncations without duplicates
+     */
+    static List<String> withTruncations(List<String> ranges) {
+        List<String> languages = new ArrayList<>();
+        for (String range : ranges) {
+            String language = range;
+            while (true) {
+                if (!languages.contains(language)) {
+                    languages.add(language);
+                }
+                int separator = language.lastIndexOf('-');
+                if (separator < 0) {
+                    break;
+                }
+                language = language.substring(0, separator);
+                if (language.length() > 2 && language.charAt(language.length() - 2) == '-') {
+                    language = language.substring(0, language.length() - 2);
+                }
+            }
+        }
+        return languages;
+    }
+
+    /**
+     * Parses languages of the Accept-Language header ordered by their quality. Languages with zero quality are left out.
+     *
+     * @param acceptLanguage Header value
+     * @return Lower case languages
+     */
+    static List<String> parseAcceptLanguage(String acceptLanguage) {
+        List<String> ranges = new ArrayList<>();
+        List<Double> qualities = new ArrayList<>();
+        for (String range : acceptLanguage.split(",")) {
+            String[] parts = range.split(";");
+            String language = parts[0].trim().toLowerCase(Locale.ROOT);
+            double quality = 1.0;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        quality = Double.parseDouble(parameter.substring(2));
+                    } catch (NumberFormatException ex) {
+                        quality = 0;
+                    }
+                }
+            }
+            if (!language.isEmpty() && quality > 0 && !ranges.contains(language)) {
+                ranges.add(language);
+                qualities.add(quality);
+            }
+        }
+        List<String> languages = new ArrayList<>(ranges);
+        /* Sort is stable, so languages with equal quality keep the order of the header */
+        languages.sort(Comparator.comparing(language -> -qualities.get(ranges.indexOf(language))));
+        return languages;
+    }
+
+    /**
+     * Adds language filters to the query
+     *
+     * @param queryString SPARQL query
+     * @param languages   Languages in order of preference
+     * @return Filtered query, or the same query if languages is empty
+     */
+    public static String filter(String queryString,
+                                List<String> languages) {
+        if (languages.isEmpty()) {
+            return queryString;
+        }
+        Query query = QueryFactory.create(queryString);
+        query.setQueryPattern(ElementTransformer.transform(query.getQueryPattern(), new Transform(languages)));
+        return query.serialize();
+    }
+
+    private static final class Transform extends ElementTransformCopyBase {
+
+        private final List<String> languages;
+
+        Transform(List<String> languages) {
+            this.languages = languages;
+        }
+
+        @Override
+        public Element transform(ElementGroup group,
+                                 List<Element> members) {
+            List<ElementFilter> filters = new ArrayList<>();
+            for (Element member : members) {
+                if (member instanceof ElementPathBlock) {
+                    for (TriplePath path : ((ElementPathBlock) member).getPattern().getList()) {
+                        if (path.isTriple() && filtered(path.asTriple())) {
+                            filters.add(new ElementFilter(languageFilter(path.asTriple())));
+                        }
+                    }
+                }
+            }
+            if (filters.isEmpty()) {
+                return super.transform(group, members);
+            }
+            ElementGroup filteredGroup = new ElementGroup();
+            members.forEach(filteredGroup::addElement);
+            filters.forEach(filteredGroup::addElementFilter);
+            return filteredGroup;
+        }
+
+        private static boolean filtered(Triple triple) {
+            return Var.isVar(triple.getObject()) && !Var.isBlankNodeVar(triple.getObject())
+                && !Var.isBlankNodeVar(triple.getSubject()) && !Var.isBlankNodeVar(triple.getPredicate());
+        }
+
+        /**
+         * Keeps other than language tagged literals, literals in the first language the subject has and all literals
+         * if the subject has none of the languages
+         */
+        private Expr languageFilter(Triple triple) {
+            ExprVar object = new ExprVar(triple.getObject());
+            Expr keep = new E_LogicalOr(new E_LogicalNot(new E_IsLiteral(object)),
+                new E_Equals(new E_Lang(object), NodeValue.makeString("")));
+            for (int i = 0; i < languages.size(); i++) {
+                Expr matches = langMatches(object, languages.get(i));
+                if (i > 0) {
+                    matches = new E_LogicalAnd(matches, noneOf(triple.getSubject(), triple.getPredicate(), languages.subList(0, i)));
+                }
+                keep = new E_LogicalOr(keep, matches);
+            }
+            return new E_LogicalOr(keep, noneOf(triple.getSubject(), triple.getPredicate(), languages));
+        }
+
+        private static Expr noneOf(Node subject,
+                                   Node predicate,
+                                   List<String> languages) {
+            ExprVar other = new ExprVar(OTHER);
+            Expr matches = langMatches(other, languages.get(0));
+            for (String language : languages.subList(1, languages.size())) {
+                matches = new E_LogicalOr(matches, langMatches(other, language));
+            }
+            ElementPathBlock block = new ElementPathBlock();
+            block.addTriple(Triple.create(subject, predicate, OTHER));
+            ElementGroup pattern = new ElementGroup();
+            pattern.addElement(block);
+            pattern.addElementFilter(new ElementFilter(matches));
+            return new E_NotExists(pattern);
+        }
+
+        private static Expr langMatches(Expr expr,
+                                        String language) {
+            return new E_LangMatches(new E_Lang(expr), NodeValue.makeString(language));
+        }
+    }
+}
@@ -62,6 +62,9 @@ public class QueryLibrary {
             + " ?every ?darn ?thing . }"
             + "}";
 
+    final public static String exportGraphQuery =
+        "CONSTRUCT { ?s ?p ?o . } WHERE { GRAPH ?graph { ?s ?p ?o . } }";
+
     final public static String listClassInRows =
         "SELECT DISTINCT ?mlabel ?label ?plabel WHERE {" +
             " ?s a sh:NodeShape . " +
@@ -242,6 +245,8 @@ public class QueryLibrary {
             + "?graphName dcap:preferredXMLNamespacePrefix ?prefix .  "
             + "?group a foaf:Group . "
             + "?group rdfs:label ?groupLabel . "
+            + "?group dcterms:identifier ?groupCode . "
+            + "?graphName dcterms:modified ?modified . "
             + "?graphName dcterms:contributor ?org . "
             + "?org skos:prefLabel ?orgLabel . "
             + "?org a foaf:Organization . "
@@ -261,6 +266,7 @@ public class QueryLibrary {
             + "?graphName rdfs:label ?label . "
             + "OPTIONAL {?graphName rdfs:comment ?comment . }"
             + "OPTIONAL {?graphName iow:useContext ?useContext . }"
+            + "OPTIONAL {?graphName dcterms:modified ?modified . }"
             + "?graphName dcterms:contributor ?org . "
             + "OPTIONAL { ?org skos:prefLabel ?orgLabel1 . }"
             + "?graphName dcap:preferredXMLNamespaceName ?namespace . "
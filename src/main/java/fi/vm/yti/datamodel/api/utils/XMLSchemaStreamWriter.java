@@ -0,0 +1,154 @@
+/*
+ * Licensed under the European Union Public Licence (EUPL) V.1.1
+ */
+package fi.vm.yti.datamodel.api.utils;
+
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Writes XML Schema to a stream element by element. Produces the same elements, attributes and indentation as
+ * XMLSchemaBuilder without keeping the document in memory, so elements are written in document order and
+ * attributes of an element are given when it is started. Attributes are written in the sorted order of the DOM
+ * serializer.
+ */
+public class XMLSchemaStreamWriter {
+
+    private static final XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+    private static final int INDENT = 6;
+    private static final String[] indentation = new String[8];
+
+    static {
+        for (int i = 0; i < indentation.length; i++) {
+            indentation[i] = "\n" + " ".repeat(INDENT * i);
+        }
+    }
+
+    private final XMLStreamWriter writer;
+    /* For each open element, whether it has child elements and its end tag is indented */
+    private final Deque<Boolean> open = new ArrayDeque<>();
+
+    public XMLSchemaStreamWriter(OutputStream out) throws XMLStreamException {
+        this.writer = outputFactory.createXMLStreamWriter(out, "UTF-8");
+        writer.writeStartDocument("UTF-8", "1.0");
+        writer.writeCharacters("\n");
+        writer.writeStartElement("xs", "schema", "http://www.w3.org/2001/XMLSchema");
+        writer.writeNamespace("dcterms", "http://purl.org/dc/terms/");
+        writer.writeNamespace("sawsdl", "http://www.w3.org/ns/sawsdl");
+        writer.writeNamespace("xs", "http://www.w3.org/2001/XMLSchema");
+        open.push(false);
+    }
+
+    public void startComplexType(String name,
+                                 String id) throws XMLStreamException {
+        startElement("xs:complexType");
+        writer.writeAttribute("name", name);
+        writer.writeAttribute("sawsdl:modelReference", id);
+    }
+
+    public void startSequence() throws XMLStreamException {
+        startElement("xs:sequence");
+    }
+
+    public void emptySequence() throws XMLStreamException {
+        emptyElement("xs:sequence");
+    }
+
+    public void startSimpleElement(String name,
+                                   String id,
+                                   String minOccurs,
+                                   String maxOccurs,
+                                   String type) throws XMLStreamException {
+        startElement("xs:element");
+        writer.writeAttribute("maxOccurs", maxOccurs);
+        writer.writeAttribute("minOccurs", minOccurs);
+        writer.writeAttribute("name", name);
+        writer.writeAttribute("sawsdl:modelReference", id);
+        if (type != null) {
+            writer.writeAttribute("type", type);
+        }
+    }
+
+    /**
+     * Restriction base is set to the simple type, as in XMLSchemaBuilder
+     */
+    public void startSimpleType(String name,
+                                String base) throws XMLStreamException {
+        startElement("xs:simpleType");
+        writer.writeAttribute("base", base);
+        writer.writeAttribute("name", name);
+    }
+
+    public void startRestriction() throws XMLStreamException {
+        startElement("xs:restriction");
+    }
+
+    public void startAnnotation() throws XMLStreamException {
+        startElement("xs:annotation");
+    }
+
+    public void startLocalizedDocumentation(String language) throws XMLStreamException {
+        startElement("xs:documentation");
+        writer.writeAttribute("xml:lang", language);
+    }
+
+    public void writeElementValue(String name,
+                                  String value) throws XMLStreamException {
+        startElement(name);
+        writer.writeCharacters(value.trim());
+        endElement();
+    }
+
+    public void writeElementValueAttribute(String name,
+                                           String value) throws XMLStreamException {
+        emptyElement(name);
+        writer.writeAttribute("value", value.trim());
+    }
+
+    public void endElement() throws XMLStreamException {
+        if (open.pop()) {
+            indent();
+        }
+        writer.writeEndElement();
+    }
+
+    /**
+     * Ends the schema and flushes the document. The underlying stream is left open.
+     */
+    public void close() throws XMLStreamException {
+        while (!open.isEmpty()) {
+            endElement();
+        }
+        writer.writeCharacters("\n");
+        writer.writeEndDocument();
+        writer.flush();
+        writer.close();
+    }
+
+    private void startElement(String name) throws XMLStreamException {
+        child();
+        writer.writeStartElement(name);
+        open.push(false);
+    }
+
+    private void emptyElement(String name) throws XMLStreamException {
+        child();
+        writer.writeEmptyElement(name);
+    }
+
+    private void child() throws XMLStreamException {
+        open.pop();
+        open.push(true);
+        indent();
+    }
+
+    private void indent() throws XMLStreamException {
+        int level = open.size();
+        writer.writeCharacters(level < indentation.length ? indentation[level] : "\n" + " ".repeat(INDENT * level));
+    }
+}
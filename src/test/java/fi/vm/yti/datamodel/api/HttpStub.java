@@ -0,0 +1,212 @@
+package fi.vm.yti.datamodel.api;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QueryExecutionFactory;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.query.ResultSetFormatter;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFLanguages;
+import org.apache.jena.system.Txn;
+import org.apache.jena.update.UpdateAction;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local HTTP server standing in for Fuseki and Elasticsearch in tests, since embedded Fuseki 4 needs Jetty 10. Fuseki
+ * handlers answer SPARQL queries, updates and Graph Store requests from an in-memory dataset.
+ */
+public final class HttpStub {
+
+    private final HttpServer server;
+
+    private HttpStub(HttpServer server) {
+        this.server = server;
+    }
+
+    /**
+     * @return Server on a free port of localhost, started with start
+     */
+    public static HttpStub create() throws IOException {
+        return new HttpStub(HttpServer.create(new InetSocketAddress("localhost", 0), 0));
+    }
+
+    public HttpStub handle(String path,
+                           HttpHandler handler) {
+        server.createContext(path, handler);
+        return this;
+    }
+
+    /**
+     * Handles requests in parallel instead of one at a time
+     */
+    public HttpStub concurrent() {
+        server.setExecutor(Executors.newCachedThreadPool());
+        return this;
+    }
+
+    public HttpStub start() {
+        server.start();
+        return this;
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    public String url() {
+        return "http://localhost:" + port();
+    }
+
+    public static String body(HttpExchange exchange) throws IOException {
+        return new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+    }
+
+    public static void respond(HttpExchange exchange,
+                               int status) throws IOException {
+        exchange.sendResponseHeaders(status, -1);
+        exchange.close();
+    }
+
+    public static void respond(HttpExchange exchange,
+                               String contentType,
+                               byte[] body) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", contentType);
+        exchange.sendResponseHeaders(200, body.length > 0 ? body.length : -1);
+        exchange.getResponseBody().write(body);
+        exchange.close();
+    }
+
+    public static void respondJson(HttpExchange exchange,
+                                   String body) throws IOException {
+        respond(exchange, "application/json", body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Reads the query of a SPARQL request from the URL, the form or the body
+     */
+    public static String query(HttpExchange exchange) throws IOException {
+        String body = body(exchange);
+        String rawQuery = exchange.getRequestURI().getRawQuery();
+        String form = rawQuery != null ? rawQuery : body;
+        for (String parameter : form.split("&")) {
+            if (parameter.startsWith("query=")) {
+                return URLDecoder.decode(parameter.substring("query=".length()), StandardCharsets.UTF_8);
+            }
+        }
+        return body;
+    }
+
+    /**
+     * Executes a query in a read transaction
+     *
+     * @return Results as SPARQL JSON, or N-Triples for CONSTRUCT and DESCRIBE
+     */
+    public static byte[] execute(Dataset dataset,
+                                 String sparql) {
+        Query query = QueryFactory.create(sparql);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Txn.executeRead(dataset, () -> {
+            try (QueryExecution qexec = QueryExecutionFactory.create(query, dataset)) {
+                if (query.isSelectType()) {
+                    ResultSetFormatter.outputAsJSON(out, qexec.execSelect());
+                } else if (query.isAskType()) {
+                    ResultSetFormatter.outputAsJSON(out, qexec.execAsk());
+                } else {
+                    RDFDataMgr.write(out, query.isConstructType() ? qexec.execConstruct() : qexec.execDescribe(), Lang.NTRIPLES);
+                }
+            }
+        });
+        return out.toByteArray();
+    }
+
+    public static String contentType(String sparql) {
+        Query query = QueryFactory.create(sparql);
+        return query.isSelectType() || query.isAskType() ? "application/sparql-results+json" : Lang.NTRIPLES.getHeaderString();
+    }
+
+    /**
+     * SPARQL query endpoint of the dataset
+     */
+    public static HttpHandler sparqlQuery(Dataset dataset) {
+        return exchange -> {
+            String query = query(exchange);
+            respond(exchange, contentType(query), execute(dataset, query));
+        };
+    }
+
+    /**
+     * SPARQL update endpoint of the dataset, answers 500 to failed updates
+     */
+    public static HttpHandler sparqlUpdate(Dataset dataset) {
+        return exchange -> {
+            String body = body(exchange);
+            String update = body.startsWith("update=") ? URLDecoder.decode(body.substring("update=".length()), StandardCharsets.UTF_8) : body;
+            try {
+                Txn.executeWrite(dataset, () -> UpdateAction.parseExecute(update, dataset));
+                respond(exchange, 204);
+            } catch (Exception ex) {
+                respond(exchange, 500);
+            }
+        };
+    }
+
+    /**
+     * Graph Store endpoint of the dataset. Graphs are read in the first accepted language or N-Triples, missing
+     * graphs are answered with 404. PUT replaces and POST adds to the graph.
+     */
+    public static HttpHandler graphStore(Dataset dataset) {
+        return exchange -> {
+            String graph = URLDecoder.decode(exchange.getRequestURI().getRawQuery().substring("graph=".length()), StandardCharsets.UTF_8);
+            String method = exchange.getRequestMethod();
+            if (method.equals("PUT") || method.equals("POST")) {
+                Model model = ModelFactory.createDefaultModel();
+                Lang lang = RDFLanguages.contentTypeToLang(exchange.getRequestHeaders().getFirst("Content-Type"));
+                RDFDataMgr.read(model, exchange.getRequestBody(), lang != null ? lang : Lang.TURTLE);
+                Txn.executeWrite(dataset, () -> {
+                    if (method.equals("PUT")) {
+                        dataset.replaceNamedModel(graph, model);
+                    } else {
+                        dataset.getNamedModel(graph).add(model);
+                    }
+                });
+                respond(exchange, 204);
+                return;
+            }
+            exchange.getRequestBody().readAllBytes();
+            String accept = exchange.getRequestHeaders().getFirst("Accept");
+            Lang accepted = accept != null ? RDFLanguages.contentTypeToLang(accept.split(",")[0].split(";")[0].trim()) : null;
+            Lang lang = accepted != null ? accepted : Lang.NTRIPLES;
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            boolean found = Txn.calculateRead(dataset, () -> {
+                if (!dataset.containsNamedModel(graph)) {
+                    return false;
+                }
+                RDFDataMgr.write(out, dataset.getNamedModel(graph), lang);
+                return true;
+            });
+            if (found) {
+                respond(exchange, lang.getHeaderString(), out.toByteArray());
+            } else {
+                respond(exchange, 404);
+            }
+        };
+    }
+}
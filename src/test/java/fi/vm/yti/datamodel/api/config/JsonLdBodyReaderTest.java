@@ -0,0 +1,122 @@
+package fi.vm.yti.datamodel.api.config;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class JsonLdBodyReaderTest {
+
+    private static final String CONTEXT = "\"@context\":{\"iow\":\"http://uri.suomi.fi/datamodel/ns/iow#\",\"dcterms\":\"http://purl.org/dc/terms/\","
+        + "\"label\":{\"@id\":\"http://www.w3.org/2000/01/rdf-schema#label\",\"@container\":\"@language\"}}";
+
+    private final JsonLdBodyReader reader = new JsonLdBodyReader(4096, 10, 8, 256);
+
+    @Test
+    public void testReadModel() throws IOException {
+        Model model = read("{" + CONTEXT + ",\"@id\":\"iow:Test\",\"label\":{\"fi\":\"Testi \\\"lainaus\\\"\",\"en\":\"Test\"}}");
+
+        assertEquals(2, model.size());
+        assertTrue(model.contains(ResourceFactory.createResource("http://uri.suomi.fi/datamodel/ns/iow#Test"), RDFS.label, model.createLiteral("Testi \"lainaus\"", "fi")));
+        assertEquals("http://uri.suomi.fi/datamodel/ns/iow#", model.getNsPrefixURI("iow"));
+        assertEquals("http://purl.org/dc/terms/", model.getNsPrefixURI("dcterms"));
+        assertNull(model.getNsPrefixURI("label"));
+    }
+
+    @Test
+    public void testEmptyBody() throws IOException {
+        assertTrue(read("").isEmpty());
+    }
+
+    @Test
+    public void testTooManyBytes() {
+        assertStatus(413, "{" + CONTEXT + ",\"@id\":\"iow:Test\",\"label\":{\"fi\":\"" + "a".repeat(200) + "\"}" + " ".repeat(4096) + "}");
+    }
+
+    @Test
+    public void testContentLengthOverLimit() {
+        assertContentLengthStatus(413, "5000");
+    }
+
+    @Test
+    public void testInvalidContentLength() {
+        assertContentLengthStatus(400, "5k");
+    }
+
+    private void assertContentLengthStatus(int status,
+                                           String contentLength) {
+        MultivaluedMap<String, String> headers = new MultivaluedHashMap<>();
+        headers.putSingle("Content-Length", contentLength);
+        InputStream unread = new InputStream() {
+            @Override
+            public int read() {
+                throw new AssertionError("Body should not be read");
+            }
+        };
+        try {
+            reader.readFrom(Model.class, Model.class, null, null, headers, unread);
+            fail();
+        } catch (WebApplicationException e) {
+            assertEquals(status, e.getResponse().getStatus());
+        } catch (IOException e) {
+            fail(e.toString());
+        }
+    }
+
+    @Test
+    public void testTooManyTriples() {
+        StringBuilder properties = new StringBuilder();
+        for (int i = 0; i < 11; i++) {
+            properties.append(",\"iow:p").append(i).append("\":\"").append(i).append("\"");
+        }
+        assertStatus(413, "{" + CONTEXT + ",\"@id\":\"iow:Test\"" + properties + "}");
+    }
+
+    @Test
+    public void testTooDeep() {
+        assertStatus(400, "{" + CONTEXT + ",\"@id\":\"iow:Test\",\"iow:a\":" + "[".repeat(10) + "1" + "]".repeat(10) + "}");
+    }
+
+    @Test
+    public void testTooLongLiteral() {
+        assertStatus(413, "{" + CONTEXT + ",\"@id\":\"iow:Test\",\"label\":{\"fi\":\"" + "\\\"".repeat(150) + "\"}}");
+    }
+
+    @Test
+    public void testMalformedJson() {
+        assertStatus(400, "{" + CONTEXT + ",\"@id\":\"iow:Test\",\"label\":{\"fi\":\"Testi\"");
+    }
+
+    @Test
+    public void testInvalidJsonLd() {
+        assertStatus(400, "{\"@context\":{\"label\":\"not an IRI\"},\"@id\":\"urn:uuid:1\",\"label\":\"Testi\"}");
+    }
+
+    private Model read(String body) throws IOException {
+        return reader.readFrom(Model.class, Model.class, null, null, new MultivaluedHashMap<>(),
+            new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private void assertStatus(int status,
+                              String body) {
+        try {
+            read(body);
+            fail("Body was accepted");
+        } catch (WebApplicationException e) {
+            assertEquals(status, e.getResponse().getStatus());
+        } catch (IOException e) {
+            fail(e.toString());
+        }
+    }
+}
@@ -55,7 +55,7 @@ public class EsUtils {
     }
 
     // helper method for generating elasticsearch SearchResponse from JSON
-    private static SearchResponse getSearchResponseFromJson(String jsonResponse) throws IOException {
+    public static SearchResponse getSearchResponseFromJson(String jsonResponse) throws IOException {
         NamedXContentRegistry registry = new NamedXContentRegistry(
                 getDefaultNamedXContents());
         XContentParser parser = JsonXContent.jsonXContent.createParser(
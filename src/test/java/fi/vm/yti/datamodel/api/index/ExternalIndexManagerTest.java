@@ -0,0 +1,215 @@
+package fi.vm.yti.datamodel.api.index;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.apache.http.HttpHost;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.vocabulary.OWL;
+import org.apache.jena.vocabulary.RDF;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import fi.vm.yti.datamodel.api.HttpStub;
+import fi.vm.yti.datamodel.api.config.ApplicationProperties;
+import fi.vm.yti.datamodel.api.index.model.IndexExternalResourceDTO;
+import fi.vm.yti.datamodel.api.service.DependencyUnavailableException;
+import fi.vm.yti.datamodel.api.service.RemoteDependencyRegistry;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.junit.Assert.*;
+
+/**
+ * Indexes the fixture vocabulary to an Elasticsearch stub and searches it back
+ */
+public class ExternalIndexManagerTest {
+
+    private static final String NAMESPACE = "http://example.org/vocabulary#";
+    private static final String BROKEN_NAMESPACE = "http://example.org/broken#";
+    private static final String REJECTED_NAMESPACE = "http://example.org/rejected#";
+
+    private static volatile String deleteByQuery;
+    private static volatile String bulk;
+    private static volatile String search;
+    private static final AtomicInteger searchCount = new AtomicInteger();
+    private static final AtomicInteger bulkCount = new AtomicInteger();
+    private static HttpStub server;
+    private static RestHighLevelClient esClient;
+
+    private ExternalIndexManager externalIndexManager;
+    private Model vocabulary;
+
+    @BeforeClass
+    public static void startElasticsearch() throws IOException {
+        server = HttpStub.create();
+        server.handle("/dm_external/_delete_by_query", exchange -> {
+            deleteByQuery = HttpStub.body(exchange);
+            if (deleteByQuery.contains(BROKEN_NAMESPACE)) {
+                HttpStub.respond(exchange, 500);
+                return;
+            }
+            HttpStub.respondJson(exchange, "{\"took\":1,\"timed_out\":false,\"total\":0,\"deleted\":0,\"batches\":0,\"version_conflicts\":0,\"noops\":0,"
+                + "\"retries\":{\"bulk\":0,\"search\":0},\"throttled_millis\":0,\"requests_per_second\":-1.0,\"throttled_until_millis\":0,\"failures\":[]}");
+        });
+        server.handle("/_bulk", exchange -> {
+            bulk = HttpStub.body(exchange);
+            bulkCount.incrementAndGet();
+            if (bulk.contains(REJECTED_NAMESPACE)) {
+                HttpStub.respondJson(exchange, "{\"took\":1,\"errors\":true,\"items\":[{\"index\":{\"_index\":\"dm_external\",\"_type\":\"doc\","
+                    + "\"_id\":\"1\",\"status\":400,\"error\":{\"type\":\"mapper_parsing_exception\",\"reason\":\"failed to parse\"}}}]}");
+                return;
+            }
+            HttpStub.respondJson(exchange, "{\"took\":1,\"errors\":false,\"items\":[]}");
+        });
+        // Pages of the listing continue after Car and Vehicle
+        server.handle("/dm_external/_search", exchange -> {
+            search = HttpStub.body(exchange);
+            searchCount.incrementAndGet();
+            String hits = !search.contains("search_after") ? hit("Car", "{\"en\":[\"Car\"],\"fi\":[\"Auto\",\"Henkilöauto\"]}")
+                : search.contains(NAMESPACE + "Car") ? hit("Vehicle", "{\"en\":[\"Vehicle\"]}") : "";
+            HttpStub.respondJson(exchange, "{\"took\":1,\"timed_out\":false,\"_shards\":{\"total\":1,\"successful\":1,\"skipped\":0,\"failed\":0},"
+                + "\"hits\":{\"total\":2,\"max_score\":1.0,\"hits\":[" + hits + "]}}");
+        });
+        server.start();
+        esClient = new RestHighLevelClient(RestClient.builder(new HttpHost("localhost", server.port(), "http")));
+    }
+
+    @AfterClass
+    public static void stopElasticsearch() throws IOException {
+        esClient.close();
+        server.stop();
+    }
+
+    @Before
+    public void createManager() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        ElasticConnector elasticConnector = new ElasticConnector(esClient, objectMapper, new RemoteDependencyRegistry());
+        ExternalResourceQueryFactory queryFactory = new ExternalResourceQueryFactory(objectMapper, new LuceneQueryFactory(new ApplicationProperties()));
+        externalIndexManager = new ExternalIndexManager(elasticConnector, null, null, objectMapper, queryFactory, new SearchCache(new SimpleMeterRegistry()), 1);
+        searchCount.set(0);
+        bulkCount.set(0);
+        vocabulary = ModelFactory.createDefaultModel();
+        RDFDataMgr.read(vocabulary, ExternalIndexManagerTest.class.getResourceAsStream("/external/vocabulary.ttl"), Lang.TURTLE);
+    }
+
+    @Test
+    public void testDocumentsOfVocabulary() {
+        Map<String, IndexExternalResourceDTO> documents = ExternalResourceQueryFactory.createDocuments(NAMESPACE, vocabulary).stream()
+            .collect(Collectors.toMap(IndexExternalResourceDTO::getId, Function.identity()));
+
+        assertEquals(Set.of("Vehicle", "Car", "registrationNumber", "owner", "model", "colour", "note"),
+            documents.keySet().stream().map(id -> id.substring(NAMESPACE.length())).collect(Collectors.toSet()));
+
+        IndexExternalResourceDTO vehicle = documents.get(NAMESPACE + "Vehicle");
+        assertEquals("class", vehicle.getType());
+        assertEquals(NAMESPACE, vehicle.getIsDefinedBy());
+        assertEquals(Map.of("en", List.of("Vehicle"), "fi", List.of("Ajoneuvo")), vehicle.getLabel());
+        assertEquals(List.of("Means of transport"), vehicle.getComment().get("en"));
+        assertEquals(Set.of("Auto", "Henkilöauto"), Set.copyOf(documents.get(NAMESPACE + "Car").getLabel().get("fi")));
+
+        IndexExternalResourceDTO registrationNumber = documents.get(NAMESPACE + "registrationNumber");
+        assertEquals("attribute", registrationNumber.getType());
+        assertEquals(NAMESPACE + "Car", registrationNumber.getDomain());
+        assertEquals("http://www.w3.org/2000/01/rdf-schema#Literal", registrationNumber.getRange());
+
+        assertEquals("association", documents.get(NAMESPACE + "owner").getType());
+        assertEquals("attribute", documents.get(NAMESPACE + "model").getType());
+        assertEquals("association", documents.get(NAMESPACE + "colour").getType());
+        assertEquals("property", documents.get(NAMESPACE + "note").getType());
+    }
+
+    @Test
+    public void testVocabularyIsReplacedInIndex() {
+        externalIndexManager.indexVocabulary(NAMESPACE, vocabulary);
+
+        assertTrue(deleteByQuery.contains("\"isDefinedBy\""));
+        assertTrue(deleteByQuery.contains(NAMESPACE));
+        assertEquals(7, bulk.lines().filter(line -> line.contains("\"index\"")).count());
+        assertTrue(bulk.contains("\"Ajoneuvo\""));
+    }
+
+    @Test
+    public void testSearchByLabel() {
+        List<IndexExternalResourceDTO> resources = externalIndexManager.search("auto", Set.of("class"), Set.of(NAMESPACE), 1);
+
+        assertEquals(1, resources.size());
+        assertEquals(NAMESPACE + "Car", resources.get(0).getId());
+        assertEquals(List.of("Auto", "Henkilöauto"), resources.get(0).getLabel().get("fi"));
+        assertTrue(search.contains("\"type\":[\"class\"]"));
+        assertTrue(search.contains("\"auto\""));
+    }
+
+    @Test
+    public void testListingIsReadInPages() {
+        List<IndexExternalResourceDTO> resources = externalIndexManager.search(null, Set.of("class"), Set.of(NAMESPACE), null);
+
+        assertEquals(List.of(NAMESPACE + "Car", NAMESPACE + "Vehicle"), resources.stream().map(IndexExternalResourceDTO::getId).collect(Collectors.toList()));
+        assertEquals(3, searchCount.get());
+    }
+
+    @Test
+    public void testSearchOfUnindexedVocabularyFails() {
+        externalIndexManager.indexVocabulary(BROKEN_NAMESPACE, vocabulary);
+
+        try {
+            externalIndexManager.search(null, null, Set.of(BROKEN_NAMESPACE), null);
+            fail("Unindexed vocabulary was searched");
+        } catch (DependencyUnavailableException e) {
+            assertTrue(e.getMessage().contains(BROKEN_NAMESPACE));
+        }
+        assertEquals(0, searchCount.get());
+        assertEquals(2, externalIndexManager.search(null, null, Set.of(NAMESPACE), null).size());
+    }
+
+    @Test
+    public void testSearchOfPartiallyIndexedVocabularyFails() {
+        externalIndexManager.indexVocabulary(REJECTED_NAMESPACE, vocabulary(REJECTED_NAMESPACE, 1));
+
+        try {
+            externalIndexManager.search(null, null, Set.of(REJECTED_NAMESPACE), null);
+            fail("Partially indexed vocabulary was searched");
+        } catch (DependencyUnavailableException e) {
+            assertTrue(e.getMessage().contains(REJECTED_NAMESPACE));
+        }
+    }
+
+    @Test
+    public void testLargeVocabularyIsIndexedInBatches() {
+        externalIndexManager.indexVocabulary(NAMESPACE, vocabulary(NAMESPACE, ExternalIndexManager.BULK_ACTIONS * 2 + 1));
+
+        assertEquals(3, bulkCount.get());
+        assertEquals(1, bulk.lines().filter(line -> line.contains("\"index\"")).count());
+    }
+
+    private static Model vocabulary(String namespace,
+                                    int classes) {
+        Model model = ModelFactory.createDefaultModel();
+        for (int i = 0; i < classes; i++) {
+            model.add(model.createResource(namespace + "Class" + i), RDF.type, OWL.Class);
+        }
+        return model;
+    }
+
+    private static String hit(String name,
+                              String label) {
+        String id = NAMESPACE + name;
+        return "{\"_index\":\"dm_external\",\"_type\":\"doc\",\"_id\":\"" + name + "\",\"_score\":1.0,"
+            + "\"_source\":{\"id\":\"" + id + "\",\"isDefinedBy\":\"" + NAMESPACE + "\",\"type\":\"class\",\"label\":" + label + "},"
+            + "\"sort\":[\"" + id + "\"]}";
+    }
+}
@@ -0,0 +1,278 @@
+package fi.vm.yti.datamodel.api.index;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.DCTerms;
+import org.apache.jena.vocabulary.OWL;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import org.apache.jena.vocabulary.XSD;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.topbraid.shacl.vocabulary.SH;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import fi.vm.yti.datamodel.api.index.model.IndexClassDTO;
+import fi.vm.yti.datamodel.api.index.model.IndexModelDTO;
+import fi.vm.yti.datamodel.api.index.model.IndexPredicateDTO;
+import fi.vm.yti.datamodel.api.service.ModelManager;
+import fi.vm.yti.datamodel.api.utils.Frames;
+import fi.vm.yti.datamodel.api.utils.IndexFrame;
+import fi.vm.yti.datamodel.api.utils.LDHelper;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the index documents projected from the results of the index queries to the framed documents they replace
+ */
+public class IndexProjectionTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(IndexProjectionTest.class.getName());
+
+    private static final String MODEL = "http://uri.suomi.fi/datamodel/ns/test";
+    private static final String NAMESPACE = MODEL + "#";
+
+    private final ModelManager modelManager = new ModelManager();
+
+    @Test
+    public void testClassesAsFramed() throws IOException {
+        Model model = classResults(20);
+        Map<String, IndexClassDTO> classes = IndexProjection.classes(model).stream()
+            .collect(Collectors.toMap(IndexClassDTO::getId, Function.identity()));
+        List<JsonNode> framed = graph(modelManager.toFramedJsonNode(model, IndexFrame.CLASS));
+
+        assertEquals(framed.size(), classes.size());
+        for (JsonNode node : framed) {
+            IndexClassDTO indexClass = classes.get(uri(node.get("id").asText()));
+            assertNotNull(indexClass);
+            assertResource(node, indexClass.getIsDefinedBy(), indexClass.getStatus(), indexClass.getLabel(), indexClass.getComment());
+            assertEquals(node.get("type").isArray() ? "class" : node.get("type").asText(), indexClass.getType());
+        }
+    }
+
+    @Test
+    public void testPredicatesAsFramed() throws IOException {
+        Model model = predicateResults(20);
+        Map<String, IndexPredicateDTO> predicates = IndexProjection.predicates(model).stream()
+            .collect(Collectors.toMap(IndexPredicateDTO::getId, Function.identity()));
+        List<JsonNode> framed = graph(modelManager.toFramedJsonNode(model, IndexFrame.PREDICATE));
+
+        assertEquals(framed.size(), predicates.size());
+        for (JsonNode node : framed) {
+            IndexPredicateDTO predicate = predicates.get(uri(node.get("id").asText()));
+            assertNotNull(predicate);
+            assertResource(node, predicate.getIsDefinedBy(), predicate.getStatus(), predicate.getLabel(), predicate.getComment());
+            assertEquals(node.get("type").asText(), predicate.getType());
+            assertEquals(node.path("range").asText(null), predicate.getRange());
+        }
+    }
+
+    @Test
+    public void testModelsAsFramed() throws IOException {
+        Model model = modelResults();
+        List<IndexModelDTO> models = IndexProjection.models(model);
+        JsonNode framed = graph(modelManager.toFramedJsonNode(model, IndexFrame.MODEL)).get(0);
+
+        assertEquals(1, models.size());
+        IndexModelDTO indexModel = models.get(0);
+        assertEquals(uri(framed.get("id").asText()), indexModel.getId());
+        assertEquals(framed.get("prefix").asText(), indexModel.getPrefix());
+        assertEquals(framed.get("namespace").asText(), indexModel.getNamespace());
+        assertTrue(framed.get("type").toString().contains("\"" + indexModel.getType() + "\""));
+        assertEquals(framed.get("status").asText(), indexModel.getStatus());
+        assertEquals(framed.get("contributor").asText(), indexModel.getContributor().get(0).toString());
+        assertEquals(framed.get("label").get("fi").asText(), indexModel.getLabel().get("fi"));
+        assertEquals("InformationDescription", indexModel.getUseContext());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidContributorIsNotProjected() {
+        Model model = modelResults();
+        model.add(model.getResource(MODEL), DCTerms.contributor, "not an organization");
+        IndexProjection.models(model);
+    }
+
+    @Test
+    public void testCompactRange() {
+        Map<String, String> prefixes = Map.of("xsd", XSD.NS, "test", NAMESPACE, "ns", "http://uri.suomi.fi/datamodel/ns/");
+        assertEquals("xsd:string", IndexProjection.compact(XSD.xstring.getURI(), prefixes));
+        assertEquals("test:Thing", IndexProjection.compact(NAMESPACE + "Thing", prefixes));
+        assertEquals(NAMESPACE, IndexProjection.compact(NAMESPACE, Map.of("test", NAMESPACE)));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testFramesAreImmutable() {
+        Frames.esClassFrame.put("@context", Map.of());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testContextOfFrameIsImmutable() {
+        @SuppressWarnings("unchecked")
+        Map<String, Object> context = (Map<String, Object>) Frames.esClassFrame.get("@context");
+        context.put("test", NAMESPACE);
+    }
+
+    @Test
+    public void testConcurrentFraming() throws Exception {
+        Model classes = classResults(50);
+        Model predicates = predicateResults(50);
+        predicates.setNsPrefix("other", "http://example.org/other#");
+        JsonNode expectedClasses = modelManager.toFramedJsonNode(classes, IndexFrame.CLASS);
+        JsonNode expectedPredicates = modelManager.toFramedJsonNode(predicates, IndexFrame.PREDICATE);
+        String frame = Frames.esClassFrame.toString();
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                boolean framesClasses = i % 2 == 0;
+                ModelManager manager = i % 4 < 2 ? modelManager : new ModelManager();
+                Callable<Boolean> task = () -> framesClasses
+                    ? expectedClasses.equals(manager.toFramedJsonNode(classes, IndexFrame.CLASS))
+                    : expectedPredicates.equals(manager.toFramedJsonNode(predicates, IndexFrame.PREDICATE));
+                results.add(executor.submit(task));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(frame, Frames.esClassFrame.toString());
+        assertFalse(Frames.esClassFrame.toString().contains("http://example.org/other#"));
+    }
+
+    @Test
+    public void benchmarkProjection() throws IOException {
+        Model model = classResults(2000);
+        int rounds = 5;
+
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            assertNotNull(modelManager.toFramedJsonNode(model, IndexFrame.CLASS));
+        }
+        long framed = (System.nanoTime() - start) / rounds / 1000;
+
+        start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            assertEquals(2000, IndexProjection.classes(model).size());
+        }
+        long projected = (System.nanoTime() - start) / rounds / 1000;
+
+        logger.info("{} classes: framing {} us, projection {} us", 2000, framed, projected);
+    }
+
+    private static void assertResource(JsonNode node,
+                                       String isDefinedBy,
+                                       String status,
+                                       Map<String, String> label,
+                                       Map<String, String> comment) {
+        assertEquals(uri(node.get("isDefinedBy").asText()), isDefinedBy);
+        assertEquals(node.get("status").asText(), status);
+        assertEquals(languages(node.get("label")), label);
+        assertEquals(languages(node.get("comment")), comment);
+    }
+
+    /**
+     * Framing writes the identifiers of the core models as compact IRIs
+     */
+    private static String uri(String id) {
+        return id.startsWith("iow:") ? LDHelper.curieToURI(id) : id;
+    }
+
+    private static Map<String, String> languages(JsonNode languageMap) {
+        if (languageMap == null) {
+            return null;
+        }
+        Map<String, String> values = new HashMap<>();
+        languageMap.fields().forEachRemaining(field -> values.put(field.getKey(), field.getValue().asText()));
+        return values;
+    }
+
+    private static List<JsonNode> graph(JsonNode framed) {
+        List<JsonNode> nodes = new ArrayList<>();
+        if (framed.has("@graph")) {
+            framed.get("@graph").forEach(nodes::add);
+        } else {
+            nodes.add(framed);
+        }
+        return nodes;
+    }
+
+    private static Model classResults(int count) {
+        Model model = results();
+        for (int i = 0; i < count; i++) {
+            Resource resource = resource(model, "Class" + i);
+            resource.addProperty(RDF.type, i % 3 == 0 ? SH.NodeShape : RDFS.Class);
+            resource.addProperty(SH.name, model.createLiteral("Luokka " + i, "fi"));
+            resource.addProperty(SH.name, model.createLiteral("Class " + i, "en"));
+            if (i % 2 == 0) {
+                resource.addProperty(SH.description, model.createLiteral("Kuvaus " + i, "fi"));
+            }
+        }
+        return model;
+    }
+
+    private static Model predicateResults(int count) {
+        Model model = results();
+        for (int i = 0; i < count; i++) {
+            Resource resource = resource(model, "predicate" + i);
+            resource.addProperty(RDF.type, i % 2 == 0 ? OWL.ObjectProperty : OWL.DatatypeProperty);
+            resource.addProperty(RDFS.label, model.createLiteral("Ominaisuus " + i, "fi"));
+            resource.addProperty(RDFS.comment, model.createLiteral("Comment " + i, "en"));
+            if (i % 3 != 0) {
+                resource.addProperty(RDFS.range, i % 2 == 0 ? model.createResource(NAMESPACE + "Class" + i) : XSD.xstring);
+            }
+        }
+        return model;
+    }
+
+    private static Model modelResults() {
+        Model model = results();
+        Resource resource = model.createResource(MODEL);
+        resource.addProperty(RDF.type, OWL.Ontology);
+        resource.addProperty(RDF.type, LDHelper.curieToResource("dcap:MetadataVocabulary"));
+        resource.addProperty(RDFS.label, model.createLiteral("Testi", "fi"));
+        resource.addProperty(OWL.versionInfo, "DRAFT");
+        resource.addProperty(LDHelper.curieToProperty("dcap:preferredXMLNamespaceName"), NAMESPACE);
+        resource.addProperty(LDHelper.curieToProperty("dcap:preferredXMLNamespacePrefix"), "test");
+        resource.addProperty(DCTerms.contributor, UUID.randomUUID().toString());
+        resource.addProperty(DCTerms.isPartOf, "P11");
+        resource.addProperty(DCTerms.language, "fi");
+        resource.addLiteral(DCTerms.modified, model.createTypedLiteral(Calendar.getInstance()));
+        return model;
+    }
+
+    private static Model results() {
+        Model model = ModelFactory.createDefaultModel();
+        model.setNsPrefixes(LDHelper.PREFIX_MAP);
+        return model;
+    }
+
+    private static Resource resource(Model model,
+                                     String name) {
+        Resource resource = model.createResource(NAMESPACE + name);
+        resource.addProperty(RDFS.isDefinedBy, model.createResource(MODEL));
+        resource.addProperty(OWL.versionInfo, "DRAFT");
+        resource.addLiteral(DCTerms.modified, model.createTypedLiteral(Calendar.getInstance()));
+        resource.addLiteral(DCTerms.created, model.createTypedLiteral(Calendar.getInstance()));
+        return resource;
+    }
+}
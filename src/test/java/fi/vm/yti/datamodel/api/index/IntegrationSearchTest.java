@@ -0,0 +1,170 @@
+package fi.vm.yti.datamodel.api.index;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Set;
+
+import javax.ws.rs.core.StreamingOutput;
+
+import org.apache.http.HttpHost;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+
+import fi.vm.yti.datamodel.api.HttpStub;
+import fi.vm.yti.datamodel.api.config.ApplicationProperties;
+import fi.vm.yti.datamodel.api.index.model.IntegrationContainerRequest;
+import fi.vm.yti.datamodel.api.index.model.IntegrationResourceRequest;
+import fi.vm.yti.datamodel.api.service.GraphManager;
+import fi.vm.yti.datamodel.api.service.RemoteDependencyRegistry;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Streams integration API pages against an Elasticsearch stub
+ */
+public class IntegrationSearchTest {
+
+    private static final String NAMESPACE = "http://uri.suomi.fi/datamodel/ns/";
+    private static final String PATH = "http://localhost/datamodel-api/api/v1/integration/resources";
+
+    private static volatile String lastSearch;
+    private static HttpStub server;
+    private static RestHighLevelClient esClient;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().setSerializationInclusion(JsonInclude.Include.NON_NULL);
+    private SearchIndexManager searchIndexManager;
+
+    @BeforeClass
+    public static void startElasticsearch() throws IOException {
+        server = HttpStub.create()
+            .handle("/dm_resources/_search", exchange -> respond(exchange, resourceResponse()))
+            .handle("/dm_models/_search", exchange -> respond(exchange, modelResponse()))
+            .start();
+        esClient = new RestHighLevelClient(RestClient.builder(new HttpHost("localhost", server.port(), "http")));
+    }
+
+    @AfterClass
+    public static void stopElasticsearch() throws IOException {
+        esClient.close();
+        server.stop();
+    }
+
+    @Before
+    public void createManager() {
+        LuceneQueryFactory luceneQueryFactory = new LuceneQueryFactory(new ApplicationProperties());
+        ElasticConnector elasticConnector = new ElasticConnector(esClient, objectMapper, new RemoteDependencyRegistry());
+        searchIndexManager = new SearchIndexManager(elasticConnector, null, mock(GraphManager.class), objectMapper, null,
+            new ModelQueryFactory(objectMapper, luceneQueryFactory), new DeepResourceQueryFactory(objectMapper, luceneQueryFactory),
+            new ResourceQueryFactory(objectMapper, luceneQueryFactory), new SuggestQueryFactory(objectMapper, new ApplicationProperties()),
+            new SearchCache(new SimpleMeterRegistry()), null);
+    }
+
+    @Test
+    public void testStreamedResources() throws IOException {
+        JsonNode streamed = write(searchIndexManager.searchResourcesOutput(resourceRequest(null), PATH));
+        assertEquals(objectMapper.readTree("{\"meta\":{\"pageSize\":2,\"from\":0,\"resultCount\":2,\"totalResults\":5,"
+            + "\"nextPage\":\"" + PATH + "?pageSize=2&from=2&status=VALID&searchTerm=auto&language=fi\","
+            + "\"nextCursor\":\"" + cursor("[1.0,\"" + NAMESPACE + "a#Bussi\"]") + "\"},"
+            + "\"results\":[" + resourceResult("Auto") + "," + resourceResult("Bussi") + "]}"), streamed);
+    }
+
+    @Test
+    public void testStreamedContainers() throws IOException {
+        IntegrationContainerRequest request = new IntegrationContainerRequest(null, null, "fi", null, null, null, null, null, 2, null, true, null);
+        JsonNode streamed = write(searchIndexManager.searchContainersOutput(request, PATH));
+        assertEquals(objectMapper.readTree("{\"meta\":{\"pageSize\":2,\"resultCount\":2,\"totalResults\":3,"
+            + "\"nextCursor\":\"" + cursor("[1.0,\"" + NAMESPACE + "b\"]") + "\"},"
+            + "\"results\":[" + containerResult("a", "Autot") + "," + containerResult("b", "Autoilu") + "]}"), streamed);
+    }
+
+    @Test
+    public void testCursorContinuesAfterLastHit() throws IOException {
+        JsonNode first = write(searchIndexManager.searchResourcesOutput(resourceRequest(null), PATH));
+        String cursor = first.get("meta").get("nextCursor").asText();
+        assertTrue(first.get("meta").get("nextPage").asText().contains("from=2"));
+
+        JsonNode second = write(searchIndexManager.searchResourcesOutput(resourceRequest(cursor), PATH));
+        assertTrue(lastSearch.contains("\"search_after\":[1.0,\"" + NAMESPACE + "a#Bussi\"]"));
+        assertTrue(second.get("meta").get("nextPage").asText().contains("cursor=" + second.get("meta").get("nextCursor").asText()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCursorFailsBeforeWriting() {
+        searchIndexManager.searchResourcesOutput(resourceRequest("not a cursor"), PATH);
+    }
+
+    private static IntegrationResourceRequest resourceRequest(String cursor) {
+        IntegrationResourceRequest request = new IntegrationResourceRequest(null, "auto", "fi", null, Set.of("VALID"), null, null, null, null, 2, cursor == null ? 0 : null);
+        request.setCursor(cursor);
+        return request;
+    }
+
+    private static String cursor(String sortValues) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(sortValues.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String resourceResult(String name) {
+        return "{\"prefLabel\":{\"fi\":\"" + name + "\"},\"description\":{\"fi\":\"Ajoneuvo\"},\"uri\":\"" + NAMESPACE + "a#" + name + "\","
+            + "\"container\":\"" + NAMESPACE + "a\",\"status\":\"VALID\",\"type\":\"class\",\"modified\":\"2020-01-01T00:00:00.000Z\"}";
+    }
+
+    private static String containerResult(String prefix,
+                                          String label) {
+        return "{\"prefLabel\":{\"fi\":\"" + label + "\"},\"uri\":\"" + NAMESPACE + prefix + "\",\"status\":\"VALID\",\"type\":\"library\"}";
+    }
+
+    private JsonNode write(StreamingOutput output) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        output.write(out);
+        return objectMapper.readTree(out.toByteArray());
+    }
+
+    private static void respond(HttpExchange exchange,
+                                String body) throws IOException {
+        lastSearch = HttpStub.body(exchange);
+        HttpStub.respondJson(exchange, body);
+    }
+
+    private static String resourceResponse() {
+        return "{\"took\":1,\"timed_out\":false,\"_shards\":{\"total\":1,\"successful\":1,\"skipped\":0,\"failed\":0},"
+            + "\"hits\":{\"total\":5,\"max_score\":1.0,\"hits\":["
+            + resourceHit("Auto") + "," + resourceHit("Bussi")
+            + "]}}";
+    }
+
+    private static String resourceHit(String name) {
+        String id = NAMESPACE + "a#" + name;
+        return "{\"_index\":\"dm_resources\",\"_type\":\"doc\",\"_id\":\"" + id + "\",\"_score\":1.0,"
+            + "\"_source\":{\"id\":\"" + id + "\",\"isDefinedBy\":\"" + NAMESPACE + "a\",\"status\":\"VALID\",\"type\":\"class\","
+            + "\"modified\":\"2020-01-01T00:00:00.000Z\",\"label\":{\"fi\":\"" + name + "\"},\"comment\":{\"fi\":\"Ajoneuvo\"}},"
+            + "\"sort\":[1.0,\"" + id + "\"]}";
+    }
+
+    private static String modelResponse() {
+        return "{\"took\":1,\"timed_out\":false,\"_shards\":{\"total\":1,\"successful\":1,\"skipped\":0,\"failed\":0},"
+            + "\"hits\":{\"total\":3,\"max_score\":1.0,\"hits\":["
+            + modelHit("a", "Autot") + "," + modelHit("b", "Autoilu")
+            + "]}}";
+    }
+
+    private static String modelHit(String prefix,
+                                   String label) {
+        return "{\"_index\":\"dm_models\",\"_type\":\"doc\",\"_id\":\"" + NAMESPACE + prefix + "\",\"_score\":1.0,"
+            + "\"_source\":{\"id\":\"" + NAMESPACE + prefix + "\",\"prefix\":\"" + prefix + "\",\"status\":\"VALID\",\"type\":\"library\","
+            + "\"label\":{\"fi\":\"" + label + "\"}},\"sort\":[1.0,\"" + NAMESPACE + prefix + "\"]}";
+    }
+}
@@ -0,0 +1,248 @@
+package fi.vm.yti.datamodel.api.index;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.custom.CustomAnalyzer;
+import org.apache.lucene.analysis.miscellaneous.PerFieldAnalyzerWrapper;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.DisjunctionMaxQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.WildcardQuery;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the prefix and suffix subfields of the label mapping find the same labels as the earlier
+ * term OR term* OR *term query. Analyzers and the sort normalizer are built with Lucene from the analysis settings
+ * of resource_mapping.json.
+ */
+public class LabelAnalysisTest {
+
+    private static final List<String> LABELS = Arrays.asList(
+        "Henkilö", "Henkilötunnus", "Henkilön nimi", "Asiakas", "Asiakasnumero", "Yritysasiakas",
+        "Osoite", "Postiosoite", "Sähköpostiosoite", "Käyntiosoite", "Osoitteen tyyppi",
+        "Rakennus", "Rakennuksen tunnus", "Pysyvä rakennustunnus", "Kiinteistö", "Kiinteistötunnus",
+        "Ajoneuvo", "Ajoneuvon rekisterinumero", "Ajoneuvorekisterinumero", "Kuorma-auto", "Auto", "Automaattinen päätös",
+        "Person", "Personal identity code", "Address", "Email address", "Postal address",
+        "Building", "Permanent building identifier", "Vehicle", "Vehicle registration number",
+        "Organization", "Organizational unit", "Service", "Service channel", "Public service");
+
+    private static final List<String> QUERIES = Arrays.asList(
+        "henkilö", "tunnus", "osoite", "asiakas", "auto", "numero", "rakennus", "kiinteistö",
+        "address", "service", "organization", "build", "vehicle number", "posti osoite", "ident", "o",
+        "x", "päätös", "registration", "kuorma", "ajoneuvorekisterinume", "joneuvorekisterinumero");
+
+    private static Directory directory;
+    private static IndexSearcher searcher;
+    private static Analyzer prefixSearchAnalyzer;
+    private static Analyzer suffixSearchAnalyzer;
+    private static Analyzer sortNormalizer;
+
+    @BeforeClass
+    public static void indexLabels() throws Exception {
+        JsonNode analysis = new ObjectMapper().readTree(LabelAnalysisTest.class.getResourceAsStream("/resource_mapping.json")).path("settings").path("analysis");
+        Map<String, Analyzer> fieldAnalyzers = new HashMap<>();
+        fieldAnalyzers.put("label.prefix", analyzer(analysis, "label_prefix"));
+        fieldAnalyzers.put("label.suffix", analyzer(analysis, "label_suffix"));
+        prefixSearchAnalyzer = analyzer(analysis, "label_prefix_search");
+        suffixSearchAnalyzer = analyzer(analysis, "label_suffix_search");
+        sortNormalizer = normalizer(analysis, "label_sort");
+
+        directory = new ByteBuffersDirectory();
+        try (IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(new PerFieldAnalyzerWrapper(new StandardAnalyzer(), fieldAnalyzers)))) {
+            for (String label : LABELS) {
+                Document document = new Document();
+                document.add(new TextField("label", label, Field.Store.YES));
+                document.add(new TextField("label.prefix", label, Field.Store.NO));
+                document.add(new TextField("label.suffix", label, Field.Store.NO));
+                writer.addDocument(document);
+            }
+        }
+        searcher = new IndexSearcher(DirectoryReader.open(directory));
+    }
+
+    @AfterClass
+    public static void close() throws IOException {
+        searcher.getIndexReader().close();
+        directory.close();
+    }
+
+    @Test
+    public void testSubfieldsMatchSameLabelsAsWildcards() throws Exception {
+        for (String query : QUERIES) {
+            assertEquals("Labels matching '" + query + "'", search(wildcardQuery(query)), search(subfieldQuery(query)));
+        }
+    }
+
+    @Test
+    public void testPrefixAndSuffixMatches() throws Exception {
+        Set<String> labels = search(subfieldQuery("tunnus"));
+        assertTrue(labels.contains("Henkilötunnus"));
+        assertTrue(labels.contains("Rakennuksen tunnus"));
+        assertFalse(labels.contains("Henkilö"));
+
+        labels = search(subfieldQuery("build"));
+        assertTrue(labels.contains("Building"));
+        assertFalse(labels.contains("Public service"));
+    }
+
+    @Test
+    public void testWholeWordMatchIsRankedFirst() throws Exception {
+        ScoreDoc[] hits = searcher.search(subfieldQuery("auto"), LABELS.size()).scoreDocs;
+        assertEquals("Auto", searcher.doc(hits[0].doc).get("label"));
+    }
+
+    @Test
+    public void testTermsLongerThanNgramsMatch() throws Exception {
+        assertTrue(search(subfieldQuery("ajoneuvorekisterinume")).contains("Ajoneuvorekisterinumero"));
+        assertTrue(search(subfieldQuery("joneuvorekisterinumero")).contains("Ajoneuvorekisterinumero"));
+    }
+
+    @Test
+    public void testSortIgnoresCaseAndAccents() throws Exception {
+        assertEquals("aaniraita", sortKey("Ääniraita"));
+        List<String> sorted = Arrays.asList("Öljy", "auto", "Ääni", "Osoite", "Åland").stream()
+            .sorted(Comparator.comparing(LabelAnalysisTest::sortKey))
+            .collect(Collectors.toList());
+        assertEquals(Arrays.asList("Ääni", "Åland", "auto", "Öljy", "Osoite"), sorted);
+    }
+
+    private static Set<String> search(Query query) throws IOException {
+        Set<String> labels = new HashSet<>();
+        for (ScoreDoc hit : searcher.search(query, LABELS.size()).scoreDocs) {
+            labels.add(searcher.doc(hit.doc).get("label"));
+        }
+        return labels;
+    }
+
+    /**
+     * Query that was built by LuceneQueryFactory before the subfields
+     */
+    private static Query wildcardQuery(String query) {
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        for (String term : query.split("\\s+")) {
+            builder.add(new BooleanQuery.Builder()
+                .add(new TermQuery(new Term("label", term)), BooleanClause.Occur.SHOULD)
+                .add(new PrefixQuery(new Term("label", term)), BooleanClause.Occur.SHOULD)
+                .add(new WildcardQuery(new Term("label", "*" + term)), BooleanClause.Occur.SHOULD)
+                .build(), BooleanClause.Occur.MUST);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Lucene equivalent of the multi_match queries built by LuceneQueryFactory
+     */
+    private static Query subfieldQuery(String query) throws IOException {
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        for (String term : query.split("\\s+")) {
+            builder.add(new DisjunctionMaxQuery(Arrays.asList(
+                fieldQuery(new StandardAnalyzer(), "label", term),
+                fieldQuery(prefixSearchAnalyzer, "label.prefix", term),
+                fieldQuery(suffixSearchAnalyzer, "label.suffix", term)), 0), BooleanClause.Occur.MUST);
+        }
+        return builder.build();
+    }
+
+    private static Query fieldQuery(Analyzer analyzer,
+                                    String field,
+                                    String term) throws IOException {
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        try (TokenStream tokens = analyzer.tokenStream(field, term)) {
+            CharTermAttribute attribute = tokens.addAttribute(CharTermAttribute.class);
+            tokens.reset();
+            while (tokens.incrementToken()) {
+                builder.add(new TermQuery(new Term(field, attribute.toString())), BooleanClause.Occur.MUST);
+            }
+            tokens.end();
+        }
+        return builder.build();
+    }
+
+    /**
+     * Keyword that the sort subfield stores for the label
+     */
+    private static String sortKey(String label) {
+        try (TokenStream tokens = sortNormalizer.tokenStream("label.sort", label)) {
+            CharTermAttribute attribute = tokens.addAttribute(CharTermAttribute.class);
+            tokens.reset();
+            assertTrue(tokens.incrementToken());
+            String key = attribute.toString();
+            tokens.end();
+            return key;
+        } catch (IOException ex) {
+            throw new AssertionError(ex);
+        }
+    }
+
+    /**
+     * Builds normalizer of the index settings as a custom analyzer with the keyword tokenizer
+     */
+    private static Analyzer normalizer(JsonNode analysis,
+                                       String name) throws IOException {
+        CustomAnalyzer.Builder builder = CustomAnalyzer.builder().withTokenizer("keyword");
+        for (JsonNode filterName : analysis.path("normalizer").path(name).path("filter")) {
+            builder.addTokenFilter(filterName.asText());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Builds custom analyzer of the index settings with the Lucene names of the Elasticsearch filters
+     */
+    private static Analyzer analyzer(JsonNode analysis,
+                                     String name) throws IOException {
+        JsonNode definition = analysis.path("analyzer").path(name);
+        CustomAnalyzer.Builder builder = CustomAnalyzer.builder().withTokenizer(definition.path("tokenizer").asText());
+        for (JsonNode filterName : definition.path("filter")) {
+            JsonNode filter = analysis.path("filter").path(filterName.asText());
+            String type = filter.isMissingNode() ? filterName.asText() : filter.path("type").asText();
+            switch (type) {
+                case "edge_ngram":
+                    builder.addTokenFilter("edgengram", "minGramSize", filter.path("min_gram").asText(), "maxGramSize", filter.path("max_gram").asText());
+                    break;
+                case "truncate":
+                    builder.addTokenFilter("truncate", "prefixLength", filter.path("length").asText());
+                    break;
+                case "reverse":
+                    builder.addTokenFilter("reversestring");
+                    break;
+                default:
+                    builder.addTokenFilter(type);
+            }
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,101 @@
+package fi.vm.yti.datamodel.api.index;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Property;
+import org.elasticsearch.index.reindex.UpdateByQueryRequest;
+import org.junit.Test;
+
+import fi.vm.yti.datamodel.api.utils.LDHelper;
+
+import static org.junit.Assert.*;
+
+public class OrganizationHierarchyTest {
+
+    private static OrganizationHierarchy hierarchy(String... childAndParent) {
+        Map<String, String> parents = new HashMap<>();
+        for (int i = 0; i < childAndParent.length; i += 2) {
+            parents.put(childAndParent[i], childAndParent[i + 1]);
+        }
+        return OrganizationHierarchy.of(parents);
+    }
+
+    @Test
+    public void testVisibleToContainsAncestors() {
+        OrganizationHierarchy hierarchy = hierarchy("child", "parent", "parent", "root");
+
+        assertEquals(Arrays.asList("parent", "root"), hierarchy.ancestors("child"));
+        assertEquals(Arrays.asList("child", "other", "parent", "root"), hierarchy.visibleTo(Arrays.asList("other", "child")));
+    }
+
+    @Test
+    public void testReadFromOrganizationsGraph() {
+        Model model = ModelFactory.createDefaultModel();
+        Property parent = model.createProperty(LDHelper.PREFIX_MAP.get("iow") + "parentOrganization");
+        model.add(model.createResource("urn:uuid:child"), parent, model.createResource("urn:uuid:root"));
+        model.add(model.createResource("urn:uuid:root"), parent, "");
+
+        OrganizationHierarchy hierarchy = OrganizationHierarchy.of(model);
+
+        assertEquals(Collections.singletonList("root"), hierarchy.ancestors("child"));
+        assertTrue(hierarchy.ancestors("root").isEmpty());
+    }
+
+    @Test
+    public void testCycleIsFollowedOnce() {
+        OrganizationHierarchy hierarchy = hierarchy("a", "b", "b", "a");
+
+        assertEquals(Collections.singletonList("b"), hierarchy.ancestors("a"));
+        assertEquals(Arrays.asList("a", "b"), hierarchy.visibleTo(Collections.singleton("a")));
+    }
+
+    @Test
+    public void testMovedOrganizationChangesItsDescendants() {
+        OrganizationHierarchy previous = hierarchy("grandchild", "child", "child", "parent", "other", "parent");
+        OrganizationHierarchy current = hierarchy("grandchild", "child", "child", "other", "other", "parent");
+
+        Set<String> changed = current.changedOrganizations(previous);
+
+        assertEquals(Set.of("child", "grandchild"), changed);
+    }
+
+    @Test
+    public void testNoUpdateWithoutChanges() {
+        OrganizationHierarchy previous = hierarchy("child", "parent");
+
+        assertNull(hierarchy("child", "parent").createVisibilityUpdate(previous, "dm_resources"));
+    }
+
+    @Test
+    public void testVisibilityUpdateOfChangedContributors() {
+        OrganizationHierarchy previous = hierarchy("child", "parent");
+        OrganizationHierarchy current = hierarchy("child", "parent", "parent", "root");
+
+        UpdateByQueryRequest request = current.createVisibilityUpdate(previous, "dm_resources", "dm_models");
+
+        assertArrayEquals(new String[]{ "dm_resources", "dm_models" }, request.indices());
+        String query = request.getSearchRequest().source().query().toString();
+        assertTrue(query.contains("\"contributor\""));
+        assertTrue(query.contains("\"child\""));
+        assertTrue(query.contains("\"parent\""));
+        @SuppressWarnings("unchecked")
+        Map<String, Object> ancestors = (Map<String, Object>) request.getScript().getParams().get("ancestors");
+        assertEquals(Arrays.asList("parent", "root"), ancestors.get("child"));
+    }
+
+    @Test
+    public void testFullVisibilityUpdate() {
+        UpdateByQueryRequest request = hierarchy("child", "parent").createFullVisibilityUpdate("dm_resources", "dm_models");
+
+        assertTrue(request.getSearchRequest().source().query().toString().contains("\"exists\""));
+        @SuppressWarnings("unchecked")
+        Map<String, Object> ancestors = (Map<String, Object>) request.getScript().getParams().get("ancestors");
+        assertEquals(Collections.singletonList("parent"), ancestors.get("child"));
+    }
+}
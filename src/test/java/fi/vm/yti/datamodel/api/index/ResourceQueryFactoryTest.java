@@ -0,0 +1,135 @@
+package fi.vm.yti.datamodel.api.index;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fi.vm.yti.datamodel.api.config.ApplicationProperties;
+import fi.vm.yti.datamodel.api.index.model.IndexResourceDTO;
+import fi.vm.yti.datamodel.api.index.model.ResourceSearchRequest;
+import fi.vm.yti.datamodel.api.index.model.ResourceSearchResponse;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.search.SearchHit;
+import org.junit.Test;
+import org.skyscreamer.jsonassert.JSONAssert;
+import org.skyscreamer.jsonassert.JSONCompareMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+public class ResourceQueryFactoryTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResourceQueryFactoryTest.class.getName());
+
+    ResourceQueryFactory factory = new ResourceQueryFactory(new ObjectMapper(), new LuceneQueryFactory(new ApplicationProperties()));
+
+    @Test
+    public void testResourceSearchRequestSortedByLabel() throws Exception {
+        var expected = EsUtils.getJsonString("/es/resourcerequest.json");
+        var request = new ResourceSearchRequest("test", null, "http://uri.suomi.fi/datamodel/ns/test", null, "fi", "label", "asc", 20, null);
+
+        SearchRequest searchRequest = factory.createQuery(request);
+        JSONAssert.assertEquals(expected, searchRequest.source().toString(), JSONCompareMode.LENIENT);
+    }
+
+    @Test
+    public void testCursorContinuesAfterLastHit() throws Exception {
+        var request = new ResourceSearchRequest("auto", null, null, null, "fi", null, null, 2, null);
+        ResourceSearchResponse response = factory.parseResponse(EsUtils.getMockResponse("/es/resourceresponse.json"), request, false);
+        assertEquals(2, response.getResources().size());
+        assertNotNull(response.getNextCursor());
+
+        request.setCursor(response.getNextCursor());
+        SearchRequest searchRequest = factory.createQuery(request);
+        assertArrayEquals(new Object[]{ 1.25, "http://uri.suomi.fi/datamodel/ns/test#Kuorma-auto" }, searchRequest.source().searchAfter());
+        assertEquals(0, searchRequest.source().from());
+    }
+
+    @Test
+    public void testLastPageHasNoCursor() throws Exception {
+        var request = new ResourceSearchRequest("auto", null, null, null, "fi", null, null, 10, null);
+        assertNull(factory.parseResponse(EsUtils.getMockResponse("/es/resourceresponse.json"), request, false).getNextCursor());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCursor() {
+        var request = new ResourceSearchRequest("auto", null, null, null, "fi", null, null, 10, null);
+        request.setCursor("bm90IGEgY3Vyc29y");
+        factory.createQuery(request);
+    }
+
+    @Test
+    public void testLabelsAreReplacedWithHighlights() throws Exception {
+        var request = new ResourceSearchRequest("auto", null, null, null, "fi", null, null, 10, null);
+        SearchResponse response = EsUtils.getSearchResponseFromJson(highlightedResponse(1));
+        IndexResourceDTO resource = factory.parseResponse(response, request, true).getResources().get(0);
+        assertEquals("Kuorma-<b>auto</b> 0", resource.getLabel().get("fi"));
+        assertEquals("<b>Automobile</b> 0", resource.getLabel().get("en"));
+        assertEquals("Lastbil 0", resource.getLabel().get("sv"));
+    }
+
+    /**
+     * Compares reading sources as strings and highlighting labels with regular expressions to reading source bytes
+     * and using the highlights of the response
+     */
+    @Test
+    public void benchmarkParseResponse() throws Exception {
+        var request = new ResourceSearchRequest("auto", null, null, null, "fi", null, null, 1000, null);
+        SearchResponse response = EsUtils.getSearchResponseFromJson(highlightedResponse(1000));
+        ObjectMapper objectMapper = new ObjectMapper();
+        int rounds = 20;
+
+        for (int i = 0; i < rounds; i++) {
+            parseWithRegexHighlight(objectMapper, response, request.getQuery());
+            factory.parseResponse(response, request, true);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            assertEquals(1000, parseWithRegexHighlight(objectMapper, response, request.getQuery()));
+        }
+        long before = (System.nanoTime() - start) / rounds / 1000;
+
+        start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            assertEquals(1000, factory.parseResponse(response, request, true).getResources().size());
+        }
+        long after = (System.nanoTime() - start) / rounds / 1000;
+
+        logger.info("1000 hits: string source and regex highlighting {} us, source bytes and ES highlights {} us", before, after);
+    }
+
+    private static int parseWithRegexHighlight(ObjectMapper objectMapper,
+                                               SearchResponse response,
+                                               String query) throws Exception {
+        int count = 0;
+        for (SearchHit hit : response.getHits()) {
+            IndexResourceDTO resource = objectMapper.readValue(hit.getSourceAsString(), IndexResourceDTO.class);
+            for (String highlight : query.split("\\s+")) {
+                String matchString = Pattern.quote(highlight);
+                resource.getLabel().replaceAll((lang, label) -> label.replaceAll("(?i)(?<text>\\b" + matchString + "|" + matchString + "\\b)", "<b>${text}</b>"));
+            }
+            count++;
+        }
+        return count;
+    }
+
+    private static String highlightedResponse(int size) {
+        StringBuilder hits = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            String id = "http://uri.suomi.fi/datamodel/ns/test#Resource" + i;
+            hits.append(i > 0 ? "," : "")
+                .append("{\"_index\":\"dm_resources\",\"_type\":\"doc\",\"_id\":\"").append(id).append("\",\"_score\":1.0,")
+                .append("\"_source\":{\"id\":\"").append(id).append("\",\"isDefinedBy\":\"http://uri.suomi.fi/datamodel/ns/test\",")
+                .append("\"status\":\"VALID\",\"modified\":\"2022-01-01T00:00:00.000Z\",\"created\":\"2022-01-01T00:00:00.000Z\",\"type\":\"class\",")
+                .append("\"label\":{\"fi\":\"Kuorma-auto ").append(i).append("\",\"en\":\"Automobile ").append(i).append("\",\"sv\":\"Lastbil ").append(i).append("\"},")
+                .append("\"comment\":{\"fi\":\"Tavaroiden kuljetukseen tarkoitettu ajoneuvo\",\"en\":\"Vehicle for transporting goods\"}},")
+                .append("\"highlight\":{\"label.fi\":[\"Kuorma-<b>auto</b> ").append(i).append("\"],")
+                .append("\"label.en.prefix\":[\"<b>Automobile</b> ").append(i).append("\"]}}");
+        }
+        return "{\"took\":1,\"timed_out\":false,\"_shards\":{\"total\":1,\"successful\":1,\"skipped\":0,\"failed\":0},"
+            + "\"hits\":{\"total\":" + size + ",\"max_score\":1.0,\"hits\":[" + hits + "]}}";
+    }
+
+}
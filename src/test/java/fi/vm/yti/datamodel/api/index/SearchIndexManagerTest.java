@@ -0,0 +1,259 @@
+package fi.vm.yti.datamodel.api.index;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.HttpHost;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import fi.vm.yti.datamodel.api.HttpStub;
+import fi.vm.yti.datamodel.api.config.ApplicationProperties;
+import fi.vm.yti.datamodel.api.index.model.ModelSearchRequest;
+import fi.vm.yti.datamodel.api.index.model.ModelSearchResponse;
+import fi.vm.yti.datamodel.api.index.model.ResourceSearchRequest;
+import fi.vm.yti.datamodel.api.index.model.SuggestionDTO;
+import fi.vm.yti.datamodel.api.service.DependencyUnavailableException;
+import fi.vm.yti.datamodel.api.service.GraphManager;
+import fi.vm.yti.datamodel.api.service.RemoteDependencyRegistry;
+import fi.vm.yti.security.YtiUser;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Runs searches against an Elasticsearch stub that answers with canned responses. Responses are delayed so that
+ * suggestions can run out of their time budget.
+ */
+public class SearchIndexManagerTest {
+
+    private static final long LATENCY_MILLIS = 50;
+    private static final String NAMESPACE = "http://uri.suomi.fi/datamodel/ns/";
+
+    private static final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+    private static volatile String deepHitModel;
+    private static volatile String updateByQuery;
+    private static HttpStub server;
+    private static RestHighLevelClient esClient;
+
+    private SearchIndexManager searchIndexManager;
+    private ElasticConnector elasticConnector;
+    private SearchCache searchCache;
+    private ModelQueryFactory modelQueryFactory;
+    private DeepResourceQueryFactory deepResourceQueryFactory;
+
+    @BeforeClass
+    public static void startElasticsearch() throws IOException {
+        server = HttpStub.create().concurrent();
+        server.handle("/_msearch", exchange -> respond(exchange, "{\"took\":1,\"responses\":[" + deepResponse() + "," + modelResponse() + "]}"));
+        server.handle("/dm_resources/_search", exchange -> {
+            String body = HttpStub.body(exchange);
+            respond(exchange, body.contains("\"completion\"") ? suggestResponse() : deepResponse());
+        });
+        server.handle("/dm_models/_search", exchange -> respond(exchange, modelResponse()));
+        server.handle("/dm_resources/doc/", exchange -> respond(exchange, "{\"_index\":\"dm_resources\",\"_type\":\"doc\",\"_id\":\"a\",\"_version\":2,"
+            + "\"result\":\"updated\",\"_shards\":{\"total\":1,\"successful\":1,\"failed\":0},\"_seq_no\":1,\"_primary_term\":1}"));
+        HttpHandler updateByQueryHandler = exchange -> {
+            updateByQuery = exchange.getRequestURI().getQuery() + " " + HttpStub.body(exchange);
+            respond(exchange, "{\"took\":1,\"timed_out\":false,\"total\":2,\"updated\":2,\"created\":0,\"deleted\":0,\"batches\":1,"
+                + "\"version_conflicts\":0,\"noops\":0,\"retries\":{\"bulk\":0,\"search\":0},\"throttled_millis\":0,"
+                + "\"requests_per_second\":-1.0,\"throttled_until_millis\":0,\"failures\":[]}");
+        };
+        server.handle("/dm_resources/_update_by_query", updateByQueryHandler);
+        server.handle("/dm_resources,dm_models/_update_by_query", updateByQueryHandler);
+        server.start();
+        esClient = new RestHighLevelClient(RestClient.builder(new HttpHost("localhost", server.port(), "http")));
+    }
+
+    @AfterClass
+    public static void stopElasticsearch() throws IOException {
+        esClient.close();
+        server.stop();
+    }
+
+    @Before
+    public void createManager() {
+        searchIndexManager = createManager(1000);
+        deepHitModel = NAMESPACE + "a";
+    }
+
+    private SearchIndexManager createManager(long suggestTimeoutMillis) {
+        ObjectMapper objectMapper = new ObjectMapper();
+        ApplicationProperties properties = new ApplicationProperties();
+        properties.setSuggestTimeoutMillis(suggestTimeoutMillis);
+        LuceneQueryFactory luceneQueryFactory = new LuceneQueryFactory(properties);
+        modelQueryFactory = new ModelQueryFactory(objectMapper, luceneQueryFactory);
+        deepResourceQueryFactory = new DeepResourceQueryFactory(objectMapper, luceneQueryFactory);
+        elasticConnector = new ElasticConnector(esClient, objectMapper, new RemoteDependencyRegistry());
+        searchCache = new SearchCache(new SimpleMeterRegistry());
+        return new SearchIndexManager(elasticConnector, null, mock(GraphManager.class), objectMapper, null,
+            modelQueryFactory, deepResourceQueryFactory, new ResourceQueryFactory(objectMapper, luceneQueryFactory),
+            new SuggestQueryFactory(objectMapper, properties), searchCache, null);
+    }
+
+    @After
+    public void clearRequests() {
+        requests.clear();
+    }
+
+    @Test
+    public void testModelsMatchedByLabelNeedOneRequest() {
+        ModelSearchResponse response = searchIndexManager.searchModels(deepSearchRequest());
+        assertEquals(2, response.getModels().size());
+        assertTrue(response.getDeepHits().containsKey(NAMESPACE + "a"));
+        assertEquals(1, requestCount("/_msearch"));
+        assertEquals(0, requestCount("/dm_models/_search"));
+    }
+
+    @Test
+    public void testModelsFoundOnlyByResourcesAreSearchedAgain() {
+        deepHitModel = NAMESPACE + "c";
+        ModelSearchResponse response = searchIndexManager.searchModels(deepSearchRequest());
+        assertTrue(response.getDeepHits().containsKey(NAMESPACE + "c"));
+        assertEquals(1, requestCount("/_msearch"));
+        assertEquals(1, requestCount("/dm_models/_search"));
+    }
+
+    @Test
+    public void testRepeatedSearchIsCached() {
+        searchIndexManager.searchModelsWithUser(deepSearchRequest(), YtiUser.ANONYMOUS_USER);
+        ModelSearchResponse response = searchIndexManager.searchModelsWithUser(deepSearchRequest(), YtiUser.ANONYMOUS_USER);
+        assertEquals(2, response.getModels().size());
+        assertEquals(1, requestCount("/_msearch"));
+        assertEquals(1, searchCache.getStats().hitCount());
+    }
+
+    @Test
+    public void testWriteMakesCachedResultsUnreachable() {
+        searchIndexManager.searchResources(resourceSearchRequest());
+        searchIndexManager.searchResources(resourceSearchRequest());
+        assertEquals(1, requestCount("/dm_resources/_search"));
+
+        elasticConnector.updateToIndex("dm_resources", NAMESPACE + "a#Auto", Collections.singletonMap("status", "DRAFT"));
+        assertEquals(-1, elasticConnector.getRefreshedGeneration("dm_resources"));
+        assertEquals(0, elasticConnector.getRefreshedGeneration("dm_models"));
+
+        searchIndexManager.searchResources(resourceSearchRequest());
+        assertEquals(2, requestCount("/dm_resources/_search"));
+    }
+
+    @Test
+    public void testStatusIsChangedInPlace() {
+        long updated = elasticConnector.updateStatusByQuery(NAMESPACE + "a", "DRAFT", "VALID",
+            List.of(NAMESPACE + "a#Auto", NAMESPACE + "a#Bussi"), "2020-01-01T00:00:00Z", true);
+        assertEquals(2, updated);
+        assertTrue(updateByQuery.contains("conflicts=proceed"));
+        assertTrue(updateByQuery.contains("refresh=true"));
+        assertTrue(updateByQuery.contains(NAMESPACE + "a#Bussi"));
+        assertTrue(updateByQuery.contains("\"status\":\"VALID\""));
+        assertEquals(-1, elasticConnector.getRefreshedGeneration("dm_resources"));
+        assertEquals(0, elasticConnector.updateStatusByQuery(NAMESPACE + "a", "DRAFT", "VALID", Collections.emptyList(), null, true));
+    }
+
+    @Test
+    public void testFirstHierarchySyncUpdatesAllDocuments() {
+        searchIndexManager.updateOrganizationHierarchy();
+        assertEquals(1, requestCount("/dm_resources,dm_models/_update_by_query"));
+        assertTrue(updateByQuery.contains("\"exists\":{\"field\":\"contributor\""));
+
+        searchIndexManager.updateOrganizationHierarchy();
+        assertEquals(1, requestCount("/dm_resources,dm_models/_update_by_query"));
+    }
+
+    @Test
+    public void testSuggestionsContainIdTypeAndLabel() {
+        List<SuggestionDTO> suggestions = searchIndexManager.suggest(" aut", Collections.singleton("class"), null, null, 5);
+        assertEquals(1, suggestions.size());
+        assertEquals(NAMESPACE + "a#Auto", suggestions.get(0).getId());
+        assertEquals("class", suggestions.get(0).getType());
+        assertEquals("Auto", suggestions.get(0).getLabel().get("fi"));
+        assertTrue(searchIndexManager.suggest(" ", null, null, null, null).isEmpty());
+        assertEquals(1, requestCount("/dm_resources/_search"));
+    }
+
+    @Test(expected = DependencyUnavailableException.class)
+    public void testSlowSuggestionsFailWithinBudget() {
+        createManager(LATENCY_MILLIS / 5).suggest("aut", null, null, null, null);
+    }
+
+    private static ModelSearchRequest deepSearchRequest() {
+        ModelSearchRequest request = new ModelSearchRequest();
+        request.setQuery("auto");
+        request.setSortLang("fi");
+        request.setSearchResources(true);
+        request.setIncludeIncomplete(true);
+        return request;
+    }
+
+    private static ResourceSearchRequest resourceSearchRequest() {
+        ResourceSearchRequest request = new ResourceSearchRequest();
+        request.setQuery("auto");
+        request.setSortLang("fi");
+        return request;
+    }
+
+    private static int requestCount(String path) {
+        return requests.getOrDefault(path, new AtomicInteger()).get();
+    }
+
+    private static void respond(HttpExchange exchange,
+                                String body) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+        requests.computeIfAbsent(exchange.getRequestURI().getPath(), path -> new AtomicInteger()).incrementAndGet();
+        try {
+            Thread.sleep(LATENCY_MILLIS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        HttpStub.respondJson(exchange, body);
+    }
+
+    private static String deepResponse() {
+        return "{\"took\":1,\"timed_out\":false,\"_shards\":{\"total\":1,\"successful\":1,\"skipped\":0,\"failed\":0},"
+            + "\"hits\":{\"total\":1,\"max_score\":0.0,\"hits\":[]},"
+            + "\"aggregations\":{\"sterms#group_by_model\":{\"doc_count_error_upper_bound\":0,\"sum_other_doc_count\":0,\"buckets\":["
+            + "{\"key\":\"" + deepHitModel + "\",\"doc_count\":1,\"sterms#sub_group_by_type\":{\"doc_count_error_upper_bound\":0,\"sum_other_doc_count\":0,\"buckets\":["
+            + "{\"key\":\"class\",\"doc_count\":1,\"max#best_class_hit\":{\"value\":1.0},\"top_hits#top_resource_hits\":{\"hits\":{\"total\":1,\"max_score\":1.0,\"hits\":["
+            + "{\"_index\":\"dm_resources\",\"_type\":\"doc\",\"_id\":\"" + deepHitModel + "#Auto\",\"_score\":1.0,"
+            + "\"_source\":{\"id\":\"" + deepHitModel + "#Auto\",\"isDefinedBy\":\"" + deepHitModel + "\",\"status\":\"VALID\",\"type\":\"class\",\"label\":{\"fi\":\"Auto\"}}}"
+            + "]}}}]}}]}},\"status\":200}";
+    }
+
+    private static String suggestResponse() {
+        return "{\"took\":1,\"timed_out\":false,\"_shards\":{\"total\":1,\"successful\":1,\"skipped\":0,\"failed\":0},"
+            + "\"hits\":{\"total\":0,\"max_score\":0.0,\"hits\":[]},"
+            + "\"suggest\":{\"completion#label\":[{\"text\":\"aut\",\"offset\":0,\"length\":3,\"options\":["
+            + "{\"text\":\"Auto\",\"_index\":\"dm_resources\",\"_type\":\"doc\",\"_id\":\"" + NAMESPACE + "a#Auto\",\"_score\":1.0,"
+            + "\"_source\":{\"id\":\"" + NAMESPACE + "a#Auto\",\"type\":\"class\",\"label\":{\"fi\":\"Auto\"}},"
+            + "\"contexts\":{\"type\":[\"class\"]}}"
+            + "]}]},\"status\":200}";
+    }
+
+    private static String modelResponse() {
+        return "{\"took\":1,\"timed_out\":false,\"_shards\":{\"total\":1,\"successful\":1,\"skipped\":0,\"failed\":0},"
+            + "\"hits\":{\"total\":2,\"max_score\":1.0,\"hits\":["
+            + modelHit("a", "Autot") + "," + modelHit("b", "Autoilu")
+            + "]},\"status\":200}";
+    }
+
+    private static String modelHit(String prefix,
+                                   String label) {
+        return "{\"_index\":\"dm_models\",\"_type\":\"doc\",\"_id\":\"" + NAMESPACE + prefix + "\",\"_score\":1.0,"
+            + "\"_source\":{\"id\":\"" + NAMESPACE + prefix + "\",\"prefix\":\"" + prefix + "\",\"status\":\"VALID\",\"label\":{\"fi\":\"" + label + "\"}}}";
+    }
+}
@@ -0,0 +1,45 @@
+package fi.vm.yti.datamodel.api.index;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.elasticsearch.action.search.SearchRequest;
+import org.junit.Test;
+import org.skyscreamer.jsonassert.JSONAssert;
+import org.skyscreamer.jsonassert.JSONCompareMode;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import fi.vm.yti.datamodel.api.config.ApplicationProperties;
+
+import static org.junit.Assert.*;
+
+public class SuggestQueryFactoryTest {
+
+    SuggestQueryFactory factory = new SuggestQueryFactory(new ObjectMapper(), new ApplicationProperties());
+
+    @Test
+    public void testSuggestRequestWithContexts() throws Exception {
+        var expected = EsUtils.getJsonString("/es/suggestrequest.json");
+        SearchRequest searchRequest = factory.createQuery("aut", Collections.singleton("class"), null, Collections.singleton("http://uri.suomi.fi/datamodel/ns/test"), null);
+        JSONAssert.assertEquals(expected, searchRequest.source().toString(), JSONCompareMode.LENIENT);
+        assertArrayEquals(new String[]{ "dm_resources" }, searchRequest.indices());
+    }
+
+    @Test
+    public void testSizeIsLimited() {
+        SearchRequest searchRequest = factory.createQuery("aut", null, null, null, 1000);
+        assertTrue(searchRequest.source().toString().contains("\"size\":50"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSize() {
+        factory.createQuery("aut", null, null, null, 0);
+    }
+
+    @Test
+    public void testInputsStartFromEveryWord() {
+        assertEquals(Arrays.asList("Henkilön nimi", "nimi", "Kuorma-auto", "auto"),
+            SuggestQueryFactory.suggestInputs(Arrays.asList("Henkilön nimi", "Kuorma-auto", "nimi")));
+    }
+}
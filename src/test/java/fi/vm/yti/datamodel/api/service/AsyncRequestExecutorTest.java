@@ -0,0 +1,337 @@
+package fi.vm.yti.datamodel.api.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.TimeoutHandler;
+import javax.ws.rs.core.Response;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import fi.vm.yti.datamodel.api.HttpStub;
+import fi.vm.yti.datamodel.api.config.ApplicationProperties;
+
+import static org.junit.Assert.*;
+
+/**
+ * Load test runs against a SPARQL endpoint stub with fixed latency.
+ */
+public class AsyncRequestExecutorTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncRequestExecutorTest.class.getName());
+
+    private static final long LATENCY_MILLIS = 200;
+    private static final int JETTY_THREADS = 8;
+
+    private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+    private static HttpStub server;
+    private static JenaClient jenaClient;
+    private static String sparqlService;
+
+    private AsyncRequestExecutor asyncRequestExecutor;
+
+    @BeforeClass
+    public static void startEndpoint() throws IOException {
+        server = HttpStub.create()
+            .handle("/core/sparql", exchange -> {
+                exchange.getRequestBody().readAllBytes();
+                try {
+                    Thread.sleep(LATENCY_MILLIS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                HttpStub.respond(exchange, "application/n-triples", new byte[0]);
+            })
+            .handle("/core/data", exchange -> HttpStub.respond(exchange, "text/turtle", "<urn:s> <urn:p> <urn:o> .".getBytes(StandardCharsets.UTF_8)))
+            .concurrent()
+            .start();
+
+        ApplicationProperties properties = new ApplicationProperties();
+        properties.setEndpoint(server.url());
+        EndpointServices endpointServices = new EndpointServices(properties);
+        sparqlService = endpointServices.getCoreSparqlAddress();
+        jenaClient = new JenaClient(endpointServices, properties, new RemoteDependencyRegistry(), new DatasetGeneration());
+        // Warm up HTTP client so that it is not measured as part of the first run
+        jenaClient.constructFromService("CONSTRUCT WHERE { ?s ?p ?o }", sparqlService);
+    }
+
+    @AfterClass
+    public static void stopEndpoint() {
+        server.stop();
+        timer.shutdownNow();
+    }
+
+    @After
+    public void shutdown() {
+        if (asyncRequestExecutor != null) {
+            asyncRequestExecutor.shutdown();
+        }
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void testResponseIsResumed() throws Exception {
+        asyncRequestExecutor = new AsyncRequestExecutor(2, 2, 1000, false);
+        TestAsyncResponse response = new TestAsyncResponse();
+        asyncRequestExecutor.submit(response, () -> Response.ok("done").build());
+        assertEquals("done", ((Response) response.result.get(1, TimeUnit.SECONDS)).getEntity());
+    }
+
+    @Test
+    public void testExceptionIsResumed() throws Exception {
+        asyncRequestExecutor = new AsyncRequestExecutor(2, 2, 1000, false);
+        TestAsyncResponse response = new TestAsyncResponse();
+        asyncRequestExecutor.submit(response, () -> {
+            throw new DependencyUnavailableException("fuseki", "Circuit breaker is open");
+        });
+        assertTrue(response.result.get(1, TimeUnit.SECONDS) instanceof DependencyUnavailableException);
+    }
+
+    @Test
+    public void testTimeoutResumesWithServiceUnavailable() throws Exception {
+        asyncRequestExecutor = new AsyncRequestExecutor(2, 2, 100, false);
+        CountDownLatch release = new CountDownLatch(1);
+        TestAsyncResponse response = new TestAsyncResponse();
+        asyncRequestExecutor.submit(response, blockUntil(release));
+        assertEquals(503, ((Response) response.result.get(1, TimeUnit.SECONDS)).getStatus());
+        release.countDown();
+    }
+
+    @Test
+    public void testStreamOfTimedOutRequestIsClosed() throws Exception {
+        asyncRequestExecutor = new AsyncRequestExecutor(2, 2, 100, false);
+        RemoteDependency fuseki = new RemoteDependency("fuseki", 1, 50, 5000, 5000, true, 10000, timer);
+        Client client = ClientBuilder.newClient();
+        CountDownLatch timedOut = new CountDownLatch(1);
+        TestAsyncResponse response = new TestAsyncResponse();
+        response.result.thenRun(timedOut::countDown);
+        try {
+            asyncRequestExecutor.submit(response, () -> {
+                try {
+                    timedOut.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                return fuseki.callHttpStream(() -> client.target(server.url() + "/core/data").request().get());
+            });
+            assertEquals(503, ((Response) response.result.get(1, TimeUnit.SECONDS)).getStatus());
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (fuseki.getStatus().get("successfulCalls").equals(0L) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(0, fuseki.getStatus().get("activeCalls"));
+            assertEquals(1L, fuseki.getStatus().get("successfulCalls"));
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void testFullQueueResumesWithServiceUnavailable() throws Exception {
+        asyncRequestExecutor = new AsyncRequestExecutor(1, 1, 5000, false);
+        CountDownLatch release = new CountDownLatch(1);
+        TestAsyncResponse running = new TestAsyncResponse();
+        TestAsyncResponse queued = new TestAsyncResponse();
+        TestAsyncResponse rejected = new TestAsyncResponse();
+        asyncRequestExecutor.submit(running, blockUntil(release));
+        asyncRequestExecutor.submit(queued, blockUntil(release));
+        asyncRequestExecutor.submit(rejected, blockUntil(release));
+
+        Response response = (Response) rejected.result.get(1, TimeUnit.SECONDS);
+        assertEquals(503, response.getStatus());
+        assertNotNull(response.getHeaderString("Retry-After"));
+        release.countDown();
+        assertEquals(200, ((Response) queued.result.get(1, TimeUnit.SECONDS)).getStatus());
+    }
+
+    @Test
+    public void testSecurityContextIsPropagated() throws Exception {
+        asyncRequestExecutor = new AsyncRequestExecutor(2, 2, 1000, false);
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("user", "password"));
+        TestAsyncResponse response = new TestAsyncResponse();
+        asyncRequestExecutor.submit(response, () -> Response.ok(SecurityContextHolder.getContext().getAuthentication().getName()).build());
+        assertEquals("user", ((Response) response.result.get(1, TimeUnit.SECONDS)).getEntity());
+    }
+
+    /**
+     * Sends slow Fuseki requests and fast requests to a Jetty sized worker pool. Synchronous handling keeps workers
+     * blocked for the whole Fuseki call, asynchronous handling frees them as soon as the request is submitted.
+     */
+    @Test
+    public void testThroughputWithSlowFuseki() throws Exception {
+        asyncRequestExecutor = new AsyncRequestExecutor(32, 256, 10000, false);
+        int slowRequests = 48;
+        int fastRequests = 48;
+
+        long[] sync = runLoad(false, slowRequests, fastRequests);
+        long[] async = runLoad(true, slowRequests, fastRequests);
+
+        logger.info("{} Fuseki requests with {} ms latency and {} fast requests on {} Jetty threads: synchronous {} ms, fast requests {} ms; asynchronous {} ms, fast requests {} ms",
+            slowRequests, LATENCY_MILLIS, fastRequests, JETTY_THREADS, sync[0], sync[1], async[0], async[1]);
+
+        assertTrue(async[0] < sync[0]);
+        assertTrue(async[1] < sync[1]);
+    }
+
+    /**
+     * @return Time until all requests are done and time until all fast requests are done
+     */
+    private long[] runLoad(boolean async,
+                           int slowRequests,
+                           int fastRequests) throws Exception {
+        ExecutorService jetty = Executors.newFixedThreadPool(JETTY_THREADS);
+        List<CompletableFuture<Object>> slow = new ArrayList<>();
+        List<CompletableFuture<Object>> fast = new ArrayList<>();
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < slowRequests; i++) {
+                TestAsyncResponse response = new TestAsyncResponse();
+                slow.add(response.result);
+                Supplier<Response> request = () -> Response.ok(jenaClient.constructFromService("CONSTRUCT WHERE { ?s ?p ?o }", sparqlService)).build();
+                jetty.execute(() -> {
+                    if (async) {
+                        asyncRequestExecutor.submit(response, request);
+                    } else {
+                        response.resume(request.get());
+                    }
+                });
+            }
+            for (int i = 0; i < fastRequests; i++) {
+                CompletableFuture<Object> response = new CompletableFuture<>();
+                fast.add(response);
+                jetty.execute(() -> response.complete(Response.ok().build()));
+            }
+            CompletableFuture.allOf(fast.toArray(new CompletableFuture<?>[0])).get(30, TimeUnit.SECONDS);
+            long fastDone = (System.nanoTime() - start) / 1000000;
+            CompletableFuture.allOf(slow.toArray(new CompletableFuture<?>[0])).get(30, TimeUnit.SECONDS);
+            for (CompletableFuture<Object> result : slow) {
+                assertEquals(200, ((Response) result.get()).getStatus());
+            }
+            return new long[]{ (System.nanoTime() - start) / 1000000, fastDone };
+        } finally {
+            jetty.shutdownNow();
+        }
+    }
+
+    private static Supplier<Response> blockUntil(CountDownLatch release) {
+        return () -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return Response.ok().build();
+        };
+    }
+
+    /**
+     * Minimal suspended response with the timeout behaviour of Jersey
+     */
+    private static class TestAsyncResponse implements AsyncResponse {
+
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+        private volatile TimeoutHandler timeoutHandler;
+
+        @Override
+        public boolean resume(Object response) {
+            return result.complete(response);
+        }
+
+        @Override
+        public boolean resume(Throwable response) {
+            return result.complete(response);
+        }
+
+        @Override
+        public boolean cancel() {
+            return result.cancel(false);
+        }
+
+        @Override
+        public boolean cancel(int retryAfter) {
+            return cancel();
+        }
+
+        @Override
+        public boolean cancel(Date retryAfter) {
+            return cancel();
+        }
+
+        @Override
+        public boolean isSuspended() {
+            return !result.isDone();
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return result.isCancelled();
+        }
+
+        @Override
+        public boolean isDone() {
+            return result.isDone();
+        }
+
+        @Override
+        public boolean setTimeout(long time,
+                                  TimeUnit unit) {
+            timer.schedule(() -> {
+                if (!result.isDone()) {
+                    timeoutHandler.handleTimeout(this);
+                }
+            }, time, unit);
+            return true;
+        }
+
+        @Override
+        public void setTimeoutHandler(TimeoutHandler handler) {
+            this.timeoutHandler = handler;
+        }
+
+        @Override
+        public Collection<Class<?>> register(Class<?> callback) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public Map<Class<?>, Collection<Class<?>>> register(Class<?> callback,
+                                                                      Class<?>... callbacks) {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public Collection<Class<?>> register(Object callback) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public Map<Class<?>, Collection<Class<?>>> register(Object callback,
+                                                                      Object... callbacks) {
+            return Collections.emptyMap();
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package fi.vm.yti.datamodel.api.service;
+
+import java.io.IOException;
+import java.util.Calendar;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.system.Txn;
+import org.apache.jena.vocabulary.DCTerms;
+import org.apache.jena.vocabulary.OWL;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import org.apache.jena.vocabulary.XSD;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpHandler;
+
+import fi.vm.yti.datamodel.api.HttpStub;
+import fi.vm.yti.datamodel.api.config.ApplicationProperties;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.json.Json;
+import jakarta.json.stream.JsonGenerator;
+
+import static org.junit.Assert.*;
+
+/**
+ * Generates model and resource contexts against a minimal Fuseki stand-in and checks that they are served from cache
+ * until the model is written through GraphManager
+ */
+public class ContextWriterTest {
+
+    private static final String MODEL = "http://uri.suomi.fi/datamodel/ns/junit";
+    private static final String CLASS = MODEL + "#TestClass";
+    private static final String PREDICATE = MODEL + "#name";
+
+    private static final AtomicInteger queryCount = new AtomicInteger();
+    private static Dataset dataset;
+    private static HttpStub server;
+    private static ContextWriter contextWriter;
+    private static GraphManager graphManager;
+
+    @BeforeClass
+    public static void startEndpoint() throws IOException {
+        dataset = DatasetFactory.createTxnMem();
+        HttpHandler query = HttpStub.sparqlQuery(dataset);
+        server = HttpStub.create()
+            .handle("/core/update", HttpStub.sparqlUpdate(dataset))
+            .handle("/core/sparql", exchange -> {
+                queryCount.incrementAndGet();
+                query.handle(exchange);
+            })
+            .handle("/core/data", HttpStub.graphStore(dataset))
+            .start();
+
+        DatasetGeneration generation = new DatasetGeneration();
+        ApplicationProperties properties = new ApplicationProperties();
+        properties.setEndpoint(server.url());
+        EndpointServices endpointServices = new EndpointServices(properties);
+        JenaClient jenaClient = new JenaClient(endpointServices, properties, new RemoteDependencyRegistry(), generation);
+        graphManager = new GraphManager(endpointServices, jenaClient, null, new ModelManager(), null, null,
+            new GraphStatistics(endpointServices, jenaClient), properties);
+        JsonSchemaWriter jsonSchemaWriter = new JsonSchemaWriter(endpointServices,
+            Json.createWriterFactory(Map.of(JsonGenerator.PRETTY_PRINTING, true)), graphManager);
+        contextWriter = new ContextWriter(endpointServices, jsonSchemaWriter, generation, new ListCache(new SimpleMeterRegistry()));
+    }
+
+    @AfterClass
+    public static void stopEndpoint() {
+        server.stop();
+    }
+
+    @Before
+    public void reset() {
+        Txn.executeWrite(dataset, () -> dataset.asDatasetGraph().clear());
+        // Written through GraphManager so that contexts cached by earlier tests are not used
+        graphManager.putToGraph(modelGraph(), MODEL);
+        graphManager.putToGraph(classGraph(), CLASS);
+        graphManager.insertNewGraphReferenceToModel(CLASS, MODEL);
+    }
+
+    @Test
+    public void testContextChangesAfterPredicateIsAdded() {
+        ContextWriter.JsonLdContext before = contextWriter.getModelContext(MODEL).orElseThrow();
+        assertTrue(before.getContext().contains("\"TestClass\""));
+        assertFalse(before.getContext().contains("\"name\""));
+        assertFalse(before.getTag().isWeak());
+
+        graphManager.putToGraph(predicateGraph(), PREDICATE);
+        graphManager.insertNewGraphReferenceToModel(PREDICATE, MODEL);
+
+        ContextWriter.JsonLdContext after = contextWriter.getModelContext(MODEL).orElseThrow();
+        assertTrue(after.getContext().contains("\"name\""));
+        assertNotEquals(before.getTag(), after.getTag());
+    }
+
+    @Test
+    public void testContextIsCachedUntilWrite() {
+        ContextWriter.JsonLdContext first = contextWriter.getModelContext(MODEL).orElseThrow();
+        int queries = queryCount.get();
+        assertSame(first, contextWriter.getModelContext(MODEL).orElseThrow());
+        assertEquals(queries, queryCount.get());
+
+        graphManager.updateContentModified(MODEL);
+        ContextWriter.JsonLdContext regenerated = contextWriter.getModelContext(MODEL).orElseThrow();
+        assertEquals(queries + 1, queryCount.get());
+        assertEquals(first.getTag(), regenerated.getTag());
+    }
+
+    @Test
+    public void testResourceContext() {
+        ContextWriter.JsonLdContext context = contextWriter.getResourceContext(CLASS).orElseThrow();
+        assertTrue(context.getContext().contains("\"TestClass\""));
+        int queries = queryCount.get();
+        contextWriter.getResourceContext(CLASS);
+        assertEquals(queries, queryCount.get());
+    }
+
+    @Test
+    public void testMissingModel() {
+        assertEquals(Optional.empty(), contextWriter.getModelContext(MODEL + "-missing"));
+        assertEquals(Optional.empty(), contextWriter.getResourceContext(MODEL + "#Missing"));
+    }
+
+    private static Model modelGraph() {
+        Model model = ModelFactory.createDefaultModel();
+        model.add(model.createResource(MODEL), RDF.type, OWL.Ontology);
+        return model;
+    }
+
+    private static Model classGraph() {
+        Model model = ModelFactory.createDefaultModel();
+        Resource resource = model.createResource(CLASS);
+        model.add(resource, RDF.type, RDFS.Class);
+        model.add(resource, RDFS.label, "Test class");
+        return model;
+    }
+
+    private static Model predicateGraph() {
+        Model model = ModelFactory.createDefaultModel();
+        Resource resource = model.createResource(PREDICATE);
+        model.add(resource, RDF.type, OWL.DatatypeProperty);
+        model.add(resource, RDFS.range, XSD.xstring);
+        model.add(resource, DCTerms.modified, model.createTypedLiteral(Calendar.getInstance()));
+        return model;
+    }
+}
@@ -0,0 +1,171 @@
+package fi.vm.yti.datamodel.api.service;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.RDFList;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.system.Txn;
+import org.apache.jena.update.UpdateFactory;
+import org.apache.jena.vocabulary.DCTerms;
+import org.apache.jena.vocabulary.OWL;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpHandler;
+
+import fi.vm.yti.datamodel.api.HttpStub;
+import fi.vm.yti.datamodel.api.config.ApplicationProperties;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs change sets against a minimal SPARQL Update endpoint that, like Fuseki, executes each request in one write
+ * transaction over an in-memory dataset.
+ */
+public class GraphChangeSetTest {
+
+    private static final String MODEL = "http://uri.suomi.fi/datamodel/ns/junit";
+    private static final String CLASS = MODEL + "#TestClass";
+
+    private static final AtomicInteger requestCount = new AtomicInteger();
+    private static Dataset dataset;
+    private static HttpStub server;
+    private static DatasetGeneration generation;
+    private static JenaClient jenaClient;
+
+    @BeforeClass
+    public static void startEndpoint() throws IOException {
+        dataset = DatasetFactory.createTxnMem();
+        HttpHandler update = HttpStub.sparqlUpdate(dataset);
+        server = HttpStub.create()
+            .handle("/core/update", exchange -> {
+                requestCount.incrementAndGet();
+                update.handle(exchange);
+            })
+            .start();
+
+        generation = new DatasetGeneration();
+        ApplicationProperties properties = new ApplicationProperties();
+        properties.setEndpoint(server.url());
+        jenaClient = new JenaClient(new EndpointServices(properties), properties, new RemoteDependencyRegistry(), generation);
+    }
+
+    @AfterClass
+    public static void stopEndpoint() {
+        server.stop();
+    }
+
+    @Before
+    public void reset() {
+        Txn.executeWrite(dataset, () -> dataset.asDatasetGraph().clear());
+        Txn.executeWrite(dataset, () -> dataset.addNamedModel(MODEL, modelGraph()));
+        requestCount.set(0);
+    }
+
+    @Test
+    public void testChangeSetIsSentInOneRequest() {
+        GraphChangeSet changeSet = new GraphChangeSet()
+            .put(CLASS, classGraph())
+            .update(GraphManager.insertNewGraphReferenceToExportGraphRequest(CLASS, MODEL))
+            .add(MODEL + "#ExportGraph", classGraph())
+            .update(GraphManager.updateContentModifiedRequest(MODEL));
+
+        jenaClient.updateCore(changeSet);
+
+        assertEquals(1, requestCount.get());
+        Txn.executeRead(dataset, () -> {
+            assertTrue(dataset.containsNamedModel(CLASS));
+            assertTrue(dataset.getNamedModel(MODEL + "#ExportGraph").contains(null, RDFS.label, "Test class"));
+        });
+    }
+
+    @Test
+    public void testGraphsDoNotShareBlankNodes() {
+        Model classGraph = classGraph();
+        jenaClient.updateCore(new GraphChangeSet()
+            .put(CLASS, classGraph)
+            .add(MODEL + "#ExportGraph", classGraph));
+
+        Txn.executeRead(dataset, () -> {
+            Model stored = dataset.getNamedModel(CLASS);
+            Model export = dataset.getNamedModel(MODEL + "#ExportGraph");
+            Resource list = stored.getRequiredProperty(stored.createResource(CLASS), DCTerms.language).getResource();
+            Resource exportList = export.getRequiredProperty(export.createResource(CLASS), DCTerms.language).getResource();
+            assertEquals(2, list.as(RDFList.class).size());
+            assertEquals(2, exportList.as(RDFList.class).size());
+            assertNotEquals(list.asNode(), exportList.asNode());
+        });
+    }
+
+    @Test
+    public void testChangeSetIncrementsGeneration() {
+        long organizations = generation.current("urn:yti:organizations");
+        long model = generation.current(MODEL);
+
+        jenaClient.updateCore(new GraphChangeSet().put(CLASS, classGraph()));
+
+        assertNotEquals(model, generation.current(MODEL));
+        assertEquals(organizations, generation.current("urn:yti:organizations"));
+    }
+
+    @Test
+    public void testPutReplacesGraph() {
+        jenaClient.updateCore(new GraphChangeSet().put(CLASS, classGraph()));
+
+        Model renamed = classGraph();
+        renamed.removeAll(null, RDFS.label, null);
+        renamed.add(renamed.createResource(CLASS), RDFS.label, "Renamed class");
+        jenaClient.updateCore(new GraphChangeSet().put(CLASS, renamed));
+
+        Txn.executeRead(dataset, () -> {
+            Model stored = dataset.getNamedModel(CLASS);
+            assertFalse(stored.contains(null, RDFS.label, "Test class"));
+            assertTrue(stored.contains(null, RDFS.label, "Renamed class"));
+        });
+    }
+
+    @Test
+    public void testFailingChangeSetIsNotApplied() {
+        GraphChangeSet changeSet = new GraphChangeSet()
+            .put(CLASS, classGraph())
+            .drop(MODEL)
+            .update(UpdateFactory.create("LOAD <http://localhost:1/missing.ttl> INTO GRAPH <urn:missing>"));
+
+        try {
+            jenaClient.updateCore(changeSet);
+            fail("Expected update to fail");
+        } catch (Exception ex) {
+            // expected
+        }
+
+        Txn.executeRead(dataset, () -> {
+            assertFalse(dataset.containsNamedModel(CLASS));
+            assertTrue(dataset.containsNamedModel(MODEL));
+        });
+    }
+
+    private static Model modelGraph() {
+        Model model = ModelFactory.createDefaultModel();
+        model.add(model.createResource(MODEL), RDF.type, OWL.Ontology);
+        return model;
+    }
+
+    private static Model classGraph() {
+        Model model = ModelFactory.createDefaultModel();
+        Resource resource = model.createResource(CLASS);
+        model.add(resource, RDF.type, RDFS.Class);
+        model.add(resource, RDFS.label, "Test class");
+        model.add(resource, RDFS.isDefinedBy, model.createResource(MODEL));
+        model.add(resource, DCTerms.language, model.createList(model.createLiteral("fi"), model.createLiteral("en")));
+        return model;
+    }
+}
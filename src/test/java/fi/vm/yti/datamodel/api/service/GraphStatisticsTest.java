@@ -0,0 +1,269 @@
+package fi.vm.yti.datamodel.api.service;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.system.Txn;
+import org.apache.jena.vocabulary.DCTerms;
+import org.apache.jena.vocabulary.OWL;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.topbraid.shacl.vocabulary.SH;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import fi.vm.yti.datamodel.api.HttpStub;
+import fi.vm.yti.datamodel.api.config.ApplicationProperties;
+import fi.vm.yti.datamodel.api.index.ElasticConnector;
+import fi.vm.yti.datamodel.api.model.AbstractResource;
+import fi.vm.yti.datamodel.api.utils.LDHelper;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Counts graphs incrementally through GraphManager against a minimal Fuseki stand-in and compares the counts in memory
+ * and in the statistics graph to the counts of a full reconciliation
+ */
+public class GraphStatisticsTest {
+
+    private static final String LIBRARY = "http://uri.suomi.fi/datamodel/ns/junit";
+    private static final String PROFILE = "http://uri.suomi.fi/datamodel/ns/junitp";
+
+    private static Dataset dataset;
+    private static HttpStub server;
+    private static EndpointServices endpointServices;
+    private static JenaClient jenaClient;
+    private static ApplicationProperties properties;
+    private static DatasetGeneration generation;
+    /* Set to hold the count query of a reconciliation until released */
+    private static volatile CountDownLatch countStarted;
+    private static volatile CountDownLatch countReleased;
+
+    private GraphStatistics graphStatistics;
+    private GraphManager graphManager;
+
+    @BeforeClass
+    public static void startEndpoint() throws IOException {
+        dataset = DatasetFactory.createTxnMem();
+        server = HttpStub.create()
+            .handle("/core/update", HttpStub.sparqlUpdate(dataset))
+            .handle("/core/sparql", GraphStatisticsTest::handleQuery)
+            .handle("/core/data", HttpStub.graphStore(dataset))
+            .concurrent()
+            .start();
+
+        properties = new ApplicationProperties();
+        properties.setEndpoint(server.url());
+        endpointServices = new EndpointServices(properties);
+        generation = new DatasetGeneration();
+        jenaClient = new JenaClient(endpointServices, properties, new RemoteDependencyRegistry(), generation);
+    }
+
+    @AfterClass
+    public static void stopEndpoint() {
+        server.stop();
+    }
+
+    @Before
+    public void reset() {
+        Txn.executeWrite(dataset, () -> {
+            dataset.asDatasetGraph().clear();
+            dataset.addNamedModel(LIBRARY, modelGraph(LIBRARY, "dcap:MetadataVocabulary", "DRAFT"));
+            dataset.addNamedModel(PROFILE, modelGraph(PROFILE, "dcap:DCAP", "VALID"));
+            Model hasPartGraph = ModelFactory.createDefaultModel();
+            addResource(hasPartGraph, LIBRARY, "#Class1", RDFS.Class, "DRAFT");
+            addResource(hasPartGraph, LIBRARY, "#Class2", RDFS.Class, "DRAFT");
+            addResource(hasPartGraph, LIBRARY, "#attribute", OWL.DatatypeProperty, "VALID");
+            dataset.addNamedModel(LIBRARY + "#HasPartGraph", hasPartGraph);
+            Model profileHasPartGraph = ModelFactory.createDefaultModel();
+            addResource(profileHasPartGraph, PROFILE, "#Shape", SH.NodeShape, "VALID");
+            dataset.addNamedModel(PROFILE + "#HasPartGraph", profileHasPartGraph);
+        });
+        graphStatistics = new GraphStatistics(endpointServices, jenaClient);
+        graphManager = new GraphManager(endpointServices, jenaClient, null, new ModelManager(), null, mock(ElasticConnector.class),
+            graphStatistics, properties);
+    }
+
+    @Test
+    public void testCountsAreReconciledOnFirstLoad() {
+        Map<String, Object> counts = graphStatistics.getCounts();
+        assertEquals("1", counts.get("libraries"));
+        assertEquals("1", counts.get("profiles"));
+        assertEquals("2", counts.get("classes"));
+        assertEquals("1", counts.get("shapes"));
+        assertEquals("1", counts.get("attributes"));
+        assertNull(counts.get("associations"));
+        assertEquals(Map.of("DRAFT", 2L), statuses(counts).get("classes"));
+        assertTrue(Txn.calculateRead(dataset, () -> dataset.containsNamedModel(GraphStatistics.STATISTICS_GRAPH)));
+    }
+
+    @Test
+    public void testIncrementalCountsMatchReconciliation() {
+        graphStatistics.getCounts();
+
+        graphManager.createResource(resource(LIBRARY + "#Class3", RDFS.Class, "DRAFT"));
+        graphManager.createResource(resource(LIBRARY + "#association", OWL.ObjectProperty, "INCOMPLETE"));
+        graphManager.updateResource(LIBRARY, LIBRARY + "#Class1", resourceGraph(LIBRARY + "#Class1", RDFS.Class, "DRAFT"),
+            resourceGraph(LIBRARY + "#Class1", RDFS.Class, "VALID"));
+        graphManager.deleteResource(LIBRARY + "#attribute", LIBRARY, resourceGraph(LIBRARY + "#attribute", OWL.DatatypeProperty, "VALID"));
+        graphManager.changeResourceStatuses(LIBRARY, "DRAFT", "RETIRED");
+
+        Map<String, Object> counts = graphStatistics.getCounts();
+        assertEquals("3", counts.get("classes"));
+        assertEquals("1", counts.get("associations"));
+        assertNull(counts.get("attributes"));
+        assertEquals(Map.of("VALID", 1L, "RETIRED", 2L), statuses(counts).get("classes"));
+
+        assertEquals(counts, new GraphStatistics(endpointServices, jenaClient).getCounts());
+        graphStatistics.reconcile();
+        assertEquals(counts, graphStatistics.getCounts());
+    }
+
+    @Test
+    public void testRemovedModelIsSubtracted() {
+        graphStatistics.getCounts();
+        graphManager.removeModel(LDHelper.toIRI(LIBRARY));
+
+        Map<String, Object> counts = graphStatistics.getCounts();
+        assertNull(counts.get("libraries"));
+        assertNull(counts.get("classes"));
+        assertEquals("1", counts.get("shapes"));
+
+        assertEquals(counts, new GraphStatistics(endpointServices, jenaClient).getCounts());
+        graphStatistics.reconcile();
+        assertEquals(counts, graphStatistics.getCounts());
+    }
+
+    @Test
+    public void testReconciliationCorrectsUncountedWrites() {
+        graphStatistics.getCounts();
+        graphManager.putToGraph(resourceGraph(PROFILE + "#Shape2", SH.NodeShape, "DRAFT"), PROFILE + "#Shape2");
+        assertEquals("1", graphStatistics.getCounts().get("shapes"));
+
+        graphStatistics.reconcile();
+        assertEquals("2", graphStatistics.getCounts().get("shapes"));
+        assertEquals(Map.of("VALID", 1L, "DRAFT", 1L), statuses(graphStatistics.getCounts()).get("shapes"));
+    }
+
+    @Test
+    public void testUnchangedCountsAreNotWritten() {
+        graphStatistics.getCounts();
+        Txn.executeWrite(dataset, () -> dataset.removeNamedModel(GraphStatistics.STATISTICS_GRAPH));
+
+        graphStatistics.reconcile();
+        assertFalse(Txn.calculateRead(dataset, () -> dataset.containsNamedModel(GraphStatistics.STATISTICS_GRAPH)));
+
+        long before = generation.current();
+        graphManager.putToGraph(resourceGraph(PROFILE + "#Shape2", SH.NodeShape, "DRAFT"), PROFILE + "#Shape2");
+        assertNotEquals(before, generation.current());
+        before = generation.current();
+        graphStatistics.reconcile();
+        assertTrue(Txn.calculateRead(dataset, () -> dataset.containsNamedModel(GraphStatistics.STATISTICS_GRAPH)));
+        assertEquals(before, generation.current());
+    }
+
+    @Test
+    public void testWriteDuringReconciliationIsCounted() throws Exception {
+        graphStatistics.getCounts();
+        countStarted = new CountDownLatch(1);
+        countReleased = new CountDownLatch(1);
+        try {
+            CompletableFuture<Void> reconciliation = CompletableFuture.runAsync(graphStatistics::reconcile);
+            assertTrue(countStarted.await(10, TimeUnit.SECONDS));
+            CompletableFuture<Void> write = CompletableFuture.runAsync(() -> graphManager.createResource(resource(LIBRARY + "#Class3", RDFS.Class, "DRAFT")));
+            try {
+                write.get(500, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException expected) {
+                // The write waits for the reconciliation
+            }
+            countReleased.countDown();
+            reconciliation.get(10, TimeUnit.SECONDS);
+            write.get(10, TimeUnit.SECONDS);
+        } finally {
+            countReleased.countDown();
+            countStarted = null;
+        }
+
+        assertEquals("3", graphStatistics.getCounts().get("classes"));
+        assertEquals(graphStatistics.getCounts(), new GraphStatistics(endpointServices, jenaClient).getCounts());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Map<String, Long>> statuses(Map<String, Object> counts) {
+        return (Map<String, Map<String, Long>>) counts.get("statuses");
+    }
+
+    private static AbstractResource resource(String id,
+                                             Resource type,
+                                             String status) {
+        Model graph = resourceGraph(id, type, status);
+        AbstractResource resource = mock(AbstractResource.class);
+        when(resource.getId()).thenReturn(id);
+        when(resource.getModelId()).thenReturn(LIBRARY);
+        when(resource.asGraph()).thenReturn(graph);
+        when(resource.asGraphCopy()).thenReturn(ModelFactory.createDefaultModel().add(graph));
+        return resource;
+    }
+
+    private static Model modelGraph(String id,
+                                    String type,
+                                    String status) {
+        Model model = ModelFactory.createDefaultModel();
+        Resource resource = model.createResource(id);
+        resource.addProperty(RDF.type, OWL.Ontology);
+        resource.addProperty(RDF.type, model.createResource(LDHelper.curieToURI(type)));
+        resource.addProperty(OWL.versionInfo, status);
+        return model;
+    }
+
+    private static Model resourceGraph(String id,
+                                       Resource type,
+                                       String status) {
+        Model model = ModelFactory.createDefaultModel();
+        Resource resource = model.createResource(id);
+        resource.addProperty(RDF.type, type);
+        resource.addProperty(RDFS.isDefinedBy, model.createResource(id.substring(0, id.indexOf('#'))));
+        resource.addProperty(OWL.versionInfo, status);
+        return model;
+    }
+
+    private static void addResource(Model hasPartGraph,
+                                    String model,
+                                    String name,
+                                    Resource type,
+                                    String status) {
+        hasPartGraph.add(hasPartGraph.createResource(model), DCTerms.hasPart, hasPartGraph.createResource(model + name));
+        dataset.addNamedModel(model + name, resourceGraph(model + name, type, status));
+    }
+
+    private static void handleQuery(HttpExchange exchange) throws IOException {
+        String query = HttpStub.query(exchange);
+        byte[] results = HttpStub.execute(dataset, query);
+        // Results of the count are held, so writes after it are not counted
+        CountDownLatch started = countStarted;
+        if (started != null && query.contains("GROUP BY") && !query.contains("hasPart")) {
+            started.countDown();
+            try {
+                countReleased.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        HttpStub.respond(exchange, HttpStub.contentType(query), results);
+    }
+}
@@ -0,0 +1,94 @@
+package fi.vm.yti.datamodel.api.service;
+
+import java.io.IOException;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.SSLContext;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.sparql.vocabulary.FOAF;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import fi.vm.yti.datamodel.api.HttpStub;
+import fi.vm.yti.datamodel.api.config.ApplicationProperties;
+
+import static org.junit.Assert.*;
+
+/**
+ * Fetches users from a group management stub that fails before it answers
+ */
+public class GroupManagementServiceTest {
+
+    private static final String USER = "7d3a3c00-5a6b-489b-a3ed-63bb58c26a63";
+
+    private static final AtomicInteger failures = new AtomicInteger();
+    private static final AtomicInteger requests = new AtomicInteger();
+    private static HttpStub server;
+
+    private GroupManagementService groupManagementService;
+    private RemoteDependencyRegistry dependencyRegistry;
+
+    @BeforeClass
+    public static void startServer() throws IOException {
+        server = HttpStub.create()
+            .handle("/private-api/users", exchange -> {
+                requests.incrementAndGet();
+                exchange.getRequestBody().readAllBytes();
+                if (failures.getAndDecrement() > 0) {
+                    HttpStub.respond(exchange, 503);
+                    return;
+                }
+                HttpStub.respondJson(exchange, "[{\"id\":\"" + USER + "\",\"email\":\"test@example.org\",\"firstName\":\"Test\",\"lastName\":\"User\"}]");
+            })
+            .start();
+    }
+
+    @AfterClass
+    public static void stopServer() {
+        server.stop();
+    }
+
+    @Before
+    public void createService() throws NoSuchAlgorithmException {
+        ApplicationProperties properties = new ApplicationProperties();
+        properties.setDefaultGroupManagementAPI(server.url() + "/public-api/");
+        dependencyRegistry = new RemoteDependencyRegistry();
+        groupManagementService = new GroupManagementService(new ClientFactory(SSLContext.getDefault(), properties), properties,
+            new ObjectMapper(), dependencyRegistry);
+        requests.set(0);
+    }
+
+    @After
+    public void shutdown() {
+        dependencyRegistry.shutdown();
+    }
+
+    @Test
+    public void testFailedFetchIsRetried() throws Exception {
+        failures.set(1);
+        groupManagementService.updateUsers().get(10, TimeUnit.SECONDS);
+
+        assertEquals(2, requests.get());
+        Model users = groupManagementService.getUsersAsModel();
+        assertEquals("Test User", users.getResource("urn:uuid:" + USER).getProperty(FOAF.name).getString());
+    }
+
+    @Test
+    public void testUsersAreKeptWhenFetchFails() throws Exception {
+        failures.set(0);
+        groupManagementService.updateUsers().get(10, TimeUnit.SECONDS);
+        failures.set(10);
+        groupManagementService.updateUsers().get(10, TimeUnit.SECONDS);
+
+        assertEquals(4, requests.get());
+        assertEquals(1, groupManagementService.getUsersAsModel().size());
+    }
+}
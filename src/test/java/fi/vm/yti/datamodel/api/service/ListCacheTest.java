@@ -0,0 +1,173 @@
+package fi.vm.yti.datamodel.api.service;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jena.iri.IRIFactory;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.OWL;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpHandler;
+
+import fi.vm.yti.datamodel.api.HttpStub;
+import fi.vm.yti.datamodel.api.config.ApplicationProperties;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.junit.Assert.*;
+
+public class ListCacheTest {
+
+    private static final String MODEL = "http://uri.suomi.fi/datamodel/ns/junit";
+    private static final String CLASS_LIST = "CONSTRUCT { ?class a <" + RDFS.Class.getURI() + "> . ?class <" + RDFS.label.getURI() + "> ?label . } "
+        + "WHERE { GRAPH ?graph { ?class a <" + RDFS.Class.getURI() + "> . ?class <" + RDFS.label.getURI() + "> ?label . }}";
+
+    private static final AtomicInteger queryCount = new AtomicInteger();
+    private static Dataset dataset;
+    private static HttpStub server;
+    private static ApplicationProperties properties;
+    private static EndpointServices endpointServices;
+
+    private final AtomicInteger loads = new AtomicInteger();
+    private SimpleMeterRegistry meterRegistry;
+    private ListCache listCache;
+    private DatasetGeneration generation;
+
+    @BeforeClass
+    public static void startEndpoint() throws IOException {
+        dataset = DatasetFactory.createTxnMem();
+        HttpHandler query = HttpStub.sparqlQuery(dataset);
+        server = HttpStub.create()
+            .handle("/core/update", HttpStub.sparqlUpdate(dataset))
+            .handle("/core/sparql", exchange -> {
+                queryCount.incrementAndGet();
+                query.handle(exchange);
+            })
+            .handle("/core/data", HttpStub.graphStore(dataset))
+            .start();
+        properties = new ApplicationProperties();
+        properties.setEndpoint(server.url());
+        endpointServices = new EndpointServices(properties);
+    }
+
+    @AfterClass
+    public static void stopEndpoint() {
+        server.stop();
+    }
+
+    @Before
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        listCache = new ListCache(meterRegistry);
+        generation = new DatasetGeneration();
+        loads.set(0);
+    }
+
+    @Test
+    public void testListIsLoadedOnceBetweenWrites() {
+        assertEquals("1", list());
+        assertEquals("1", list());
+        assertEquals(1, loads.get());
+
+        generation.graphChanged(MODEL + "#ExportGraph");
+
+        assertEquals("2", list());
+        assertEquals(2, loads.get());
+        assertEquals(1, listCache.getStats().hitCount());
+        assertEquals(2, listCache.getStats().missCount());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "datamodel.lists").tag("result", "hit").functionCounter().count(), 0);
+    }
+
+    @Test
+    public void testParametersArePartOfKey() {
+        listCache.get("models", generation.current(), () -> "a" + loads.incrementAndGet(), "group-a");
+        listCache.get("models", generation.current(), () -> "b" + loads.incrementAndGet(), "group-b");
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testGraphGenerationIsScopedToModel() {
+        long organizations = generation.current("urn:yti:organizations");
+
+        generation.graphChanged(MODEL + "#TestClass");
+        generation.graphsChanged(Arrays.asList(MODEL, MODEL + "#HasPartGraph"));
+        assertEquals(organizations, generation.current("urn:yti:organizations"));
+        assertNotEquals(0, generation.current(MODEL));
+
+        generation.allChanged();
+        assertNotEquals(organizations, generation.current("urn:yti:organizations"));
+        assertEquals(3, generation.current());
+    }
+
+    @Test
+    public void testFailedLoadIsNotCached() {
+        try {
+            listCache.get("classes", generation.current(), () -> {
+                loads.incrementAndGet();
+                throw new IllegalStateException("Fuseki down");
+            });
+            fail("Expected load to fail");
+        } catch (IllegalStateException ex) {
+            // expected
+        }
+        assertEquals("2", list());
+    }
+
+    @Test
+    public void testWritesThroughGraphManagerInvalidateList() {
+        JenaClient jenaClient = new JenaClient(endpointServices, properties, new RemoteDependencyRegistry(), generation);
+        ModelManager modelManager = new ModelManager();
+        JerseyClient jerseyClient = new JerseyClient(jenaClient, endpointServices, properties, new JerseyResponseManager(modelManager, properties),
+            modelManager, null, new RemoteDependencyRegistry(), listCache, generation);
+        GraphManager graphManager = new GraphManager(endpointServices, jenaClient, null, modelManager, null, null,
+            new GraphStatistics(endpointServices, jenaClient), properties);
+
+        Model exportGraph = ModelFactory.createDefaultModel();
+        exportGraph.add(exportGraph.createResource(MODEL), RDF.type, OWL.Ontology);
+        graphManager.putToGraph(exportGraph, MODEL + "#ExportGraph");
+        graphManager.putToGraph(classGraph("First", "First"), MODEL + "#First");
+        assertTrue(classList(jerseyClient).contains("First"));
+        int queries = queryCount.get();
+        classList(jerseyClient);
+        assertEquals(queries, queryCount.get());
+
+        graphManager.addToGraph(classGraph("Second", "Second"), MODEL + "#Second");
+        assertTrue(classList(jerseyClient).contains("Second"));
+
+        graphManager.updateResource(MODEL, MODEL + "#Second", classGraph("Second", "Second"), classGraph("Second", "Renamed"));
+        assertTrue(classList(jerseyClient).contains("Renamed"));
+
+        graphManager.removeGraph(IRIFactory.iriImplementation().create(MODEL + "#First"));
+        assertFalse(classList(jerseyClient).contains("First"));
+        assertEquals(4, listCache.getStats().missCount());
+        assertEquals(1, listCache.getStats().hitCount());
+    }
+
+    private static String classList(JerseyClient jerseyClient) {
+        return (String) jerseyClient.constructCachedListFromCore("classes", CLASS_LIST).getEntity();
+    }
+
+    private static Model classGraph(String name,
+                                    String label) {
+        Model model = ModelFactory.createDefaultModel();
+        Resource resource = model.createResource(MODEL + "#" + name);
+        model.add(resource, RDF.type, RDFS.Class);
+        model.add(resource, RDFS.label, label);
+        return model;
+    }
+
+    private String list() {
+        return listCache.get("classes", generation.current(), () -> String.valueOf(loads.incrementAndGet()));
+    }
+}
@@ -0,0 +1,183 @@
+package fi.vm.yti.datamodel.api.service;
+
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.DCTerms;
+import org.apache.jena.vocabulary.OWL;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import org.apache.jena.vocabulary.SKOS;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import fi.vm.yti.datamodel.api.model.ModelSummary;
+import fi.vm.yti.datamodel.api.utils.LDHelper;
+
+import static org.junit.Assert.*;
+
+/**
+ * Filters and pages a synthetic list of 5000 models contributed by 100 organizations, the size of the model list
+ * query result in a large installation. The benchmark compares the earlier per request copy and filter of the
+ * whole list to paging the projection.
+ */
+public class ModelListManagerTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(ModelListManagerTest.class.getName());
+
+    private static final int MODELS = 5000;
+    private static final int ORGANIZATIONS = 100;
+    private static final String NAMESPACE = "http://uri.suomi.fi/datamodel/ns/";
+
+    private static Model graph;
+    private static ModelListManager.ModelList modelList;
+
+    @BeforeClass
+    public static void createModels() {
+        graph = syntheticModels();
+        modelList = ModelListManager.ModelList.of(graph);
+    }
+
+    @Test
+    public void testProjection() {
+        assertEquals(MODELS, modelList.getSummaries().size());
+        ModelSummary first = modelList.getSummaries().get(0);
+        assertEquals("m0000", first.getPrefix());
+        assertEquals(Collections.singleton(organization(0)), first.getOrganizations());
+        assertEquals(Collections.singleton("P0"), first.getServiceCategories());
+        assertEquals("Malli 0", first.getLabels().get("fi"));
+        assertNotNull(first.getModified());
+    }
+
+    @Test
+    public void testAnonymousDoesNotSeeIncompleteModels() {
+        ModelListManager.ModelPage page = modelList.page(ModelListManager.visibility(false, true, Collections.emptySet()), null, 0, null);
+        assertEquals(MODELS - MODELS / 10, page.getTotalResults());
+        assertFalse(page.getModel().contains(null, OWL.versionInfo, "INCOMPLETE"));
+    }
+
+    @Test
+    public void testEditorSeesIncompleteModelsOfOwnOrganization() {
+        Set<UUID> editable = Collections.singleton(organization(10));
+        ModelListManager.ModelPage page = modelList.page(ModelListManager.visibility(false, false, editable)
+            .and(ModelListManager.filter(null, "INCOMPLETE", null)), null, 0, null);
+        assertEquals(MODELS / ORGANIZATIONS, page.getTotalResults());
+        assertTrue(page.getModel().contains(page.getModel().createResource(NAMESPACE + "m0010"), OWL.versionInfo, "INCOMPLETE"));
+    }
+
+    @Test
+    public void testSuperuserSeesAllModels() {
+        assertEquals(MODELS, modelList.page(ModelListManager.visibility(true, false, Collections.emptySet()), null, 0, null).getTotalResults());
+    }
+
+    @Test
+    public void testPageContainsOnlyRequestedModels() {
+        ModelListManager.ModelPage page = modelList.page(ModelListManager.visibility(true, false, Collections.emptySet())
+            .and(ModelListManager.filter("P3", null, organization(3))), null, 10, 20);
+
+        List<Resource> models = page.getModel().listSubjectsWithProperty(OWL.versionInfo).toList();
+        assertEquals(MODELS / ORGANIZATIONS, page.getTotalResults());
+        assertEquals(20, models.size());
+        assertTrue(models.stream().allMatch(model -> model.hasProperty(DCTerms.contributor, page.getModel().createResource("urn:uuid:" + organization(3)))));
+        assertTrue(page.getModel().contains(null, SKOS.prefLabel, page.getModel().createLiteral("Organisaatio 3", "fi")));
+        assertEquals(LDHelper.PREFIX_MAP.get("dcterms"), page.getModel().getNsPrefixURI("dcterms"));
+    }
+
+    @Test
+    public void testSortByModified() {
+        ModelListManager.ModelPage page = modelList.page(ModelListManager.visibility(true, false, Collections.emptySet()), ModelListManager.SORT_MODIFIED, 0, 1);
+        assertTrue(page.getModel().contains(page.getModel().createResource(NAMESPACE + "m4999"), OWL.versionInfo));
+    }
+
+    @Test
+    public void testOffsetPastEndReturnsEmptyPage() {
+        ModelListManager.ModelPage page = modelList.page(model -> true, null, MODELS + 1, 10);
+        assertEquals(MODELS, page.getTotalResults());
+        assertTrue(page.getModel().isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSort() {
+        modelList.page(model -> true, "size", 0, 10);
+    }
+
+    @Test
+    public void benchmarkModelList() {
+        ModelManager modelManager = new ModelManager();
+        Set<UUID> editable = Collections.singleton(organization(1));
+        int rounds = 5;
+
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            Model copy = ModelFactory.createDefaultModel().setNsPrefixes(graph.getNsPrefixMap()).add(graph);
+            for (Resource model : copy.listSubjectsWithProperty(OWL.versionInfo, "INCOMPLETE").toList()) {
+                if (!editable.contains(UUID.fromString(model.getRequiredProperty(DCTerms.contributor).getResource().getURI().replace("urn:uuid:", "")))) {
+                    copy.remove(model.listProperties());
+                }
+            }
+            assertFalse(modelManager.writeModelToJSONLDString(copy).isEmpty());
+        }
+        long fullList = (System.nanoTime() - start) / rounds / 1000;
+
+        start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            ModelListManager.ModelPage page = modelList.page(ModelListManager.visibility(false, false, editable), ModelListManager.SORT_LABEL, i * 50, 50);
+            assertFalse(modelManager.writeModelToJSONLDString(page.getModel()).isEmpty());
+        }
+        long pagedList = (System.nanoTime() - start) / rounds / 1000;
+
+        start = System.nanoTime();
+        ModelListManager.ModelList.of(graph);
+        long projection = (System.nanoTime() - start) / 1000;
+
+        logger.info("{} models: full list {} us, page of 50 {} us, projection rebuild {} us", MODELS, fullList, pagedList, projection);
+    }
+
+    private static UUID organization(int index) {
+        return UUID.nameUUIDFromBytes(("organization" + index).getBytes());
+    }
+
+    private static Model syntheticModels() {
+        Model model = ModelFactory.createDefaultModel();
+        model.setNsPrefixes(LDHelper.PREFIX_MAP);
+        List<Resource> organizations = IntStream.range(0, ORGANIZATIONS).mapToObj(i -> {
+            Resource org = model.createResource("urn:uuid:" + organization(i));
+            org.addProperty(RDF.type, model.createResource("http://xmlns.com/foaf/0.1/Organization"));
+            org.addProperty(SKOS.prefLabel, model.createLiteral("Organisaatio " + i, "fi"));
+            return org;
+        }).collect(Collectors.toList());
+
+        Calendar modified = Calendar.getInstance();
+        modified.setTimeInMillis(1_600_000_000_000L);
+        for (int i = 0; i < MODELS; i++) {
+            String prefix = String.format("m%04d", i);
+            Resource group = model.createResource("http://urn.fi/URN:NBN:fi:au:ptvl:v" + (i % 20));
+            group.addProperty(RDF.type, model.createResource("http://xmlns.com/foaf/0.1/Group"));
+            group.addProperty(RDFS.label, model.createLiteral("Palvelu " + (i % 20), "fi"));
+            group.addProperty(DCTerms.identifier, "P" + (i % 20));
+
+            modified.add(Calendar.MINUTE, 1);
+            Resource resource = model.createResource(NAMESPACE + prefix);
+            resource.addProperty(RDF.type, OWL.Ontology);
+            resource.addProperty(OWL.versionInfo, i % 10 == 0 ? "INCOMPLETE" : "VALID");
+            resource.addProperty(RDFS.label, model.createLiteral("Malli " + i, "fi"));
+            resource.addProperty(RDFS.label, model.createLiteral("Model " + i, "en"));
+            resource.addProperty(DCTerms.isPartOf, group);
+            resource.addProperty(DCTerms.contributor, organizations.get(i % ORGANIZATIONS));
+            resource.addLiteral(DCTerms.modified, model.createTypedLiteral(modified));
+            resource.addProperty(LDHelper.curieToProperty("dcap:preferredXMLNamespaceName"), NAMESPACE + prefix + "#");
+            resource.addProperty(LDHelper.curieToProperty("dcap:preferredXMLNamespacePrefix"), prefix);
+        }
+        return model;
+    }
+}
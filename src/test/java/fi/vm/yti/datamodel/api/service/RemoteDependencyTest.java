@@ -0,0 +1,291 @@
+package fi.vm.yti.datamodel.api.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.core.Response;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import fi.vm.yti.datamodel.api.HttpStub;
+
+import static org.junit.Assert.*;
+
+/**
+ * Calls a local stub server that injects latency and failures through the resilience layer
+ */
+public class RemoteDependencyTest {
+
+    private static final byte[] BODY = "remote body".getBytes(StandardCharsets.UTF_8);
+    private static final AtomicInteger hits = new AtomicInteger();
+    private static final AtomicInteger flakyFailures = new AtomicInteger();
+    private static final AtomicInteger blockedCalls = new AtomicInteger();
+    private static volatile CountDownLatch slowRelease = new CountDownLatch(0);
+    private static HttpStub server;
+    private static String baseUrl;
+
+    private ScheduledExecutorService retryExecutor;
+    private Client client;
+
+    @BeforeClass
+    public static void startServer() throws IOException {
+        server = HttpStub.create()
+            .handle("/ok", exchange -> respond(exchange, 200))
+            .handle("/fail", exchange -> respond(exchange, 500))
+            .handle("/notfound", exchange -> respond(exchange, 404))
+            .handle("/body", exchange -> {
+                hits.incrementAndGet();
+                HttpStub.respond(exchange, "application/octet-stream", BODY);
+            })
+            .handle("/flaky", exchange -> respond(exchange, flakyFailures.getAndDecrement() > 0 ? 503 : 200))
+            .handle("/latency", exchange -> {
+                // Not counted in hits, timed out requests may complete during the next test
+                sleep(Integer.parseInt(exchange.getRequestURI().getQuery()));
+                HttpStub.respond(exchange, 200);
+            })
+            .handle("/blocked", exchange -> {
+                blockedCalls.incrementAndGet();
+                try {
+                    slowRelease.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                respond(exchange, 200);
+            })
+            .concurrent()
+            .start();
+        baseUrl = server.url();
+    }
+
+    @AfterClass
+    public static void stopServer() {
+        server.stop();
+    }
+
+    @Before
+    public void setUp() {
+        retryExecutor = Executors.newSingleThreadScheduledExecutor();
+        client = ClientBuilder.newClient();
+        // First request initializes the client, which would distort the latency samples
+        client.target(baseUrl + "/ok").request().get().close();
+        hits.set(0);
+        blockedCalls.set(0);
+    }
+
+    @After
+    public void tearDown() {
+        slowRelease.countDown();
+        client.close();
+        retryExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testBreakerOpensOnServerErrorsAndClosesAfterTrialCall() {
+        RemoteDependency dependency = dependency(10, 50, 5000, 200);
+
+        for (int i = 0; i < RemoteDependency.MINIMUM_CALLS; i++) {
+            assertEquals(500, get(dependency, "/fail").getStatus());
+        }
+        assertEquals(RemoteDependency.State.OPEN, dependency.getState());
+
+        try {
+            get(dependency, "/ok");
+            fail("Expected open breaker to reject the call");
+        } catch (DependencyUnavailableException ex) {
+            assertEquals("test", ex.getDependency());
+        }
+        assertEquals(RemoteDependency.MINIMUM_CALLS, hits.get());
+
+        sleep(250);
+        assertEquals(RemoteDependency.State.HALF_OPEN, dependency.getState());
+        assertEquals(200, get(dependency, "/ok").getStatus());
+        assertEquals(RemoteDependency.State.CLOSED, dependency.getState());
+    }
+
+    @Test
+    public void testClientErrorsDoNotOpenBreaker() {
+        RemoteDependency dependency = dependency(10, 50, 5000, 10000);
+
+        for (int i = 0; i < RemoteDependency.WINDOW_SIZE; i++) {
+            assertEquals(404, get(dependency, "/notfound").getStatus());
+        }
+        assertEquals(RemoteDependency.State.CLOSED, dependency.getState());
+    }
+
+    @Test
+    public void testBulkheadRejectsCallsOverLimit() throws Exception {
+        RemoteDependency dependency = dependency(1, 50, 5000, 10000);
+        slowRelease = new CountDownLatch(1);
+
+        CompletableFuture<Response> blocked = CompletableFuture.supplyAsync(() -> get(dependency, "/blocked"));
+        while (blockedCalls.get() == 0) {
+            sleep(10);
+        }
+
+        try {
+            get(dependency, "/ok");
+            fail("Expected full bulkhead to reject the call");
+        } catch (DependencyUnavailableException ex) {
+            // expected
+        }
+
+        slowRelease.countDown();
+        assertEquals(200, blocked.get(5, TimeUnit.SECONDS).getStatus());
+        assertEquals(200, get(dependency, "/ok").getStatus());
+    }
+
+    @Test
+    public void testEntityIsBufferedBeforePermitIsReleased() {
+        RemoteDependency dependency = dependency(1, 50, 5000, 10000);
+
+        Response response = get(dependency, "/body");
+        assertEquals(200, get(dependency, "/ok").getStatus());
+        assertEquals("remote body", response.readEntity(String.class));
+    }
+
+    @Test
+    public void testStreamHoldsPermitUntilClosed() throws IOException {
+        RemoteDependency dependency = dependency(1, 50, 5000, 10000);
+
+        Response response = dependency.callHttpStream(() -> dependency.configureBulk(client).target(baseUrl + "/body").request().get());
+        try {
+            get(dependency, "/ok");
+            fail("Expected open stream to hold the permit");
+        } catch (DependencyUnavailableException ex) {
+            // expected
+        }
+
+        try (InputStream entity = (InputStream) response.getEntity()) {
+            assertEquals("remote body", new String(entity.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        assertEquals(200, get(dependency, "/ok").getStatus());
+        assertEquals(0, dependency.getStatus().get("activeCalls"));
+    }
+
+    @Test
+    public void testStreamOfErrorResponseReleasesPermit() {
+        RemoteDependency dependency = dependency(1, 50, 5000, 10000);
+
+        Response response = dependency.callHttpStream(() -> client.target(baseUrl + "/fail").request().get());
+        assertEquals(500, response.getStatus());
+        assertFalse(response.hasEntity());
+        assertEquals(200, get(dependency, "/ok").getStatus());
+        assertEquals(1L, dependency.getStatus().get("failedCalls"));
+    }
+
+    @Test
+    public void testBulkCallsDoNotAffectTimeout() {
+        RemoteDependency dependency = dependency(10, 300, 5000, 10000);
+
+        for (int i = 0; i < RemoteDependency.MINIMUM_LATENCY_SAMPLES; i++) {
+            get(dependency, "/ok");
+        }
+        assertEquals(300, dependency.getTimeoutMillis());
+
+        for (int i = 0; i < RemoteDependency.MINIMUM_LATENCY_SAMPLES; i++) {
+            dependency.callBulk(() -> {
+                sleep(100);
+                return null;
+            });
+        }
+        assertEquals(300, dependency.getTimeoutMillis());
+        assertEquals(5000, dependency.getBulkTimeoutMillis());
+    }
+
+    @Test
+    public void testTimeoutAdaptsToObservedLatency() {
+        RemoteDependency dependency = dependency(10, 300, 5000, 10000);
+        assertEquals(5000, dependency.getTimeoutMillis());
+
+        for (int i = 0; i < RemoteDependency.MINIMUM_LATENCY_SAMPLES; i++) {
+            get(dependency, "/ok");
+        }
+        assertEquals(300, dependency.getTimeoutMillis());
+
+        for (int i = 0; i < RemoteDependency.MINIMUM_LATENCY_SAMPLES; i++) {
+            get(dependency, "/latency?150");
+        }
+        long timeout = dependency.getTimeoutMillis();
+        assertTrue("Timeout was " + timeout, timeout >= 150 * RemoteDependency.LATENCY_MULTIPLIER && timeout < 5000);
+
+        try {
+            get(dependency, dependency.configure(client), "/latency?" + (timeout + 500));
+            fail("Expected read timeout");
+        } catch (ProcessingException ex) {
+            assertEquals(1L, dependency.getStatus().get("failedCalls"));
+        }
+    }
+
+    @Test
+    public void testRetryWithBackoff() {
+        RemoteDependency dependency = dependency(10, 50, 5000, 10000);
+        flakyFailures.set(2);
+
+        Response response = dependency.callWithRetryAsync(() -> {
+            Response result = get(dependency, "/flaky");
+            if (result.getStatus() >= 500) {
+                throw new IllegalStateException("Server error " + result.getStatus());
+            }
+            return result;
+        }, 3, 10).join();
+
+        assertEquals(200, response.getStatus());
+        assertEquals(3, hits.get());
+    }
+
+    @Test
+    public void testRetryDelayIsBounded() {
+        for (int attempt = 1; attempt < 40; attempt++) {
+            long delay = RemoteDependency.retryDelayMillis(attempt, 100);
+            assertTrue(delay >= 0 && delay <= Math.min(10000, 100L << Math.min(attempt - 1, 16)));
+        }
+    }
+
+    private RemoteDependency dependency(int maxConcurrentCalls,
+                                        long minTimeoutMillis,
+                                        long maxTimeoutMillis,
+                                        long openDurationMillis) {
+        return new RemoteDependency("test", maxConcurrentCalls, minTimeoutMillis, maxTimeoutMillis, maxTimeoutMillis, true, openDurationMillis, retryExecutor);
+    }
+
+    private Response get(RemoteDependency dependency,
+                         String path) {
+        return get(dependency, client, path);
+    }
+
+    private Response get(RemoteDependency dependency,
+                         Client client,
+                         String path) {
+        return dependency.callHttp(() -> client.target(baseUrl + path).request().get());
+    }
+
+    private static void respond(HttpExchange exchange,
+                                int status) throws IOException {
+        hits.incrementAndGet();
+        HttpStub.respond(exchange, status);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
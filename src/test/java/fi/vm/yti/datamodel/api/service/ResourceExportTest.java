@@ -0,0 +1,322 @@
+package fi.vm.yti.datamodel.api.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.rdf.model.Literal;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.system.Txn;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import org.apache.jena.vocabulary.XSD;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.topbraid.shacl.vocabulary.SH;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import fi.vm.yti.datamodel.api.HttpStub;
+import fi.vm.yti.datamodel.api.config.ApplicationProperties;
+import fi.vm.yti.datamodel.api.utils.LanguageQueryFilter;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.json.Json;
+import jakarta.json.stream.JsonGenerator;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+/**
+ * Exports a single resource in the formats of ExportResource from a minimal Fuseki stand-in. RDF formats are
+ * filtered by language while they are parsed from the response of Fuseki, with the fallback chain of the other
+ * endpoints.
+ */
+public class ResourceExportTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResourceExportTest.class.getName());
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static final String MODEL = "http://uri.suomi.fi/datamodel/ns/junit";
+    private static final String CLASS = MODEL + "#TestClass";
+    private static final String LARGE_CLASS = MODEL + "#LargeClass";
+    private static final int LARGE_CLASS_PROPERTIES = 3000;
+
+    private static Dataset dataset;
+    private static HttpStub server;
+    private static EndpointServices endpointServices;
+    private static ModelManager modelManager;
+    private static JerseyClient jerseyClient;
+    private static RemoteDependency fuseki;
+    private static JsonSchemaWriter jsonSchemaWriter;
+
+    @BeforeClass
+    public static void startEndpoint() throws IOException {
+        dataset = DatasetFactory.createTxnMem();
+        Txn.executeWrite(dataset, () -> {
+            dataset.addNamedModel(CLASS, classGraph(CLASS, 3));
+            dataset.addNamedModel(LARGE_CLASS, classGraph(LARGE_CLASS, LARGE_CLASS_PROPERTIES));
+        });
+        server = HttpStub.create()
+            .handle("/core/sparql", HttpStub.sparqlQuery(dataset))
+            .handle("/core/get", HttpStub.graphStore(dataset))
+            .start();
+
+        ApplicationProperties properties = new ApplicationProperties();
+        properties.setEndpoint(server.url());
+        endpointServices = new EndpointServices(properties);
+        DatasetGeneration generation = new DatasetGeneration();
+        RemoteDependencyRegistry dependencyRegistry = new RemoteDependencyRegistry();
+        fuseki = dependencyRegistry.get(RemoteDependencyRegistry.FUSEKI);
+        JenaClient jenaClient = new JenaClient(endpointServices, properties, dependencyRegistry, generation);
+        modelManager = new ModelManager();
+        jerseyClient = new JerseyClient(jenaClient, endpointServices, properties, new JerseyResponseManager(modelManager, properties),
+            modelManager, null, dependencyRegistry, new ListCache(new SimpleMeterRegistry()), generation);
+        GraphManager graphManager = new GraphManager(endpointServices, jenaClient, null, modelManager, null, null,
+            new GraphStatistics(endpointServices, jenaClient), properties);
+        jsonSchemaWriter = new JsonSchemaWriter(endpointServices, Json.createWriterFactory(Map.of(JsonGenerator.PRETTY_PRINTING, true)), graphManager);
+    }
+
+    @AfterClass
+    public static void stopEndpoint() {
+        server.stop();
+    }
+
+    @Test
+    public void testRdfFormatsAreFilteredByLanguage() throws IOException {
+        for (Lang lang : List.of(Lang.TURTLE, Lang.NTRIPLES, Lang.RDFXML, Lang.JSONLD)) {
+            Response response = jerseyClient.getGraphResponseFromService(CLASS, endpointServices.getCoreReadAddress(),
+                lang.getHeaderString(), false, LanguageQueryFilter.parseLanguages("sv, FI", null));
+            assertEquals(200, response.getStatus());
+            assertEquals(lang.getHeaderString(), response.getMediaType().toString());
+
+            Model exported = ModelFactory.createDefaultModel();
+            RDFDataMgr.read(exported, new ByteArrayInputStream(write((StreamingOutput) response.getEntity())), lang);
+            assertEquals(lang.getName(), Set.of("sv"), languages(exported, SH.name));
+            /* Descriptions are only in Finnish */
+            assertEquals(lang.getName(), Set.of("fi"), languages(exported, SH.description));
+            assertTrue(lang.getName(), exported.contains(exported.getResource(CLASS), RDF.type, SH.NodeShape));
+            assertEquals(lang.getName(), 3, exported.listObjectsOfProperty(SH.property).toList().size());
+            assertEquals(lang.getName(), 3, exported.listStatements(null, SH.datatype, XSD.xstring).toList().size());
+        }
+    }
+
+    @Test
+    public void testLanguageRangeMatchesSubtags() {
+        Model exported = filter(classGraph(CLASS, 1), "en");
+        assertEquals(Set.of("en-gb"), languages(exported, SH.name));
+        assertEquals(Set.of("fi"), languages(exported, SH.description));
+        assertEquals(Set.of("en-gb"), languages(filter(classGraph(CLASS, 1), "EN-gb"), SH.name));
+        assertEquals(Set.of("fi", "sv", "en-gb"), languages(filter(classGraph(CLASS, 1), "*"), SH.name));
+    }
+
+    @Test
+    public void testRegionFallsBackToLanguage() {
+        Model exported = filter(classGraph(CLASS, 1), "sv-FI, fi");
+        assertEquals(Set.of("sv"), languages(exported, SH.name));
+    }
+
+    @Test
+    public void testResponseWithoutLanguagesIsPassed() {
+        Response response = jerseyClient.getGraphResponseFromService(CLASS, endpointServices.getCoreReadAddress(), "text/turtle", false, Collections.emptyList());
+        assertEquals(200, response.getStatus());
+        assertTrue(response.getEntity() instanceof InputStream);
+    }
+
+    @Test
+    public void testJsonLdIsWrittenWithOneWriter() throws IOException {
+        Response all = jerseyClient.getGraphResponseFromService(CLASS, endpointServices.getCoreReadAddress(), "application/ld+json", false, Collections.emptyList());
+        Response filtered = jerseyClient.getGraphResponseFromService(CLASS, endpointServices.getCoreReadAddress(), "application/ld+json", false, List.of("fi"));
+        Model stored = Txn.calculateRead(dataset, () -> ModelFactory.createDefaultModel().add(dataset.getNamedModel(CLASS)));
+        ObjectNode expected = (ObjectNode) objectMapper.readTree(modelManager.writeModelToJSONLDString(stored));
+        byte[] written = write((StreamingOutput) all.getEntity());
+        ObjectNode json = (ObjectNode) objectMapper.readTree(written);
+        /* Same context as the JSON-LD of the other endpoints, graph order depends on the parsed graph */
+        assertEquals(expected.remove("@graph").size(), json.remove("@graph").size());
+        assertEquals(expected, json);
+        /* JSON-LD parser lower cases language tags, so the models are compared by value */
+        Model parsed = ModelFactory.createDefaultModel().read(new ByteArrayInputStream(written), null, "JSON-LD");
+        assertTrue(stored.difference(parsed).isEmpty() && parsed.difference(stored).isEmpty());
+        assertEquals(Set.of("fi"), languages(ModelFactory.createDefaultModel()
+            .read(new ByteArrayInputStream(write((StreamingOutput) filtered.getEntity())), null, "JSON-LD"), SH.name));
+    }
+
+    @Test
+    public void testEmptyExportReleasesPermit() {
+        Response empty = mock(Response.class);
+        when(empty.getStatusInfo()).thenReturn(Response.Status.OK);
+        when(empty.hasEntity()).thenReturn(true);
+        when(empty.readEntity(InputStream.class)).thenReturn(InputStream.nullInputStream());
+        JerseyClient client = spy(jerseyClient);
+        Object activeCalls = fuseki.getStatus().get("activeCalls");
+        doReturn(fuseki.callHttpStream(() -> empty)).when(client).getResponseFromURL(anyString(), anyString());
+
+        Response response = client.getGraphsAsResponse("core", Lang.NQUADS.getHeaderString());
+        assertEquals(204, response.getStatus());
+        assertEquals(activeCalls, fuseki.getStatus().get("activeCalls"));
+    }
+
+    @Test
+    public void testMissingResource() {
+        Response response = jerseyClient.getGraphResponseFromService(MODEL + "#Missing", endpointServices.getCoreReadAddress(), "text/turtle", false, List.of("fi"));
+        assertEquals(404, response.getStatus());
+    }
+
+    @Test
+    public void testJsonSchemaIsStreamed() throws IOException {
+        String schema = jsonSchemaWriter.newResourceSchema(CLASS, "fi");
+        assertTrue(schema.contains("Ominaisuus 0"));
+        assertEquals(schema, new String(write(jsonSchemaWriter.newResourceSchemaOutput(CLASS, "fi")), StandardCharsets.UTF_8));
+        assertNull(jsonSchemaWriter.newResourceSchemaOutput(MODEL + "#Missing", "fi"));
+    }
+
+    /**
+     * Filtering while parsing compared to reading the graph, copying the statements in the languages and writing
+     * the copy to a String
+     */
+    @Test
+    public void benchmarkFilteredExport() throws IOException {
+        ByteArrayOutputStream turtle = new ByteArrayOutputStream();
+        Txn.executeRead(dataset, () -> RDFDataMgr.write(turtle, dataset.getNamedModel(LARGE_CLASS), Lang.TURTLE));
+        byte[] source = turtle.toByteArray();
+        List<String> languages = List.of("fi");
+        OutputStream discard = OutputStream.nullOutputStream();
+        LongSupplier allocated = allocatedBytes();
+        int rounds = 5;
+
+        for (int i = 0; i < rounds; i++) {
+            copyAndWrite(source, discard);
+            modelManager.writeFiltered(new ByteArrayInputStream(source), Lang.TURTLE, Lang.TURTLE, languages, discard);
+        }
+
+        long bytes = allocated.getAsLong();
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            copyAndWrite(source, discard);
+        }
+        long copied = (System.nanoTime() - start) / rounds / 1000;
+        long copiedBytes = (allocated.getAsLong() - bytes) / rounds;
+
+        bytes = allocated.getAsLong();
+        start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            modelManager.writeFiltered(new ByteArrayInputStream(source), Lang.TURTLE, Lang.TURTLE, languages, discard);
+        }
+        long streamed = (System.nanoTime() - start) / rounds / 1000;
+        long streamedBytes = (allocated.getAsLong() - bytes) / rounds;
+
+        logger.info("{} properties as Turtle: copied model {} us and {} kB allocated, streamed {} us and {} kB allocated",
+            LARGE_CLASS_PROPERTIES, copied, copiedBytes / 1024, streamed, streamedBytes / 1024);
+    }
+
+    private static void copyAndWrite(byte[] source,
+                                     OutputStream out) throws IOException {
+        Model model = ModelFactory.createDefaultModel();
+        RDFDataMgr.read(model, new ByteArrayInputStream(source), Lang.TURTLE);
+        Model copy = ModelFactory.createDefaultModel().setNsPrefixes(model.getNsPrefixMap());
+        model.listStatements().forEachRemaining(statement -> {
+            if (!statement.getObject().isLiteral() || statement.getLiteral().getLanguage().isEmpty() || statement.getLiteral().getLanguage().equals("fi")) {
+                copy.add(statement);
+            }
+        });
+        out.write(modelManager.writeModelToString(copy, RDFFormat.TURTLE).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Model filter(Model model,
+                                String lang) {
+        ByteArrayOutputStream source = new ByteArrayOutputStream();
+        RDFDataMgr.write(source, model, Lang.NTRIPLES);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            modelManager.writeFiltered(new ByteArrayInputStream(source.toByteArray()), Lang.NTRIPLES, Lang.NTRIPLES,
+                LanguageQueryFilter.parseLanguages(lang, null), out);
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+        Model filtered = ModelFactory.createDefaultModel();
+        RDFDataMgr.read(filtered, new ByteArrayInputStream(out.toByteArray()), Lang.NTRIPLES);
+        return filtered;
+    }
+
+    private static Set<String> languages(Model model,
+                                         Property property) {
+        Set<String> languages = new java.util.HashSet<>();
+        for (Statement statement : model.listStatements(null, property, (RDFNode) null).toList()) {
+            if (statement.getObject().isLiteral() && !statement.getLiteral().getLanguage().isEmpty()) {
+                languages.add(statement.getLiteral().getLanguage().toLowerCase());
+            }
+        }
+        return languages;
+    }
+
+    private static byte[] write(StreamingOutput output) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        output.write(out);
+        return out.toByteArray();
+    }
+
+    private static LongSupplier allocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            return () -> threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return () -> 0L;
+    }
+
+    private static Model classGraph(String classId,
+                                    int propertyCount) {
+        Model model = ModelFactory.createDefaultModel();
+        model.setNsPrefix("sh", SH.NS);
+        Resource shape = model.createResource(classId);
+        shape.addProperty(RDF.type, SH.NodeShape);
+        shape.addProperty(RDF.type, RDFS.Class);
+        shape.addProperty(RDFS.isDefinedBy, model.createResource(MODEL));
+        shape.addProperty(SH.name, model.createLiteral("Testiluokka", "fi"));
+        shape.addProperty(SH.name, model.createLiteral("Test class", "en-GB"));
+        shape.addProperty(SH.name, model.createLiteral("Testklass", "sv"));
+        shape.addProperty(SH.description, model.createLiteral("Kuvaus", "fi"));
+        for (int i = 0; i < propertyCount; i++) {
+            Resource property = model.createResource(classId + "-property-" + i);
+            shape.addProperty(SH.property, property);
+            property.addLiteral(SH.order, i);
+            property.addProperty(SH.path, model.createResource(MODEL + "#property" + i));
+            property.addProperty(SH.datatype, XSD.xstring);
+            property.addProperty(SH.name, model.createLiteral("Ominaisuus " + i, "fi"));
+            property.addProperty(SH.name, model.createLiteral("Property " + i, "en-GB"));
+            property.addProperty(SH.name, model.createLiteral("Egenskap " + i, "sv"));
+            Literal description = model.createLiteral("Ominaisuuden " + i + " kuvaus", "fi");
+            property.addProperty(SH.description, description);
+        }
+        return model;
+    }
+}
@@ -0,0 +1,268 @@
+package fi.vm.yti.datamodel.api.service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.system.Txn;
+import org.apache.jena.vocabulary.DCTerms;
+import org.apache.jena.vocabulary.OWL;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import org.glassfish.jersey.internal.MapPropertiesDelegate;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpHandler;
+
+import fi.vm.yti.datamodel.api.HttpStub;
+import fi.vm.yti.datamodel.api.config.ApplicationProperties;
+import fi.vm.yti.datamodel.api.index.ElasticConnector;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Answers conditional requests of a class and its model before and after updates through GraphManager. The core
+ * service is a minimal Fuseki stand-in over an in-memory dataset, like in GraphChangeSetTest.
+ */
+public class ResourceVersionManagerTest {
+
+    private static final String MODEL = "http://uri.suomi.fi/datamodel/ns/junit";
+    private static final String CLASS = MODEL + "#TestClass";
+    private static final String REQUIRED = "http://uri.suomi.fi/datamodel/ns/required";
+
+    private static final AtomicInteger queryCount = new AtomicInteger();
+    private static Dataset dataset;
+    private static HttpStub server;
+    private static ResourceVersionManager resourceVersionManager;
+    private static GraphManager graphManager;
+    private static JenaClient jenaClient;
+
+    private final AtomicInteger responses = new AtomicInteger();
+
+    @BeforeClass
+    public static void startEndpoint() throws IOException {
+        dataset = DatasetFactory.createTxnMem();
+        HttpHandler query = HttpStub.sparqlQuery(dataset);
+        server = HttpStub.create()
+            .handle("/core/update", HttpStub.sparqlUpdate(dataset))
+            .handle("/core/sparql", exchange -> {
+                queryCount.incrementAndGet();
+                query.handle(exchange);
+            })
+            .handle("/core/data", HttpStub.graphStore(dataset))
+            .start();
+
+        DatasetGeneration generation = new DatasetGeneration();
+        ApplicationProperties properties = new ApplicationProperties();
+        properties.setEndpoint(server.url());
+        EndpointServices endpointServices = new EndpointServices(properties);
+        jenaClient = new JenaClient(endpointServices, properties, new RemoteDependencyRegistry(), generation);
+        graphManager = new GraphManager(endpointServices, jenaClient, null, new ModelManager(), null, mock(ElasticConnector.class),
+            new GraphStatistics(endpointServices, jenaClient), properties);
+        resourceVersionManager = new ResourceVersionManager(jenaClient, endpointServices, generation, new ListCache(new SimpleMeterRegistry()));
+    }
+
+    @AfterClass
+    public static void stopEndpoint() {
+        server.stop();
+    }
+
+    @Before
+    public void reset() {
+        Txn.executeWrite(dataset, () -> {
+            dataset.asDatasetGraph().clear();
+            dataset.addNamedModel(MODEL, modelGraph());
+            dataset.addNamedModel(MODEL + "#ExportGraph", modelGraph().add(classGraph()));
+            dataset.addNamedModel(CLASS, classGraph());
+            dataset.addNamedModel(MODEL + "#HasPartGraph", hasPartGraph());
+            dataset.addNamedModel(REQUIRED, requiredGraph("Required", date(2019)));
+        });
+        // Written through the client so that versions cached by earlier tests are not used
+        jenaClient.updateCore(new GraphChangeSet().put(CLASS, classGraph()));
+    }
+
+    @Test
+    public void testNotModifiedUntilUpdate() {
+        Response first = get(CLASS, null);
+        assertEquals(200, first.getStatus());
+        assertEquals("private, no-cache", first.getHeaderString(HttpHeaders.CACHE_CONTROL));
+        EntityTag tag = first.getEntityTag();
+        assertTrue(tag.isWeak());
+        assertEquals(1, responses.get());
+
+        Response second = get(CLASS, tag);
+        assertEquals(304, second.getStatus());
+        assertEquals(1, responses.get());
+
+        Model updated = classGraph();
+        updated.add(updated.createResource(CLASS), RDFS.comment, "Updated");
+        graphManager.updateResource(MODEL, CLASS, classGraph(), updated);
+
+        Response third = get(CLASS, tag);
+        assertEquals(200, third.getStatus());
+        assertNotEquals(tag, third.getEntityTag());
+        assertEquals(304, get(CLASS, third.getEntityTag()).getStatus());
+    }
+
+    @Test
+    public void testModelIsModifiedByContentChange() {
+        EntityTag tag = get(MODEL, null).getEntityTag();
+        assertEquals(304, get(MODEL, tag).getStatus());
+
+        graphManager.updateContentModified(MODEL);
+
+        Response response = get(MODEL, tag);
+        assertEquals(200, response.getStatus());
+        assertNotEquals(tag, response.getEntityTag());
+    }
+
+    @Test
+    public void testStatusChangeModifiesResource() {
+        Response first = get(CLASS, null);
+        EntityTag tag = first.getEntityTag();
+        Date lastModified = first.getLastModified();
+        assertEquals(304, get(CLASS, tag).getStatus());
+        assertEquals(304, getModifiedSince(CLASS, lastModified).getStatus());
+
+        graphManager.changeResourceStatuses(MODEL, "DRAFT", "VALID");
+
+        Response response = get(CLASS, tag);
+        assertEquals(200, response.getStatus());
+        assertNotEquals(tag, response.getEntityTag());
+        assertTrue(response.getLastModified().after(lastModified));
+        assertEquals(200, getModifiedSince(CLASS, lastModified).getStatus());
+        assertEquals(304, get(CLASS, response.getEntityTag()).getStatus());
+    }
+
+    @Test
+    public void testVersionIsCachedUntilWrite() {
+        get(CLASS, null);
+        int queries = queryCount.get();
+        get(CLASS, null);
+        assertEquals(queries, queryCount.get());
+
+        graphManager.updateContentModified(MODEL);
+        get(CLASS, null);
+        assertEquals(queries + 1, queryCount.get());
+    }
+
+    @Test
+    public void testModelIsModifiedByRequiredModel() {
+        EntityTag modelTag = get(MODEL, null).getEntityTag();
+        EntityTag classTag = get(CLASS, null).getEntityTag();
+        int queries = queryCount.get();
+
+        jenaClient.updateCore(new GraphChangeSet().put(REQUIRED, requiredGraph("Renamed", new GregorianCalendar(2019, Calendar.JUNE, 1))));
+
+        Response response = get(MODEL, modelTag);
+        assertEquals(200, response.getStatus());
+        assertNotEquals(modelTag, response.getEntityTag());
+        assertEquals(queries + 1, queryCount.get());
+        assertEquals(304, get(MODEL, response.getEntityTag()).getStatus());
+        assertEquals(304, get(CLASS, classTag).getStatus());
+        assertEquals(queries + 1, queryCount.get());
+    }
+
+    @Test
+    public void testGraphWithoutVersion() {
+        Response response = get(MODEL + "#Missing", null);
+        assertEquals(200, response.getStatus());
+        assertNull(response.getEntityTag());
+        assertNull(response.getHeaderString(HttpHeaders.CACHE_CONTROL));
+    }
+
+    private Response get(String graph,
+                         EntityTag ifNoneMatch) {
+        ContainerRequest request = request();
+        if (ifNoneMatch != null) {
+            request.header(HttpHeaders.IF_NONE_MATCH, ifNoneMatch.toString());
+        }
+        return respond(graph, request);
+    }
+
+    private Response getModifiedSince(String graph,
+                                      Date ifModifiedSince) {
+        ContainerRequest request = request();
+        request.header(HttpHeaders.IF_MODIFIED_SINCE, DateTimeFormatter.RFC_1123_DATE_TIME.format(ifModifiedSince.toInstant().atZone(ZoneOffset.UTC)));
+        return respond(graph, request);
+    }
+
+    private static ContainerRequest request() {
+        return new ContainerRequest(URI.create("http://localhost/api/"), URI.create("http://localhost/api/v1/class"),
+            "GET", null, new MapPropertiesDelegate(), null);
+    }
+
+    private Response respond(String graph,
+                             ContainerRequest request) {
+        return resourceVersionManager.conditionalResponse((Request) request, graph, () -> {
+            responses.incrementAndGet();
+            return Response.ok("{}").build();
+        });
+    }
+
+    private static Model modelGraph() {
+        Model model = ModelFactory.createDefaultModel();
+        Resource resource = model.createResource(MODEL);
+        model.add(resource, RDF.type, OWL.Ontology);
+        model.add(resource, DCTerms.modified, model.createTypedLiteral(date(2020)));
+        model.add(resource, DCTerms.requires, model.createResource(REQUIRED));
+        return model;
+    }
+
+    /**
+     * Required model is modified before the model, so only the version of the required model changes the tag
+     */
+    private static Model requiredGraph(String label,
+                                       Calendar modified) {
+        Model model = ModelFactory.createDefaultModel();
+        Resource resource = model.createResource(REQUIRED);
+        model.add(resource, RDF.type, OWL.Ontology);
+        model.add(resource, RDFS.label, label);
+        model.add(resource, DCTerms.modified, model.createTypedLiteral(modified));
+        return model;
+    }
+
+    private static Model classGraph() {
+        Model model = ModelFactory.createDefaultModel();
+        Resource resource = model.createResource(CLASS);
+        model.add(resource, RDF.type, RDFS.Class);
+        model.add(resource, RDFS.label, "Test class");
+        model.add(resource, RDFS.isDefinedBy, model.createResource(MODEL));
+        model.add(resource, OWL.versionInfo, "DRAFT");
+        model.add(resource, DCTerms.created, model.createTypedLiteral(date(2020)));
+        model.add(resource, DCTerms.modified, model.createTypedLiteral(date(2021)));
+        return model;
+    }
+
+    private static Model hasPartGraph() {
+        Model model = ModelFactory.createDefaultModel();
+        model.add(model.createResource(MODEL), DCTerms.hasPart, model.createResource(CLASS));
+        return model;
+    }
+
+    private static Calendar date(int year) {
+        return new GregorianCalendar(year, Calendar.JANUARY, 1);
+    }
+}
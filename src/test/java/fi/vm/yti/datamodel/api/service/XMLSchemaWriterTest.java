@@ -0,0 +1,294 @@
+package fi.vm.yti.datamodel.api.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.function.LongSupplier;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.system.Txn;
+import org.apache.jena.vocabulary.DCTerms;
+import org.apache.jena.vocabulary.OWL;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import org.apache.jena.vocabulary.XSD;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.topbraid.shacl.vocabulary.SH;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+import fi.vm.yti.datamodel.api.HttpStub;
+import fi.vm.yti.datamodel.api.config.ApplicationProperties;
+import fi.vm.yti.datamodel.api.utils.LDHelper;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the streamed XML Schema of models to the DOM built one. Models are served from an in-memory dataset by a
+ * minimal Fuseki stand-in, like in ResourceVersionManagerTest.
+ */
+public class XMLSchemaWriterTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(XMLSchemaWriterTest.class.getName());
+
+    private static final String TEST_MODEL = "http://uri.suomi.fi/datamodel/ns/testaa";
+    private static final String GENERATED_MODEL = "http://uri.suomi.fi/datamodel/ns/generated";
+    private static final int GENERATED_CLASSES = 2000;
+
+    private static Dataset dataset;
+    private static HttpStub server;
+    private static XMLSchemaWriter xmlSchemaWriter;
+    private static XmlSchemaDTO generatedSchema;
+
+    @BeforeClass
+    public static void startEndpoint() throws IOException {
+        dataset = DatasetFactory.createTxnMem();
+        Txn.executeWrite(dataset, () -> {
+            addTestModel();
+            addGeneratedModel();
+        });
+        server = HttpStub.create()
+            .handle("/core/sparql", HttpStub.sparqlQuery(dataset))
+            .start();
+
+        ApplicationProperties properties = new ApplicationProperties();
+        properties.setEndpoint(server.url());
+        EndpointServices endpointServices = new EndpointServices(properties);
+        JenaClient jenaClient = new JenaClient(endpointServices, properties, new RemoteDependencyRegistry(), new DatasetGeneration());
+        GraphManager graphManager = new GraphManager(endpointServices, jenaClient, null, new ModelManager(), null, null,
+            new GraphStatistics(endpointServices, jenaClient), properties);
+        xmlSchemaWriter = new XMLSchemaWriter(endpointServices, graphManager);
+        generatedSchema = xmlSchemaWriter.getModelSchema(GENERATED_MODEL, null);
+    }
+
+    @AfterClass
+    public static void stopEndpoint() {
+        server.stop();
+    }
+
+    @Test
+    public void testTestModelAsDom() throws Exception {
+        String dom = xmlSchemaWriter.newModelSchema(TEST_MODEL, null);
+        String streamed = stream(TEST_MODEL);
+
+        assertTrue(dom.contains("TestType"));
+        assertTrue(dom.contains("dcterms:modified"));
+        assertEquals(canonical(dom), canonical(streamed));
+    }
+
+    /**
+     * Generated model is queried once, the schema writers are compared over the same results
+     */
+    @Test
+    public void testGeneratedModelAsDom() throws Exception {
+        String dom = xmlSchemaWriter.toXMLSchema(generatedSchema);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        xmlSchemaWriter.writeXMLSchema(generatedSchema, out);
+
+        assertEquals(GENERATED_CLASSES - 21, generatedSchema.getComplexTypes().size());
+        assertTrue(dom.contains("xs:simpleType"));
+        assertEquals(canonical(dom), canonical(out.toString(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testMissingModel() {
+        assertNull(xmlSchemaWriter.newModelSchemaOutput("http://uri.suomi.fi/datamodel/ns/missing", null));
+    }
+
+    @Test
+    public void testClassSchemaAsDom() throws Exception {
+        for (String classID : new String[]{ GENERATED_MODEL + "#Class4", GENERATED_MODEL + "#Class5", GENERATED_MODEL + "#Class6" }) {
+            String dom = xmlSchemaWriter.newClassSchema(classID, null);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            xmlSchemaWriter.newClassSchemaOutput(classID, null).write(out);
+            assertTrue(dom.contains("xs:complexType"));
+            assertEquals(classID, canonical(dom), canonical(out.toString(StandardCharsets.UTF_8)));
+        }
+        assertNull(xmlSchemaWriter.newClassSchemaOutput(GENERATED_MODEL + "#Missing", null));
+    }
+
+    @Test
+    public void benchmarkSchemaWriters() throws Exception {
+        XmlSchemaDTO schema = generatedSchema;
+        int rounds = 5;
+        OutputStream discard = OutputStream.nullOutputStream();
+        LongSupplier allocated = allocatedBytes();
+
+        long bytes = allocated.getAsLong();
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            discard.write(xmlSchemaWriter.toXMLSchema(schema).getBytes(StandardCharsets.UTF_8));
+        }
+        long dom = (System.nanoTime() - start) / rounds / 1000;
+        long domBytes = (allocated.getAsLong() - bytes) / rounds;
+
+        bytes = allocated.getAsLong();
+        start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            xmlSchemaWriter.writeXMLSchema(schema, discard);
+        }
+        long streamed = (System.nanoTime() - start) / rounds / 1000;
+        long streamedBytes = (allocated.getAsLong() - bytes) / rounds;
+
+        logger.info("{} classes: DOM {} us and {} kB allocated, streamed {} us and {} kB allocated",
+            GENERATED_CLASSES, dom, domBytes / 1024, streamed, streamedBytes / 1024);
+    }
+
+    private static String stream(String modelID) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        xmlSchemaWriter.newModelSchemaOutput(modelID, null).write(out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Serializes the document without indentation, attributes in sorted order
+     */
+    private static String canonical(String xml) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        Document document = factory.newDocumentBuilder().parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+        removeWhitespace(document.getDocumentElement());
+        StringWriter writer = new StringWriter();
+        TransformerFactory.newInstance().newTransformer().transform(new DOMSource(document), new StreamResult(writer));
+        return writer.toString();
+    }
+
+    private static void removeWhitespace(Node node) {
+        Node child = node.getFirstChild();
+        while (child != null) {
+            Node next = child.getNextSibling();
+            if (child.getNodeType() == Node.TEXT_NODE && child.getTextContent().isBlank()) {
+                node.removeChild(child);
+            } else {
+                removeWhitespace(child);
+            }
+            child = next;
+        }
+    }
+
+    private static LongSupplier allocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            return () -> threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return () -> 0L;
+    }
+
+    /**
+     * Test model is in the older format, its classes are described with sh:name like shapes
+     */
+    private static void addTestModel() {
+        Model testModel = ModelFactory.createDefaultModel();
+        RDFDataMgr.read(testModel, XMLSchemaWriterTest.class.getResourceAsStream("/test-model.ttl"), Lang.TURTLE);
+        Resource model = testModel.getResource(TEST_MODEL);
+
+        Model modelGraph = ModelFactory.createDefaultModel().add(model.listProperties());
+        modelGraph.add(model, LDHelper.curieToProperty("iow:contentModified"), modelGraph.createTypedLiteral(new GregorianCalendar(2020, Calendar.MARCH, 1)));
+        dataset.addNamedModel(TEST_MODEL, modelGraph);
+
+        Model hasPartGraph = ModelFactory.createDefaultModel();
+        for (Statement part : model.listProperties(DCTerms.hasPart).toList()) {
+            Resource resource = part.getResource();
+            hasPartGraph.add(part);
+            Model resourceGraph = ModelFactory.createDefaultModel().add(resource.listProperties());
+            resource.listProperties(RDFS.label).forEachRemaining(label -> resourceGraph.add(resource, SH.name, label.getObject()));
+            dataset.addNamedModel(resource.getURI(), resourceGraph);
+        }
+        dataset.addNamedModel(TEST_MODEL + "#HasPartGraph", hasPartGraph);
+    }
+
+    private static void addGeneratedModel() {
+        Model modelGraph = ModelFactory.createDefaultModel();
+        Resource model = modelGraph.createResource(GENERATED_MODEL);
+        model.addProperty(RDF.type, OWL.Ontology);
+        model.addProperty(RDFS.label, modelGraph.createLiteral("Generoitu", "fi"));
+        model.addProperty(RDFS.label, modelGraph.createLiteral("Generated", "en"));
+        model.addProperty(RDFS.comment, modelGraph.createLiteral("Generated model with <markup> & \"quotes\"", "en"));
+        dataset.addNamedModel(GENERATED_MODEL, modelGraph);
+
+        Model hasPartGraph = ModelFactory.createDefaultModel();
+        for (int i = 0; i < GENERATED_CLASSES; i++) {
+            Model classGraph = ModelFactory.createDefaultModel();
+            Resource shape = classGraph.createResource(GENERATED_MODEL + "#Class" + i);
+            hasPartGraph.add(hasPartGraph.createResource(GENERATED_MODEL), DCTerms.hasPart, shape);
+            shape.addProperty(RDF.type, SH.NodeShape);
+            shape.addProperty(SH.name, classGraph.createLiteral("Luokka " + i, "fi"));
+            shape.addProperty(SH.name, classGraph.createLiteral(" Class " + i + " ", "en"));
+            if (i % 2 == 0) {
+                shape.addProperty(SH.description, classGraph.createLiteral("Kuvaus " + i, "fi"));
+            }
+            if (i % 5 == 0) {
+                shape.addProperty(LDHelper.curieToProperty("iow:localName"), "Local class " + i);
+            }
+            if (i % 3 == 0) {
+                shape.addProperty(SH.targetClass, classGraph.createResource("http://example.org/vocabulary#Class" + i));
+            }
+            if (i % 97 == 0) {
+                shape.addLiteral(SH.deactivated, true);
+            }
+            for (int j = 0; j < i % 6; j++) {
+                addProperty(classGraph, shape, i, j);
+            }
+            dataset.addNamedModel(shape.getURI(), classGraph);
+        }
+        dataset.addNamedModel(GENERATED_MODEL + "#HasPartGraph", hasPartGraph);
+    }
+
+    private static void addProperty(Model classGraph,
+                                    Resource shape,
+                                    int i,
+                                    int j) {
+        Resource property = classGraph.createResource();
+        shape.addProperty(SH.property, property);
+        property.addLiteral(SH.order, j);
+        property.addProperty(SH.path, classGraph.createResource(GENERATED_MODEL + "#property" + j));
+        property.addProperty(SH.name, classGraph.createLiteral("Ominaisuus " + j, "fi"));
+        property.addProperty(SH.description, classGraph.createLiteral("Property " + j + " of class " + i, "en"));
+        switch (j) {
+            case 0:
+                property.addProperty(SH.datatype, XSD.xstring);
+                property.addLiteral(SH.minCount, 1);
+                property.addLiteral(SH.maxCount, 1);
+                break;
+            case 1:
+                property.addProperty(SH.node, classGraph.createResource(GENERATED_MODEL + "#Class" + (i + 1)));
+                break;
+            case 2:
+                property.addProperty(SH.datatype, XSD.integer);
+                property.addLiteral(SH.maxLength, 10);
+                break;
+            case 3:
+                property.addProperty(SH.datatype, XSD.xstring);
+                property.addProperty(SH.pattern, "[A-Z]+");
+                property.addProperty(LDHelper.curieToProperty("iow:localName"), "localProperty");
+                break;
+            default:
+                property.addProperty(SH.datatype, XSD.duration);
+                if (i % 2 == 0) {
+                    property.addLiteral(SH.deactivated, true);
+                }
+        }
+    }
+}
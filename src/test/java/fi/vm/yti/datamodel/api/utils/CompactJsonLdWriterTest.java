@@ -0,0 +1,174 @@
+package fi.vm.yti.datamodel.api.utils;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Calendar;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.vocabulary.DCTerms;
+import org.apache.jena.vocabulary.OWL;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.topbraid.shacl.vocabulary.SH;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the compact writer to the JSON-LD 1.0 compact writer of Jena with the test model, both as graphs and as
+ * JSON. Output of the Jena writer is read as JSON-LD 1.0 only, since it uses terms as prefixes (in:dex for sh:index) which JSON-LD 1.1 does not allow.
+ */
+public class CompactJsonLdWriterTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(CompactJsonLdWriterTest.class.getName());
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static Model testModel;
+
+    @BeforeClass
+    public static void readModel() {
+        testModel = ModelFactory.createDefaultModel();
+        RDFDataMgr.read(testModel, CompactJsonLdWriterTest.class.getResourceAsStream("/test-model.ttl"), Lang.TURTLE);
+    }
+
+    @Test
+    public void testSameGraphAsJenaWriter() {
+        String json = CompactJsonLdWriter.DEFAULT.writeToString(testModel);
+        Model written = parse(json);
+        assertTrue(written.isIsomorphicWith(testModel));
+        assertTrue(parse(json, Lang.JSONLD10).isIsomorphicWith(testModel));
+        assertTrue(written.isIsomorphicWith(parse(jenaJsonLd(testModel), Lang.JSONLD10)));
+    }
+
+    @Test
+    public void testSameContextAsJenaWriter() throws Exception {
+        JsonNode expected = objectMapper.readTree(jenaJsonLd(testModel)).get("@context");
+        JsonNode actual = objectMapper.readTree(CompactJsonLdWriter.DEFAULT.writeToString(testModel)).get("@context");
+        assertEquals(expected, actual);
+    }
+
+    /**
+     * Same JSON as the Jena writer, except that sh:index is not written with the term "in" as prefix. Labels of
+     * blank nodes are not compared, because Jena also numbers the nodes of lists.
+     */
+    @Test
+    public void testSameJsonAsJenaWriter() throws Exception {
+        String literals = "@prefix ex: <http://example.org/> . @prefix xsd: <http://www.w3.org/2001/XMLSchema#> .\n"
+            + "ex:a ex:p \"s\" ; ex:list (1 2) . ex:b ex:p true, 5 ; ex:empty () .\n"
+            + "ex:c ex:double 1.5e0, \"1000\"^^xsd:double ; ex:decimal 2.5 ; ex:boolean \"1\"^^xsd:boolean ; ex:integer \"x\"^^xsd:integer, 7, 8 ;\n"
+            + " ex:nan \"NaN\"^^xsd:double ; ex:node [ ex:p false ] .";
+        for (Model model : new Model[]{ testModel, parse(literals, Lang.TURTLE) }) {
+            ObjectNode expected = (ObjectNode) objectMapper.readTree(withoutBlankNodeLabels(jenaJsonLd(model)));
+            for (JsonNode node : expected.path("@graph")) {
+                if (node.has("in:dex")) {
+                    ((ObjectNode) node).set("sh:index", ((ObjectNode) node).remove("in:dex"));
+                }
+            }
+            assertEquals(expected, objectMapper.readTree(withoutBlankNodeLabels(CompactJsonLdWriter.DEFAULT.writeToString(model))));
+        }
+    }
+
+    private static String withoutBlankNodeLabels(String json) {
+        return json.replaceAll("\"_:b[0-9]+\"", "\"_:b\"");
+    }
+
+    @Test
+    public void testValuesOfTerms() throws Exception {
+        Model model = ModelFactory.createDefaultModel();
+        model.setNsPrefix("ex", "http://example.org/");
+        model.setNsPrefix("owl", OWL.NS);
+        Resource resource = model.createResource("http://example.org/a");
+        resource.addProperty(RDF.type, OWL.Class);
+        resource.addProperty(RDFS.label, model.createLiteral("Nimi", "fi"));
+        resource.addProperty(RDFS.label, "Name");
+        resource.addProperty(SH.in, model.createList(model.createResource("http://example.org/b"), model.createResource("http://example.org/c")));
+        resource.addProperty(DCTerms.language, model.createList(model.createLiteral("fi"), model.createLiteral("en")));
+        resource.addLiteral(SH.order, 1);
+
+        JsonNode node = objectMapper.readTree(CompactJsonLdWriter.DEFAULT.writeToString(model));
+        assertEquals("ex:a", node.get("@id").asText());
+        assertEquals("owl:Class", node.get("@type").asText());
+        assertEquals(2, node.get("label").size());
+        assertEquals("ex:b", node.get(SH.in.getURI()).get("@list").get(0).get("@id").asText());
+        assertEquals("fi", node.get(DCTerms.language.getURI()).get("@list").get(0).asText());
+        assertEquals("1", node.get("order").asText());
+        assertFalse(node.has("@graph"));
+        assertTrue(parse(node.toString()).isIsomorphicWith(model));
+    }
+
+    @Test
+    public void testEmptyModel() {
+        assertEquals("{}", CompactJsonLdWriter.DEFAULT.writeToString(ModelFactory.createDefaultModel()));
+    }
+
+    @Test
+    public void benchmarkWriters() {
+        Model model = syntheticModel(2000);
+        int rounds = 5;
+
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            assertFalse(jenaJsonLd(model).isEmpty());
+        }
+        long jena = (System.nanoTime() - start) / rounds / 1000;
+
+        start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            assertFalse(CompactJsonLdWriter.DEFAULT.writeToString(model).isEmpty());
+        }
+        long compact = (System.nanoTime() - start) / rounds / 1000;
+
+        logger.info("{} triples: Jena JSON-LD writer {} us, compact writer {} us", model.size(), jena, compact);
+    }
+
+    private static String jenaJsonLd(Model model) {
+        StringWriter writer = new StringWriter();
+        RDFDataMgr.write(writer, model, RDFFormat.JSONLD10_COMPACT_PRETTY);
+        return writer.toString();
+    }
+
+    private static Model parse(String json) {
+        return parse(json, Lang.JSONLD);
+    }
+
+    private static Model parse(String json,
+                               Lang lang) {
+        Model model = ModelFactory.createDefaultModel();
+        RDFDataMgr.read(model, new StringReader(json), null, lang);
+        return model;
+    }
+
+    private static Model syntheticModel(int resources) {
+        Model model = ModelFactory.createDefaultModel();
+        model.setNsPrefixes(LDHelper.PREFIX_MAP);
+        String namespace = "http://uri.suomi.fi/datamodel/ns/test#";
+        Calendar modified = Calendar.getInstance();
+        for (int i = 0; i < resources; i++) {
+            Resource resource = model.createResource(namespace + "class" + i);
+            resource.addProperty(RDF.type, RDFS.Class);
+            resource.addProperty(RDFS.label, model.createLiteral("Luokka " + i, "fi"));
+            resource.addProperty(RDFS.label, model.createLiteral("Class " + i, "en"));
+            resource.addProperty(RDFS.isDefinedBy, model.createResource(namespace));
+            resource.addProperty(OWL.versionInfo, "DRAFT");
+            resource.addLiteral(DCTerms.modified, model.createTypedLiteral(modified));
+            Resource property = model.createResource();
+            property.addProperty(SH.path, model.createResource(namespace + "property" + i));
+            property.addLiteral(SH.order, i);
+            property.addProperty(SH.in, model.createList(model.createLiteral("a"), model.createLiteral("b")));
+            resource.addProperty(SH.property, property);
+        }
+        return model;
+    }
+}
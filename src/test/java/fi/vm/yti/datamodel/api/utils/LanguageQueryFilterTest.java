@@ -0,0 +1,201 @@
+package fi.vm.yti.datamodel.api.utils;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.query.ParameterizedSparqlString;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QueryExecutionFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.topbraid.shacl.vocabulary.SH;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the filtered class, class list and model queries against a model with labels in five languages.
+ */
+public class LanguageQueryFilterTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(LanguageQueryFilterTest.class.getName());
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static final String MODEL = "http://uri.suomi.fi/datamodel/ns/lang";
+    private static final String CLASS = MODEL + "#Person";
+    private static final List<String> LANGUAGES = Arrays.asList("fi", "sv", "en", "de", "et");
+
+    private static Dataset dataset;
+
+    @BeforeClass
+    public static void createDataset() {
+        StringBuilder trig = new StringBuilder();
+        LDHelper.PREFIX_MAP.forEach((prefix, namespace) -> trig.append("@prefix ").append(prefix).append(": <").append(namespace).append("> .\n"));
+        trig.append("<").append(MODEL).append("> {\n")
+            .append("<").append(MODEL).append("> a dcap:MetadataVocabulary ; owl:versionInfo \"VALID\" ;\n")
+            .append(" dcap:preferredXMLNamespacePrefix \"lang\" ;\n")
+            .append(labels("rdfs:label", "Model")).append(" ;\n")
+            .append(labels("rdfs:comment", "A model describing people and their relations")).append(" ;\n")
+            .append(" dcterms:isPartOf <http://urn.fi/URN:NBN:fi:au:ptvl:v1090> ;\n")
+            .append(" dcterms:contributor <urn:uuid:7d3a3c00-5a6b-489b-a3ed-63bb58c26a63> .\n")
+            .append("<http://urn.fi/URN:NBN:fi:au:ptvl:v1090> dcterms:identifier \"P1\" ; ").append(labels("rdfs:label", "Family")).append(" .\n")
+            .append("<urn:uuid:7d3a3c00-5a6b-489b-a3ed-63bb58c26a63> a foaf:Organization ; ").append(labels("skos:prefLabel", "Agency")).append(" .\n")
+            .append("}\n")
+            .append("<").append(MODEL).append("#HasPartGraph> { <").append(MODEL).append("> dcterms:hasPart <").append(CLASS).append("> . }\n")
+            .append("<urn:yti:servicecategories> { <http://urn.fi/URN:NBN:fi:au:ptvl:v1090> skos:notation \"P1\" ; ")
+            .append(labels("skos:prefLabel", "Family")).append(" . }\n")
+            .append("<").append(CLASS).append("> {\n")
+            .append("<").append(CLASS).append("> a rdfs:Class ; owl:versionInfo \"VALID\" ; rdfs:isDefinedBy <").append(MODEL).append("> ;\n")
+            .append(" dcterms:modified \"2021-01-01T00:00:00Z\"^^xsd:dateTime ;\n")
+            .append(labels("sh:name", "Person")).append(" ;\n")
+            .append(" sh:description \"Henkilö\"@fi, \"A human being\"@en ;\n")
+            .append(" rdfs:comment \"Colour of the person\"@en-GB, \"Not translated\" .\n")
+            .append("}\n");
+        dataset = DatasetFactory.create();
+        RDFDataMgr.read(dataset, new StringReader(trig.toString()), null, Lang.TRIG);
+    }
+
+    private static String labels(String property,
+                                 String label) {
+        return " " + property + " " + LANGUAGES.stream().map(lang -> "\"" + label + " (" + lang + ")\"@" + lang).collect(Collectors.joining(", "));
+    }
+
+    private static Model construct(String queryString,
+                                   List<String> languages) {
+        try (QueryExecution qexec = QueryExecutionFactory.create(LanguageQueryFilter.filter(queryString, languages), dataset)) {
+            return qexec.execConstruct();
+        }
+    }
+
+    private static String classQuery() {
+        ParameterizedSparqlString pss = new ParameterizedSparqlString();
+        pss.setNsPrefixes(LDHelper.PREFIX_MAP);
+        pss.setCommandText(QueryLibrary.classQuery);
+        pss.setIri("graph", CLASS);
+        return pss.toString();
+    }
+
+    private static String modelQuery() {
+        ParameterizedSparqlString pss = new ParameterizedSparqlString();
+        pss.setNsPrefixes(LDHelper.PREFIX_MAP);
+        pss.setCommandText(QueryLibrary.fullModelQuery);
+        pss.setIri("graph", MODEL);
+        return pss.toString();
+    }
+
+    private static Set<String> languages(Model model,
+                                         Resource subject,
+                                         Property property) {
+        return model.listObjectsOfProperty(subject, property).toList().stream()
+            .map(object -> object.asLiteral().getLanguage())
+            .collect(Collectors.toSet());
+    }
+
+    @Test
+    public void testSingleLanguage() {
+        Model model = construct(classQuery(), Collections.singletonList("fi"));
+        Resource person = model.createResource(CLASS);
+        Resource library = model.createResource(MODEL);
+
+        assertEquals(Set.of("fi"), languages(model, person, SH.name));
+        assertEquals(Set.of("fi"), languages(model, person, SH.description));
+        assertEquals(Set.of("fi"), languages(model, library, RDFS.label));
+        assertTrue(person.hasProperty(LDHelper.curieToProperty("owl:versionInfo"), "VALID"));
+        /* Literals without language are kept and a property without Finnish keeps all its literals */
+        assertEquals(Set.of("en-GB", ""), languages(model, person, RDFS.comment));
+    }
+
+    @Test
+    public void testFallbackChain() {
+        Model model = construct(classQuery(), Arrays.asList("sv", "en"));
+        Resource person = model.createResource(CLASS);
+
+        assertEquals(Set.of("sv"), languages(model, person, SH.name));
+        assertEquals(Set.of("en"), languages(model, person, SH.description));
+        /* en matches en-GB */
+        assertEquals(Set.of("en-GB", ""), languages(model, person, RDFS.comment));
+    }
+
+    @Test
+    public void testRegionFallsBackToLanguage() {
+        Model model = construct(classQuery(), LanguageQueryFilter.parseLanguages(null, "en-US, fi;q=0.5"));
+        Resource person = model.createResource(CLASS);
+
+        assertEquals(Set.of("en"), languages(model, person, SH.name));
+        assertEquals(Set.of("en"), languages(model, person, SH.description));
+    }
+
+    @Test
+    public void testMissingLanguageKeepsResources() {
+        ParameterizedSparqlString pss = new ParameterizedSparqlString();
+        pss.setNsPrefixes(LDHelper.PREFIX_MAP);
+        pss.setCommandText(QueryLibrary.listClassesQuery);
+        pss.setIri("library", MODEL);
+        pss.setIri("hasPartGraph", MODEL + "#HasPartGraph");
+
+        Model all = construct(pss.toString(), Collections.emptyList());
+        Model missing = construct(pss.toString(), Collections.singletonList("ja"));
+        assertFalse(all.isEmpty());
+        assertTrue(missing.isIsomorphicWith(all));
+
+        Model finnish = construct(pss.toString(), Collections.singletonList("fi"));
+        assertEquals(Set.of("fi"), languages(finnish, finnish.createResource(CLASS), SH.name));
+    }
+
+    @Test
+    public void testModelQuery() {
+        Model model = construct(modelQuery(), Arrays.asList("et", "fi"));
+        Resource library = model.createResource(MODEL);
+
+        assertEquals(Set.of("et"), languages(model, library, RDFS.label));
+        assertEquals(Set.of("et"), languages(model, model.createResource("http://urn.fi/URN:NBN:fi:au:ptvl:v1090"), RDFS.label));
+        assertEquals(Set.of("et"), languages(model, model.createResource("urn:uuid:7d3a3c00-5a6b-489b-a3ed-63bb58c26a63"), LDHelper.curieToProperty("skos:prefLabel")));
+        assertTrue(library.hasProperty(LDHelper.curieToProperty("dcap:preferredXMLNamespacePrefix"), "lang"));
+    }
+
+    /**
+     * Size of the JSON-LD response without the context, which is the same for all languages
+     */
+    private static int payload(Model model) throws Exception {
+        ObjectNode json = (ObjectNode) objectMapper.readTree(CompactJsonLdWriter.DEFAULT.writeToString(model));
+        json.remove("@context");
+        return objectMapper.writeValueAsString(json).length();
+    }
+
+    @Test
+    public void testPayloadReduction() throws Exception {
+        for (String query : Arrays.asList(classQuery(), modelQuery())) {
+            int full = payload(construct(query, Collections.emptyList()));
+            int filtered = payload(construct(query, Collections.singletonList("fi")));
+            logger.info("Filtered payload " + filtered + " of " + full + " characters");
+            assertTrue(filtered * 5 < full * 3);
+        }
+    }
+
+    @Test
+    public void testParseLanguages() {
+        assertEquals(Arrays.asList("en-gb", "en", "fi", "sv"), LanguageQueryFilter.parseLanguages(null, "sv;q=0.5, en-GB, fi;q=0.8, de;q=0"));
+        assertEquals(Arrays.asList("zh-hant-tw", "zh-hant", "zh", "en"), LanguageQueryFilter.parseLanguages("zh-Hant-TW,en,zh", null));
+        assertEquals(Arrays.asList("en-x-old", "en"), LanguageQueryFilter.parseLanguages("en-x-old", null));
+        assertEquals(Arrays.asList("sv", "fi"), LanguageQueryFilter.parseLanguages("sv,fi", "en"));
+        assertEquals(Collections.emptyList(), LanguageQueryFilter.parseLanguages(null, "*"));
+        assertEquals(Collections.emptyList(), LanguageQueryFilter.parseLanguages("fi,*", "en"));
+        assertEquals(Collections.emptyList(), LanguageQueryFilter.parseLanguages("undefined", null));
+    }
+}